@@ -0,0 +1,377 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * A blocking row set of which the capacity can be changed while rows are flowing through it. Next to the rows it keeps
+ * track of how it is used: how full it got, whether the writing side had to wait for room, whether the reading side had
+ * to wait for rows and the size of the rows in bytes. This allows the capacity to be tuned to the actual back-pressure
+ * on a hop, see {@link #getUsage()}.
+ * <p>
+ * Lowering the capacity below the number of rows in the buffer never drops rows, writers simply wait until enough rows
+ * are read.
+ *
+ * @since 9.0
+ */
+public class AdaptiveRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet {
+  /**
+   * The size in bytes of every n-th row is estimated, with n a power of 2
+   */
+  private static final int SAMPLE_MASK = 63;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final ArrayDeque<Object[]> queue;
+
+  private volatile int capacity;
+
+  private int timeoutPut;
+  private int timeoutGet;
+
+  // The usage since the last call to getUsage(), guarded by the lock
+  //
+  private long rowsPut;
+  private long usageRowsPut;
+  private int minSize;
+  private int maxSize;
+  private long blockedPuts;
+  private long emptyGets;
+  private boolean readerWaiting;
+  private long sampledBytes;
+  private int sampledRows;
+
+  /**
+   * Create a new adaptive row set that initially holds at most maxSize rows.
+   *
+   * @param maxSize
+   */
+  public AdaptiveRowSet( int maxSize ) {
+    super();
+
+    if ( maxSize <= 0 ) {
+      throw new IllegalArgumentException( "Invalid row set size: " + maxSize );
+    }
+    capacity = maxSize;
+    queue = new ArrayDeque<>( Math.min( maxSize, 1024 ) );
+
+    timeoutGet = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_GET_TIMEOUT ), Const.TIMEOUT_GET_MILLIS );
+    timeoutPut = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_PUT_TIMEOUT ), Const.TIMEOUT_PUT_MILLIS );
+  }
+
+  @Override
+  public boolean putRow( RowMetaInterface rowMeta, Object[] rowData ) {
+    return putRowWait( rowMeta, rowData, timeoutPut, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public boolean putRowWait( RowMetaInterface rowMeta, Object[] rowData, long time, TimeUnit tu ) {
+    this.rowMeta = rowMeta;
+    if ( rowData == null ) {
+      return false;
+    }
+
+    long nanos = tu.toNanos( time );
+    lock.lock();
+    try {
+      if ( queue.size() >= capacity ) {
+        blockedPuts++;
+        while ( queue.size() >= capacity ) {
+          if ( nanos <= 0L ) {
+            return false;
+          }
+          nanos = notFull.awaitNanos( nanos );
+        }
+      }
+      queue.addLast( rowData );
+      maxSize = Math.max( maxSize, queue.size() );
+      if ( ( rowsPut++ & SAMPLE_MASK ) == 0 ) {
+        sampledBytes += estimateRowBytes( rowData );
+        sampledRows++;
+      }
+      notEmpty.signal();
+      return true;
+    } catch ( InterruptedException e ) {
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Object[] getRow() {
+    return getRowWait( timeoutGet, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public Object[] getRowImmediate() {
+    lock.lock();
+    try {
+      return take();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Object[] getRowWait( long timeout, TimeUnit tu ) {
+    long nanos = tu.toNanos( timeout );
+    lock.lock();
+    try {
+      if ( queue.isEmpty() ) {
+        // Steps poll with short timeouts while they wait, count a wait for rows only once.
+        // Polling a finished row set isn't waiting either.
+        //
+        if ( !readerWaiting && !done.get() ) {
+          emptyGets++;
+          readerWaiting = true;
+        }
+        while ( queue.isEmpty() ) {
+          if ( nanos <= 0L ) {
+            return null;
+          }
+          nanos = notEmpty.awaitNanos( nanos );
+        }
+      }
+      return take();
+    } catch ( InterruptedException e ) {
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Object[] take() {
+    Object[] row = queue.pollFirst();
+    if ( row != null ) {
+      readerWaiting = false;
+      minSize = Math.min( minSize, queue.size() );
+      notFull.signal();
+    }
+    return row;
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return queue.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of rows that fit in the current capacity, 0 if the capacity was lowered below the fill level
+   */
+  @Override
+  public int remainingCapacity() {
+    lock.lock();
+    try {
+      return Math.max( 0, capacity - queue.size() );
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock.lock();
+    try {
+      queue.clear();
+      minSize = 0;
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    done.set( false );
+  }
+
+  /**
+   * @return the maximum number of rows this row set currently holds
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Change the maximum number of rows this row set holds. Rows that are already in the buffer are kept.
+   *
+   * @param capacity
+   *          the new capacity, at least 1
+   */
+  public void setCapacity( int capacity ) {
+    if ( capacity <= 0 ) {
+      throw new IllegalArgumentException( "Invalid row set size: " + capacity );
+    }
+    lock.lock();
+    try {
+      this.capacity = capacity;
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the usage of this row set since the previous call and start collecting anew.
+   *
+   * @return the usage of the row set since the previous call to this method
+   */
+  public Usage getUsage() {
+    lock.lock();
+    try {
+      Usage usage =
+        new Usage( capacity, queue.size(), minSize, maxSize, rowsPut - usageRowsPut, blockedPuts, emptyGets,
+          sampledRows == 0 ? -1L : sampledBytes / sampledRows );
+      usageRowsPut = rowsPut;
+      minSize = queue.size();
+      maxSize = queue.size();
+      blockedPuts = 0L;
+      emptyGets = 0L;
+      sampledBytes = 0L;
+      sampledRows = 0;
+      return usage;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Make a rough estimate of the number of bytes a row takes on the heap, including the values it refers to.
+   *
+   * @param row
+   *          the row to measure
+   * @return the estimated size in bytes
+   */
+  public static long estimateRowBytes( Object[] row ) {
+    long bytes = 16L + 8L * row.length;
+    for ( Object value : row ) {
+      if ( value == null ) {
+        continue;
+      }
+      if ( value instanceof String ) {
+        bytes += 40L + ( (String) value ).length() * 2L;
+      } else if ( value instanceof byte[] ) {
+        bytes += 16L + ( (byte[]) value ).length;
+      } else if ( value instanceof BigDecimal ) {
+        bytes += 64L;
+      } else {
+        // Long, Double, Boolean, Date, Timestamp, ...
+        bytes += 24L;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * The usage of an adaptive row set during a period of time.
+   */
+  public static class Usage {
+    private final int capacity;
+    private final int size;
+    private final int minSize;
+    private final int maxSize;
+    private final long rowsPut;
+    private final long blockedPuts;
+    private final long emptyGets;
+    private final long averageRowBytes;
+
+    public Usage( int capacity, int size, int minSize, int maxSize, long rowsPut, long blockedPuts, long emptyGets,
+      long averageRowBytes ) {
+      this.capacity = capacity;
+      this.size = size;
+      this.minSize = minSize;
+      this.maxSize = maxSize;
+      this.rowsPut = rowsPut;
+      this.blockedPuts = blockedPuts;
+      this.emptyGets = emptyGets;
+      this.averageRowBytes = averageRowBytes;
+    }
+
+    /**
+     * @return the capacity of the row set
+     */
+    public int getCapacity() {
+      return capacity;
+    }
+
+    /**
+     * @return the number of rows in the row set
+     */
+    public int getSize() {
+      return size;
+    }
+
+    /**
+     * @return the lowest number of rows in the row set during the period
+     */
+    public int getMinSize() {
+      return minSize;
+    }
+
+    /**
+     * @return the highest number of rows in the row set during the period
+     */
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    /**
+     * @return the number of rows put in the row set during the period
+     */
+    public long getRowsPut() {
+      return rowsPut;
+    }
+
+    /**
+     * @return the number of times a row could not be put right away because the row set was full
+     */
+    public long getBlockedPuts() {
+      return blockedPuts;
+    }
+
+    /**
+     * @return the number of times a reader had to wait for a row because the row set was empty. Repeated polls
+     *         until the next row arrives count once.
+     */
+    public long getEmptyGets() {
+      return emptyGets;
+    }
+
+    /**
+     * @return the estimated average size of a row in bytes or -1 if no rows were measured during the period
+     */
+    public long getAverageRowBytes() {
+      return averageRowBytes;
+    }
+  }
+}
@@ -48,6 +48,7 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
   protected AtomicInteger destinationStepCopy;
 
   protected volatile String remoteSlaveServerName;
+  protected volatile boolean sharingRows;
   private ReadWriteLock lock;
 
   public BaseRowSet() {
@@ -302,4 +303,14 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
     return false;
   }
 
+  @Override
+  public boolean isSharingRows() {
+    return sharingRows;
+  }
+
+  @Override
+  public void setSharingRows( boolean sharingRows ) {
+    this.sharingRows = sharingRows;
+  }
+
 }
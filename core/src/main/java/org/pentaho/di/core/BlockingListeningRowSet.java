@@ -144,6 +144,11 @@ public class BlockingListeningRowSet extends BaseRowSet implements Comparable<Ro
     return queArray.size();
   }
 
+  @Override
+  public int remainingCapacity() {
+    return queArray.remainingCapacity();
+  }
+
   /**
    * @return true if this row set is blocking.
    */
@@ -130,6 +130,11 @@ public class BlockingRowSet extends BaseRowSet implements Comparable<RowSet>, Ro
     return queArray.size();
   }
 
+  @Override
+  public int remainingCapacity() {
+    return queArray.remainingCapacity();
+  }
+
   @Override
   public void clear() {
     queArray.clear();
@@ -136,6 +136,11 @@ public class Const {
    */
   public static final int ROWS_IN_ROWSET = 10000;
 
+  /**
+   * Maximum number of temp files the Sort Rows step merges in one pass
+   */
+  public static final int SORT_MAX_MERGE_FILES = 64;
+
   /**
    * Fetch size in rows when querying a database
    */
@@ -975,6 +980,54 @@ public class Const {
    */
   public static final String KETTLE_BATCHING_ROWSET = "KETTLE_BATCHING_ROWSET";
 
+  /**
+   * Set this variable to Y to hand steps a read-only snapshot of their input row metadata, which can be read without
+   * locking. Only use this if none of the steps change the structure of their input row metadata. (default = N)
+   */
+  public static final String KETTLE_FROZEN_ROW_META = "KETTLE_FROZEN_ROW_META";
+
+  /**
+   * Set this variable to Y to run the step copies of a transformation as tasks on a shared pool of threads instead of
+   * giving each step copy a thread of its own. (default = N)
+   */
+  public static final String KETTLE_STEP_EXECUTOR_POOL = "KETTLE_STEP_EXECUTOR_POOL";
+
+  /**
+   * The number of threads in the shared step executor pool, defaults to the number of processors.
+   */
+  public static final String KETTLE_STEP_EXECUTOR_POOL_SIZE = "KETTLE_STEP_EXECUTOR_POOL_SIZE";
+
+  /**
+   * Set this variable to Y to run steps, step initialization and parallel job entries in virtual threads instead of
+   * platform threads. Only has an effect on a JVM that supports virtual threads. (default = N)
+   */
+  public static final String KETTLE_VIRTUAL_THREADS = "KETTLE_VIRTUAL_THREADS";
+
+  /**
+   * Set this variable to Y to hand the same row to all target steps when a step copies its rows to several steps,
+   * instead of a copy of the row to each of them. Only the target steps that keep their rows unchanged, as do all the
+   * steps after them, get the same row. (default = N)
+   */
+  public static final String KETTLE_SHARE_COPIED_ROWS = "KETTLE_SHARE_COPIED_ROWS";
+
+  /**
+   * The number of megabytes the rowsets of a transformation with adaptive rowsets may hold together. (default = a
+   * quarter of the maximum heap size)
+   */
+  public static final String KETTLE_ROWSET_MEMORY_BUDGET = "KETTLE_ROWSET_MEMORY_BUDGET";
+
+  /**
+   * The number of megabytes the steps of a transformation that keep rows in memory (sorts, lookups, aggregations) may
+   * use together before they are asked to spill to disk. (default = half of the maximum heap size)
+   */
+  public static final String KETTLE_TRANS_MEMORY_BUDGET = "KETTLE_TRANS_MEMORY_BUDGET";
+
+  /**
+   * The maximum number of temp files the Sort Rows step merges at once. When a sort spills more files they are merged
+   * in several passes. (default = 64)
+   */
+  public static final String KETTLE_SORT_MAX_MERGE_FILES = "KETTLE_SORT_MAX_MERGE_FILES";
+
   /**
    * Set this variable to limit max number of files the Text File Output step can have open at one time.
    */
@@ -0,0 +1,237 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * A lock-free row set for exactly one writing and one reading thread, as is the case on a hop between a single copy
+ * of a step and a single copy of the next step.
+ * <p>
+ * Rows are kept in a ring buffer indexed by two ever increasing sequences: the tail is only written by the producer
+ * and the head is only written by the consumer. Each side caches the last value it saw of the other side's sequence so
+ * the shared sequences are only read when the buffer looks full (producer) or empty (consumer). The sequences are
+ * padded to keep them on separate cache lines.
+ * <p>
+ * Instead of blocking on a lock, a waiting thread spins for a while, then yields and finally parks for increasingly
+ * longer periods until there is a row (or room for a row) or the timeout expires.
+ *
+ * @since 9.0
+ */
+public class RingBufferRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet {
+  private static final int SPIN_TRIES = 100;
+  private static final int YIELD_TRIES = 10;
+  private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos( 1 );
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos( 1 );
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private final Object[][] buffer;
+  private final int mask;
+  private final int capacity;
+
+  private final Sequence head;
+  private final Sequence tail;
+
+  private int timeoutPut;
+  private int timeoutGet;
+
+  /**
+   * Create a new ring buffer row set that holds at most maxSize rows.
+   *
+   * @param maxSize
+   */
+  public RingBufferRowSet( int maxSize ) {
+    super();
+
+    if ( maxSize <= 0 || maxSize > MAX_CAPACITY ) {
+      throw new IllegalArgumentException( "Invalid row set size: " + maxSize );
+    }
+
+    // The buffer length is a power of 2 so that the slot of a sequence is a simple mask
+    //
+    int length = 1;
+    while ( length < maxSize ) {
+      length <<= 1;
+    }
+    buffer = new Object[ length ][];
+    mask = length - 1;
+    capacity = maxSize;
+
+    head = new Sequence();
+    tail = new Sequence();
+
+    timeoutGet = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_GET_TIMEOUT ), Const.TIMEOUT_GET_MILLIS );
+    timeoutPut = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_PUT_TIMEOUT ), Const.TIMEOUT_PUT_MILLIS );
+  }
+
+  @Override
+  public boolean putRow( RowMetaInterface rowMeta, Object[] rowData ) {
+    return putRowWait( rowMeta, rowData, timeoutPut, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public boolean putRowWait( RowMetaInterface rowMeta, Object[] rowData, long time, TimeUnit tu ) {
+    this.rowMeta = rowMeta;
+    if ( rowData == null ) {
+      return false;
+    }
+
+    long t = tail.get();
+    if ( t - tail.cached >= capacity ) {
+      tail.cached = head.get();
+      if ( t - tail.cached >= capacity && !waitForRoom( t, tu.toNanos( time ) ) ) {
+        return false;
+      }
+    }
+
+    buffer[ (int) t & mask ] = rowData;
+    // Ordered store: the row is visible to the consumer before the new tail is.
+    tail.lazySet( t + 1 );
+    return true;
+  }
+
+  private boolean waitForRoom( long t, long timeoutNanos ) {
+    long deadline = System.nanoTime() + timeoutNanos;
+    for ( int attempt = 0; backOff( attempt, deadline ); attempt++ ) {
+      tail.cached = head.get();
+      if ( t - tail.cached < capacity ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Object[] getRow() {
+    return getRowWait( timeoutGet, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public Object[] getRowImmediate() {
+    long h = head.get();
+    if ( h >= head.cached ) {
+      head.cached = tail.get();
+      if ( h >= head.cached ) {
+        return null;
+      }
+    }
+    return take( h );
+  }
+
+  @Override
+  public Object[] getRowWait( long timeout, TimeUnit tu ) {
+    Object[] row = getRowImmediate();
+    if ( row != null ) {
+      return row;
+    }
+
+    long h = head.get();
+    long deadline = System.nanoTime() + tu.toNanos( timeout );
+    for ( int attempt = 0; backOff( attempt, deadline ); attempt++ ) {
+      // Read the done flag before the tail: a row put before setDone() is then always seen.
+      //
+      boolean finished = done.get();
+      head.cached = tail.get();
+      if ( h < head.cached ) {
+        return take( h );
+      }
+      if ( finished ) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  private Object[] take( long h ) {
+    int slot = (int) h & mask;
+    Object[] row = buffer[ slot ];
+    buffer[ slot ] = null;
+    // Ordered store: the slot is released to the producer after we're done with it.
+    head.lazySet( h + 1 );
+    return row;
+  }
+
+  /**
+   * Spin, yield and then park the current thread for an increasing period of time.
+   *
+   * @return false if the deadline has passed or the thread was interrupted
+   */
+  private static boolean backOff( int attempt, long deadline ) {
+    long remaining = deadline - System.nanoTime();
+    if ( remaining <= 0 || Thread.currentThread().isInterrupted() ) {
+      return false;
+    }
+    if ( attempt < SPIN_TRIES ) {
+      return true;
+    }
+    if ( attempt < SPIN_TRIES + YIELD_TRIES ) {
+      Thread.yield();
+      return true;
+    }
+    int shift = Math.min( attempt - SPIN_TRIES - YIELD_TRIES, 10 );
+    LockSupport.parkNanos( Math.min( remaining, Math.min( MIN_PARK_NANOS << shift, MAX_PARK_NANOS ) ) );
+    return true;
+  }
+
+  @Override
+  public int size() {
+    // Read the head first, the tail can only have moved further by the time we read it.
+    //
+    long h = head.get();
+    long t = tail.get();
+    return (int) Math.min( t - h, capacity );
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return capacity - size();
+  }
+
+  @Override
+  public void clear() {
+    long t = tail.get();
+    for ( long h = head.get(); h < t; h++ ) {
+      buffer[ (int) h & mask ] = null;
+    }
+    head.set( t );
+    head.cached = t;
+    tail.cached = t;
+    done.set( false );
+  }
+
+  /**
+   * A sequence padded against false sharing. The cached field holds the last value of the opposite sequence seen by
+   * the thread that owns this one.
+   */
+  @SuppressWarnings( "unused" )
+  private static final class Sequence extends AtomicLong {
+    private static final long serialVersionUID = 4447436264469573393L;
+
+    private long cached;
+    private long p1, p2, p3, p4, p5, p6, p7;
+  }
+}
@@ -116,6 +116,30 @@ public interface RowSet {
    */
   public abstract int size();
 
+  /**
+   * @return the number of rows that can currently be put in the RowSet without waiting, or Integer.MAX_VALUE if the
+   *         RowSet doesn't limit the number of rows it holds
+   */
+  public default int remainingCapacity() {
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * @return true if the rows in this RowSet can also be handed to other RowSets, in which case the receiving step
+   *         must not modify them in place
+   */
+  public default boolean isSharingRows() {
+    return false;
+  }
+
+  /**
+   * @param sharingRows
+   *          true if the producing step may hand the rows it puts in this RowSet to other RowSets as well. RowSets
+   *          that don't support this ignore the call and keep returning false from {@link #isSharingRows()}.
+   */
+  public default void setSharingRows( boolean sharingRows ) {
+  }
+
   /**
    * This method is used only in Trans.java when created RowSet at line 333. Don't need any synchronization on this
    * method
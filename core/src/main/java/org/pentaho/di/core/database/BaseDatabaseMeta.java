@@ -1923,6 +1923,29 @@ public abstract class BaseDatabaseMeta implements Cloneable, DatabaseInterfaceEx
     return true;
   }
 
+  /**
+   * Batch lookup condition for databases that support row value constructors, for composite keys:
+   * <code>( A, B ) IN ( ( ?, ? ), ( ?, ? ) )</code>. A single key uses the default <code>A IN ( ?, ? )</code>.
+   *
+   * @see DatabaseInterface#getSQLBatchLookupCondition(String[], int)
+   */
+  protected String getSQLRowValueBatchLookupCondition( String[] keyFields, int nrKeys ) {
+    if ( keyFields.length == 1 ) {
+      return DatabaseInterfaceExtended.super.getSQLBatchLookupCondition( keyFields, nrKeys );
+    }
+    StringBuilder tuple = new StringBuilder( "( " );
+    for ( int k = 0; k < keyFields.length; k++ ) {
+      tuple.append( k == 0 ? "?" : ", ?" );
+    }
+    tuple.append( " )" );
+
+    StringBuilder condition = new StringBuilder( "( " ).append( String.join( ", ", keyFields ) ).append( " ) IN ( " );
+    for ( int i = 0; i < nrKeys; i++ ) {
+      condition.append( i == 0 ? "" : ", " ).append( tuple );
+    }
+    return condition.append( " )" ).toString();
+  }
+
   /**
    * @return true if the database is a MySQL variant, like MySQL 5.1, InfiniDB, InfoBright, and so on.
    */
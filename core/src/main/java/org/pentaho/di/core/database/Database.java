@@ -137,6 +137,7 @@ public class Database implements VariableSpace, LoggingObjectInterface {
   private Statement sel_stmt;
   private PreparedStatement pstmt;
   private PreparedStatement prepStatementLookup;
+  private PreparedStatement prepStatementBatchLookup;
   private PreparedStatement prepStatementUpdate;
   private PreparedStatement prepStatementInsert;
   private PreparedStatement pstmt_seq;
@@ -146,6 +147,9 @@ public class Database implements VariableSpace, LoggingObjectInterface {
   private DatabaseMetaData dbmd;
 
   private RowMetaInterface rowMeta;
+  private RowMetaInterface batchLookupRowMeta;
+  private ResultSetRowDecoder rowDecoder;
+  private int batchLookupSize;
 
   private int written;
 
@@ -154,6 +158,9 @@ public class Database implements VariableSpace, LoggingObjectInterface {
   private static final String[] TABLE_TYPES_TO_GET = { "TABLE", "VIEW" };
   private static final String TABLES_META_DATA_TABLE_NAME = "TABLE_NAME";
 
+  /** Most databases can handle an IN list or a statement with at least this many parameters */
+  private static final int MAX_BATCH_LOOKUP_PARAMETERS = 1000;
+
   /**
    * Number of times a connection was opened using this object. Only used in the context of a database connection map
    */
@@ -623,6 +630,16 @@ public class Database implements VariableSpace, LoggingObjectInterface {
       }
       prepStatementLookup = null;
     }
+    if ( prepStatementBatchLookup != null ) {
+      try {
+        prepStatementBatchLookup.close();
+      } catch ( SQLException ex ) {
+        // cannot do anything about this but log it
+        log.logError( "Error closing batch lookup statement:" + Const.CR + ex.getMessage() );
+        log.logError( Const.getStackTracker( ex ) );
+      }
+      prepStatementBatchLookup = null;
+    }
     if ( prepStatementInsert != null ) {
       try {
         prepStatementInsert.close();
@@ -1078,6 +1095,28 @@ public class Database implements VariableSpace, LoggingObjectInterface {
     }
   }
 
+  /**
+   * Sets the values of several rows in a multi-row insert statement, one row after the other.
+   *
+   * @param rowMeta the layout of the rows
+   * @param rows the rows, as many as the statement was created for
+   * @param ps the multi-row insert statement
+   */
+  public void setMultiRowValues( RowMetaInterface rowMeta, List<Object[]> rows, PreparedStatement ps )
+    throws KettleDatabaseException {
+    int pos = 1;
+    for ( Object[] data : rows ) {
+      for ( int i = 0; i < rowMeta.size(); i++ ) {
+        ValueMetaInterface v = rowMeta.getValueMeta( i );
+        try {
+          setValue( ps, v, data[ i ], pos++ );
+        } catch ( KettleDatabaseException e ) {
+          throw new KettleDatabaseException( "offending row : " + rowMeta, e );
+        }
+      }
+    }
+  }
+
   /**
    * Sets the values of the preparedStatement pstmt.
    *
@@ -1215,6 +1254,33 @@ public class Database implements VariableSpace, LoggingObjectInterface {
     return ins.toString();
   }
 
+  /**
+   * Get an insert statement for several rows at once:
+   * <code>INSERT INTO table (a, b) VALUES ( ?, ?), ( ?, ?)</code>
+   *
+   * @param schemaName the schema of the table
+   * @param tableName the table to insert into
+   * @param fields the fields of a row
+   * @param nrRows the number of rows to insert with the statement
+   * @return the insert statement
+   */
+  public String getMultiRowInsertStatement( String schemaName, String tableName, RowMetaInterface fields,
+                                            int nrRows ) {
+    StringBuilder ins = new StringBuilder( getInsertStatement( schemaName, tableName, fields ) );
+    ins.ensureCapacity( ins.length() + nrRows * ( fields.size() * 3 + 4 ) );
+    for ( int r = 1; r < nrRows; r++ ) {
+      ins.append( ", (" );
+      for ( int i = 0; i < fields.size(); i++ ) {
+        if ( i > 0 ) {
+          ins.append( ", " );
+        }
+        ins.append( " ?" );
+      }
+      ins.append( ')' );
+    }
+    return ins.toString();
+  }
+
   public void insertRow() throws KettleDatabaseException {
     insertRow( prepStatementInsert );
   }
@@ -2451,6 +2517,18 @@ public class Database implements VariableSpace, LoggingObjectInterface {
       + name + "', on column index " + i + " : not a handled data type" );
   }
 
+  /**
+   * Get the decoder for rows of the given metadata. The decoder is kept as long as the same row metadata is used so
+   * the readers of a query only pick the column decoders once.
+   */
+  private ResultSetRowDecoder getRowDecoder( RowMetaInterface rowInfo ) {
+    if ( rowDecoder == null || rowDecoder.getRowMeta() != rowInfo
+      || rowDecoder.getDecoders().length != rowInfo.size() ) {
+      rowDecoder = new ResultSetRowDecoder( databaseMeta, rowInfo );
+    }
+    return rowDecoder;
+  }
+
   public boolean absolute( ResultSet rs, int position ) throws KettleDatabaseException {
     try {
       return rs.absolute( position );
@@ -2531,11 +2609,7 @@ public class Database implements VariableSpace, LoggingObjectInterface {
       Object[] data = RowDataUtil.allocateRowData( nrcols );
 
       if ( rs.next() ) {
-        for ( int i = 0; i < nrcols; i++ ) {
-          ValueMetaInterface val = rowInfo.getValueMeta( i );
-
-          data[ i ] = databaseMeta.getValueFromResultSet( rs, val, i );
-        }
+        getRowDecoder( rowInfo ).decode( rs, data );
       } else {
         data = null;
       }
@@ -2637,6 +2711,117 @@ public class Database implements VariableSpace, LoggingObjectInterface {
     }
   }
 
+  /**
+   * Prepare a query that looks up the rows of several keys at once, with an equality condition on every key field.
+   * The key fields are returned in front of the requested fields so that the rows can be matched with their keys.
+   *
+   * @param schemaName the schema of the table
+   * @param tableName the table to look up the keys in
+   * @param codes the key fields
+   * @param gets the fields to return
+   * @param rename the new names of the fields to return
+   * @param orderby the order by clause, the first row of each key is the one it would get from a single lookup
+   * @param batchSize the maximum number of keys to look up at once
+   * @return the number of keys looked up per query, capped to keep the number of parameters manageable
+   * @throws KettleDatabaseException in case the statement can't be prepared
+   */
+  public int setBatchLookup( String schemaName, String tableName, String[] codes, String[] gets, String[] rename,
+                             String orderby, int batchSize ) throws KettleDatabaseException {
+    batchLookupSize = Math.max( 1, Math.min( batchSize, MAX_BATCH_LOOKUP_PARAMETERS / Math.max( 1, codes.length ) ) );
+    batchLookupRowMeta = null;
+
+    String[] keyFields = new String[ codes.length ];
+    StringBuilder sql = new StringBuilder( "SELECT " );
+    for ( int i = 0; i < codes.length; i++ ) {
+      keyFields[ i ] = databaseMeta.quoteField( codes[ i ] );
+      sql.append( keyFields[ i ] ).append( ", " );
+    }
+    for ( int i = 0; i < gets.length; i++ ) {
+      if ( i != 0 ) {
+        sql.append( ", " );
+      }
+      sql.append( databaseMeta.quoteField( gets[ i ] ) );
+      if ( rename != null && rename[ i ] != null && !gets[ i ].equalsIgnoreCase( rename[ i ] ) ) {
+        sql.append( " AS " ).append( databaseMeta.quoteField( rename[ i ] ) );
+      }
+    }
+    sql.append( " FROM " ).append( databaseMeta.getQuotedSchemaTableCombination( schemaName, tableName ) );
+    sql.append( " WHERE " ).append( databaseMeta.getSQLBatchLookupCondition( keyFields, batchLookupSize ) );
+    if ( orderby != null && orderby.length() != 0 ) {
+      sql.append( " ORDER BY " ).append( orderby );
+    }
+
+    try {
+      if ( log.isDetailed() ) {
+        log.logDetailed( "Setting batch lookup preparedStatement to [" + sql + "]" );
+      }
+      prepStatementBatchLookup = connection.prepareStatement( databaseMeta.stripCR( sql.toString() ) );
+    } catch ( SQLException ex ) {
+      throw new KettleDatabaseException( "Unable to prepare statement for batch lookup [" + sql + "]", ex );
+    }
+    return batchLookupSize;
+  }
+
+  /**
+   * Look up the rows of several keys with the statement prepared by
+   * {@link #setBatchLookup(String, String, String[], String[], String[], String, int)}. The unused parameters of a
+   * batch that isn't full repeat the last key.
+   *
+   * @param keyMeta the metadata of the keys
+   * @param keys at most the batch size keys to look up
+   * @return all the rows found, starting with the key fields, see {@link #getBatchLookupRowMeta()}
+   * @throws KettleDatabaseException in case something goes wrong
+   */
+  public List<Object[]> getBatchLookup( RowMetaInterface keyMeta, List<Object[]> keys )
+    throws KettleDatabaseException {
+    if ( keys.isEmpty() || keys.size() > batchLookupSize ) {
+      throw new KettleDatabaseException( "Unable to look up " + keys.size() + " keys in a batch of "
+        + batchLookupSize );
+    }
+    ResultSet res = null;
+    try {
+      log.snap( Metrics.METRIC_DATABASE_GET_LOOKUP_START, databaseMeta.getName() );
+      int pos = 1;
+      for ( int i = 0; i < batchLookupSize; i++ ) {
+        Object[] key = keys.get( Math.min( i, keys.size() - 1 ) );
+        for ( int k = 0; k < keyMeta.size(); k++ ) {
+          setValue( prepStatementBatchLookup, keyMeta.getValueMeta( k ), key[ k ], pos++ );
+        }
+      }
+      res = prepStatementBatchLookup.executeQuery();
+
+      if ( batchLookupRowMeta == null ) {
+        batchLookupRowMeta = getRowInfo( res.getMetaData(), false, false );
+      }
+      List<Object[]> rows = new ArrayList<Object[]>();
+      Object[] row = getRow( res, null, batchLookupRowMeta );
+      while ( row != null ) {
+        rows.add( row );
+        row = getRow( res, null, batchLookupRowMeta );
+      }
+      return rows;
+    } catch ( SQLException ex ) {
+      throw new KettleDatabaseException( "Error looking up rows in database", ex );
+    } finally {
+      try {
+        if ( res != null ) {
+          res.close(); // close resultset!
+        }
+      } catch ( SQLException e ) {
+        throw new KettleDatabaseException( "Unable to close resultset after looking up data", e );
+      } finally {
+        log.snap( Metrics.METRIC_DATABASE_GET_LOOKUP_STOP, databaseMeta.getName() );
+      }
+    }
+  }
+
+  /**
+   * @return the metadata of the rows returned by the batch lookup: the key fields followed by the returned fields
+   */
+  public RowMetaInterface getBatchLookupRowMeta() {
+    return batchLookupRowMeta;
+  }
+
   public boolean prepareUpdate( String table, String[] codes, String[] condition, String[] sets ) {
     return prepareUpdate( null, table, codes, condition, sets );
   }
@@ -1186,4 +1186,48 @@ public interface DatabaseInterface extends Cloneable {
     return new SqlScriptParser( true );
   }
 
+  /**
+   * Get the condition that matches the rows of any of a number of keys, used to look up several keys in one query.
+   * The parameters are bound key by key, in the order of the key fields.
+   *
+   * @param keyFields
+   *          the quoted key fields
+   * @param nrKeys
+   *          the number of keys to look up
+   * @return the condition, for example <code>ID IN ( ?, ?, ? )</code>
+   */
+  default String getSQLBatchLookupCondition( String[] keyFields, int nrKeys ) {
+    StringBuilder condition = new StringBuilder( 32 + nrKeys * keyFields.length * 16 );
+    if ( keyFields.length == 1 ) {
+      condition.append( keyFields[ 0 ] ).append( " IN ( " );
+      for ( int i = 0; i < nrKeys; i++ ) {
+        condition.append( i == 0 ? "?" : ", ?" );
+      }
+      return condition.append( " )" ).toString();
+    }
+    for ( int i = 0; i < nrKeys; i++ ) {
+      condition.append( i == 0 ? "( " : " OR ( " );
+      for ( int k = 0; k < keyFields.length; k++ ) {
+        condition.append( k == 0 ? "" : " AND " ).append( keyFields[ k ] ).append( " = ?" );
+      }
+      condition.append( " )" );
+    }
+    return condition.toString();
+  }
+
+  /**
+   * @return true if the database inserts several rows with one <code>INSERT ... VALUES ( ... ), ( ... )</code>
+   *         statement faster than with a batch of single row inserts
+   */
+  default boolean supportsMultiRowInsert() {
+    return false;
+  }
+
+  /**
+   * @return the maximum number of parameters in one statement, this limits the number of rows of a multi-row insert
+   */
+  default int getMaxStatementParameters() {
+    return 1000;
+  }
+
 }
@@ -1654,6 +1654,32 @@ public class DatabaseMeta extends SharedObjectBase implements Cloneable, XMLInte
     return databaseInterface.getLimitClause( nrRows );
   }
 
+  /**
+   * @param keyFields
+   *          the quoted key fields
+   * @param nrKeys
+   *          the number of keys to look up
+   * @return the condition that matches the rows of any of the keys in a single query
+   */
+  public String getSQLBatchLookupCondition( String[] keyFields, int nrKeys ) {
+    return databaseInterface.getSQLBatchLookupCondition( keyFields, nrKeys );
+  }
+
+  /**
+   * @return true if the database inserts several rows with one statement faster than with a batch of single row
+   *         inserts
+   */
+  public boolean supportsMultiRowInsert() {
+    return databaseInterface.supportsMultiRowInsert();
+  }
+
+  /**
+   * @return the maximum number of parameters in one statement
+   */
+  public int getMaxStatementParameters() {
+    return databaseInterface.getMaxStatementParameters();
+  }
+
   /**
    * @param tableName
    *          The table or schema-table combination. We expect this to be quoted properly already!
@@ -446,6 +446,17 @@ public class MySQLDatabaseMeta extends BaseDatabaseMeta implements DatabaseInter
     return true;
   }
 
+  @Override public boolean supportsMultiRowInsert() {
+    return true;
+  }
+
+  /**
+   * The number of placeholders in a prepared statement is stored in 2 bytes.
+   */
+  @Override public int getMaxStatementParameters() {
+    return 65535;
+  }
+
   @Override public boolean isRequiringTransactionsOnQueries() {
     return false;
   }
@@ -72,6 +72,14 @@ public class OracleDatabaseMeta extends BaseDatabaseMeta implements DatabaseInte
     return " WHERE ROWNUM <= " + nrRows;
   }
 
+  /**
+   * Composite keys are looked up with a row value constructor: <code>( A, B ) IN ( ( ?, ? ), ( ?, ? ) )</code>
+   */
+  @Override
+  public String getSQLBatchLookupCondition( String[] keyFields, int nrKeys ) {
+    return getSQLRowValueBatchLookupCondition( keyFields, nrKeys );
+  }
+
   /**
    * Returns the minimal SQL to launch in order to determine the layout of the resultset for a given database table
    *
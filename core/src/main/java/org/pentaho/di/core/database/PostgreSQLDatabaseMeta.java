@@ -133,6 +133,27 @@ public class PostgreSQLDatabaseMeta extends BaseDatabaseMeta implements Database
     return " limit " + nrRows;
   }
 
+  @Override
+  public boolean supportsMultiRowInsert() {
+    return true;
+  }
+
+  /**
+   * The JDBC driver sends the number of parameters of a statement as a signed 2 byte integer.
+   */
+  @Override
+  public int getMaxStatementParameters() {
+    return 32767;
+  }
+
+  /**
+   * Composite keys are looked up with a row value constructor: <code>( A, B ) IN ( ( ?, ? ), ( ?, ? ) )</code>
+   */
+  @Override
+  public String getSQLBatchLookupCondition( String[] keyFields, int nrKeys ) {
+    return getSQLRowValueBatchLookupCondition( keyFields, nrKeys );
+  }
+
   @Override
   public String getSQLQueryFields( String tableName ) {
     return "SELECT * FROM " + tableName + getLimitClause( 1 );
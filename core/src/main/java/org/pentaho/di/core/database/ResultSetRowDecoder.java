@@ -0,0 +1,254 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.database;
+
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBase;
+
+/**
+ * Reads rows from a result set with one decoder per column, picked once for a row metadata.
+ * <p>
+ * The decoders do the same as {@link ValueMetaBase#getValueFromResultSet(DatabaseInterface, ResultSet, int)} without
+ * switching on the data type and the database quirks for every value. Object getters return null for SQL NULL so
+ * wasNull() is only called after primitive getters.
+ * <p>
+ * Columns of value metadata types or database dialects that read values in their own way keep going through
+ * {@link DatabaseMeta#getValueFromResultSet(ResultSet, ValueMetaInterface, int)}.
+ *
+ * @since 9.0
+ */
+class ResultSetRowDecoder {
+
+  /**
+   * Reads the value of a single column from the current row of a result set.
+   */
+  interface ColumnDecoder {
+    /**
+     * @param resultSet the result set to read from
+     * @param column    the 1-based column index
+     */
+    Object decode( ResultSet resultSet, int column ) throws SQLException, KettleDatabaseException;
+  }
+
+  static final ColumnDecoder BOOLEAN = new ColumnDecoder() {
+    @Override
+    public Object decode( ResultSet resultSet, int column ) throws SQLException {
+      boolean value = resultSet.getBoolean( column );
+      return resultSet.wasNull() ? null : Boolean.valueOf( value );
+    }
+  };
+
+  static final ColumnDecoder NUMBER = new ColumnDecoder() {
+    @Override
+    public Object decode( ResultSet resultSet, int column ) throws SQLException {
+      double value = resultSet.getDouble( column );
+      return resultSet.wasNull() ? null : Double.valueOf( value );
+    }
+  };
+
+  static final ColumnDecoder INTEGER = new ColumnDecoder() {
+    @Override
+    public Object decode( ResultSet resultSet, int column ) throws SQLException {
+      long value = resultSet.getLong( column );
+      return resultSet.wasNull() ? null : Long.valueOf( value );
+    }
+  };
+
+  static final ColumnDecoder BIGNUMBER = new ColumnDecoder() {
+    @Override
+    public BigDecimal decode( ResultSet resultSet, int column ) throws SQLException {
+      return resultSet.getBigDecimal( column );
+    }
+  };
+
+  static final ColumnDecoder STRING = new ColumnDecoder() {
+    @Override
+    public String decode( ResultSet resultSet, int column ) throws SQLException {
+      return resultSet.getString( column );
+    }
+  };
+
+  static final ColumnDecoder BYTES = new ColumnDecoder() {
+    @Override
+    public byte[] decode( ResultSet resultSet, int column ) throws SQLException {
+      return resultSet.getBytes( column );
+    }
+  };
+
+  static final ColumnDecoder BLOB = new ColumnDecoder() {
+    @Override
+    public byte[] decode( ResultSet resultSet, int column ) throws SQLException {
+      Blob blob = resultSet.getBlob( column );
+      return blob == null ? null : blob.getBytes( 1L, (int) blob.length() );
+    }
+  };
+
+  static final ColumnDecoder TIMESTAMP = new ColumnDecoder() {
+    @Override
+    public Object decode( ResultSet resultSet, int column ) throws SQLException {
+      return resultSet.getTimestamp( column );
+    }
+  };
+
+  static final ColumnDecoder DATE = new ColumnDecoder() {
+    @Override
+    public Object decode( ResultSet resultSet, int column ) throws SQLException {
+      return resultSet.getDate( column );
+    }
+  };
+
+  private final RowMetaInterface rowMeta;
+  private final ColumnDecoder[] decoders;
+
+  /**
+   * Pick the decoders for the columns of a row.
+   *
+   * @param databaseMeta the database the result set comes from
+   * @param rowMeta      the description of the rows in the result set
+   */
+  ResultSetRowDecoder( DatabaseMeta databaseMeta, RowMetaInterface rowMeta ) {
+    this.rowMeta = rowMeta;
+
+    boolean standardDatabase = usesStandardDecoding( databaseMeta );
+    decoders = new ColumnDecoder[ rowMeta.size() ];
+    for ( int i = 0; i < decoders.length; i++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( i );
+      ColumnDecoder decoder = null;
+      if ( standardDatabase && usesStandardDecoding( valueMeta ) ) {
+        decoder = getDecoder( databaseMeta.getDatabaseInterface(), valueMeta );
+      }
+      decoders[ i ] = decoder != null ? decoder : new GenericDecoder( databaseMeta, valueMeta );
+    }
+  }
+
+  /**
+   * @return the row metadata the decoders were picked for
+   */
+  RowMetaInterface getRowMeta() {
+    return rowMeta;
+  }
+
+  /**
+   * @return the decoder of each column
+   */
+  ColumnDecoder[] getDecoders() {
+    return decoders;
+  }
+
+  /**
+   * Read the current row of the result set into the given row.
+   *
+   * @param resultSet the result set positioned on a row
+   * @param row       the row to fill, at least as long as the row metadata
+   */
+  void decode( ResultSet resultSet, Object[] row ) throws KettleDatabaseException {
+    for ( int i = 0; i < decoders.length; i++ ) {
+      try {
+        row[ i ] = decoders[ i ].decode( resultSet, i + 1 );
+      } catch ( SQLException e ) {
+        throw new KettleDatabaseException( "Unable to get value '" + rowMeta.getValueMeta( i ).toStringMeta()
+          + "' from database resultset, index " + i, e );
+      }
+    }
+  }
+
+  /**
+   * @return the specialized decoder for the value or null if the value needs the generic path
+   */
+  static ColumnDecoder getDecoder( DatabaseInterface databaseInterface, ValueMetaInterface valueMeta ) {
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        return BOOLEAN;
+      case ValueMetaInterface.TYPE_NUMBER:
+        return NUMBER;
+      case ValueMetaInterface.TYPE_INTEGER:
+        return INTEGER;
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        return BIGNUMBER;
+      case ValueMetaInterface.TYPE_STRING:
+        return valueMeta.isStorageBinaryString() ? BYTES : STRING;
+      case ValueMetaInterface.TYPE_BINARY:
+        return databaseInterface.supportsGetBlob() ? BLOB : BYTES;
+      case ValueMetaInterface.TYPE_DATE:
+        if ( valueMeta.getPrecision() != 1 && databaseInterface.supportsTimeStampToDateConversion() ) {
+          return TIMESTAMP;
+        }
+        // PDI-10877: Netezza dates can be times, leave those to the value metadata
+        return databaseInterface instanceof NetezzaDatabaseMeta ? null : DATE;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return true if the database reads values the way the base database dialect does
+   */
+  static boolean usesStandardDecoding( DatabaseMeta databaseMeta ) {
+    DatabaseInterface databaseInterface = databaseMeta.getDatabaseInterface();
+    return databaseInterface != null
+      && declaredBy( databaseMeta.getClass(), DatabaseMeta.class, ResultSet.class, ValueMetaInterface.class, int.class )
+      && declaredBy( databaseInterface.getClass(), BaseDatabaseMeta.class, ResultSet.class, ValueMetaInterface.class,
+        int.class );
+  }
+
+  /**
+   * @return true if the value metadata reads values the way the base value metadata does
+   */
+  static boolean usesStandardDecoding( ValueMetaInterface valueMeta ) {
+    return declaredBy( valueMeta.getClass(), ValueMetaBase.class, DatabaseInterface.class, ResultSet.class,
+      int.class );
+  }
+
+  private static boolean declaredBy( Class<?> clazz, Class<?> declaringClass, Class<?>... parameterTypes ) {
+    try {
+      return clazz.getMethod( "getValueFromResultSet", parameterTypes ).getDeclaringClass() == declaringClass;
+    } catch ( NoSuchMethodException e ) {
+      return false;
+    }
+  }
+
+  /**
+   * Reads a value through the database and value metadata, for the cases the specialized decoders don't cover.
+   */
+  static class GenericDecoder implements ColumnDecoder {
+    private final DatabaseMeta databaseMeta;
+    private final ValueMetaInterface valueMeta;
+
+    GenericDecoder( DatabaseMeta databaseMeta, ValueMetaInterface valueMeta ) {
+      this.databaseMeta = databaseMeta;
+      this.valueMeta = valueMeta;
+    }
+
+    @Override
+    public Object decode( ResultSet resultSet, int column ) throws KettleDatabaseException {
+      return databaseMeta.getValueFromResultSet( resultSet, valueMeta, column - 1 );
+    }
+  }
+}
@@ -24,12 +24,19 @@ package org.pentaho.di.core.hash;
 
 import org.pentaho.di.core.exception.KettleValueException;
 
+/**
+ * A long/long hash index with open addressing: the keys and values are kept in primitive arrays, so the index consists
+ * of a few objects no matter how many entries it holds and probing it doesn't allocate anything.
+ */
 public class LongHashIndex {
 
   private static final int STANDARD_INDEX_SIZE = 512;
-  private static final float STANDARD_LOAD_FACTOR = 0.78f;
+  private static final float STANDARD_LOAD_FACTOR = 0.5f;
 
-  private LongHashIndexEntry[] index;
+  private long[] keys;
+  private long[] values;
+  private boolean[] used;
+  private int mask;
   private int size;
   private int resizeThresHold;
 
@@ -42,14 +49,12 @@ public class LongHashIndex {
   public LongHashIndex( int size ) {
 
     // Find a suitable capacity being a factor of 2:
-    int factor2Size = 1;
+    int factor2Size = 2;
     while ( factor2Size < size ) {
       factor2Size <<= 1; // Multiply by 2
     }
 
-    this.resizeThresHold = (int) ( factor2Size * STANDARD_LOAD_FACTOR );
-
-    index = new LongHashIndexEntry[factor2Size];
+    allocate( factor2Size );
   }
 
   /**
@@ -59,6 +64,14 @@ public class LongHashIndex {
     this( STANDARD_INDEX_SIZE );
   }
 
+  private void allocate( int capacity ) {
+    keys = new long[capacity];
+    values = new long[capacity];
+    used = new boolean[capacity];
+    mask = capacity - 1;
+    resizeThresHold = (int) ( capacity * STANDARD_LOAD_FACTOR );
+  }
+
   public int getSize() {
     return size;
   }
@@ -67,105 +80,103 @@ public class LongHashIndex {
     return size == 0;
   }
 
-  public Long get( long key ) throws KettleValueException {
-    int hashCode = generateHashCode( key );
+  /**
+   * @return the number of slots of the index
+   */
+  public int getCapacity() {
+    return keys.length;
+  }
 
-    int indexPointer = indexFor( hashCode, index.length );
-    LongHashIndexEntry check = index[indexPointer];
+  public Long get( long key ) throws KettleValueException {
+    int slot = findSlot( key );
+    return used[slot] ? Long.valueOf( values[slot] ) : null;
+  }
 
-    while ( check != null ) {
-      if ( check.hashCode == hashCode && check.equalsKey( key ) ) {
-        return check.value;
-      }
-      check = check.nextEntry;
-    }
-    return null;
+  /**
+   * Look up a key without allocating a Long for the value.
+   *
+   * @param key
+   *          the key to look up
+   * @param missingValue
+   *          the value to return if the key isn't in the index
+   * @return the value of the key or missingValue
+   */
+  public long get( long key, long missingValue ) {
+    int slot = findSlot( key );
+    return used[slot] ? values[slot] : missingValue;
   }
 
   public void put( long key, Long value ) throws KettleValueException {
-    int hashCode = generateHashCode( key );
-    int indexPointer = indexFor( hashCode, index.length );
-
-    LongHashIndexEntry check = index[indexPointer];
-    LongHashIndexEntry previousCheck = null;
-
-    while ( check != null ) {
+    putLong( key, value.longValue() );
+  }
 
-      // If there is an identical entry in there, we replace the entry
-      // And then we just return...
+  /**
+   * Add a key to the index or replace the value of a key that is already in it.
+   *
+   * @param key
+   *          the key
+   * @param value
+   *          the value
+   */
+  public void putLong( long key, long value ) {
+    int slot = findSlot( key );
+    values[slot] = value;
+    if ( !used[slot] ) {
+      used[slot] = true;
+      keys[slot] = key;
+
+      // If required, resize the table...
       //
-      if ( check.hashCode == hashCode && check.equalsKey( key ) ) {
-        check.value = value;
-        return;
+      if ( ++size >= resizeThresHold ) {
+        resize();
       }
-      previousCheck = check;
-      check = check.nextEntry;
     }
+  }
 
-    // Don't forget to link to the previous check entry if there was any...
-    //
-    if ( previousCheck != null ) {
-      previousCheck.nextEntry = new LongHashIndexEntry( hashCode, key, value, null );
-    } else {
-      index[indexPointer] = new LongHashIndexEntry( hashCode, key, value, null );
+  /**
+   * @return the slot of the key or the empty slot where it belongs
+   */
+  private int findSlot( long key ) {
+    int slot = mix( key ) & mask;
+    while ( used[slot] && keys[slot] != key ) {
+      slot = ( slot + 1 ) & mask;
     }
-
-    // If required, resize the table...
-    //
-    resize();
+    return slot;
   }
 
-  private final void resize() {
-    // Increase the size of the index...
-    //
-    size++;
+  private void resize() {
+    long[] oldKeys = keys;
+    long[] oldValues = values;
+    boolean[] oldUsed = used;
 
-    // See if we've reached our resize threshold...
+    // Double the size to keep the size of the index a factor of 2...
     //
-    if ( size >= resizeThresHold ) {
-
-      LongHashIndexEntry[] oldIndex = index;
-
-      // Double the size to keep the size of the index a factor of 2...
-      // Allocate the new array...
-      //
-      int newSize = 2 * index.length;
-
-      LongHashIndexEntry[] newIndex = new LongHashIndexEntry[newSize];
-
-      // Loop over the old index and re-distribute the entries
-      // We want to make sure that the calculation
-      // entry.hashCode & ( size - 1)
-      // ends up in the right location after re-sizing...
-      //
-      for ( int i = 0; i < oldIndex.length; i++ ) {
-        LongHashIndexEntry entry = oldIndex[i];
-        if ( entry != null ) {
-          oldIndex[i] = null;
-
-          // Make sure we follow all the linked entries...
-          // This is a bit of extra work, TODO: see how we can avoid it!
-          //
-          do {
-            LongHashIndexEntry next = entry.nextEntry;
-            int indexPointer = indexFor( entry.hashCode, newSize );
-            entry.nextEntry = newIndex[indexPointer];
-            newIndex[indexPointer] = entry;
-            entry = next;
-          } while ( entry != null );
-        }
+    allocate( 2 * oldKeys.length );
+
+    for ( int i = 0; i < oldKeys.length; i++ ) {
+      if ( oldUsed[i] ) {
+        int slot = findSlot( oldKeys[i] );
+        used[slot] = true;
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
       }
-
-      // Replace the old index with the new one we just created...
-      //
-      index = newIndex;
-
-      // Also change the resize threshold...
-      //
-      resizeThresHold = (int) ( newSize * STANDARD_LOAD_FACTOR );
     }
   }
 
+  /**
+   * Spread the bits of the key over the hash code, so that keys that only differ in their high bits or that follow a
+   * regular pattern don't end up in long runs of occupied slots.
+   */
+  private static int mix( long key ) {
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
   public static int generateHashCode( Long key ) throws KettleValueException {
     return key.hashCode();
   }
@@ -173,28 +184,4 @@ public class LongHashIndex {
   public static int indexFor( int hash, int length ) {
     return hash & ( length - 1 );
   }
-
-  private static final class LongHashIndexEntry {
-    private int hashCode;
-    private long key;
-    private long value;
-    private LongHashIndexEntry nextEntry;
-
-    /**
-     * @param hashCode
-     * @param key
-     * @param value
-     * @param nextEntry
-     */
-    public LongHashIndexEntry( int hashCode, Long key, Long value, LongHashIndexEntry nextEntry ) {
-      this.hashCode = hashCode;
-      this.key = key;
-      this.value = value;
-      this.nextEntry = nextEntry;
-    }
-
-    public boolean equalsKey( long cmpKey ) {
-      return key == cmpKey;
-    }
-  }
 }
@@ -0,0 +1,203 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+/**
+ * A hash index of serialized keys and values, like {@link ByteArrayHashIndex}, that keeps the keys and values in direct
+ * memory instead of in objects on the Java heap. The slots of the index are primitive arrays holding the hash code and
+ * the address of an entry and collisions are resolved with linear probing, so a large index is only a handful of
+ * objects for the garbage collector.
+ * <p>
+ * A lookup with {@link #find(byte[], int)} doesn't allocate anything: the key can be serialized in a reused buffer and
+ * the value can be read back into one with {@link #readValue(long, byte[])}. Keys are equal when their serialized bytes
+ * are equal.
+ *
+ * @since 9.0
+ */
+public class OffHeapHashIndex {
+  private static final int STANDARD_INDEX_SIZE = 512;
+  private static final float STANDARD_LOAD_FACTOR = 0.5f;
+
+  private final OffHeapRecordStore store = new OffHeapRecordStore();
+
+  private int[] hashCodes;
+  /** The address of the entry plus one, 0 for an empty slot */
+  private long[] addresses;
+  private int mask;
+  private int size;
+  private int resizeThreshold;
+
+  public OffHeapHashIndex() {
+    this( STANDARD_INDEX_SIZE );
+  }
+
+  /**
+   * @param size
+   *          the initial size of the index
+   */
+  public OffHeapHashIndex( int size ) {
+    int capacity = 2;
+    while ( capacity < size ) {
+      capacity <<= 1;
+    }
+    allocate( capacity );
+  }
+
+  private void allocate( int capacity ) {
+    hashCodes = new int[capacity];
+    addresses = new long[capacity];
+    mask = capacity - 1;
+    resizeThreshold = (int) ( capacity * STANDARD_LOAD_FACTOR );
+  }
+
+  /**
+   * Add a key to the index or replace the value of a key that is already in it.
+   *
+   * @param key
+   *          the serialized key
+   * @param value
+   *          the serialized value
+   */
+  public void put( byte[] key, byte[] value ) {
+    int hashCode = generateHashCode( key, key.length );
+    int slot = findSlot( hashCode, key, key.length );
+    boolean isNew = addresses[slot] == 0;
+
+    // A replaced entry stays in the store, just like Hashtable we simply point to the latest value
+    //
+    addresses[slot] = store.append( key, value ) + 1;
+    hashCodes[slot] = hashCode;
+    if ( isNew && ++size >= resizeThreshold ) {
+      resize();
+    }
+  }
+
+  /**
+   * Find the entry of a key.
+   *
+   * @param key
+   *          a buffer with the serialized key
+   * @param length
+   *          the length of the key in the buffer
+   * @return the address of the entry or -1 if the key isn't in the index
+   */
+  public long find( byte[] key, int length ) {
+    return addresses[findSlot( generateHashCode( key, length ), key, length )] - 1;
+  }
+
+  /**
+   * @param address
+   *          the address of an entry, see {@link #find(byte[], int)}
+   * @return the length of the serialized value of the entry
+   */
+  public int getValueLength( long address ) {
+    return store.getInt( getValueAddress( address ) );
+  }
+
+  /**
+   * Copy the serialized value of an entry to the start of the target buffer.
+   *
+   * @param address
+   *          the address of an entry, see {@link #find(byte[], int)}
+   * @param target
+   *          a buffer of at least {@link #getValueLength(long)} bytes
+   */
+  public void readValue( long address, byte[] target ) {
+    store.read( getValueAddress( address ), target );
+  }
+
+  /**
+   * @return the serialized value of the key or null if the key isn't in the index
+   */
+  public byte[] get( byte[] key ) {
+    long address = find( key, key.length );
+    if ( address < 0 ) {
+      return null;
+    }
+    byte[] value = new byte[getValueLength( address )];
+    readValue( address, value );
+    return value;
+  }
+
+  private long getValueAddress( long address ) {
+    return address + 4 + store.getInt( address );
+  }
+
+  private int findSlot( int hashCode, byte[] key, int length ) {
+    int slot = hashCode & mask;
+    while ( addresses[slot] != 0
+      && ( hashCodes[slot] != hashCode || !store.equalBytes( addresses[slot] - 1, key, length ) ) ) {
+      slot = ( slot + 1 ) & mask;
+    }
+    return slot;
+  }
+
+  private void resize() {
+    int[] oldHashCodes = hashCodes;
+    long[] oldAddresses = addresses;
+
+    allocate( 2 * oldAddresses.length );
+
+    // The hash codes are kept in the index, the keys don't need to be read again
+    //
+    for ( int i = 0; i < oldAddresses.length; i++ ) {
+      if ( oldAddresses[i] != 0 ) {
+        int slot = oldHashCodes[i] & mask;
+        while ( addresses[slot] != 0 ) {
+          slot = ( slot + 1 ) & mask;
+        }
+        hashCodes[slot] = oldHashCodes[i];
+        addresses[slot] = oldAddresses[i];
+      }
+    }
+  }
+
+  static int generateHashCode( byte[] key, int length ) {
+    int h = 1;
+    for ( int i = 0; i < length; i++ ) {
+      h = 31 * h + key[i];
+    }
+    // Spread the bits, the slot is taken from the lowest ones
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return the number of bytes taken by the index: the slots on the heap and the entries in direct memory
+   */
+  public long getMemorySize() {
+    return addresses.length * 12L + store.getMemorySize();
+  }
+}
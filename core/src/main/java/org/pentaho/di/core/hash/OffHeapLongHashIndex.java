@@ -0,0 +1,116 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+/**
+ * The counterpart of {@link OffHeapHashIndex} for a single integer key: the key is not serialized but looked up in a
+ * {@link LongHashIndex} that points to the serialized value in direct memory.
+ *
+ * @since 9.0
+ */
+public class OffHeapLongHashIndex {
+  private final LongHashIndex index;
+  private final OffHeapRecordStore store = new OffHeapRecordStore();
+
+  public OffHeapLongHashIndex() {
+    index = new LongHashIndex();
+  }
+
+  /**
+   * @param size
+   *          the initial size of the index
+   */
+  public OffHeapLongHashIndex( int size ) {
+    index = new LongHashIndex( size );
+  }
+
+  /**
+   * Add a key to the index or replace the value of a key that is already in it.
+   *
+   * @param key
+   *          the key
+   * @param value
+   *          the serialized value
+   */
+  public void put( long key, byte[] value ) {
+    index.putLong( key, store.append( value ) );
+  }
+
+  /**
+   * Find the entry of a key, without allocating anything.
+   *
+   * @return the address of the entry or -1 if the key isn't in the index
+   */
+  public long find( long key ) {
+    return index.get( key, -1L );
+  }
+
+  /**
+   * @param address
+   *          the address of an entry, see {@link #find(long)}
+   * @return the length of the serialized value of the entry
+   */
+  public int getValueLength( long address ) {
+    return store.getInt( address );
+  }
+
+  /**
+   * Copy the serialized value of an entry to the start of the target buffer.
+   *
+   * @param address
+   *          the address of an entry, see {@link #find(long)}
+   * @param target
+   *          a buffer of at least {@link #getValueLength(long)} bytes
+   */
+  public void readValue( long address, byte[] target ) {
+    store.read( address, target );
+  }
+
+  /**
+   * @return the serialized value of the key or null if the key isn't in the index
+   */
+  public byte[] get( long key ) {
+    long address = find( key );
+    if ( address < 0 ) {
+      return null;
+    }
+    byte[] value = new byte[getValueLength( address )];
+    readValue( address, value );
+    return value;
+  }
+
+  public int getSize() {
+    return index.getSize();
+  }
+
+  public boolean isEmpty() {
+    return index.isEmpty();
+  }
+
+  /**
+   * @return the number of bytes taken by the index: the slots on the heap and the values in direct memory
+   */
+  public long getMemorySize() {
+    return index.getCapacity() * 17L + store.getMemorySize();
+  }
+}
@@ -0,0 +1,119 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only storage of records of bytes in direct memory, outside of the Java heap. The records are written one after
+ * the other in pages of direct memory, so millions of records don't turn into millions of objects for the garbage
+ * collector to trace.
+ * <p>
+ * A record is addressed by a long: the page number in the high and the offset in the page in the low 32 bits. Records
+ * never span pages. Reading is done with absolute gets only, so a store that is no longer appended to can be read by
+ * several threads at the same time.
+ *
+ * @since 9.0
+ */
+class OffHeapRecordStore {
+  static final int PAGE_SIZE = 16 * 1024 * 1024;
+
+  private final List<ByteBuffer> pages = new ArrayList<ByteBuffer>();
+  private ByteBuffer page;
+  private long memorySize;
+
+  /**
+   * Append a record made of length prefixed byte arrays.
+   *
+   * @return the address of the record
+   */
+  long append( byte[] first, byte[] second ) {
+    long address = reserve( 8 + first.length + second.length );
+    page.putInt( first.length ).put( first ).putInt( second.length ).put( second );
+    return address;
+  }
+
+  /**
+   * Append a record made of a single length prefixed byte array.
+   *
+   * @return the address of the record
+   */
+  long append( byte[] bytes ) {
+    long address = reserve( 4 + bytes.length );
+    page.putInt( bytes.length ).put( bytes );
+    return address;
+  }
+
+  private long reserve( int length ) {
+    if ( page == null || page.remaining() < length ) {
+      page = ByteBuffer.allocateDirect( Math.max( PAGE_SIZE, length ) );
+      pages.add( page );
+      memorySize += page.capacity();
+    }
+    return ( (long) ( pages.size() - 1 ) << 32 ) | page.position();
+  }
+
+  int getInt( long address ) {
+    return pages.get( (int) ( address >>> 32 ) ).getInt( (int) address );
+  }
+
+  /**
+   * @return true if the length prefixed byte array at the address holds the given bytes
+   */
+  boolean equalBytes( long address, byte[] bytes, int length ) {
+    ByteBuffer buffer = pages.get( (int) ( address >>> 32 ) );
+    int offset = (int) address;
+    if ( buffer.getInt( offset ) != length ) {
+      return false;
+    }
+    offset += 4;
+    for ( int i = 0; i < length; i++ ) {
+      if ( buffer.get( offset + i ) != bytes[i] ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Copy the length prefixed byte array at the address to the start of the target array.
+   */
+  void read( long address, byte[] target ) {
+    ByteBuffer buffer = pages.get( (int) ( address >>> 32 ) );
+    int offset = (int) address;
+    int length = buffer.getInt( offset );
+    offset += 4;
+    for ( int i = 0; i < length; i++ ) {
+      target[i] = buffer.get( offset + i );
+    }
+  }
+
+  /**
+   * @return the number of bytes of direct memory taken by the store
+   */
+  long getMemorySize() {
+    return memorySize;
+  }
+}
@@ -133,6 +133,44 @@ public class Metrics implements MetricsInterface {
     MetricsSnapshotType.START, "METRIC_STEP_INIT", "Initialize a step" );
   public static Metrics METRIC_STEP_INIT_STOP = new Metrics(
     MetricsSnapshotType.STOP, "METRIC_STEP_INIT", "Initialize a step" );
+  public static Metrics METRIC_STEP_LOAD_BALANCE_ROWS = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_LOAD_BALANCE_ROWS", "Rows sent to a target step copy by the load balancer" );
+  public static Metrics METRIC_STEP_LOAD_BALANCE_CHUNKS = new Metrics(
+    MetricsSnapshotType.COUNT, "METRIC_STEP_LOAD_BALANCE_CHUNKS",
+    "Number of times the load balancer picked a target step copy" );
+  public static Metrics METRIC_STEP_LOOKUP_CACHE_HITS = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_LOOKUP_CACHE_HITS", "Lookups answered by the lookup cache" );
+  public static Metrics METRIC_STEP_LOOKUP_CACHE_MISSES = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_LOOKUP_CACHE_MISSES", "Lookups not found in the lookup cache" );
+  public static Metrics METRIC_STEP_LOOKUP_CACHE_HIT_RATIO = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_STEP_LOOKUP_CACHE_HIT_RATIO", "Lookup cache hit ratio (%)" );
+  public static Metrics METRIC_STEP_LOOKUP_CACHE_EVICTIONS = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_LOOKUP_CACHE_EVICTIONS", "Entries evicted from the lookup cache" );
+  public static Metrics METRIC_STEP_LOOKUP_CACHE_LOAD_SUM_TIME = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_LOOKUP_CACHE_LOAD_SUM_TIME",
+    "Time spent looking up cache misses (total time, us)" );
+  public static Metrics METRIC_STEP_LOOKUP_CACHE_LOAD_MAX_TIME = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_STEP_LOOKUP_CACHE_LOAD_MAX_TIME",
+    "Time spent looking up cache misses (max time, us)" );
+  public static Metrics METRIC_STEP_LOOKUP_BATCH_QUERIES = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_LOOKUP_BATCH_QUERIES", "Batch lookup queries sent to the database" );
+  public static Metrics METRIC_STEP_LOOKUP_BATCH_KEYS = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_LOOKUP_BATCH_KEYS", "Keys looked up in batch lookup queries" );
+  public static Metrics METRIC_STEP_LOOKUP_BATCH_SUM_TIME = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_LOOKUP_BATCH_SUM_TIME",
+    "Time spent in batch lookup queries (total time, us)" );
+  public static Metrics METRIC_STEP_LOOKUP_BATCH_MAX_TIME = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_STEP_LOOKUP_BATCH_MAX_TIME", "Time spent in batch lookup queries (max time, us)" );
+  public static Metrics METRIC_STEP_WRITER_ROWS = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_WRITER_ROWS", "Rows inserted by a table writer" );
+  public static Metrics METRIC_STEP_WRITER_BATCHES = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_WRITER_BATCHES", "Batches inserted and committed by a table writer" );
+  public static Metrics METRIC_STEP_WRITER_BATCH_SUM_TIME = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_WRITER_BATCH_SUM_TIME",
+    "Time spent executing and committing batches (total time, us)" );
+  public static Metrics METRIC_STEP_WRITER_BATCH_MAX_TIME = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_STEP_WRITER_BATCH_MAX_TIME",
+    "Time spent executing and committing batches (max time, us)" );
 
   // Logging back-end
   //
@@ -0,0 +1,212 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.exception.KettleValueException;
+
+/**
+ * A read-only snapshot of row metadata. The layout can't change after construction so the lookups that steps do for
+ * every row (size, getValueMeta, indexOfValue, searchValueMeta, cloneRow, ...) are plain array and hash map reads
+ * without any locking.
+ * <p>
+ * All methods that would change the layout throw an UnsupportedOperationException. The value metadata objects
+ * themselves are shared with the original row metadata. A {@link #clone()} returns a regular, modifiable
+ * {@link RowMeta}.
+ *
+ * @since 9.0
+ */
+public class FrozenRowMeta extends RowMeta {
+  private final ValueMetaInterface[] valueMetas;
+  private final List<ValueMetaInterface> valueMetaView;
+  private final Map<String, Integer> indexes;
+  private final String[] fieldNames;
+  private final int[] realCloneIndexes;
+
+  /**
+   * Take a snapshot of the given row metadata.
+   *
+   * @param rowMeta the row metadata to freeze
+   */
+  public FrozenRowMeta( RowMetaInterface rowMeta ) {
+    super( new ArrayList<>( rowMeta.getValueMetaList() ), new RowMetaCache() );
+
+    valueMetas = valueMetaList.toArray( new ValueMetaInterface[ valueMetaList.size() ] );
+    valueMetaView = Collections.unmodifiableList( Arrays.asList( valueMetas ) );
+
+    // Resolve every name with the original so duplicate names end up at the same index
+    //
+    indexes = new HashMap<>( valueMetas.length * 2 );
+    fieldNames = new String[ valueMetas.length ];
+    int nrRealClones = 0;
+    for ( int i = 0; i < valueMetas.length; i++ ) {
+      String name = valueMetas[ i ].getName();
+      if ( name != null ) {
+        indexes.put( name.toLowerCase(), rowMeta.indexOfValue( name ) );
+      }
+      fieldNames[ i ] = name == null ? "" : name;
+      if ( valueMetas[ i ].requiresRealClone() ) {
+        nrRealClones++;
+      }
+    }
+    realCloneIndexes = new int[ nrRealClones ];
+    for ( int i = 0, j = 0; i < valueMetas.length; i++ ) {
+      if ( valueMetas[ i ].requiresRealClone() ) {
+        realCloneIndexes[ j++ ] = i;
+      }
+    }
+  }
+
+  /**
+   * Get a read-only version of the given row metadata.
+   *
+   * @param rowMeta the row metadata
+   * @return the row metadata itself if it is already frozen, otherwise a frozen snapshot of it
+   */
+  public static FrozenRowMeta freeze( RowMetaInterface rowMeta ) {
+    if ( rowMeta instanceof FrozenRowMeta ) {
+      return (FrozenRowMeta) rowMeta;
+    }
+    return new FrozenRowMeta( rowMeta );
+  }
+
+  @Override
+  public List<ValueMetaInterface> getValueMetaList() {
+    return valueMetaView;
+  }
+
+  @Override
+  public int size() {
+    return valueMetas.length;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return valueMetas.length == 0;
+  }
+
+  @Override
+  public ValueMetaInterface getValueMeta( int index ) {
+    if ( ( index >= 0 ) && ( index < valueMetas.length ) ) {
+      return valueMetas[ index ];
+    } else {
+      return null;
+    }
+  }
+
+  @Override
+  public int indexOfValue( String valueName ) {
+    if ( valueName == null ) {
+      return -1;
+    }
+    Integer index = indexes.get( valueName.toLowerCase() );
+    if ( index != null ) {
+      return index;
+    }
+    // Lower casing doesn't always agree with equalsIgnoreCase(), do it the slow way to be sure
+    //
+    for ( int i = 0; i < valueMetas.length; i++ ) {
+      if ( valueName.equalsIgnoreCase( valueMetas[ i ].getName() ) ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public ValueMetaInterface searchValueMeta( String valueName ) {
+    int index = indexOfValue( valueName );
+    if ( index < 0 ) {
+      return null;
+    }
+    return valueMetas[ index ];
+  }
+
+  @Override
+  public String[] getFieldNames() {
+    return fieldNames.clone();
+  }
+
+  @Override
+  public Object[] cloneRow( Object[] objects, Object[] newObjects ) throws KettleValueException {
+    for ( int i : realCloneIndexes ) {
+      newObjects[ i ] = valueMetas[ i ].cloneValueData( objects[ i ] );
+    }
+    return newObjects;
+  }
+
+  @Override
+  public void setValueMetaList( List<ValueMetaInterface> valueMetaList ) {
+    throw readOnly();
+  }
+
+  @Override
+  public void addValueMeta( ValueMetaInterface meta ) {
+    throw readOnly();
+  }
+
+  @Override
+  public void addValueMeta( int index, ValueMetaInterface meta ) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setValueMeta( int index, ValueMetaInterface valueMeta ) {
+    throw readOnly();
+  }
+
+  @Override
+  public void addRowMeta( RowMetaInterface rowMeta ) {
+    throw readOnly();
+  }
+
+  @Override
+  public void mergeRowMeta( RowMetaInterface r, String originStepName ) {
+    throw readOnly();
+  }
+
+  @Override
+  public void clear() {
+    throw readOnly();
+  }
+
+  @Override
+  public void removeValueMeta( String valueName ) throws KettleValueException {
+    throw readOnly();
+  }
+
+  @Override
+  public void removeValueMeta( int index ) {
+    throw readOnly();
+  }
+
+  private static UnsupportedOperationException readOnly() {
+    return new UnsupportedOperationException( "This row metadata is read-only, clone it to make changes" );
+  }
+}
@@ -81,7 +81,7 @@ public class RowMeta implements RowMetaInterface {
     this.needRealClone = rowMeta.needRealClone;
   }
 
-  private RowMeta( List<ValueMetaInterface> valueMetaList, RowMetaCache rowMetaCache ) {
+  RowMeta( List<ValueMetaInterface> valueMetaList, RowMetaCache rowMetaCache ) {
     lock = new ReentrantReadWriteLock();
     this.cache = rowMetaCache;
     this.valueMetaList = valueMetaList;
@@ -770,6 +770,13 @@ public class ValueMetaBase implements ValueMetaInterface {
     return this.collatorLocale;
   }
 
+  /**
+   * @return the collator used to compare strings unless the collator is disabled
+   */
+  public Collator getCollator() {
+    return collator;
+  }
+
   /**
    * @ sets the collator Locale
    */
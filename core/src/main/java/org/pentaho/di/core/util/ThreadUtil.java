@@ -0,0 +1,80 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.util;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates the threads that run steps and job entries. On a JVM that has virtual threads (Java 21 and up) these can
+ * optionally be virtual threads, see {@link org.pentaho.di.core.Const#KETTLE_VIRTUAL_THREADS}. Virtual threads are
+ * looked up with reflection since we still compile against Java 8.
+ */
+public class ThreadUtil {
+  private static final Method OF_VIRTUAL;
+  private static final Method UNSTARTED;
+
+  static {
+    Method ofVirtual = null;
+    Method unstarted = null;
+    try {
+      ofVirtual = Thread.class.getMethod( "ofVirtual" );
+      unstarted = Class.forName( "java.lang.Thread$Builder" ).getMethod( "unstarted", Runnable.class );
+      // Fails on JVMs where virtual threads are a preview feature that isn't enabled
+      //
+      ofVirtual.invoke( null );
+    } catch ( Throwable t ) {
+      ofVirtual = null;
+      unstarted = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    UNSTARTED = unstarted;
+  }
+
+  private ThreadUtil() {
+  }
+
+  /**
+   * @return true if this JVM can create virtual threads
+   */
+  public static boolean isVirtualThreadSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * Create a new, unstarted thread.
+   *
+   * @param runnable the code to run
+   * @param virtual  true to create a virtual thread if the JVM supports these, false for a regular platform thread
+   * @return the new thread
+   */
+  public static Thread newThread( Runnable runnable, boolean virtual ) {
+    if ( virtual && OF_VIRTUAL != null ) {
+      try {
+        return (Thread) UNSTARTED.invoke( OF_VIRTUAL.invoke( null ), runnable );
+      } catch ( Exception e ) {
+        // Fall back to a platform thread
+      }
+    }
+    return new Thread( runnable );
+  }
+}
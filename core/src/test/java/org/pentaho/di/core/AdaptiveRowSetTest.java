@@ -0,0 +1,137 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveRowSetTest {
+
+  @Test
+  public void testPutGetInOrder() {
+    AdaptiveRowSet rowSet = new AdaptiveRowSet( 5 );
+    RowMetaInterface rowMeta = new RowMeta();
+    for ( int i = 0; i < 5; i++ ) {
+      assertTrue( rowSet.putRow( rowMeta, new Object[] { i } ) );
+    }
+    assertEquals( 5, rowSet.size() );
+    for ( int i = 0; i < 5; i++ ) {
+      assertEquals( i, rowSet.getRowImmediate()[ 0 ] );
+    }
+    assertNull( rowSet.getRowImmediate() );
+    assertSame( rowMeta, rowSet.getRowMeta() );
+  }
+
+  @Test
+  public void testChangeCapacity() {
+    AdaptiveRowSet rowSet = new AdaptiveRowSet( 2 );
+    assertTrue( rowSet.putRowWait( new RowMeta(), new Object[] { 0 }, 1, TimeUnit.MILLISECONDS ) );
+    assertTrue( rowSet.putRowWait( new RowMeta(), new Object[] { 1 }, 1, TimeUnit.MILLISECONDS ) );
+    assertFalse( rowSet.putRowWait( new RowMeta(), new Object[] { 2 }, 1, TimeUnit.MILLISECONDS ) );
+
+    rowSet.setCapacity( 3 );
+    assertEquals( 3, rowSet.getCapacity() );
+    assertEquals( 1, rowSet.remainingCapacity() );
+    assertTrue( rowSet.putRowWait( new RowMeta(), new Object[] { 2 }, 1, TimeUnit.MILLISECONDS ) );
+
+    // Shrinking keeps the rows, but no new ones fit until enough are read
+    rowSet.setCapacity( 1 );
+    assertEquals( 3, rowSet.size() );
+    assertEquals( 0, rowSet.remainingCapacity() );
+    assertFalse( rowSet.putRowWait( new RowMeta(), new Object[] { 3 }, 1, TimeUnit.MILLISECONDS ) );
+    rowSet.getRowImmediate();
+    rowSet.getRowImmediate();
+    assertFalse( rowSet.putRowWait( new RowMeta(), new Object[] { 3 }, 1, TimeUnit.MILLISECONDS ) );
+    rowSet.getRowImmediate();
+    assertTrue( rowSet.putRowWait( new RowMeta(), new Object[] { 3 }, 1, TimeUnit.MILLISECONDS ) );
+  }
+
+  @Test
+  public void testUsage() {
+    AdaptiveRowSet rowSet = new AdaptiveRowSet( 2 );
+    assertNull( rowSet.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+    rowSet.putRow( new RowMeta(), new Object[] { "abc", 1L, null } );
+    rowSet.putRow( new RowMeta(), new Object[] { "def", 2L, null } );
+    rowSet.putRowWait( new RowMeta(), new Object[] { "ghi", 3L, null }, 1, TimeUnit.MILLISECONDS );
+    rowSet.getRowImmediate();
+
+    AdaptiveRowSet.Usage usage = rowSet.getUsage();
+    assertEquals( 2, usage.getCapacity() );
+    assertEquals( 1, usage.getSize() );
+    assertEquals( 0, usage.getMinSize() );
+    assertEquals( 2, usage.getMaxSize() );
+    assertEquals( 2, usage.getRowsPut() );
+    assertEquals( 1, usage.getBlockedPuts() );
+    assertEquals( 1, usage.getEmptyGets() );
+    assertEquals( AdaptiveRowSet.estimateRowBytes( new Object[] { "abc", 1L, null } ), usage.getAverageRowBytes() );
+
+    // The usage is collected anew
+    usage = rowSet.getUsage();
+    assertEquals( 1, usage.getMinSize() );
+    assertEquals( 1, usage.getMaxSize() );
+    assertEquals( 0, usage.getRowsPut() );
+    assertEquals( 0, usage.getBlockedPuts() );
+    assertEquals( 0, usage.getEmptyGets() );
+    assertEquals( -1L, usage.getAverageRowBytes() );
+  }
+
+  @Test
+  public void testRepeatedPollsCountAsOneEmptyGet() {
+    AdaptiveRowSet rowSet = new AdaptiveRowSet( 2 );
+    for ( int i = 0; i < 5; i++ ) {
+      assertNull( rowSet.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+    }
+    rowSet.putRow( new RowMeta(), new Object[] { "abc" } );
+    assertNotNull( rowSet.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+    assertNull( rowSet.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+    assertEquals( 2, rowSet.getUsage().getEmptyGets() );
+
+    // Reading past the end of a finished row set is not waiting for rows
+    //
+    rowSet.putRow( new RowMeta(), new Object[] { "def" } );
+    rowSet.getRowImmediate();
+    rowSet.setDone();
+    assertNull( rowSet.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+    assertEquals( 0, rowSet.getUsage().getEmptyGets() );
+  }
+
+  @Test
+  public void testGetRowWaitReturnsNullWhenEmpty() {
+    AdaptiveRowSet rowSet = new AdaptiveRowSet( 10 );
+    Object[] row = new Object[] {};
+    rowSet.putRow( new RowMeta(), row );
+    rowSet.setDone();
+
+    assertSame( row, rowSet.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+    assertNull( rowSet.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testInvalidSize() {
+    new AdaptiveRowSet( 0 );
+  }
+}
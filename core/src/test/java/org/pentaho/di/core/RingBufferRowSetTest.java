@@ -0,0 +1,140 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RingBufferRowSetTest {
+
+  @Test
+  public void testPutGetInOrder() {
+    RingBufferRowSet rowSet = new RingBufferRowSet( 5 );
+    RowMetaInterface rowMeta = new RowMeta();
+    for ( int i = 0; i < 5; i++ ) {
+      assertTrue( rowSet.putRow( rowMeta, new Object[] { i } ) );
+    }
+    assertEquals( 5, rowSet.size() );
+    for ( int i = 0; i < 5; i++ ) {
+      assertEquals( i, rowSet.getRowImmediate()[ 0 ] );
+    }
+    assertNull( rowSet.getRowImmediate() );
+    assertEquals( 0, rowSet.size() );
+    assertSame( rowMeta, rowSet.getRowMeta() );
+  }
+
+  @Test
+  public void testPutRowWaitTimesOutWhenFull() {
+    RingBufferRowSet rowSet = new RingBufferRowSet( 3 );
+    for ( int i = 0; i < 3; i++ ) {
+      assertTrue( rowSet.putRowWait( new RowMeta(), new Object[] { i }, 1, TimeUnit.MILLISECONDS ) );
+    }
+    // The capacity is respected even though the underlying buffer is rounded up to a power of 2
+    assertFalse( rowSet.putRowWait( new RowMeta(), new Object[] { 3 }, 1, TimeUnit.MILLISECONDS ) );
+    assertEquals( 3, rowSet.size() );
+    assertEquals( 0, rowSet.remainingCapacity() );
+
+    rowSet.getRowImmediate();
+    assertTrue( rowSet.putRowWait( new RowMeta(), new Object[] { 3 }, 1, TimeUnit.MILLISECONDS ) );
+  }
+
+  @Test
+  public void testGetRowWaitReturnsNullWhenDone() {
+    RingBufferRowSet rowSet = new RingBufferRowSet( 10 );
+    Object[] row = new Object[] {};
+    rowSet.putRow( new RowMeta(), row );
+    rowSet.setDone();
+
+    assertSame( row, rowSet.getRowWait( 1, TimeUnit.SECONDS ) );
+    assertNull( rowSet.getRowWait( 1, TimeUnit.SECONDS ) );
+  }
+
+  @Test
+  public void testClear() {
+    RingBufferRowSet rowSet = new RingBufferRowSet( 10 );
+    rowSet.putRow( new RowMeta(), new Object[] {} );
+    rowSet.putRow( new RowMeta(), new Object[] {} );
+    rowSet.setDone();
+    rowSet.clear();
+
+    assertEquals( 0, rowSet.size() );
+    assertFalse( rowSet.isDone() );
+    assertNull( rowSet.getRowImmediate() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testInvalidSize() {
+    new RingBufferRowSet( 0 );
+  }
+
+  @Test
+  public void testProducerConsumer() throws Exception {
+    final int nrRows = 100000;
+    final RingBufferRowSet rowSet = new RingBufferRowSet( 16 );
+    final AtomicReference<String> error = new AtomicReference<>();
+
+    Thread producer = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        RowMetaInterface rowMeta = new RowMeta();
+        for ( int i = 0; i < nrRows; i++ ) {
+          Object[] row = new Object[] { (long) i };
+          while ( !rowSet.putRow( rowMeta, row ) ) {
+            // retry, like BaseStep does
+          }
+        }
+        rowSet.setDone();
+      }
+    } );
+    producer.start();
+
+    long expected = 0;
+    while ( true ) {
+      Object[] row = rowSet.getRow();
+      if ( row == null ) {
+        if ( !rowSet.isDone() ) {
+          continue;
+        }
+        // Same double check as BaseStep: rows can arrive between the get and the isDone()
+        row = rowSet.getRowImmediate();
+        if ( row == null ) {
+          break;
+        }
+      }
+      if ( (Long) row[ 0 ] != expected ) {
+        error.set( "Expected row " + expected + " but got " + row[ 0 ] );
+        break;
+      }
+      expected++;
+    }
+    producer.join();
+
+    assertNull( error.get() );
+    assertEquals( nrRows, expected );
+  }
+}
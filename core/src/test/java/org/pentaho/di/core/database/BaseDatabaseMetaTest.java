@@ -69,6 +69,19 @@ public class BaseDatabaseMetaTest {
     assertTrue( sqlScriptStatements.get( 0 ).isQuery() );
   }
 
+  @Test
+  public void testSQLBatchLookupCondition() {
+    assertEquals( "ID IN ( ?, ?, ? )", nativeMeta.getSQLBatchLookupCondition( new String[] { "ID" }, 3 ) );
+    assertEquals( "( A = ? AND B = ? ) OR ( A = ? AND B = ? )",
+      nativeMeta.getSQLBatchLookupCondition( new String[] { "A", "B" }, 2 ) );
+  }
+
+  @Test
+  public void testMultiRowInsert() {
+    assertFalse( nativeMeta.supportsMultiRowInsert() );
+    assertEquals( 1000, nativeMeta.getMaxStatementParameters() );
+  }
+
   @Test
   public void testDefaultSettings() throws Exception {
     // Note - this method should only use native or odbc.
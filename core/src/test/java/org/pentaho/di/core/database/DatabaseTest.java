@@ -42,6 +42,7 @@ import static org.mockito.Mockito.when;
 
 import java.lang.reflect.Field;
 import java.sql.*;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
@@ -63,9 +64,12 @@ import org.pentaho.di.core.exception.KettleDatabaseBatchException;
 import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.logging.LogLevel;
 import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.junit.rules.RestorePDIEnvironment;
 import org.springframework.mock.jndi.SimpleNamingContextBuilder;
@@ -733,4 +737,25 @@ public class DatabaseTest {
     String[] tableNames = db.getTablenames();
     assertEquals( tableNames.length, 1 );
   }
+
+  @Test
+  public void testMultiRowInsert() throws Exception {
+    DatabaseMeta meta = new DatabaseMeta();
+    meta.setDatabaseInterface( new MySQLDatabaseMeta() );
+    Database db = new Database( log, meta );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    assertEquals( db.getInsertStatement( null, "t", rowMeta ),
+      db.getMultiRowInsertStatement( null, "t", rowMeta, 1 ) );
+    assertEquals( "INSERT INTO t (id, name) VALUES ( ?,  ?), ( ?,  ?), ( ?,  ?)",
+      db.getMultiRowInsertStatement( null, "t", rowMeta, 3 ) );
+
+    db.setMultiRowValues( rowMeta, Arrays.asList( new Object[] { 1L, "a" }, new Object[] { 2L, "b" } ), ps );
+    verify( ps ).setLong( 1, 1L );
+    verify( ps ).setString( 2, "a" );
+    verify( ps ).setLong( 3, 2L );
+    verify( ps ).setString( 4, "b" );
+  }
 }
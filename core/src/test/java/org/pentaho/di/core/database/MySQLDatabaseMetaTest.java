@@ -110,6 +110,12 @@ public class MySQLDatabaseMetaTest {
     assertTrue( nativeMeta.supportsRepository() );
   }
 
+  @Test
+  public void testMultiRowInsert() {
+    assertTrue( nativeMeta.supportsMultiRowInsert() );
+    assertEquals( 65535, nativeMeta.getMaxStatementParameters() );
+  }
+
   @Test
   public void testSQLStatements() {
     assertEquals( " LIMIT 15", nativeMeta.getLimitClause( 15 ) );
@@ -258,4 +258,17 @@ public class PostgreSQLDatabaseMetaTest {
     assertNull( nativeMeta.getSQLUnlockTables(  new String[] { "FOO" } ) );
   }
 
+  @Test
+  public void testSQLBatchLookupCondition() {
+    assertEquals( "ID IN ( ?, ? )", nativeMeta.getSQLBatchLookupCondition( new String[] { "ID" }, 2 ) );
+    assertEquals( "( A, B ) IN ( ( ?, ? ), ( ?, ? ) )",
+      nativeMeta.getSQLBatchLookupCondition( new String[] { "A", "B" }, 2 ) );
+  }
+
+  @Test
+  public void testMultiRowInsert() {
+    assertTrue( nativeMeta.supportsMultiRowInsert() );
+    assertEquals( 32767, nativeMeta.getMaxStatementParameters() );
+  }
+
 }
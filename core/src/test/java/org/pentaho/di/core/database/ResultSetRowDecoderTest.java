@@ -0,0 +1,148 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.database;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.plugins.DatabasePluginType;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBinary;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaPluginType;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.row.value.ValueMetaTimestamp;
+import org.pentaho.di.junit.rules.RestorePDIEnvironment;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResultSetRowDecoderTest {
+  @ClassRule public static RestorePDIEnvironment env = new RestorePDIEnvironment();
+
+  private DatabaseMeta databaseMeta;
+  private ResultSet resultSet;
+
+  @BeforeClass
+  public static void setUpOnce() throws Exception {
+    // Register Natives to create a default DatabaseMeta
+    DatabasePluginType.getInstance().searchPlugins();
+    ValueMetaPluginType.getInstance().searchPlugins();
+    KettleClientEnvironment.init();
+  }
+
+  @Before
+  public void setUp() {
+    databaseMeta = new DatabaseMeta();
+    databaseMeta.setDatabaseInterface( new MySQLDatabaseMeta() );
+    resultSet = mock( ResultSet.class );
+  }
+
+  @Test
+  public void testPicksDecodersByType() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "amount" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    ValueMetaString lazy = new ValueMetaString( "lazy" );
+    lazy.setStorageType( ValueMetaInterface.STORAGE_TYPE_BINARY_STRING );
+    rowMeta.addValueMeta( lazy );
+    rowMeta.addValueMeta( new ValueMetaBinary( "data" ) );
+    rowMeta.addValueMeta( new ValueMetaDate( "date" ) );
+    rowMeta.addValueMeta( new ValueMetaTimestamp( "timestamp" ) );
+
+    ResultSetRowDecoder.ColumnDecoder[] decoders = new ResultSetRowDecoder( databaseMeta, rowMeta ).getDecoders();
+    assertSame( ResultSetRowDecoder.INTEGER, decoders[ 0 ] );
+    assertSame( ResultSetRowDecoder.NUMBER, decoders[ 1 ] );
+    assertSame( ResultSetRowDecoder.STRING, decoders[ 2 ] );
+    assertSame( ResultSetRowDecoder.BYTES, decoders[ 3 ] );
+    assertSame( ResultSetRowDecoder.BLOB, decoders[ 4 ] );
+    assertSame( ResultSetRowDecoder.TIMESTAMP, decoders[ 5 ] );
+    // The timestamp value metadata reads values in its own way
+    assertTrue( decoders[ 6 ] instanceof ResultSetRowDecoder.GenericDecoder );
+  }
+
+  @Test
+  public void testDialectWithOwnDecoding() {
+    databaseMeta.setDatabaseInterface( new Vertica5DatabaseMeta() );
+    assertFalse( ResultSetRowDecoder.usesStandardDecoding( databaseMeta ) );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    ResultSetRowDecoder decoder = new ResultSetRowDecoder( databaseMeta, rowMeta );
+    assertTrue( decoder.getDecoders()[ 0 ] instanceof ResultSetRowDecoder.GenericDecoder );
+
+    assertFalse( ResultSetRowDecoder.usesStandardDecoding( mock( DatabaseMeta.class ) ) );
+  }
+
+  @Test
+  public void testDecode() throws Exception {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "parent" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "comment" ) );
+    rowMeta.addValueMeta( new ValueMetaTimestamp( "timestamp" ) );
+
+    Timestamp timestamp = new Timestamp( 123456789L );
+    when( resultSet.getLong( 1 ) ).thenReturn( 42L );
+    when( resultSet.getLong( 2 ) ).thenReturn( 0L );
+    when( resultSet.getString( 3 ) ).thenReturn( "name" );
+    when( resultSet.getString( 4 ) ).thenReturn( null );
+    when( resultSet.getTimestamp( 5 ) ).thenReturn( timestamp );
+    when( resultSet.wasNull() ).thenReturn( false, true, false );
+
+    Object[] row = new Object[ 5 ];
+    new ResultSetRowDecoder( databaseMeta, rowMeta ).decode( resultSet, row );
+
+    assertArrayEquals( new Object[] { 42L, null, "name", null, timestamp }, row );
+  }
+
+  @Test
+  public void testObjectGettersSkipWasNull() throws Exception {
+    when( resultSet.getString( anyInt() ) ).thenReturn( "a" );
+    when( resultSet.getBytes( anyInt() ) ).thenReturn( null );
+
+    assertEquals( "a", ResultSetRowDecoder.STRING.decode( resultSet, 1 ) );
+    assertNull( ResultSetRowDecoder.BYTES.decode( resultSet, 2 ) );
+    verify( resultSet, never() ).wasNull();
+  }
+}
@@ -0,0 +1,78 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.hash;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class OffHeapHashIndexTest {
+
+  @Test
+  public void testGetAndPut() {
+    OffHeapHashIndex index = new OffHeapHashIndex();
+    assertTrue( index.isEmpty() );
+    assertNull( index.get( new byte[] { 10 } ) );
+
+    index.put( new byte[] { 10 }, new byte[] { 53, 12 } );
+    assertEquals( 1, index.getSize() );
+    assertArrayEquals( new byte[] { 53, 12 }, index.get( new byte[] { 10 } ) );
+    assertNull( index.get( new byte[] { 10, 0 } ) );
+  }
+
+  @Test
+  public void testReplaceValue() {
+    OffHeapHashIndex index = new OffHeapHashIndex();
+    index.put( new byte[] { 1, 2 }, new byte[] { 3 } );
+    index.put( new byte[] { 1, 2 }, new byte[] { 4, 5, 6 } );
+    assertEquals( 1, index.getSize() );
+    assertArrayEquals( new byte[] { 4, 5, 6 }, index.get( new byte[] { 1, 2 } ) );
+  }
+
+  @Test
+  public void testFindWithReusedBuffers() {
+    OffHeapHashIndex index = new OffHeapHashIndex( 1 );
+    for ( int i = 0; i < 10000; i++ ) {
+      index.put( new byte[] { (byte) i, (byte) ( i >> 8 ) }, new byte[] { (byte) ( i >> 8 ), (byte) i, 7 } );
+    }
+    assertEquals( 10000, index.getSize() );
+
+    // Only the first bytes of the buffers are used
+    byte[] key = new byte[] { 0, 0, 99, 99 };
+    byte[] value = new byte[16];
+    for ( int i = 0; i < 10000; i++ ) {
+      key[0] = (byte) i;
+      key[1] = (byte) ( i >> 8 );
+      long address = index.find( key, 2 );
+      assertTrue( address >= 0 );
+      assertEquals( 3, index.getValueLength( address ) );
+      index.readValue( address, value );
+      assertEquals( (byte) ( i >> 8 ), value[0] );
+      assertEquals( (byte) i, value[1] );
+      assertEquals( 7, value[2] );
+    }
+    assertEquals( -1, index.find( key, 4 ) );
+  }
+}
@@ -0,0 +1,65 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.hash;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class OffHeapLongHashIndexTest {
+
+  @Test
+  public void testGetAndPut() {
+    OffHeapLongHashIndex index = new OffHeapLongHashIndex();
+    assertTrue( index.isEmpty() );
+    assertNull( index.get( 1L ) );
+
+    index.put( 1L, new byte[] { 1, 2 } );
+    index.put( -1L, new byte[] {} );
+    index.put( Long.MIN_VALUE, new byte[] { 3 } );
+    assertEquals( 3, index.getSize() );
+    assertArrayEquals( new byte[] { 1, 2 }, index.get( 1L ) );
+    assertArrayEquals( new byte[] {}, index.get( -1L ) );
+    assertArrayEquals( new byte[] { 3 }, index.get( Long.MIN_VALUE ) );
+    assertEquals( -1, index.find( 2L ) );
+  }
+
+  @Test
+  public void testManyKeys() {
+    OffHeapLongHashIndex index = new OffHeapLongHashIndex( 0 );
+    for ( long i = 0; i < 10000; i++ ) {
+      index.put( i * 1024, new byte[] { (byte) i } );
+    }
+    assertEquals( 10000, index.getSize() );
+
+    byte[] value = new byte[8];
+    for ( long i = 0; i < 10000; i++ ) {
+      long address = index.find( i * 1024 );
+      assertEquals( 1, index.getValueLength( address ) );
+      index.readValue( address, value );
+      assertEquals( (byte) i, value[0] );
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.row.value.ValueMetaBinary;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrozenRowMetaTest {
+  private RowMeta rowMeta;
+  private FrozenRowMeta frozen;
+
+  @Before
+  public void setUp() {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaBinary( "data" ) );
+    frozen = new FrozenRowMeta( rowMeta );
+  }
+
+  @Test
+  public void testLookupsMatchOriginal() {
+    assertEquals( rowMeta.size(), frozen.size() );
+    assertFalse( frozen.isEmpty() );
+    for ( int i = 0; i < rowMeta.size(); i++ ) {
+      assertSame( rowMeta.getValueMeta( i ), frozen.getValueMeta( i ) );
+      assertEquals( i, frozen.indexOfValue( rowMeta.getValueMeta( i ).getName() ) );
+    }
+    assertEquals( 1, frozen.indexOfValue( "ID" ) );
+    assertEquals( -1, frozen.indexOfValue( "unknown" ) );
+    assertEquals( -1, frozen.indexOfValue( null ) );
+    assertNull( frozen.getValueMeta( 3 ) );
+    assertNull( frozen.searchValueMeta( "unknown" ) );
+    assertSame( rowMeta.getValueMeta( 2 ), frozen.searchValueMeta( "Data" ) );
+    assertArrayEquals( rowMeta.getFieldNames(), frozen.getFieldNames() );
+    assertEquals( rowMeta.getValueMetaList(), frozen.getValueMetaList() );
+  }
+
+  @Test
+  public void testSnapshotIsNotAffectedByOriginal() {
+    rowMeta.addValueMeta( new ValueMetaString( "extra" ) );
+    assertEquals( 3, frozen.size() );
+    assertEquals( -1, frozen.indexOfValue( "extra" ) );
+  }
+
+  @Test
+  public void testCloneRow() throws Exception {
+    byte[] data = new byte[] { 1, 2, 3 };
+    Object[] row = new Object[] { "a", 1L, data };
+    Object[] clone = frozen.cloneRow( row );
+    assertNotSame( row, clone );
+    assertSame( row[ 0 ], clone[ 0 ] );
+    assertNotSame( data, clone[ 2 ] );
+    assertArrayEquals( data, (byte[]) clone[ 2 ] );
+  }
+
+  @Test
+  public void testCloneIsModifiable() {
+    RowMetaInterface clone = frozen.clone();
+    assertFalse( clone instanceof FrozenRowMeta );
+    clone.addValueMeta( new ValueMetaString( "extra" ) );
+    assertEquals( 4, clone.size() );
+    assertEquals( 3, frozen.size() );
+  }
+
+  @Test
+  public void testFreezeReturnsFrozenInstance() {
+    assertSame( frozen, FrozenRowMeta.freeze( frozen ) );
+    assertTrue( FrozenRowMeta.freeze( rowMeta ) instanceof FrozenRowMeta );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testAddValueMetaFails() {
+    frozen.addValueMeta( new ValueMetaString( "extra" ) );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testRemoveValueMetaFails() {
+    frozen.removeValueMeta( 0 );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testValueMetaListIsReadOnly() {
+    frozen.getValueMetaList().clear();
+  }
+}
@@ -0,0 +1,74 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadUtilTest {
+
+  @Test
+  public void testPlatformThread() throws Exception {
+    final AtomicBoolean ran = new AtomicBoolean();
+    Thread thread = ThreadUtil.newThread( new Runnable() {
+      @Override public void run() {
+        ran.set( true );
+      }
+    }, false );
+    assertEquals( Thread.State.NEW, thread.getState() );
+    assertFalse( isVirtual( thread ) );
+
+    thread.start();
+    thread.join();
+    assertTrue( ran.get() );
+  }
+
+  @Test
+  public void testVirtualThreadWhenSupported() throws Exception {
+    final AtomicBoolean ran = new AtomicBoolean();
+    Thread thread = ThreadUtil.newThread( new Runnable() {
+      @Override public void run() {
+        ran.set( true );
+      }
+    }, true );
+    assertEquals( Thread.State.NEW, thread.getState() );
+    assertEquals( ThreadUtil.isVirtualThreadSupported(), isVirtual( thread ) );
+
+    thread.start();
+    thread.join();
+    assertTrue( ran.get() );
+  }
+
+  private static boolean isVirtual( Thread thread ) throws Exception {
+    try {
+      return (Boolean) Thread.class.getMethod( "isVirtual" ).invoke( thread );
+    } catch ( NoSuchMethodException e ) {
+      return false;
+    }
+  }
+}
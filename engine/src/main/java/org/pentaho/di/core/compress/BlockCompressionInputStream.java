@@ -0,0 +1,210 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the blocks written by a {@link BlockCompressionOutputStream}. Optionally the next block is read and
+ * decompressed on a background thread while the current one is consumed, so that disk access and decompression overlap
+ * with the processing of the rows.
+ */
+public class BlockCompressionInputStream extends InputStream {
+
+  private static final ExecutorService READ_AHEAD_EXECUTOR = Executors.newCachedThreadPool( new ThreadFactory() {
+    private final AtomicInteger threadNr = new AtomicInteger();
+
+    @Override
+    public Thread newThread( Runnable runnable ) {
+      Thread thread = new Thread( runnable, "BlockCompressionInputStream read-ahead " + threadNr.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    }
+  } );
+
+  private final DataInputStream in;
+  private final CompressionProvider provider;
+  private final boolean readAhead;
+  private final Callable<byte[]> readBlockTask = new Callable<byte[]>() {
+    @Override
+    public byte[] call() throws IOException {
+      return readBlock();
+    }
+  };
+
+  private Future<byte[]> nextBlock;
+  private byte[] block;
+  private int position;
+  private boolean finished;
+
+  /**
+   * @param in
+   *          the stream to read the blocks from
+   * @param provider
+   *          the provider to decompress the blocks with or null if they are stored as they are
+   * @param readAhead
+   *          true to read the next block on a background thread
+   */
+  public BlockCompressionInputStream( InputStream in, CompressionProvider provider, boolean readAhead ) {
+    this.in = new DataInputStream( new BufferedInputStream( in ) );
+    this.provider = provider;
+    this.readAhead = readAhead;
+    if ( readAhead ) {
+      nextBlock = READ_AHEAD_EXECUTOR.submit( readBlockTask );
+    }
+  }
+
+  /**
+   * @return the next decompressed block or null at the end of the stream
+   */
+  private byte[] readBlock() throws IOException {
+    int length;
+    try {
+      length = in.readInt();
+    } catch ( EOFException e ) {
+      return null;
+    }
+    byte[] data = new byte[ in.readInt() ];
+    in.readFully( data );
+    if ( provider == null ) {
+      return data;
+    }
+
+    byte[] decompressed = new byte[ length ];
+    CompressionInputStream compressionInputStream = provider.createInputStream( new ByteArrayInputStream( data ) );
+    try {
+      // Providers like Zip only read from an entry
+      compressionInputStream.nextEntry();
+      int offset = 0;
+      while ( offset < length ) {
+        int n = compressionInputStream.read( decompressed, offset, length - offset );
+        if ( n < 0 ) {
+          throw new EOFException( "Compressed block ended after " + offset + " of " + length + " bytes" );
+        }
+        offset += n;
+      }
+    } finally {
+      compressionInputStream.close();
+    }
+    return decompressed;
+  }
+
+  /**
+   * Move to the next block.
+   *
+   * @return false at the end of the stream
+   */
+  private boolean nextBlock() throws IOException {
+    if ( finished ) {
+      return false;
+    }
+    if ( readAhead ) {
+      block = getReadAheadBlock();
+      if ( block != null ) {
+        nextBlock = READ_AHEAD_EXECUTOR.submit( readBlockTask );
+      }
+    } else {
+      block = readBlock();
+    }
+    position = 0;
+    finished = block == null;
+    return !finished;
+  }
+
+  private byte[] getReadAheadBlock() throws IOException {
+    Future<byte[]> future = nextBlock;
+    nextBlock = null;
+    try {
+      return future.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      future.cancel( false );
+      throw new InterruptedIOException( "Interrupted while reading a block" );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof IOException ) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException( e.getCause() );
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    while ( block == null || position >= block.length ) {
+      if ( !nextBlock() ) {
+        return -1;
+      }
+    }
+    return block[ position++ ] & 0xFF;
+  }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    if ( len == 0 ) {
+      return 0;
+    }
+    while ( block == null || position >= block.length ) {
+      if ( !nextBlock() ) {
+        return -1;
+      }
+    }
+    int n = Math.min( len, block.length - position );
+    System.arraycopy( block, position, b, off, n );
+    position += n;
+    return n;
+  }
+
+  @Override
+  public int available() {
+    return block == null ? 0 : block.length - position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Don't pull the file from under a block that is still being read
+    //
+    if ( nextBlock != null ) {
+      try {
+        getReadAheadBlock();
+      } catch ( IOException e ) {
+        // We're closing anyway
+      }
+    }
+    finished = true;
+    block = null;
+    in.close();
+  }
+}
@@ -0,0 +1,128 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes data in blocks that are compressed one by one with a compression provider. Each block is preceded by its
+ * uncompressed and compressed length, so that a {@link BlockCompressionInputStream} can read and decompress the next
+ * block ahead of time. This is meant for temporary (spill) files that are written and read by the same transformation.
+ */
+public class BlockCompressionOutputStream extends OutputStream {
+
+  /** The default number of uncompressed bytes in a block */
+  public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+  private final DataOutputStream out;
+  private final CompressionProvider provider;
+  private final byte[] block;
+  private final ByteArrayOutputStream compressed;
+  private int count;
+
+  /**
+   * @param out
+   *          the stream to write the blocks to
+   * @param provider
+   *          the provider to compress the blocks with or null to store them as they are
+   */
+  public BlockCompressionOutputStream( OutputStream out, CompressionProvider provider ) {
+    this( out, provider, DEFAULT_BLOCK_SIZE );
+  }
+
+  public BlockCompressionOutputStream( OutputStream out, CompressionProvider provider, int blockSize ) {
+    if ( blockSize <= 0 ) {
+      throw new IllegalArgumentException( "Invalid block size: " + blockSize );
+    }
+    this.out = new DataOutputStream( new BufferedOutputStream( out ) );
+    this.provider = provider;
+    this.block = new byte[ blockSize ];
+    this.compressed = provider == null ? null : new ByteArrayOutputStream( blockSize );
+  }
+
+  @Override
+  public void write( int b ) throws IOException {
+    if ( count == block.length ) {
+      writeBlock();
+    }
+    block[ count++ ] = (byte) b;
+  }
+
+  @Override
+  public void write( byte[] b, int off, int len ) throws IOException {
+    while ( len > 0 ) {
+      if ( count == block.length ) {
+        writeBlock();
+      }
+      int n = Math.min( len, block.length - count );
+      System.arraycopy( b, off, block, count, n );
+      count += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    if ( count == 0 ) {
+      return;
+    }
+    out.writeInt( count );
+    if ( provider == null ) {
+      out.writeInt( count );
+      out.write( block, 0, count );
+    } else {
+      compressed.reset();
+      CompressionOutputStream compressionOutputStream = provider.createOutputStream( compressed );
+      // Providers like Zip only write into an entry
+      compressionOutputStream.addEntry( "block", null );
+      compressionOutputStream.write( block, 0, count );
+      compressionOutputStream.close();
+
+      out.writeInt( compressed.size() );
+      compressed.writeTo( out );
+    }
+    count = 0;
+  }
+
+  /**
+   * Writes the pending data as a (smaller) block.
+   */
+  @Override
+  public void flush() throws IOException {
+    writeBlock();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      writeBlock();
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -84,6 +84,7 @@ import org.pentaho.di.core.parameters.UnknownParamException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.util.EnvUtil;
+import org.pentaho.di.core.util.ThreadUtil;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.variables.Variables;
 import org.pentaho.di.core.vfs.KettleVFS;
@@ -181,6 +182,8 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
 
   private List<JobListener> jobListeners;
 
+  private List<JobStoppedListener> jobStoppedListeners;
+
   private List<JobEntryListener> jobEntryListeners;
 
   private List<DelegationListener> delegationListeners;
@@ -248,6 +251,7 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
     status = new AtomicInteger();
 
     jobListeners = new ArrayList<JobListener>();
+    jobStoppedListeners = new ArrayList<JobStoppedListener>();
     jobEntryListeners = new ArrayList<JobEntryListener>();
     delegationListeners = new ArrayList<DelegationListener>();
 
@@ -584,6 +588,16 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
     }
   }
 
+  /**
+   * Checks whether job entries launched in parallel run in virtual threads, see {@link Const#KETTLE_VIRTUAL_THREADS}.
+   *
+   * @return true if virtual threads were asked for and the JVM supports them
+   */
+  public boolean isUsingVirtualThreads() {
+    return "Y".equalsIgnoreCase( getVariable( Const.KETTLE_VIRTUAL_THREADS, "N" ) )
+      && ThreadUtil.isVirtualThreadSupported();
+  }
+
   /**
    * Execute a job entry recursively and move to the next job entry automatically.<br>
    * Uses a back-tracking algorithm.<br>
@@ -804,7 +818,7 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
               }
             }
           };
-          Thread thread = new Thread( runnable );
+          Thread thread = ThreadUtil.newThread( runnable, isUsingVirtualThreads() );
           threads.add( thread );
           thread.start();
           if ( log.isBasic() ) {
@@ -901,13 +915,16 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
    *          the maximum number of ms to wait
    */
   public void waitUntilFinished( long maxMiliseconds ) {
-    long time = 0L;
-    while ( isAlive() && ( time < maxMiliseconds || maxMiliseconds <= 0 ) ) {
+    long deadline = System.currentTimeMillis() + maxMiliseconds;
+    while ( isAlive() ) {
+      long remaining = deadline - System.currentTimeMillis();
+      if ( maxMiliseconds > 0 && remaining <= 0 ) {
+        return;
+      }
       try {
-        Thread.sleep( 1 );
-        time += 1;
+        join( maxMiliseconds > 0 ? remaining : 0L );
       } catch ( InterruptedException e ) {
-        // Ignore sleep errors
+        // Ignore interruptions
       }
     }
   }
@@ -1276,9 +1293,25 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
     return exist != 0;
   }
 
-  /** Stop all activity by setting the stopped property to true. */
+  /** Stop all activity by setting the stopped property to true and notify the stop-event listeners. */
   public void stopAll() {
     setStopped( true );
+    fireJobStoppedListeners();
+  }
+
+  /**
+   * Call the jobStopped method of each stop-event listener.
+   *
+   * @see JobStoppedListener#jobStopped(Job)
+   */
+  protected void fireJobStoppedListeners() {
+    List<JobStoppedListener> listeners;
+    synchronized ( jobStoppedListeners ) {
+      listeners = new ArrayList<JobStoppedListener>( jobStoppedListeners );
+    }
+    for ( JobStoppedListener listener : listeners ) {
+      listener.jobStopped( this );
+    }
   }
 
   /** Sets the stopped. */
@@ -1720,6 +1753,18 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
     }
   }
 
+  public void addJobStoppedListener( JobStoppedListener jobStoppedListener ) {
+    synchronized ( jobStoppedListeners ) {
+      jobStoppedListeners.add( jobStoppedListener );
+    }
+  }
+
+  public void removeJobStoppedListener( JobStoppedListener jobStoppedListener ) {
+    synchronized ( jobStoppedListeners ) {
+      jobStoppedListeners.remove( jobStoppedListener );
+    }
+  }
+
   public void removeJobEntryListener( JobEntryListener jobEntryListener ) {
     jobEntryListeners.remove( jobEntryListener );
   }
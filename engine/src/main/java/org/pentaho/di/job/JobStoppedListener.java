@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -20,17 +20,13 @@
  *
  ******************************************************************************/
 
-package org.pentaho.di.trans.steps.sort;
+package org.pentaho.di.job;
 
 /**
- * Keeps track of which temporary file a row is coming from
+ * Is notified when a job is asked to stop through {@link Job#stopAll()}.
+ *
+ * @since 9.0
  */
-public class RowTempFile {
-  public Object[] row;
-  public int fileNumber;
-
-  public RowTempFile( Object[] row, int fileNumber ) {
-    this.row = row;
-    this.fileNumber = fileNumber;
-  }
+public interface JobStoppedListener {
+  public void jobStopped( Job job );
 }
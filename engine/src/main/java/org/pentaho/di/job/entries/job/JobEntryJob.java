@@ -969,13 +969,7 @@ public class JobEntryJob extends JobEntryBase implements Cloneable, JobEntryInte
 
           // Keep running until we're done.
           //
-          while ( !runner.isFinished() && !parentJob.isStopped() ) {
-            try {
-              Thread.sleep( 0, 1 );
-            } catch ( InterruptedException e ) {
-              // Ignore
-            }
-          }
+          runner.waitUntilFinished( parentJob );
 
           // if the parent-job was stopped, stop the sub-job too...
           if ( parentJob.isStopped() ) {
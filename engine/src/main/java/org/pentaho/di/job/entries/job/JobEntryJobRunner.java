@@ -29,6 +29,7 @@ import org.pentaho.di.core.extension.KettleExtensionPoint;
 import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.job.Job;
+import org.pentaho.di.job.JobStoppedListener;
 
 /**
  * @author Matt
@@ -41,7 +42,7 @@ public class JobEntryJobRunner implements Runnable {
   private Result result;
   private LogChannelInterface log;
   private int entryNr;
-  private boolean finished;
+  private volatile boolean finished;
 
   /**
    *
@@ -88,7 +89,10 @@ public class JobEntryJobRunner implements Runnable {
       }
       job.setFinished( true );
     }
-    finished = true;
+    synchronized ( this ) {
+      finished = true;
+      notifyAll();
+    }
   }
 
   /**
@@ -154,13 +158,39 @@ public class JobEntryJobRunner implements Runnable {
     return finished;
   }
 
+  /**
+   * Wait until the runner is finished or the job is stopped.
+   */
   public void waitUntilFinished() {
-    while ( !isFinished() && !job.isStopped() ) {
-      try {
-        Thread.sleep( 0, 1 );
-      } catch ( InterruptedException e ) {
-        // Ignore errors
+    waitUntilFinished( job );
+  }
+
+  /**
+   * Wait until the runner is finished or the given job is stopped, whichever comes first.
+   *
+   * @param stoppingJob
+   *          the job that ends the wait when it is stopped, this job or one of its parents
+   */
+  public void waitUntilFinished( Job stoppingJob ) {
+    JobStoppedListener stoppedListener = new JobStoppedListener() {
+      @Override
+      public void jobStopped( Job stoppedJob ) {
+        synchronized ( JobEntryJobRunner.this ) {
+          JobEntryJobRunner.this.notifyAll();
+        }
       }
+    };
+    stoppingJob.addJobStoppedListener( stoppedListener );
+    try {
+      synchronized ( this ) {
+        while ( !isFinished() && !stoppingJob.isStopped() ) {
+          wait();
+        }
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    } finally {
+      stoppingJob.removeJobStoppedListener( stoppedListener );
     }
   }
 }
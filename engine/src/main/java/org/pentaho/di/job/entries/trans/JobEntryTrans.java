@@ -59,6 +59,7 @@ import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.job.DelegationListener;
 import org.pentaho.di.job.Job;
 import org.pentaho.di.job.JobMeta;
+import org.pentaho.di.job.JobStoppedListener;
 import org.pentaho.di.job.entry.JobEntryBase;
 import org.pentaho.di.job.entry.JobEntryInterface;
 import org.pentaho.di.job.entry.JobEntryRunConfigurableInterface;
@@ -1158,21 +1159,24 @@ public class JobEntryTrans extends JobEntryBase implements Cloneable, JobEntryIn
             //
             trans.execute( args );
 
-            // Wait until we're done with it...
-            //TODO is it possible to implement Observer pattern to avoid Thread.sleep here?
-            while ( !trans.isFinished() && trans.getErrors() == 0 ) {
+            // Wait until we're done with it, stop it if the parent job is stopped...
+            //
+            final Trans runningTrans = trans;
+            JobStoppedListener parentStoppedListener = new JobStoppedListener() {
+              @Override
+              public void jobStopped( Job job ) {
+                runningTrans.stopAll();
+              }
+            };
+            parentJob.addJobStoppedListener( parentStoppedListener );
+            try {
               if ( parentJob.isStopped() ) {
                 trans.stopAll();
-                break;
-              } else {
-                try {
-                  Thread.sleep( 0, 500 );
-                } catch ( InterruptedException e ) {
-                  // Ignore errors
-                }
               }
+              trans.waitUntilFinished();
+            } finally {
+              parentJob.removeJobStoppedListener( parentStoppedListener );
             }
-            trans.waitUntilFinished();
 
             if ( parentJob.isStopped() || trans.getErrors() != 0 ) {
               trans.stopAll();
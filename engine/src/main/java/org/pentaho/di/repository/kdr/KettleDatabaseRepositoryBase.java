@@ -447,6 +447,8 @@ public abstract class KettleDatabaseRepositoryBase extends AbstractRepository {
   public static final String TRANS_ATTRIBUTE_TRANSFORMATION_TYPE = "TRANSFORMATION_TYPE";
   public static final String TRANS_ATTRIBUTE_SLEEP_TIME_EMPTY = "SLEEP_TIME_EMPTY";
   public static final String TRANS_ATTRIBUTE_SLEEP_TIME_FULL = "SLEEP_TIME_FULL";
+  public static final String TRANS_ATTRIBUTE_LOCK_FREE_ROWSETS = "LOCK_FREE_ROWSETS";
+  public static final String TRANS_ATTRIBUTE_ADAPTIVE_ROWSETS = "ADAPTIVE_ROWSETS";
   public static final String TRANS_ATTRIBUTE_DATA_SERVICE_NAME = "DATA_SERVICE_NAME";
 
   public static final String TRANS_ATTRIBUTE_PARAM_KEY = "PARAM_KEY";
@@ -817,6 +817,10 @@ public class KettleDatabaseRepositoryTransDelegate extends KettleDatabaseReposit
           transMeta.getObjectId(), 0, KettleDatabaseRepository.TRANS_ATTRIBUTE_SLEEP_TIME_EMPTY ) );
         transMeta.setSleepTimeFull( (int) getTransAttributeInteger(
           transMeta.getObjectId(), 0, KettleDatabaseRepository.TRANS_ATTRIBUTE_SLEEP_TIME_FULL ) );
+        transMeta.setUsingLockFreeRowSets( getTransAttributeBoolean(
+          transMeta.getObjectId(), 0, KettleDatabaseRepository.TRANS_ATTRIBUTE_LOCK_FREE_ROWSETS ) );
+        transMeta.setUsingAdaptiveRowSets( getTransAttributeBoolean(
+          transMeta.getObjectId(), 0, KettleDatabaseRepository.TRANS_ATTRIBUTE_ADAPTIVE_ROWSETS ) );
 
         loadRepParameters( transMeta );
       }
@@ -1396,6 +1400,12 @@ public class KettleDatabaseRepositoryTransDelegate extends KettleDatabaseReposit
     repository.connectionDelegate.insertTransAttribute(
       transMeta.getObjectId(), 0, KettleDatabaseRepository.TRANS_ATTRIBUTE_SLEEP_TIME_FULL, transMeta
         .getSleepTimeFull(), null );
+    repository.connectionDelegate.insertTransAttribute(
+      transMeta.getObjectId(), 0, KettleDatabaseRepository.TRANS_ATTRIBUTE_LOCK_FREE_ROWSETS, 0, transMeta
+        .isUsingLockFreeRowSets() ? "Y" : "N" );
+    repository.connectionDelegate.insertTransAttribute(
+      transMeta.getObjectId(), 0, KettleDatabaseRepository.TRANS_ATTRIBUTE_ADAPTIVE_ROWSETS, 0, transMeta
+        .isUsingAdaptiveRowSets() ? "Y" : "N" );
 
     // Save the logging connection link...
     if ( logTable.getDatabaseMeta() != null ) {
@@ -0,0 +1,158 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.AdaptiveRowSet;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+/**
+ * Tunes the capacity of the {@link AdaptiveRowSet}s of a transformation to the back-pressure observed on each hop,
+ * within a memory budget for all row sets together.
+ * <p>
+ * Each time {@link #adjust()} is called the usage of every row set since the previous call is examined:
+ * <ul>
+ * <li>If both the writing and the reading step had to wait, the rows arrive in bursts the buffer can't absorb: the
+ * capacity is doubled.</li>
+ * <li>If the writing step had to wait while the row set never got below half full, the reading step is a bottleneck
+ * and buffering more rows in front of it doesn't help: the capacity is halved.</li>
+ * <li>If rows passed but the row set never got over a quarter full, the capacity is lowered to twice the highest
+ * number of rows it held, which leaves more of the budget for the other hops.</li>
+ * </ul>
+ * The capacity stays between {@link #MIN_CAPACITY} (or the initial size if that is smaller) and
+ * {@link #MAX_GROWTH} times the initial size. If the row sets could together hold more bytes than the budget allows,
+ * all capacities are scaled down.
+ *
+ * @since 9.0
+ */
+public class AdaptiveRowSetManager {
+  /**
+   * The number of milliseconds between two adjustments
+   */
+  public static final long ADJUST_INTERVAL_MILLIS = 500L;
+
+  /**
+   * The lowest capacity of a row set, unless the initial size is lower
+   */
+  public static final int MIN_CAPACITY = 100;
+
+  /**
+   * The highest capacity of a row set, as a multiple of the initial size
+   */
+  public static final int MAX_GROWTH = 16;
+
+  /**
+   * The size of a row in bytes used until the row set measured its rows
+   */
+  private static final long DEFAULT_ROW_BYTES = 256L;
+
+  private final LogChannelInterface log;
+  private final List<AdaptiveRowSet> rowSets;
+  private final long memoryBudget;
+  private final int minCapacity;
+  private final int maxCapacity;
+  private final long[] rowBytes;
+
+  /**
+   * @param log
+   *          the log channel to report changes to
+   * @param rowSets
+   *          the row sets to manage
+   * @param initialSize
+   *          the size the row sets were created with
+   * @param memoryBudget
+   *          the number of bytes all row sets together may hold
+   */
+  public AdaptiveRowSetManager( LogChannelInterface log, List<AdaptiveRowSet> rowSets, int initialSize,
+    long memoryBudget ) {
+    this.log = log;
+    this.rowSets = new ArrayList<>( rowSets );
+    this.memoryBudget = memoryBudget;
+    this.minCapacity = Math.min( MIN_CAPACITY, initialSize );
+    this.maxCapacity = (int) Math.min( Integer.MAX_VALUE, (long) initialSize * MAX_GROWTH );
+    this.rowBytes = new long[ this.rowSets.size() ];
+    for ( int i = 0; i < rowBytes.length; i++ ) {
+      rowBytes[ i ] = DEFAULT_ROW_BYTES;
+    }
+  }
+
+  /**
+   * Look at the usage of the row sets since the previous call and change their capacity accordingly.
+   */
+  public synchronized void adjust() {
+    int[] capacities = new int[ rowSets.size() ];
+    long reserved = 0L;
+    for ( int i = 0; i < capacities.length; i++ ) {
+      AdaptiveRowSet.Usage usage = rowSets.get( i ).getUsage();
+      if ( usage.getAverageRowBytes() > 0 ) {
+        rowBytes[ i ] = usage.getAverageRowBytes();
+      }
+      capacities[ i ] = getTargetCapacity( usage );
+      reserved += capacities[ i ] * rowBytes[ i ];
+    }
+
+    // Stay within the budget
+    //
+    double scale = reserved > memoryBudget ? (double) memoryBudget / reserved : 1.0;
+
+    for ( int i = 0; i < capacities.length; i++ ) {
+      AdaptiveRowSet rowSet = rowSets.get( i );
+      int capacity = Math.max( minCapacity, (int) ( capacities[ i ] * scale ) );
+      if ( capacity != rowSet.getCapacity() ) {
+        if ( log.isDebug() ) {
+          log.logDebug( "Changing the size of row set " + rowSet + " from " + rowSet.getCapacity() + " to "
+            + capacity + " rows of about " + rowBytes[ i ] + " bytes" );
+        }
+        rowSet.setCapacity( capacity );
+      }
+    }
+  }
+
+  private int getTargetCapacity( AdaptiveRowSet.Usage usage ) {
+    long capacity = usage.getCapacity();
+    if ( usage.getBlockedPuts() > 0 && usage.getEmptyGets() > 0 ) {
+      capacity *= 2;
+    } else if ( usage.getBlockedPuts() > 0 && usage.getMinSize() >= capacity / 2 ) {
+      capacity /= 2;
+    } else if ( usage.getRowsPut() > 0 && usage.getMaxSize() < capacity / 4 ) {
+      capacity = 2L * usage.getMaxSize();
+    }
+    return (int) Math.max( minCapacity, Math.min( maxCapacity, capacity ) );
+  }
+
+  /**
+   * @return the row sets managed
+   */
+  public List<AdaptiveRowSet> getRowSets() {
+    return rowSets;
+  }
+
+  /**
+   * @return the number of bytes all row sets together may hold
+   */
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+}
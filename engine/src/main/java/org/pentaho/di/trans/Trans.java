@@ -40,8 +40,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -56,6 +56,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.cluster.SlaveServer;
+import org.pentaho.di.core.AdaptiveRowSet;
 import org.pentaho.di.core.BlockingBatchingRowSet;
 import org.pentaho.di.core.BlockingRowSet;
 import org.pentaho.di.core.Const;
@@ -65,6 +66,7 @@ import org.pentaho.di.core.ExecutorInterface;
 import org.pentaho.di.core.ExtensionDataInterface;
 import org.pentaho.di.core.KettleEnvironment;
 import org.pentaho.di.core.QueueRowSet;
+import org.pentaho.di.core.RingBufferRowSet;
 import org.pentaho.di.core.Result;
 import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.RowMetaAndData;
@@ -109,6 +111,7 @@ import org.pentaho.di.core.parameters.UnknownParamException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.util.EnvUtil;
+import org.pentaho.di.core.util.ThreadUtil;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.variables.Variables;
 import org.pentaho.di.core.vfs.KettleVFS;
@@ -127,11 +130,14 @@ import org.pentaho.di.trans.cluster.TransSplitter;
 import org.pentaho.di.trans.performance.StepPerformanceSnapShot;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
+import org.pentaho.di.trans.step.RunTask;
 import org.pentaho.di.trans.step.RunThread;
 import org.pentaho.di.trans.step.StepAdapter;
 import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepExecutorPool;
 import org.pentaho.di.trans.step.StepInitThread;
 import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepLineCounters;
 import org.pentaho.di.trans.step.StepListener;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaDataCombi;
@@ -349,6 +355,12 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
   /** The step performance snapshot timer. */
   private Timer stepPerformanceSnapShotTimer;
 
+  /** The timer that adapts the size of the adaptive rowsets to the back-pressure on the hops. */
+  private Timer adaptiveRowSetTimer;
+
+  /** The memory budget shared by the steps that keep rows in memory. */
+  private TransMemoryManager memoryManager;
+
   /** A list of listeners attached to the transformation. */
   private List<TransListener> transListeners;
 
@@ -394,8 +406,8 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
   /** The servlet print writer. */
   private PrintWriter servletPrintWriter;
 
-  /** The trans finished blocking queue. */
-  private ArrayBlockingQueue<Object> transFinishedBlockingQueue;
+  /** Released when the transformation is finished, see waitUntilFinished(). */
+  private volatile CountDownLatch transFinishedLatch;
 
   /** The name of the executing server */
   private String executingServer;
@@ -664,6 +676,12 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     activateParameters();
     transMeta.activateParameters();
 
+    // The steps register their memory consumers during initialization
+    //
+    long memoryBudget = Const.toLong( getVariable( Const.KETTLE_TRANS_MEMORY_BUDGET ), -1L );
+    memoryBudget = memoryBudget > 0 ? memoryBudget * 1024L * 1024L : Runtime.getRuntime().maxMemory() / 2;
+    memoryManager = new TransMemoryManager( log, memoryBudget );
+
     if ( transMeta.getName() == null ) {
       if ( transMeta.getFilename() != null ) {
         log.logBasic( BaseMessages.getString( PKG, "Trans.Log.DispacthingStartedForFilename", transMeta
@@ -813,6 +831,12 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
                     ValueMetaString.convertStringToBoolean( System.getProperty( Const.KETTLE_BATCHING_ROWSET ) );
                 if ( batchingRowSet != null && batchingRowSet.booleanValue() ) {
                   rowSet = new BlockingBatchingRowSet( transMeta.getSizeRowset() );
+                } else if ( transMeta.isUsingAdaptiveRowSets() ) {
+                  rowSet = new AdaptiveRowSet( transMeta.getSizeRowset() );
+                } else if ( dispatchType == TYPE_DISP_1_1 && transMeta.isUsingLockFreeRowSets() ) {
+                  // Exactly one thread writes and one thread reads: no need for locking
+                  //
+                  rowSet = new RingBufferRowSet( transMeta.getSizeRowset() );
                 } else {
                   rowSet = new BlockingRowSet( transMeta.getSizeRowset() );
                 }
@@ -860,7 +884,12 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
           // distribution...
           for ( int s = 0; s < thisCopies; s++ ) {
             for ( int t = 0; t < nextCopies; t++ ) {
-              BlockingRowSet rowSet = new BlockingRowSet( transMeta.getSizeRowset() );
+              RowSet rowSet;
+              if ( transMeta.isUsingAdaptiveRowSets() ) {
+                rowSet = new AdaptiveRowSet( transMeta.getSizeRowset() );
+              } else {
+                rowSet = new BlockingRowSet( transMeta.getSizeRowset() );
+              }
               rowSet.setThreadNameFromToCopy( thisStep.getName(), s, nextStep.getName(), t );
               rowsets.add( rowSet );
               if ( log.isDetailed() ) {
@@ -1081,7 +1110,7 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
 
       // Put it in a separate thread!
       //
-      threads[i] = new Thread( initThreads[i] );
+      threads[i] = ThreadUtil.newThread( initThreads[i], isUsingVirtualThreads() );
       threads[i].setName( "init of " + sid.stepname + "." + sid.copy + " (" + threads[i].getName() + ")" );
 
       ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.StepBeforeInitialize.id, initThreads[i] );
@@ -1187,6 +1216,16 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     }
   }
 
+  /**
+   * Checks whether the steps run in virtual threads, see {@link Const#KETTLE_VIRTUAL_THREADS}.
+   *
+   * @return true if virtual threads were asked for and the JVM supports them
+   */
+  public boolean isUsingVirtualThreads() {
+    return "Y".equalsIgnoreCase( getVariable( Const.KETTLE_VIRTUAL_THREADS, "N" ) )
+      && ThreadUtil.isVirtualThreadSupported();
+  }
+
   /**
    * Starts the threads prepared by prepareThreads(). Before you start the threads, you can add RowListeners to them.
    *
@@ -1296,13 +1335,17 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
       stepPerformanceSnapShotTimer.schedule( timerTask, 100, transMeta.getStepPerformanceCapturingDelay() );
     }
 
+    // Set a timer to adapt the size of the rowsets to the back-pressure on the hops...
+    //
+    startAdaptiveRowSetTimer();
+
     // Now start a thread to monitor the running transformation...
     //
     setFinished( false );
     setPaused( false );
     setStopped( false );
 
-    transFinishedBlockingQueue = new ArrayBlockingQueue<>( 10 );
+    transFinishedLatch = new CountDownLatch( 1 );
 
     TransListener transListener = new TransAdapter() {
       @Override
@@ -1322,6 +1365,10 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
         if ( transMeta.isCapturingStepPerformanceSnapShots() && stepPerformanceSnapShotTimer != null ) {
           stepPerformanceSnapShotTimer.cancel();
         }
+        if ( adaptiveRowSetTimer != null ) {
+          adaptiveRowSetTimer.cancel();
+          adaptiveRowSetTimer = null;
+        }
 
         transMeta.disposeEmbeddedMetastoreProvider();
 
@@ -1364,13 +1411,16 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     switch ( transMeta.getTransformationType() ) {
       case Normal:
 
+        // Optionally run the step copies on a shared pool instead of a thread each
+        //
+        StepExecutorPool stepExecutorPool =
+          "Y".equalsIgnoreCase( getVariable( Const.KETTLE_STEP_EXECUTOR_POOL, "N" ) )
+            ? StepExecutorPool.getInstance( this ) : null;
+
         // Now start all the threads...
         //
         for ( int i = 0; i < steps.size(); i++ ) {
           final StepMetaDataCombi combi = steps.get( i );
-          RunThread runThread = new RunThread( combi );
-          Thread thread = new Thread( runThread );
-          thread.setName( getName() + " - " + combi.stepname );
           ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.StepBeforeStart.id, combi );
           // Call an extension point at the end of the step
           //
@@ -1387,7 +1437,14 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
 
           } );
 
-          thread.start();
+          if ( stepExecutorPool != null && RunTask.canRunAsTask( combi ) ) {
+            new RunTask( combi, stepExecutorPool ).start();
+          } else {
+            RunThread runThread = new RunThread( combi );
+            Thread thread = ThreadUtil.newThread( runThread, isUsingVirtualThreads() );
+            thread.setName( getName() + " - " + combi.stepname );
+            thread.start();
+          }
         }
         break;
 
@@ -1498,9 +1555,9 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
           badGuys.add( e );
         }
       }
-      if ( transFinishedBlockingQueue != null ) {
-        // Signal for the the waitUntilFinished blocker...
-        transFinishedBlockingQueue.add( new Object() );
+      if ( transFinishedLatch != null ) {
+        // Release the waitUntilFinished blockers...
+        transFinishedLatch.countDown();
       }
       if ( !badGuys.isEmpty() ) {
         // FIFO
@@ -1524,6 +1581,39 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     }
   }
 
+  /**
+   * Starts a timer that periodically adapts the capacity of the adaptive rowsets of this transformation to the
+   * back-pressure on their hops, if there are any.
+   */
+  protected void startAdaptiveRowSetTimer() {
+    List<AdaptiveRowSet> adaptiveRowSets = new ArrayList<>();
+    for ( RowSet rowSet : rowsets ) {
+      if ( rowSet instanceof AdaptiveRowSet ) {
+        adaptiveRowSets.add( (AdaptiveRowSet) rowSet );
+      }
+    }
+    if ( adaptiveRowSets.isEmpty() ) {
+      return;
+    }
+
+    long budget = Const.toLong( getVariable( Const.KETTLE_ROWSET_MEMORY_BUDGET ), -1L );
+    budget = budget > 0 ? budget * 1024L * 1024L : Runtime.getRuntime().maxMemory() / 4;
+
+    final AdaptiveRowSetManager manager =
+      new AdaptiveRowSetManager( log, adaptiveRowSets, transMeta.getSizeRowset(), budget );
+    adaptiveRowSetTimer = new Timer( "adaptiveRowSet Timer: " + transMeta.getName(), true );
+    TimerTask timerTask = new TimerTask() {
+      @Override
+      public void run() {
+        if ( !isFinished() ) {
+          manager.adjust();
+        }
+      }
+    };
+    adaptiveRowSetTimer.schedule( timerTask, AdaptiveRowSetManager.ADJUST_INTERVAL_MILLIS,
+      AdaptiveRowSetManager.ADJUST_INTERVAL_MILLIS );
+  }
+
   /**
    * Adds a step performance snapshot.
    */
@@ -1544,10 +1634,19 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
         StepMeta stepMeta = steps.get( i ).stepMeta;
         StepInterface step = steps.get( i ).step;
 
-        StepPerformanceSnapShot snapShot =
+        StepPerformanceSnapShot snapShot;
+        if ( step instanceof BaseStep ) {
+          StepLineCounters counters = ( (BaseStep) step ).getLineCounters();
+          snapShot =
+            new StepPerformanceSnapShot( seqNr, getBatchId(), new Date(), getName(), stepMeta.getName(), step.getCopy(),
+              counters.getLinesRead(), counters.getLinesWritten(), counters.getLinesInput(),
+              counters.getLinesOutput(), counters.getLinesUpdated(), counters.getLinesRejected(), step.getErrors() );
+        } else {
+          snapShot =
             new StepPerformanceSnapShot( seqNr, getBatchId(), new Date(), getName(), stepMeta.getName(), step.getCopy(),
-                step.getLinesRead(), step.getLinesWritten(), step.getLinesInput(), step.getLinesOutput(), step
-                    .getLinesUpdated(), step.getLinesRejected(), step.getErrors() );
+              step.getLinesRead(), step.getLinesWritten(), step.getLinesInput(), step.getLinesOutput(), step
+                .getLinesUpdated(), step.getLinesRejected(), step.getErrors() );
+        }
         List<StepPerformanceSnapShot> snapShotList = stepPerformanceSnapShots.get( step.toString() );
         StepPerformanceSnapShot previous;
         if ( snapShotList == null ) {
@@ -1608,18 +1707,29 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
    */
   public void waitUntilFinished() {
     try {
-      if ( transFinishedBlockingQueue == null ) {
+      CountDownLatch latch = transFinishedLatch;
+      if ( latch == null ) {
         return;
       }
-      boolean wait = true;
-      while ( wait ) {
-        wait = transFinishedBlockingQueue.poll( 1, TimeUnit.DAYS ) == null;
-        if ( wait ) {
-          // poll returns immediately - this was hammering the CPU with poll checks. Added
-          // a sleep to let the CPU breathe
-          Thread.sleep( 1 );
-        }
-      }
+      latch.await();
+    } catch ( InterruptedException e ) {
+      throw new RuntimeException( "Waiting for transformation to be finished interrupted!", e );
+    }
+  }
+
+  /**
+   * Waits until all RunThreads have finished or the timeout expires.
+   *
+   * @param timeout
+   *          the maximum time to wait
+   * @param unit
+   *          the unit of the timeout
+   * @return false if the timeout expired before the transformation finished, true otherwise
+   */
+  public boolean waitUntilFinished( long timeout, TimeUnit unit ) {
+    try {
+      CountDownLatch latch = transFinishedLatch;
+      return latch == null || latch.await( timeout, unit );
     } catch ( InterruptedException e ) {
       throw new RuntimeException( "Waiting for transformation to be finished interrupted!", e );
     }
@@ -1757,12 +1867,6 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
       }
 
       step.stopAll();
-      try {
-        Thread.sleep( 20 );
-      } catch ( Exception e ) {
-        log.logError( BaseMessages.getString( PKG, "Trans.Log.TransformationErrors" ) + e.toString() );
-        return;
-      }
     }
   }
 
@@ -3276,6 +3380,25 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     this.safeModeEnabled = safeModeEnabled;
   }
 
+  /**
+   * Gets the memory manager the steps of this transformation share their memory budget with.
+   *
+   * @return the memory manager, or null if the transformation wasn't prepared for execution
+   */
+  public TransMemoryManager getMemoryManager() {
+    return memoryManager;
+  }
+
+  /**
+   * Sets the memory manager the steps of this transformation share their memory budget with.
+   *
+   * @param memoryManager
+   *          the memory manager to use
+   */
+  public void setMemoryManager( TransMemoryManager memoryManager ) {
+    this.memoryManager = memoryManager;
+  }
+
   /**
    * Checks whether safe mode is enabled.
    *
@@ -0,0 +1,276 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.trans.step.StepInterface;
+
+/**
+ * Shares a memory budget between the steps of a transformation that keep rows in memory, like sorts, lookups and
+ * aggregations.
+ * <p>
+ * A step registers a {@link Consumer} and tells it how many bytes it keeps, roughly, each time its in-memory data
+ * grows. The consumer reserves memory from the budget in chunks of {@link #RESERVE_CHUNK_BYTES}. When a reservation
+ * goes over the budget the consumers that can spill are asked to do so in order of their spill priority, lowest first
+ * and within the same priority the one holding the most memory first, until enough memory is on its way out. If the
+ * step that made the reservation is the next in line, it is told to spill itself instead. A consumer stays asked to
+ * spill until it gives its memory back.
+ * <p>
+ * Spilling is cooperative: a step is never interrupted, it finds out that it should spill the next time it adds data
+ * or checks {@link Consumer#isSpillRequested()}, and gives its memory back with {@link Consumer#freeAll()}.
+ *
+ * @since 9.0
+ */
+public class TransMemoryManager {
+  /**
+   * The spill priority of memory that only saves reading back data that's already on disk
+   */
+  public static final int SPILL_PRIORITY_CACHE = 0;
+
+  /**
+   * The spill priority of memory that has to be written to disk to free it
+   */
+  public static final int SPILL_PRIORITY_DEFAULT = 100;
+
+  /**
+   * The spill priority of a consumer that can't spill: its memory is only accounted for
+   */
+  public static final int NOT_SPILLABLE = Integer.MAX_VALUE;
+
+  /**
+   * The number of bytes a consumer reserves at a time
+   */
+  public static final long RESERVE_CHUNK_BYTES = 1024L * 1024L;
+
+  private final LogChannelInterface log;
+  private final long budget;
+  private final List<Consumer> consumers;
+
+  private long reserved;
+  private long peakReserved;
+
+  /**
+   * @param log
+   *          the log channel to report spill requests to
+   * @param budget
+   *          the number of bytes all consumers together may reserve
+   */
+  public TransMemoryManager( LogChannelInterface log, long budget ) {
+    this.log = log;
+    this.budget = budget;
+    this.consumers = new ArrayList<>();
+  }
+
+  /**
+   * Register a new consumer of memory for a step.
+   *
+   * @param step
+   *          the step that keeps the data, used in the step metrics, can be null
+   * @param spillPriority
+   *          consumers with a lower spill priority are asked to spill first, see {@link #NOT_SPILLABLE}
+   * @return the new consumer
+   */
+  public synchronized Consumer register( StepInterface step, int spillPriority ) {
+    Consumer consumer = new Consumer( step, spillPriority );
+    consumers.add( consumer );
+    return consumer;
+  }
+
+  synchronized boolean reserve( Consumer requester, long bytes ) {
+    requester.reserved += bytes;
+    reserved += bytes;
+    peakReserved = Math.max( peakReserved, reserved );
+    if ( reserved <= budget ) {
+      return true;
+    }
+
+    List<Consumer> candidates = new ArrayList<>();
+    for ( Consumer consumer : consumers ) {
+      if ( consumer.spillPriority != NOT_SPILLABLE && consumer.reserved > 0 ) {
+        candidates.add( consumer );
+      }
+    }
+    Collections.sort( candidates, new Comparator<Consumer>() {
+      @Override
+      public int compare( Consumer c1, Consumer c2 ) {
+        if ( c1.spillPriority != c2.spillPriority ) {
+          return c1.spillPriority < c2.spillPriority ? -1 : 1;
+        }
+        return Long.compare( c2.reserved, c1.reserved );
+      }
+    } );
+
+    long shortage = reserved - budget;
+    long spilling = 0L;
+    for ( Consumer consumer : candidates ) {
+      if ( consumer == requester ) {
+        requester.spillRequested = true;
+        return false;
+      }
+      if ( !consumer.spillRequested ) {
+        if ( log != null && log.isDetailed() ) {
+          log.logDetailed( "Memory budget of " + budget + " bytes exceeded by " + shortage
+            + " bytes, asking " + consumer + " to free " + consumer.reserved + " bytes" );
+        }
+        consumer.spillRequested = true;
+      }
+      spilling += consumer.reserved;
+      if ( spilling >= shortage ) {
+        break;
+      }
+    }
+    return true;
+  }
+
+  synchronized void release( Consumer consumer ) {
+    reserved -= consumer.reserved;
+    consumer.reserved = 0L;
+    consumer.spillRequested = false;
+  }
+
+  synchronized void unregister( Consumer consumer ) {
+    release( consumer );
+    consumers.remove( consumer );
+  }
+
+  /**
+   * @param step
+   *          the step to look for
+   * @return the number of bytes reserved by the consumers of the given step
+   */
+  public synchronized long getReserved( StepInterface step ) {
+    long total = 0L;
+    for ( Consumer consumer : consumers ) {
+      if ( consumer.step == step ) {
+        total += consumer.reserved;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * @return the number of bytes reserved by all consumers
+   */
+  public synchronized long getReserved() {
+    return reserved;
+  }
+
+  /**
+   * @return the highest number of bytes reserved by all consumers together so far
+   */
+  public synchronized long getPeakReserved() {
+    return peakReserved;
+  }
+
+  /**
+   * @return the number of bytes all consumers together may reserve
+   */
+  public long getBudget() {
+    return budget;
+  }
+
+  /**
+   * The memory kept by a step, or a part of a step. A consumer is meant to be used by the thread of its step only,
+   * apart from {@link #isSpillRequested()} and {@link #getUsed()}.
+   */
+  public class Consumer {
+    private final StepInterface step;
+    private final int spillPriority;
+
+    // Only changed by the thread of the step, while holding the lock of the manager
+    private long reserved;
+    private volatile boolean spillRequested;
+
+    private volatile long used;
+
+    Consumer( StepInterface step, int spillPriority ) {
+      this.step = step;
+      this.spillPriority = spillPriority;
+    }
+
+    /**
+     * Account for data the step keeps in memory.
+     *
+     * @param bytes
+     *          the estimated number of bytes the step now keeps in addition to what it had
+     * @return false if the step should spill its data and call {@link #freeAll()}
+     */
+    public boolean allocate( long bytes ) {
+      used += bytes;
+      if ( used > reserved ) {
+        long chunk = Math.max( RESERVE_CHUNK_BYTES, used - reserved );
+        if ( !reserve( this, chunk ) ) {
+          return false;
+        }
+      }
+      return !spillRequested;
+    }
+
+    /**
+     * Give back all memory after the step released its data, for example by writing it to disk.
+     */
+    public void freeAll() {
+      used = 0L;
+      release( this );
+    }
+
+    /**
+     * Give back all memory and stop accounting for this consumer, typically when the step is disposed.
+     */
+    public void close() {
+      used = 0L;
+      unregister( this );
+    }
+
+    /**
+     * @return true if the step was asked to spill its data to make room for other steps
+     */
+    public boolean isSpillRequested() {
+      return spillRequested;
+    }
+
+    /**
+     * @return the estimated number of bytes the step keeps in memory
+     */
+    public long getUsed() {
+      return used;
+    }
+
+    /**
+     * @return the spill priority of this consumer
+     */
+    public int getSpillPriority() {
+      return spillPriority;
+    }
+
+    @Override
+    public String toString() {
+      return step == null ? "memory consumer" : "step " + step.getStepname() + "." + step.getCopy();
+    }
+  }
+}
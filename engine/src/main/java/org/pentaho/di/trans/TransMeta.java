@@ -191,6 +191,12 @@ public class TransMeta extends AbstractMeta
   /** The size of the current rowset. */
   protected int sizeRowset;
 
+  /** Flag to indicate that lock-free ring buffer rowsets are used on hops between single step copies. */
+  protected boolean usingLockFreeRowSets;
+
+  /** Flag to indicate that the size of the rowsets is adapted to the back-pressure on the hops while running. */
+  protected boolean usingAdaptiveRowSets;
+
   /** The meta-data for the database connection associated with "max date" auditing information. */
   protected DatabaseMeta maxDateConnection;
 
@@ -659,6 +665,8 @@ public class TransMeta extends AbstractMeta
     metricsLogTable = MetricsLogTable.getDefault( this, this );
 
     sizeRowset = Const.ROWS_IN_ROWSET;
+    usingLockFreeRowSets = false;
+    usingAdaptiveRowSets = false;
     sleepTimeEmpty = Const.TIMEOUT_GET_MILLIS;
     sleepTimeFull = Const.TIMEOUT_PUT_MILLIS;
 
@@ -2470,6 +2478,8 @@ public class TransMeta extends AbstractMeta
     retval.append( "    " ).append( XMLHandler.closeTag( "maxdate" ) ).append( Const.CR );
 
     retval.append( "    " ).append( XMLHandler.addTagValue( "size_rowset", sizeRowset ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "lock_free_rowsets", usingLockFreeRowSets ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "adaptive_rowsets", usingAdaptiveRowSets ) );
 
     retval.append( "    " ).append( XMLHandler.addTagValue( "sleep_time_empty", sleepTimeEmpty ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "sleep_time_full", sleepTimeFull ) );
@@ -3379,6 +3389,8 @@ public class TransMeta extends AbstractMeta
 
         String srowset = XMLHandler.getTagValue( infonode, "size_rowset" );
         sizeRowset = Const.toInt( srowset, Const.ROWS_IN_ROWSET );
+        usingLockFreeRowSets = "Y".equalsIgnoreCase( XMLHandler.getTagValue( infonode, "lock_free_rowsets" ) );
+        usingAdaptiveRowSets = "Y".equalsIgnoreCase( XMLHandler.getTagValue( infonode, "adaptive_rowsets" ) );
         sleepTimeEmpty =
             Const.toInt( XMLHandler.getTagValue( infonode, "sleep_time_empty" ), Const.TIMEOUT_GET_MILLIS );
         sleepTimeFull = Const.toInt( XMLHandler.getTagValue( infonode, "sleep_time_full" ), Const.TIMEOUT_PUT_MILLIS );
@@ -4986,6 +4998,47 @@ public class TransMeta extends AbstractMeta
     this.sizeRowset = sizeRowset;
   }
 
+  /**
+   * Checks whether the transformation uses lock-free ring buffer rowsets on hops between a single copy of a step and a
+   * single copy of the next step.
+   *
+   * @return true if lock-free rowsets are used, false otherwise
+   */
+  public boolean isUsingLockFreeRowSets() {
+    return usingLockFreeRowSets;
+  }
+
+  /**
+   * Sets whether the transformation uses lock-free ring buffer rowsets on hops between a single copy of a step and a
+   * single copy of the next step.
+   *
+   * @param usingLockFreeRowSets
+   *          true if lock-free rowsets should be used, false otherwise
+   */
+  public void setUsingLockFreeRowSets( boolean usingLockFreeRowSets ) {
+    this.usingLockFreeRowSets = usingLockFreeRowSets;
+  }
+
+  /**
+   * Checks whether the size of the rowsets is adapted to the back-pressure on the hops while the transformation runs,
+   * within the memory budget set with the KETTLE_ROWSET_MEMORY_BUDGET variable.
+   *
+   * @return true if adaptive rowsets are used, false otherwise
+   */
+  public boolean isUsingAdaptiveRowSets() {
+    return usingAdaptiveRowSets;
+  }
+
+  /**
+   * Sets whether the size of the rowsets is adapted to the back-pressure on the hops while the transformation runs.
+   *
+   * @param usingAdaptiveRowSets
+   *          true if adaptive rowsets should be used, false otherwise
+   */
+  public void setUsingAdaptiveRowSets( boolean usingAdaptiveRowSets ) {
+    this.usingAdaptiveRowSets = usingAdaptiveRowSets;
+  }
+
   /**
    * Gets the database cache object.
    *
@@ -6355,6 +6408,8 @@ public class TransMeta extends AbstractMeta
         .append( this.getName() )
         .append( this.getTransformationType() )
         .append( this.getSizeRowset() )
+        .append( this.isUsingLockFreeRowSets() )
+        .append( this.isUsingAdaptiveRowSets() )
         .append( this.getSleepTimeEmpty() )
         .append( this.getSleepTimeFull() )
         .append( this.isUsingUniqueConnections() )
@@ -358,6 +358,8 @@ public class TransSplitter {
 
     // Rowset size
     transMeta.setSizeRowset( originalTransformation.getSizeRowset() );
+    transMeta.setUsingLockFreeRowSets( originalTransformation.isUsingLockFreeRowSets() );
+    transMeta.setUsingAdaptiveRowSets( originalTransformation.isUsingAdaptiveRowSets() );
 
     return transMeta;
   }
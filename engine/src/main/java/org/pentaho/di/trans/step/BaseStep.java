@@ -33,12 +33,17 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -62,6 +67,7 @@ import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.core.logging.LogLevel;
 import org.pentaho.di.core.logging.LoggingObjectInterface;
 import org.pentaho.di.core.logging.LoggingObjectType;
+import org.pentaho.di.core.row.FrozenRowMeta;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -80,6 +86,7 @@ import org.pentaho.di.repository.RepositoryDirectory;
 import org.pentaho.di.trans.BasePartitioner;
 import org.pentaho.di.trans.SlaveStepCopyPartitionDistribution;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.cluster.TransSplitter;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
@@ -165,10 +172,24 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
   private Trans trans;
 
-  private final Object statusCountersLock = new Object();
+  /*
+   * The status counters are updated for every row by the step thread and read by the status and performance monitoring
+   * threads. LongAdder keeps the updates free of locks and the reads free of contention with the writer. The row
+   * handling code below updates the counters directly, the incrementXxx() methods also sum them to return the new
+   * value. Use getLineCounters() to read all counters at once.
+   */
+  private static final int LINE_COUNTERS_READ_ATTEMPTS = 10;
+
+  private final LongAdder linesReadCounter = new LongAdder();
+  private final LongAdder linesWrittenCounter = new LongAdder();
+  private final LongAdder linesInputCounter = new LongAdder();
+  private final LongAdder linesOutputCounter = new LongAdder();
+  private final LongAdder linesUpdatedCounter = new LongAdder();
+  private final LongAdder linesSkippedCounter = new LongAdder();
+  private final LongAdder linesRejectedCounter = new LongAdder();
 
   /**
-   * nr of lines read from previous step(s)
+   * nr of lines read from previous step(s). Values assigned to this field are added to {@link #getLinesRead()}.
    *
    * @deprecated use {@link #getLinesRead()}, {@link #incrementLinesRead()}, or {@link #decrementLinesRead()}
    */
@@ -176,7 +197,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   public long linesRead;
 
   /**
-   * nr of lines written to next step(s)
+   * nr of lines written to next step(s). Values assigned to this field are added to {@link #getLinesWritten()}.
    *
    * @deprecated use {@link #getLinesWritten()}, {@link #incrementLinesWritten()}, or {@link #decrementLinesWritten()}
    */
@@ -184,7 +205,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   public long linesWritten;
 
   /**
-   * nr of lines read from file or database
+   * nr of lines read from file or database. Values assigned to this field are added to {@link #getLinesInput()}.
    *
    * @deprecated use {@link #getLinesInput()} or {@link #incrementLinesInput()}
    */
@@ -192,7 +213,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   public long linesInput;
 
   /**
-   * nr of lines written to file or database
+   * nr of lines written to file or database. Values assigned to this field are added to {@link #getLinesOutput()}.
    *
    * @deprecated use {@link #getLinesOutput()} or {@link #incrementLinesOutput()}
    */
@@ -200,7 +221,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   public long linesOutput;
 
   /**
-   * nr of updates in a database table or file
+   * nr of updates in a database table or file. Values assigned to this field are added to {@link #getLinesUpdated()}.
    *
    * @deprecated use {@link #getLinesUpdated()} or {@link #incrementLinesUpdated()}
    */
@@ -208,7 +229,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   public long linesUpdated;
 
   /**
-   * nr of lines skipped
+   * nr of lines skipped. Values assigned to this field are added to {@link #getLinesSkipped()}.
    *
    * @deprecated use {@link #getLinesSkipped()} or {@link #incrementLinesSkipped()}
    */
@@ -216,7 +237,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   public long linesSkipped;
 
   /**
-   * total sleep time in ns caused by an empty input buffer (previous step is slow)
+   * nr of lines rejected. Values assigned to this field are added to {@link #getLinesRejected()}.
    *
    * @deprecated use {@link #getLinesRejected()} or {@link #incrementLinesRejected()}
    */
@@ -338,6 +359,22 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
   private RowMetaInterface inputRowMeta;
 
+  /**
+   * Hand out a read-only copy of the input row metadata, see {@link Const#KETTLE_FROZEN_ROW_META}
+   */
+  private boolean freezingInputRowMeta;
+
+  /**
+   * The last row set metadata that was frozen and its frozen copy
+   */
+  private RowMetaInterface unfrozenInputRowMeta;
+  private RowMetaInterface frozenInputRowMeta;
+
+  /**
+   * Hand the same row to the sharing output row sets when copying rows, see {@link Const#KETTLE_SHARE_COPIED_ROWS}
+   */
+  private boolean sharingCopiedRows;
+
   /**
    * step partitioning information of the NEXT step
    */
@@ -371,8 +408,18 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   private List<ServerSocket> serverSockets;
 
+  /**
+   * The consumers of the memory budget of the transformation registered by this step, closed on dispose.
+   */
+  private List<TransMemoryManager.Consumer> memoryConsumers;
+
   private static int NR_OF_ROWS_IN_BLOCK = 500;
 
+  /**
+   * The default number of rows batch-aware steps ask for in {@link #getRowBatch(int)}.
+   */
+  public static final int ROW_BATCH_SIZE = 500;
+
   private int blockPointer;
 
   /**
@@ -486,16 +533,6 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
     init = false;
 
-    synchronized ( statusCountersLock ) {
-      linesRead = 0L; // new AtomicLong(0L); // Keep some statistics!
-      linesWritten = 0L; // new AtomicLong(0L);
-      linesUpdated = 0L; // new AtomicLong(0L);
-      linesSkipped = 0L; // new AtomicLong(0L);
-      linesRejected = 0L; // new AtomicLong(0L);
-      linesInput = 0L; // new AtomicLong(0L);
-      linesOutput = 0L; // new AtomicLong(0L);
-    }
-
     inputRowSets = null;
     outputRowSets = null;
     nextSteps = null;
@@ -541,6 +578,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
     serverSockets = new ArrayList<ServerSocket>();
 
+    memoryConsumers = new ArrayList<TransMemoryManager.Consumer>();
+
     extensionDataMap = new HashMap<String, Object>();
 
     // tuning parameters
@@ -678,6 +717,20 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     allowEmptyFieldNamesAndTypes = Boolean.parseBoolean( System.getProperties().getProperty(
       Const.KETTLE_ALLOW_EMPTY_FIELD_NAMES_AND_TYPES, "false" ) );
 
+    freezingInputRowMeta = "Y".equalsIgnoreCase( System.getProperty( Const.KETTLE_FROZEN_ROW_META, "N" ) );
+    if ( "Y".equalsIgnoreCase( System.getProperty( Const.KETTLE_SHARE_COPIED_ROWS, "N" ) ) && !distributed
+      && repartitioning == StepPartitioningMeta.PARTITIONING_METHOD_NONE && outputRowSets.size() > 1 ) {
+      // Mark the hops to the steps that leave their rows alone before any rows are sent
+      //
+      for ( RowSet rs : outputRowSets ) {
+        StepMeta target = transMeta.findStep( rs.getDestinationStepName() );
+        if ( target != null && keepsRowsUnchanged( target, new HashSet<StepMeta>() ) ) {
+          rs.setSharingRows( true );
+          sharingCopiedRows |= rs.isSharingRows();
+        }
+      }
+    }
+
     // Now that these things have been done, we also need to start a number of server sockets.
     // One for each of the remote output steps that we're going to write to.
     //
@@ -818,9 +871,34 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    for ( TransMemoryManager.Consumer memoryConsumer : memoryConsumers ) {
+      memoryConsumer.close();
+    }
+    memoryConsumers.clear();
+
     sdi.setStatus( StepExecutionStatus.STATUS_DISPOSED );
   }
 
+  /**
+   * Register a consumer of the memory budget of the transformation for data this step keeps in memory. The consumer
+   * is closed when the step is disposed.
+   *
+   * @param spillPriority
+   *          the spill priority of the data, see {@link TransMemoryManager}
+   * @return the new consumer
+   */
+  protected TransMemoryManager.Consumer registerMemoryConsumer( int spillPriority ) {
+    TransMemoryManager memoryManager = trans == null ? null : trans.getMemoryManager();
+    if ( memoryManager == null ) {
+      // Not running in a prepared transformation: there is no budget to share
+      //
+      memoryManager = new TransMemoryManager( log, Long.MAX_VALUE );
+    }
+    TransMemoryManager.Consumer memoryConsumer = memoryManager.register( this, spillPriority );
+    memoryConsumers.add( memoryConsumer );
+    return memoryConsumer;
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -912,9 +990,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesRead() {
-    synchronized ( statusCountersLock ) {
-      return linesRead;
-    }
+    return linesReadCounter.sum() + linesRead;
   }
 
   /**
@@ -923,9 +999,17 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long incrementLinesRead() {
-    synchronized ( statusCountersLock ) {
-      return ++linesRead;
-    }
+    linesReadCounter.increment();
+    return linesReadCounter.sum() + linesRead;
+  }
+
+  /**
+   * Adds to the number of lines read from previous steps
+   *
+   * @param nrLines the number of lines to add
+   */
+  public void addLinesRead( long nrLines ) {
+    linesReadCounter.add( nrLines );
   }
 
   /**
@@ -934,18 +1018,16 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long decrementLinesRead() {
-    synchronized ( statusCountersLock ) {
-      return --linesRead;
-    }
+    linesReadCounter.decrement();
+    return linesReadCounter.sum() + linesRead;
   }
 
   /**
    * @param newLinesReadValue the new number of lines read from previous steps
    */
   public void setLinesRead( long newLinesReadValue ) {
-    synchronized ( statusCountersLock ) {
-      linesRead = newLinesReadValue;
-    }
+    linesReadCounter.reset();
+    linesRead = newLinesReadValue;
   }
 
   /**
@@ -953,9 +1035,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesInput() {
-    synchronized ( statusCountersLock ) {
-      return linesInput;
-    }
+    return linesInputCounter.sum() + linesInput;
   }
 
   /**
@@ -964,18 +1044,16 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesInput() {
-    synchronized ( statusCountersLock ) {
-      return ++linesInput;
-    }
+    linesInputCounter.increment();
+    return linesInputCounter.sum() + linesInput;
   }
 
   /**
    * @param newLinesInputValue the new number of lines read from an input source: database, file, socket, etc.
    */
   public void setLinesInput( long newLinesInputValue ) {
-    synchronized ( statusCountersLock ) {
-      linesInput = newLinesInputValue;
-    }
+    linesInputCounter.reset();
+    linesInput = newLinesInputValue;
   }
 
   /**
@@ -983,9 +1061,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesOutput() {
-    synchronized ( statusCountersLock ) {
-      return linesOutput;
-    }
+    return linesOutputCounter.sum() + linesOutput;
   }
 
   /**
@@ -994,18 +1070,16 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesOutput() {
-    synchronized ( statusCountersLock ) {
-      return ++linesOutput;
-    }
+    linesOutputCounter.increment();
+    return linesOutputCounter.sum() + linesOutput;
   }
 
   /**
    * @param newLinesOutputValue the new number of lines written to an output target: database, file, socket, etc.
    */
   public void setLinesOutput( long newLinesOutputValue ) {
-    synchronized ( statusCountersLock ) {
-      linesOutput = newLinesOutputValue;
-    }
+    linesOutputCounter.reset();
+    linesOutput = newLinesOutputValue;
   }
 
   /**
@@ -1013,9 +1087,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesWritten() {
-    synchronized ( statusCountersLock ) {
-      return linesWritten;
-    }
+    return linesWrittenCounter.sum() + linesWritten;
   }
 
   /**
@@ -1024,9 +1096,17 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long incrementLinesWritten() {
-    synchronized ( statusCountersLock ) {
-      return ++linesWritten;
-    }
+    linesWrittenCounter.increment();
+    return linesWrittenCounter.sum() + linesWritten;
+  }
+
+  /**
+   * Adds to the number of lines written to next steps
+   *
+   * @param nrLines the number of lines to add
+   */
+  public void addLinesWritten( long nrLines ) {
+    linesWrittenCounter.add( nrLines );
   }
 
   /**
@@ -1035,18 +1115,16 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long decrementLinesWritten() {
-    synchronized ( statusCountersLock ) {
-      return --linesWritten;
-    }
+    linesWrittenCounter.decrement();
+    return linesWrittenCounter.sum() + linesWritten;
   }
 
   /**
    * @param newLinesWrittenValue the new number of lines written to next steps
    */
   public void setLinesWritten( long newLinesWrittenValue ) {
-    synchronized ( statusCountersLock ) {
-      linesWritten = newLinesWrittenValue;
-    }
+    linesWrittenCounter.reset();
+    linesWritten = newLinesWrittenValue;
   }
 
   /**
@@ -1054,9 +1132,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesUpdated() {
-    synchronized ( statusCountersLock ) {
-      return linesUpdated;
-    }
+    return linesUpdatedCounter.sum() + linesUpdated;
   }
 
   /**
@@ -1065,18 +1141,16 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesUpdated() {
-    synchronized ( statusCountersLock ) {
-      return ++linesUpdated;
-    }
+    linesUpdatedCounter.increment();
+    return linesUpdatedCounter.sum() + linesUpdated;
   }
 
   /**
    * @param newLinesUpdatedValue the new number of lines updated in an output target: database, file, socket, etc.
    */
   public void setLinesUpdated( long newLinesUpdatedValue ) {
-    synchronized ( statusCountersLock ) {
-      linesUpdated = newLinesUpdatedValue;
-    }
+    linesUpdatedCounter.reset();
+    linesUpdated = newLinesUpdatedValue;
   }
 
   /**
@@ -1084,9 +1158,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesRejected() {
-    synchronized ( statusCountersLock ) {
-      return linesRejected;
-    }
+    return linesRejectedCounter.sum() + linesRejected;
   }
 
   /**
@@ -1095,9 +1167,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesRejected() {
-    synchronized ( statusCountersLock ) {
-      return ++linesRejected;
-    }
+    linesRejectedCounter.increment();
+    return linesRejectedCounter.sum() + linesRejected;
   }
 
   /**
@@ -1105,18 +1176,15 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public void setLinesRejected( long newLinesRejectedValue ) {
-    synchronized ( statusCountersLock ) {
-      linesRejected = newLinesRejectedValue;
-    }
+    linesRejectedCounter.reset();
+    linesRejected = newLinesRejectedValue;
   }
 
   /**
    * @return the number of lines skipped
    */
   public long getLinesSkipped() {
-    synchronized ( statusCountersLock ) {
-      return linesSkipped;
-    }
+    return linesSkippedCounter.sum() + linesSkipped;
   }
 
   /**
@@ -1125,18 +1193,40 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesSkipped() {
-    synchronized ( statusCountersLock ) {
-      return ++linesSkipped;
-    }
+    linesSkippedCounter.increment();
+    return linesSkippedCounter.sum() + linesSkipped;
   }
 
   /**
    * @param newLinesSkippedValue lines number of lines skipped
    */
   public void setLinesSkipped( long newLinesSkippedValue ) {
-    synchronized ( statusCountersLock ) {
-      linesSkipped = newLinesSkippedValue;
+    linesSkippedCounter.reset();
+    linesSkipped = newLinesSkippedValue;
+  }
+
+  /**
+   * Read all the line counters together. The counters are read until two reads in a row give the same values, so the
+   * snapshot doesn't mix values from before and after an update. If the step keeps updating the counters the last read
+   * is returned after a few attempts.
+   *
+   * @return a snapshot of the line counters of this step
+   */
+  public StepLineCounters getLineCounters() {
+    StepLineCounters snapshot = readLineCounters();
+    for ( int attempt = 1; attempt < LINE_COUNTERS_READ_ATTEMPTS; attempt++ ) {
+      StepLineCounters next = readLineCounters();
+      if ( next.equals( snapshot ) ) {
+        break;
+      }
+      snapshot = next;
     }
+    return snapshot;
+  }
+
+  private StepLineCounters readLineCounters() {
+    return new StepLineCounters( getLinesRead(), getLinesWritten(), getLinesInput(), getLinesOutput(),
+      getLinesUpdated(), getLinesRejected(), getLinesSkipped() );
   }
 
   /*
@@ -1252,6 +1342,11 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public void putRow( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
+    verifyOutputRowMeta( rowMeta );
+    getRowHandler().putRow( rowMeta, row );
+  }
+
+  private void verifyOutputRowMeta( RowMetaInterface rowMeta ) throws KettleStepException {
     if ( rowMeta != null ) {
       if ( !allowEmptyFieldNamesAndTypes ) {
         // check row meta for empty field name (BACKLOG-18004)
@@ -1265,7 +1360,93 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         }
       }
     }
-    getRowHandler().putRow( rowMeta, row );
+  }
+
+  /**
+   * putRowBatch puts the first nrRows rows of the given array to the destination rowset(s) in one go. It behaves like
+   * calling {@link #putRow(RowMetaInterface, Object[])} for each row, but the metadata and pause checks are only done
+   * once for the whole batch. Stopping the step is still checked before each row.
+   *
+   * @param rowMeta The row meta-data of the rows
+   * @param rows    The rows to put, only the first nrRows are used
+   * @param nrRows  The number of rows to put
+   * @throws KettleStepException
+   */
+  public void putRowBatch( RowMetaInterface rowMeta, Object[][] rows, int nrRows ) throws KettleStepException {
+    if ( nrRows <= 0 ) {
+      return;
+    }
+    verifyOutputRowMeta( rowMeta );
+    getRowHandler().putRowBatch( rowMeta, rows, nrRows );
+  }
+
+  private void handlePutRowBatch( RowMetaInterface rowMeta, Object[][] rows, int nrRows )
+    throws KettleStepException {
+    if ( repartitioning != StepPartitioningMeta.PARTITIONING_METHOD_NONE || terminator ) {
+      for ( int i = 0; i < nrRows; i++ ) {
+        handlePutRow( rowMeta, rows[ i ] );
+      }
+      return;
+    }
+
+    // Same checks as in handlePutRow(), but only once for the whole batch
+    //
+    while ( paused.get() && !stopped.get() ) {
+      try {
+        Thread.sleep( 1 );
+      } catch ( InterruptedException e ) {
+        throw new KettleStepException( e );
+      }
+    }
+    if ( stopped.get() && !safeStopped.get() ) {
+      if ( log.isDebug() ) {
+        logDebug( BaseMessages.getString( PKG, "BaseStep.Log.StopPuttingARow" ) );
+      }
+      stopAll();
+      return;
+    }
+    waitUntilTransformationIsStarted();
+
+    for ( RowListener listener : rowListeners ) {
+      for ( int i = 0; i < nrRows; i++ ) {
+        listener.rowWrittenEvent( rowMeta, rows[ i ] );
+      }
+    }
+
+    outputRowSetsLock.readLock().lock();
+    try {
+      if ( outputRowSets.isEmpty() ) {
+        linesWrittenCounter.add( nrRows );
+        return;
+      }
+
+      // The common case: one target without a row distribution plugin or thread priority management.
+      // Anything else goes through the same code as a single row.
+      //
+      RowSet rs = null;
+      if ( outputRowSets.size() == 1 && ( !distributed || rowDistribution == null )
+        && !isUsingThreadPriorityManagment() ) {
+        rs = outputRowSets.get( 0 );
+      }
+
+      for ( int i = 0; i < nrRows; i++ ) {
+        if ( stopped.get() && !safeStopped.get() ) {
+          if ( log.isDebug() ) {
+            logDebug( BaseMessages.getString( PKG, "BaseStep.Log.StopPuttingARow" ) );
+          }
+          stopAll();
+          return;
+        }
+        if ( rs != null ) {
+          putRowToRowSet( rs, rowMeta, rows[ i ] );
+          linesWrittenCounter.increment();
+        } else {
+          noPartitioning( rowMeta, rows[ i ] );
+        }
+      }
+    } finally {
+      outputRowSetsLock.readLock().unlock();
+    }
   }
 
   private void handlePutRow( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
@@ -1327,7 +1508,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         // No more output rowsets!
         // Still update the nr of lines written.
         //
-        incrementLinesWritten();
+        linesWrittenCounter.increment();
 
         return; // we're done here!
       }
@@ -1462,7 +1643,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       } else {
         // Wait
         putRowToRowSet( selectedRowSet, rowMeta, row );
-        incrementLinesWritten();
+        linesWrittenCounter.increment();
 
         if ( log.isRowLevel() ) {
           try {
@@ -1491,7 +1672,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
           // Wait
           putRowToRowSet( selectedRowSet, rowMeta, row );
-          incrementLinesWritten();
+          linesWrittenCounter.increment();
 
           if ( log.isRowLevel() ) {
             try {
@@ -1512,7 +1693,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         // Plugin defined row distribution!
         //
         rowDistribution.distributeRow( rowMeta, row, this );
-        incrementLinesWritten();
+        linesWrittenCounter.increment();
       } else {
         // ROUND ROBIN DISTRIBUTION:
         // --------------------------
@@ -1535,7 +1716,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         // Loop until we find room in the target rowset
         //
         putRowToRowSet( rs, rowMeta, row );
-        incrementLinesWritten();
+        linesWrittenCounter.increment();
 
         // Now determine the next output rowset!
         // Only if we have more then one output...
@@ -1551,6 +1732,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
       // Copy the row to all output rowsets
       //
+      // Sharing targets all get the row itself. The other targets each get a copy, they could change the row.
+      //
 
       // Copy to the row in the other output rowsets...
       for ( int i = 1; i < outputRowSets.size(); i++ ) { // start at 1
@@ -1571,8 +1754,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         try {
           // Loop until we find room in the target rowset
           //
-          putRowToRowSet( rs, rowMeta, rowMeta.cloneRow( row ) );
-          incrementLinesWritten();
+          putRowToRowSet( rs, rowMeta, sharingCopiedRows && rs.isSharingRows() ? row : rowMeta.cloneRow( row ) );
+          linesWrittenCounter.increment();
         } catch ( KettleValueException e ) {
           throw new KettleStepException( "Unable to clone row while copying rows to multiple target steps", e );
         }
@@ -1581,13 +1764,17 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       // set row in first output rowset
       //
       RowSet rs = outputRowSets.get( 0 );
-      putRowToRowSet( rs, rowMeta, row );
-      incrementLinesWritten();
+      try {
+        putRowToRowSet( rs, rowMeta, !sharingCopiedRows || rs.isSharingRows() ? row : rowMeta.cloneRow( row ) );
+      } catch ( KettleValueException e ) {
+        throw new KettleStepException( "Unable to clone row while copying rows to multiple target steps", e );
+      }
+      linesWrittenCounter.increment();
     }
   }
 
-  private void putRowToRowSet( RowSet rs, RowMetaInterface rowMeta, Object[] row ) {
-    RowMetaInterface toBeSent;
+  private void putRowToRowSet( final RowSet rs, RowMetaInterface rowMeta, final Object[] row ) {
+    final RowMetaInterface toBeSent;
     RowMetaInterface metaFromRs = rs.getRowMeta();
     if ( metaFromRs == null ) {
       // RowSet is not initialised so far
@@ -1597,6 +1784,19 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       toBeSent = metaFromRs;
     }
 
+    if ( ForkJoinTask.inForkJoinPool() ) {
+      waitInPool( new PoolBlocker() {
+        @Override boolean tryNow() {
+          return rs.putRowWait( toBeSent, row, 0, TimeUnit.MILLISECONDS ) || isStopped() && !safeStopped.get();
+        }
+
+        @Override boolean tryWait() {
+          return rs.putRowWait( toBeSent, row, 1, TimeUnit.MILLISECONDS ) || isStopped() && !safeStopped.get();
+        }
+      } );
+      return;
+    }
+
     while ( !rs.putRow( toBeSent, row ) ) {
       if ( isStopped() && !safeStopped.get() ) {
         return;
@@ -1658,7 +1858,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         break;
       }
     }
-    incrementLinesWritten();
+    linesWrittenCounter.increment();
   }
 
   /**
@@ -1717,7 +1917,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
           break;
         }
       }
-      incrementLinesRejected();
+      linesRejectedCounter.increment();
     }
 
     verifyRejectionRates();
@@ -1815,6 +2015,29 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     }
   }
 
+  /**
+   * A step keeps the rows it reads unchanged if it says so and all the steps it hands them to do as well.
+   *
+   * @param stepMeta
+   *          the step to check
+   * @param checked
+   *          the steps checked so far
+   * @return true if a row handed to the step is never changed, so that it can be shared with other steps
+   */
+  private boolean keepsRowsUnchanged( StepMeta stepMeta, Set<StepMeta> checked ) {
+    if ( !checked.add( stepMeta ) ) {
+      return true;
+    }
+    if ( stepMeta.getStepMetaInterface() == null || !stepMeta.getStepMetaInterface().keepsInputRowsUnchanged() ) {
+      return false;
+    }
+    for ( StepMeta nextStep : transMeta.findNextSteps( stepMeta ) ) {
+      if ( !keepsRowsUnchanged( nextStep, checked ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
 
   /**
    * In case of getRow, we receive data from previous steps through the input rowset. In case we split the stream, we
@@ -1825,6 +2048,141 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     return getRowHandler().getRow();
   }
 
+  /**
+   * Gets up to maxRows rows from the input rowsets. The first row is obtained with {@link #getRow()}, so this method
+   * waits just like getRow() does. The rest of the batch consists of the rows that are immediately available in the
+   * same input rowset, so a batch can hold fewer rows than asked for.
+   * <p>
+   * Batch-aware steps can use this method together with {@link #putRowBatch(RowMetaInterface, Object[][], int)} to
+   * pay the per-row locking and bookkeeping overhead once per batch. The previous and next steps don't need to be
+   * batch-aware themselves.
+   *
+   * @param maxRows the maximum number of rows to return
+   * @return the rows read (at least one) or null if there is no more input.
+   * @throws KettleException
+   */
+  public Object[][] getRowBatch( int maxRows ) throws KettleException {
+    if ( !( getRowHandler() instanceof DefaultRowHandler ) ) {
+      return getRowHandler().getRowBatch( maxRows );
+    }
+    Object[] row = getRow();
+    if ( row == null ) {
+      return null;
+    }
+    if ( maxRows <= 1 ) {
+      return new Object[][] { row };
+    }
+    return handleGetRowBatch( row, maxRows );
+  }
+
+  private Object[][] handleGetRowBatch( Object[] firstRow, int maxRows ) {
+    Object[][] batch = new Object[ maxRows ][];
+    batch[ 0 ] = firstRow;
+    int nrRows = 1;
+
+    inputRowSetsLock.readLock().lock();
+    try {
+      if ( inputRowSets != null && currentInputRowSetNr < inputRowSets.size() ) {
+        RowSet inputRowSet = inputRowSets.get( currentInputRowSetNr );
+        // Honor the block size when we need to alternate between several input row sets
+        //
+        int limit = inputRowSets.size() > 1 ? Math.min( maxRows, NR_OF_ROWS_IN_BLOCK - blockPointer + 1 ) : maxRows;
+        while ( nrRows < limit ) {
+          Object[] row = inputRowSet.getRowImmediate();
+          if ( row == null ) {
+            break;
+          }
+          batch[ nrRows++ ] = row;
+        }
+        blockPointer += nrRows - 1;
+      }
+    } finally {
+      inputRowSetsLock.readLock().unlock();
+    }
+
+    if ( nrRows > 1 ) {
+      linesReadCounter.add( nrRows - 1 );
+      for ( RowListener listener : rowListeners ) {
+        for ( int i = 1; i < nrRows; i++ ) {
+          listener.rowReadEvent( inputRowMeta, batch[ i ] );
+        }
+      }
+    }
+    return nrRows == maxRows ? batch : Arrays.copyOf( batch, nrRows );
+  }
+
+
+  /**
+   * Once a row has been read its layout is final: if enabled, give the step a frozen copy of the row metadata so the
+   * per-row lookups don't need to lock. The copy is only made again when the row set hands us different metadata.
+   */
+  private RowMetaInterface freezeInputRowMeta( RowMetaInterface rowMeta ) {
+    if ( !freezingInputRowMeta || rowMeta == null ) {
+      return rowMeta;
+    }
+    if ( rowMeta != unfrozenInputRowMeta ) {
+      unfrozenInputRowMeta = rowMeta;
+      frozenInputRowMeta = FrozenRowMeta.freeze( rowMeta );
+    }
+    return frozenInputRowMeta;
+  }
+
+  /**
+   * @return true if a row is waiting in one of the input row sets, an input row set is done or the step is stopped
+   */
+  private boolean isInputRowAvailable() {
+    if ( stopped.get() ) {
+      return true;
+    }
+    for ( RowSet rowSet : inputRowSets ) {
+      if ( rowSet.size() > 0 || rowSet.isDone() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Waits for another step when running as a task on a fork/join pool, see {@link RunTask}. The pool is told that the
+   * thread is blocked so it can keep the other steps going in the meantime.
+   */
+  private void waitInPool( PoolBlocker blocker ) {
+    try {
+      ForkJoinPool.managedBlock( blocker );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Something a step waits for on a pool thread
+   */
+  private abstract static class PoolBlocker implements ForkJoinPool.ManagedBlocker {
+    /**
+     * @return true if the step can go on
+     */
+    abstract boolean tryNow();
+
+    /**
+     * Wait a little while, by default for a millisecond.
+     *
+     * @return true if the step can go on
+     */
+    boolean tryWait() throws InterruptedException {
+      Thread.sleep( 1 );
+      return tryNow();
+    }
+
+    @Override
+    public boolean isReleasable() {
+      return tryNow();
+    }
+
+    @Override
+    public boolean block() throws InterruptedException {
+      return tryWait();
+    }
+  }
 
   private Object[] handleGetRow() throws KettleException {
 
@@ -1879,7 +2237,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
           row = inputRowSet.getRowImmediate();
         }
         if ( row != null ) {
-          incrementLinesRead();
+          linesReadCounter.increment();
         }
       } else {
         // What's the current input stream?
@@ -1912,13 +2270,21 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       // We can use timeouts to switch from one to another...
       //
       while ( row == null && !isStopped() ) {
+        if ( ForkJoinTask.inForkJoinPool() ) {
+          waitInPool( new PoolBlocker() {
+            @Override boolean tryNow() {
+              return isInputRowAvailable();
+            }
+          } );
+        }
+
         // Get a row from the input in row set ...
         // Timeout immediately if nothing is there to read.
         // We will then switch to the next row set to read from...
         //
         row = inputRowSet.getRowWait( 1, TimeUnit.MILLISECONDS );
         if ( row != null ) {
-          incrementLinesRead();
+          linesReadCounter.increment();
           blockPointer++;
         } else {
           // Try once more...
@@ -1949,7 +2315,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
                 inputRowSetsLock.writeLock().unlock();
               }
             } else {
-              incrementLinesRead();
+              linesReadCounter.increment();
             }
           }
           nextInputStream();
@@ -1980,7 +2346,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     // Also set the meta data on the first occurrence.
     // or if prevSteps.length > 1 inputRowMeta can be changed
     if ( inputRowMeta == null || prevSteps.length > 1 ) {
-      inputRowMeta = inputRowSet.getRowMeta();
+      inputRowMeta = freezeInputRowMeta( inputRowSet.getRowMeta() );
     }
 
     if ( row != null ) {
@@ -2252,6 +2618,14 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       }
     }
 
+    if ( ForkJoinTask.inForkJoinPool() ) {
+      waitInPool( new PoolBlocker() {
+        @Override boolean tryNow() {
+          return rowSet.size() > 0 || rowSet.isDone() || stopped.get();
+        }
+      } );
+    }
+
     // Grab a row... If nothing received after a timeout, try again.
     //
     rowData = rowSet.getRow();
@@ -2316,7 +2690,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         }
       }
     }
-    incrementLinesRead();
+    linesReadCounter.increment();
 
     // call all rowlisteners...
     //
@@ -3384,22 +3758,20 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * Log summary.
    */
   public void logSummary() {
-    synchronized ( statusCountersLock ) {
-      long li = getLinesInput();
-      long lo = getLinesOutput();
-      long lr = getLinesRead();
-      long lw = getLinesWritten();
-      long lu = getLinesUpdated();
-      long lj = getLinesRejected();
-      if ( li > 0 || lo > 0 || lr > 0 || lw > 0 || lu > 0 || lj > 0 || errors > 0 ) {
-        logBasic( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
-          .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
-          .valueOf( errors + lj ) ) );
-      } else {
-        logDetailed( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
-          .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
-          .valueOf( errors + lj ) ) );
-      }
+    long li = getLinesInput();
+    long lo = getLinesOutput();
+    long lr = getLinesRead();
+    long lw = getLinesWritten();
+    long lu = getLinesUpdated();
+    long lj = getLinesRejected();
+    if ( li > 0 || lo > 0 || lr > 0 || lw > 0 || lu > 0 || lj > 0 || errors > 0 ) {
+      logBasic( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
+        .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
+        .valueOf( errors + lj ) ) );
+    } else {
+      logDetailed( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
+        .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
+        .valueOf( errors + lj ) ) );
     }
   }
 
@@ -3461,11 +3833,11 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     inputRowSetsLock.writeLock().lock();
     try {
       for ( int i = 0; i < inputRowSets.size(); i++ ) {
-        BlockingRowSet rs = (BlockingRowSet) inputRowSets.get( i );
+        RowSet rs = inputRowSets.get( i );
         if ( rs.getOriginStepName().equalsIgnoreCase( stepName ) ) {
           // swap this one and position 0...that means, the main stream is always stream 0 --> easy!
           //
-          BlockingRowSet zero = (BlockingRowSet) inputRowSets.get( 0 );
+          RowSet zero = inputRowSets.get( 0 );
           inputRowSets.set( 0, rs );
           inputRowSets.set( i, zero );
         }
@@ -3734,6 +4106,21 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       && ( lines % getTransMeta().getFeedbackSize() ) == 0;
   }
 
+  /**
+   * Same as {@link #checkFeedback(long)} for steps that process rows in batches: checks whether a feedback line was
+   * passed going from linesBefore to linesAfter.
+   *
+   * @param linesBefore the number of lines before the batch was processed
+   * @param linesAfter  the number of lines after the batch was processed
+   * @return true if feedback should be logged
+   */
+  protected boolean checkFeedback( long linesBefore, long linesAfter ) {
+    int feedbackSize = getTransMeta().getFeedbackSize();
+    return getTransMeta().isFeedbackShown()
+      && ( linesAfter > 0 ) && ( feedbackSize > 0 )
+      && ( linesAfter / feedbackSize ) > ( linesBefore / feedbackSize );
+  }
+
   /**
    * @return the rowMeta
    */
@@ -4387,6 +4774,11 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       handlePutRow( rowMeta, row );
     }
 
+    @Override public void putRowBatch( RowMetaInterface rowMeta, Object[][] rows, int nrRows )
+      throws KettleStepException {
+      handlePutRowBatch( rowMeta, rows, nrRows );
+    }
+
     @Override public void putError( RowMetaInterface rowMeta, Object[] row, long nrErrors, String errorDescriptions,
                                     String fieldNames, String errorCodes ) throws KettleStepException {
       handlePutError( rowMeta, row, nrErrors, errorDescriptions, fieldNames, errorCodes );
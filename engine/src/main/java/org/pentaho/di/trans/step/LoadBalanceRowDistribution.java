@@ -0,0 +1,223 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.gui.PrimitiveGCInterface.EImage;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.logging.Metrics;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.Trans;
+
+/**
+ * Distributes rows over the target step copies based on their load instead of round robin. A slow copy (a database
+ * lookup hitting cold keys for example) then gets fewer rows rather than stalling the whole stream once its row set is
+ * full.
+ * <p>
+ * Rows are sent in chunks of {@link #ROWS_PER_CHUNK} rows to the same target to keep the caches of the target warm.
+ * For every chunk the target is picked that is expected to be done the soonest with the rows it already has waiting
+ * plus the new chunk, based on how full its row set is and how fast it consumed rows recently. A chunk ends early when
+ * the target row set fills up.
+ * <p>
+ * When metrics are gathered the number of rows sent to each target ({@link Metrics#METRIC_STEP_LOAD_BALANCE_ROWS}) and
+ * the number of times each target was picked ({@link Metrics#METRIC_STEP_LOAD_BALANCE_CHUNKS}) are recorded on the
+ * log channel of the distributing step.
+ *
+ * @since 9.0
+ */
+@RowDistributionPlugin( code = LoadBalanceRowDistribution.CODE, name = "Load balance",
+  description = "Send rows to the least busy target step copy" )
+public class LoadBalanceRowDistribution implements RowDistributionInterface {
+  public static final String CODE = "LoadBalance";
+
+  /**
+   * The number of consecutive rows sent to the same target
+   */
+  public static final int ROWS_PER_CHUNK = 100;
+
+  /**
+   * The weight of the latest measurement in the consumption rate of a target
+   */
+  private static final double RATE_WEIGHT = 0.3;
+
+  /**
+   * The time to wait for room in a full target before checking whether the step was stopped
+   */
+  private static final long PUT_WAIT_MILLIS = 100L;
+
+  /**
+   * The state of the distribution for each copy of the step, this plugin is shared by all of them
+   */
+  private final Map<StepInterface, Balancer> balancers = new ConcurrentHashMap<>();
+
+  @Override
+  public String getCode() {
+    return CODE;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Load balance";
+  }
+
+  @Override
+  public void distributeRow( RowMetaInterface rowMeta, Object[] row, StepInterface stepInterface )
+    throws KettleStepException {
+    Balancer balancer = balancers.get( stepInterface );
+    if ( balancer == null ) {
+      balancer = createBalancer( stepInterface );
+    }
+    balancer.putRow( rowMeta, row );
+  }
+
+  private Balancer createBalancer( final StepInterface stepInterface ) {
+    final Balancer balancer = new Balancer( stepInterface );
+    balancers.put( stepInterface, balancer );
+    stepInterface.addStepListener( new StepAdapter() {
+      @Override
+      public void stepFinished( Trans trans, StepMeta stepMeta, StepInterface step ) {
+        balancer.endChunk();
+        balancers.remove( stepInterface );
+      }
+    } );
+    return balancer;
+  }
+
+  @Override
+  public EImage getDistributionImage() {
+    return EImage.LOAD_BALANCE;
+  }
+
+  /**
+   * Picks the targets for a single step copy. It is only used by the thread running that copy.
+   */
+  static class Balancer {
+    private final StepInterface step;
+    private final LogChannelInterface log;
+    private final RowSet[] targets;
+
+    private final int[] lastSize;
+    private final long[] sent;
+    private final double[] rate;
+    private long lastNanos;
+
+    private int current = -1;
+    private int chunkRows;
+
+    Balancer( StepInterface step ) {
+      this.step = step;
+      this.log = step.getLogChannel();
+      List<RowSet> outputRowSets = step.getOutputRowSets();
+      targets = outputRowSets.toArray( new RowSet[ outputRowSets.size() ] );
+      lastSize = new int[ targets.length ];
+      sent = new long[ targets.length ];
+      rate = new double[ targets.length ];
+      lastNanos = System.nanoTime();
+    }
+
+    void putRow( RowMetaInterface rowMeta, Object[] row ) {
+      if ( current < 0 || chunkRows >= ROWS_PER_CHUNK ) {
+        pickTarget();
+      }
+
+      RowSet rowSet = targets[ current ];
+      RowMetaInterface toBeSent = rowSet.getRowMeta() == null ? rowMeta.clone() : rowSet.getRowMeta();
+      if ( !rowSet.putRowWait( toBeSent, row, 0, TimeUnit.MILLISECONDS ) ) {
+        // The target is full: see if another one has room, otherwise wait for the best one
+        //
+        pickTarget();
+        rowSet = targets[ current ];
+        toBeSent = rowSet.getRowMeta() == null ? rowMeta.clone() : rowSet.getRowMeta();
+        while ( !rowSet.putRowWait( toBeSent, row, PUT_WAIT_MILLIS, TimeUnit.MILLISECONDS ) ) {
+          // A safe stop lets the rows already read go through
+          if ( step.isStopped() && !step.isSafeStopped() ) {
+            return;
+          }
+        }
+      }
+      sent[ current ]++;
+      chunkRows++;
+    }
+
+    /**
+     * Update the consumption rate of all targets and pick the one that is expected to be done the soonest.
+     */
+    void pickTarget() {
+      endChunk();
+
+      long now = System.nanoTime();
+      double elapsed = Math.max( 1L, now - lastNanos );
+      lastNanos = now;
+
+      int best = -1;
+      double bestCost = Double.MAX_VALUE;
+      for ( int n = 0; n < targets.length; n++ ) {
+        // Start after the current target so ties are broken round robin
+        //
+        int i = ( current + 1 + n ) % targets.length;
+        int size = targets[ i ].size();
+
+        long consumed = Math.max( 0L, lastSize[ i ] + sent[ i ] - size );
+        rate[ i ] = RATE_WEIGHT * ( consumed / elapsed ) + ( 1.0 - RATE_WEIGHT ) * rate[ i ];
+        lastSize[ i ] = size;
+        sent[ i ] = 0;
+
+        // Time needed to work through the waiting rows and a new chunk, targets that never consumed anything yet are
+        // simply compared on the number of waiting rows.
+        //
+        double cost = ( size + ROWS_PER_CHUNK ) / ( rate[ i ] + Double.MIN_NORMAL );
+        if ( cost < bestCost ) {
+          bestCost = cost;
+          best = i;
+        }
+      }
+      current = best;
+      log.snap( Metrics.METRIC_STEP_LOAD_BALANCE_CHUNKS, getSubject( current ) );
+    }
+
+    /**
+     * Record the rows sent in the current chunk
+     */
+    void endChunk() {
+      if ( current >= 0 && chunkRows > 0 ) {
+        log.snap( Metrics.METRIC_STEP_LOAD_BALANCE_ROWS, getSubject( current ), chunkRows );
+      }
+      chunkRows = 0;
+    }
+
+    int getCurrent() {
+      return current;
+    }
+
+    private String getSubject( int target ) {
+      RowSet rowSet = targets[ target ];
+      return rowSet.getDestinationStepName() + "." + rowSet.getDestinationStepCopy();
+    }
+  }
+}
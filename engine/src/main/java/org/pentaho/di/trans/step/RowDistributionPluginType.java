@@ -23,6 +23,7 @@
 package org.pentaho.di.trans.step;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Map;
 
 import org.pentaho.di.core.exception.KettlePluginException;
@@ -58,7 +59,9 @@ public class RowDistributionPluginType extends BasePluginType implements PluginT
    * Scan & register internal row distribution plugins
    */
   protected void registerNatives() throws KettlePluginException {
-    // None at this moment
+    handlePluginAnnotation( LoadBalanceRowDistribution.class,
+      LoadBalanceRowDistribution.class.getAnnotation( RowDistributionPlugin.class ), new ArrayList<String>(), true,
+      null );
   }
 
   protected void registerXmlPlugins() throws KettlePluginException {
@@ -52,6 +52,25 @@ public interface RowHandler {
   void putError( RowMetaInterface rowMeta, Object[] row, long nrErrors, String errorDescriptions,
                  String fieldNames, String errorCodes ) throws KettleStepException;
 
+  /**
+   * Gets up to maxRows rows at once. The default implementation falls back to a single {@link #getRow()}.
+   *
+   * @return the rows read, at least one, or null if there is no more input.
+   */
+  default Object[][] getRowBatch( int maxRows ) throws KettleException {
+    Object[] row = getRow();
+    return row == null ? null : new Object[][] { row };
+  }
+
+  /**
+   * Puts the first nrRows rows of the given array. The default implementation calls {@link #putRow} for each row.
+   */
+  default void putRowBatch( RowMetaInterface rowMeta, Object[][] rows, int nrRows ) throws KettleStepException {
+    for ( int i = 0; i < nrRows; i++ ) {
+      putRow( rowMeta, rows[ i ] );
+    }
+  }
+
   default void putRowTo( RowMetaInterface rowMeta, Object[] row, RowSet rowSet )
     throws KettleStepException {
     throw new UnsupportedOperationException(
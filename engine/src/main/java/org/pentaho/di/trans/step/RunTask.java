@@ -0,0 +1,164 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.trans.TransMeta.TransformationType;
+
+/**
+ * Runs a step copy as a cooperative task on a {@link StepExecutorPool} rather than on a thread of its own.
+ * <p>
+ * Each turn the task calls processRow() as long as the step has rows waiting on input (or no input at all) and room
+ * on all of its outputs, up to {@link #ROWS_PER_TURN} times. The task is then handed back to the pool: right away if
+ * the step got some work done, otherwise after a delay that grows while the step remains idle. This is the
+ * multi-threaded equivalent of what the SingleThreadedTransExecutor does, so only steps that support the SingleThreaded
+ * transformation type are run this way. Other steps keep getting a {@link RunThread}.
+ *
+ * @since 9.0
+ */
+public class RunTask extends RunThread {
+
+  /**
+   * The maximum number of processRow() calls before the step gives the other steps a turn
+   */
+  public static final int ROWS_PER_TURN = 1000;
+
+  private static final long MIN_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos( 50 );
+  private static final long MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos( 5 );
+
+  private final StepExecutorPool pool;
+
+  private boolean started;
+  private long delayNanos;
+
+  /**
+   * @param combi the step copy to run
+   * @param pool  the pool to run it on
+   */
+  public RunTask( StepMetaDataCombi combi, StepExecutorPool pool ) {
+    super( combi );
+    this.pool = pool;
+
+    // Don't let the step sleep on a pool thread
+    //
+    step.setUsingThreadPriorityManagment( false );
+  }
+
+  /**
+   * @param combi the step copy
+   * @return true if the step can be run as a task, meaning it supports being run by the single threaded engine
+   */
+  public static boolean canRunAsTask( StepMetaDataCombi combi ) {
+    TransformationType[] types = combi.meta.getSupportedTransformationTypes();
+    if ( types != null ) {
+      for ( TransformationType type : types ) {
+        if ( type == TransformationType.SingleThreaded ) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Start running the step on the pool.
+   */
+  public void start() {
+    pool.execute( this );
+  }
+
+  @Override
+  public void run() {
+    boolean finished = false;
+    try {
+      if ( !started ) {
+        started = true;
+        startRunning();
+      }
+
+      int nrCalls = 0;
+      while ( nrCalls < ROWS_PER_TURN && canProcessRow() ) {
+        nrCalls++;
+        if ( !step.processRow( meta, data ) || step.isStopped() ) {
+          finished = true;
+          break;
+        }
+      }
+
+      if ( !finished ) {
+        if ( nrCalls > 0 ) {
+          delayNanos = 0;
+          pool.execute( this );
+        } else {
+          delayNanos = delayNanos == 0 ? MIN_DELAY_NANOS : Math.min( delayNanos * 2, MAX_DELAY_NANOS );
+          pool.executeLater( this, delayNanos );
+        }
+      }
+    } catch ( Throwable t ) {
+      finished = true;
+      handleError( t );
+    } finally {
+      if ( finished ) {
+        stopRunning();
+      }
+    }
+  }
+
+  /**
+   * See if a call to processRow() can get work done without waiting for other steps.
+   *
+   * @return true if a row is waiting on input (or all input is done) and there is room on the output
+   */
+  protected boolean canProcessRow() {
+    if ( step.isStopped() ) {
+      // Let the step find out for itself
+      return true;
+    }
+    if ( step.isPaused() ) {
+      return false;
+    }
+
+    // Ask the row sets themselves, adaptive row sets change their capacity while running
+    //
+    List<RowSet> outputRowSets = step.getOutputRowSets();
+    for ( RowSet rowSet : outputRowSets ) {
+      if ( rowSet.remainingCapacity() <= 0 ) {
+        return false;
+      }
+    }
+
+    List<RowSet> inputRowSets = step.getInputRowSets();
+    if ( inputRowSets.isEmpty() ) {
+      return true;
+    }
+    for ( RowSet rowSet : inputRowSets ) {
+      if ( rowSet.size() > 0 || rowSet.isDone() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,116 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.variables.VariableSpace;
+
+/**
+ * A work-stealing pool, shared by all transformations in the JVM, on which step copies run as {@link RunTask}s instead
+ * of each having a thread of its own. The size of the pool defaults to the number of processors and can be set with
+ * {@link Const#KETTLE_STEP_EXECUTOR_POOL_SIZE}. As the pool is shared, the size is taken from the variables of the
+ * transformation that creates it.
+ *
+ * @since 9.0
+ */
+public class StepExecutorPool {
+  public static final String SIMPLE_NAME = StepExecutorPool.class.getSimpleName();
+
+  private static StepExecutorPool instance;
+
+  private final ForkJoinPool pool;
+  private final ScheduledExecutorService timer;
+
+  StepExecutorPool( int parallelism ) {
+    pool = new ForkJoinPool( parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+      @Override public ForkJoinWorkerThread newThread( ForkJoinPool forkJoinPool ) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread( forkJoinPool );
+        thread.setName( SIMPLE_NAME + " worker " + thread.getPoolIndex() );
+        return thread;
+      }
+    }, null, true );
+
+    // Steps that can't do anything right now are handed back to the pool a little later
+    //
+    timer = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+      @Override public Thread newThread( Runnable r ) {
+        Thread thread = Executors.defaultThreadFactory().newThread( r );
+        thread.setDaemon( true );
+        thread.setName( SIMPLE_NAME + " timer" );
+        return thread;
+      }
+    } );
+  }
+
+  /**
+   * @param space the variables of the transformation asking for the pool, used to size the pool when it is created
+   * @return the pool shared by all transformations
+   */
+  public static synchronized StepExecutorPool getInstance( VariableSpace space ) {
+    if ( instance == null ) {
+      int parallelism = Const.toInt( space.getVariable( Const.KETTLE_STEP_EXECUTOR_POOL_SIZE ), 0 );
+      if ( parallelism <= 0 ) {
+        parallelism = Runtime.getRuntime().availableProcessors();
+      }
+      instance = new StepExecutorPool( parallelism );
+    }
+    return instance;
+  }
+
+  /**
+   * Run the task on the pool as soon as possible.
+   *
+   * @param task the task to run
+   */
+  public void execute( Runnable task ) {
+    pool.execute( task );
+  }
+
+  /**
+   * Run the task on the pool after the given delay.
+   *
+   * @param task       the task to run
+   * @param delayNanos the delay in nanoseconds
+   */
+  public void executeLater( final Runnable task, long delayNanos ) {
+    timer.schedule( new Runnable() {
+      @Override public void run() {
+        pool.execute( task );
+      }
+    }, delayNanos, TimeUnit.NANOSECONDS );
+  }
+
+  /**
+   * @return the number of threads the pool tries to keep busy
+   */
+  public int getParallelism() {
+    return pool.getParallelism();
+  }
+}
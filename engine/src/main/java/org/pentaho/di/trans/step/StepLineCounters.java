@@ -0,0 +1,130 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+/**
+ * An immutable snapshot of the line counters of a step, see {@link BaseStep#getLineCounters()}.
+ *
+ * @since 9.0
+ */
+public class StepLineCounters {
+  private final long linesRead;
+  private final long linesWritten;
+  private final long linesInput;
+  private final long linesOutput;
+  private final long linesUpdated;
+  private final long linesRejected;
+  private final long linesSkipped;
+
+  public StepLineCounters( long linesRead, long linesWritten, long linesInput, long linesOutput, long linesUpdated,
+    long linesRejected, long linesSkipped ) {
+    this.linesRead = linesRead;
+    this.linesWritten = linesWritten;
+    this.linesInput = linesInput;
+    this.linesOutput = linesOutput;
+    this.linesUpdated = linesUpdated;
+    this.linesRejected = linesRejected;
+    this.linesSkipped = linesSkipped;
+  }
+
+  /**
+   * @return the number of lines read from previous steps
+   */
+  public long getLinesRead() {
+    return linesRead;
+  }
+
+  /**
+   * @return the number of lines written to next steps
+   */
+  public long getLinesWritten() {
+    return linesWritten;
+  }
+
+  /**
+   * @return the number of lines read from an input source: database, file, socket, etc.
+   */
+  public long getLinesInput() {
+    return linesInput;
+  }
+
+  /**
+   * @return the number of lines written to an output target: database, file, socket, etc.
+   */
+  public long getLinesOutput() {
+    return linesOutput;
+  }
+
+  /**
+   * @return the number of lines updated in an output target: database, file, socket, etc.
+   */
+  public long getLinesUpdated() {
+    return linesUpdated;
+  }
+
+  /**
+   * @return the number of lines rejected to an error handling step
+   */
+  public long getLinesRejected() {
+    return linesRejected;
+  }
+
+  /**
+   * @return the number of lines skipped
+   */
+  public long getLinesSkipped() {
+    return linesSkipped;
+  }
+
+  @Override
+  public boolean equals( Object obj ) {
+    if ( this == obj ) {
+      return true;
+    }
+    if ( !( obj instanceof StepLineCounters ) ) {
+      return false;
+    }
+    StepLineCounters other = (StepLineCounters) obj;
+    return linesRead == other.linesRead && linesWritten == other.linesWritten && linesInput == other.linesInput
+      && linesOutput == other.linesOutput && linesUpdated == other.linesUpdated
+      && linesRejected == other.linesRejected && linesSkipped == other.linesSkipped;
+  }
+
+  @Override
+  public int hashCode() {
+    long hash = linesRead;
+    hash = 31 * hash + linesWritten;
+    hash = 31 * hash + linesInput;
+    hash = 31 * hash + linesOutput;
+    hash = 31 * hash + linesUpdated;
+    hash = 31 * hash + linesRejected;
+    hash = 31 * hash + linesSkipped;
+    return (int) ( hash ^ ( hash >>> 32 ) );
+  }
+
+  @Override
+  public String toString() {
+    return "I=" + linesInput + ", O=" + linesOutput + ", R=" + linesRead + ", W=" + linesWritten + ", U="
+      + linesUpdated + ", E=" + linesRejected + ", S=" + linesSkipped;
+  }
+}
@@ -731,4 +731,15 @@ public interface StepMetaInterface {
   default boolean passDataToServletOutput() {
     return false;
   }
+
+  /**
+   * True if the step never changes the rows it reads: it neither changes their values nor adds values to them in
+   * place. A step that copies its rows to several steps can hand such a step the same row as the others, see
+   * {@link org.pentaho.di.core.Const#KETTLE_SHARE_COPIED_ROWS}.
+   *
+   * @return True if the step keeps its input rows unchanged, false otherwise
+   */
+  default boolean keepsInputRowsUnchanged() {
+    return false;
+  }
 }
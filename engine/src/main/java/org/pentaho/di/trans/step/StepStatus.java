@@ -37,6 +37,8 @@ import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
@@ -61,10 +63,12 @@ public class StepStatus {
   private boolean stopped;
   private boolean paused;
   private long accumlatedRuntime;
+  private long memoryReserved;
 
   private RowMetaInterface sampleRowMeta;
   private List<Object[]> sampleRows;
   private final DecimalFormat speedDf = new DecimalFormat( "#,###,###,###,##0" );
+  private final DecimalFormat memoryDf = new DecimalFormat( "#,###,###,##0.0" );
 
   public StepStatus() {
     sampleRows = Collections.synchronizedList( new LinkedList<Object[]>() );
@@ -79,12 +83,24 @@ public class StepStatus {
 
     this.stepname = baseStep.getStepname();
     this.copy = baseStep.getCopy();
-    this.linesRead = linesRead + baseStep.getLinesRead();
-    this.linesWritten = linesWritten + baseStep.getLinesWritten();
-    this.linesInput = linesInput + baseStep.getLinesInput();
-    this.linesOutput = linesOutput + baseStep.getLinesOutput();
-    this.linesUpdated = linesUpdated + baseStep.getLinesUpdated();
-    this.linesRejected = linesRejected + baseStep.getLinesRejected();
+    if ( baseStep instanceof BaseStep ) {
+      // Read the counters together so the speeds below are based on the same moment
+      //
+      StepLineCounters counters = ( (BaseStep) baseStep ).getLineCounters();
+      this.linesRead = linesRead + counters.getLinesRead();
+      this.linesWritten = linesWritten + counters.getLinesWritten();
+      this.linesInput = linesInput + counters.getLinesInput();
+      this.linesOutput = linesOutput + counters.getLinesOutput();
+      this.linesUpdated = linesUpdated + counters.getLinesUpdated();
+      this.linesRejected = linesRejected + counters.getLinesRejected();
+    } else {
+      this.linesRead = linesRead + baseStep.getLinesRead();
+      this.linesWritten = linesWritten + baseStep.getLinesWritten();
+      this.linesInput = linesInput + baseStep.getLinesInput();
+      this.linesOutput = linesOutput + baseStep.getLinesOutput();
+      this.linesUpdated = linesUpdated + baseStep.getLinesUpdated();
+      this.linesRejected = linesRejected + baseStep.getLinesRejected();
+    }
     this.errors = errors + baseStep.getErrors();
     this.accumlatedRuntime = accumlatedRuntime + baseStep.getRuntime();
     this.statusDescription = baseStep.getStatus().getDescription();
@@ -109,6 +125,12 @@ public class StepStatus {
       baseStep.isRunning() ? "   " + baseStep.rowsetInputSize() + "/" + baseStep.rowsetOutputSize() : "-";
     this.stopped = baseStep.isStopped();
     this.paused = baseStep.isPaused();
+
+    Trans trans = baseStep.getTrans();
+    TransMemoryManager memoryManager = trans == null ? null : trans.getMemoryManager();
+    if ( memoryManager != null ) {
+      this.memoryReserved = memoryReserved + memoryManager.getReserved( baseStep );
+    }
   }
 
   public String getHTMLTableRow( boolean urlInStepname ) {
@@ -141,6 +163,7 @@ public class StepStatus {
       xml.append( XMLHandler.addTagValue( "priority", priority, false ) );
       xml.append( XMLHandler.addTagValue( "stopped", stopped, false ) );
       xml.append( XMLHandler.addTagValue( "paused", paused, false ) );
+      xml.append( XMLHandler.addTagValue( "memoryReserved", memoryReserved, false ) );
 
       if ( sampleRowMeta != null ) {
         xml.append( XMLHandler.openTag( "samples" ) );
@@ -182,6 +205,7 @@ public class StepStatus {
     priority = XMLHandler.getTagValue( node, "priority" );
     stopped = "Y".equalsIgnoreCase( XMLHandler.getTagValue( node, "stopped" ) );
     paused = "Y".equalsIgnoreCase( XMLHandler.getTagValue( node, "paused" ) );
+    memoryReserved = Const.toLong( XMLHandler.getTagValue( node, "memoryReserved" ), 0L );
 
     Node samplesNode = XMLHandler.getSubNode( node, "samples" );
     if ( samplesNode != null ) {
@@ -214,11 +238,18 @@ public class StepStatus {
         stepname, Integer.toString( copy ), Long.toString( linesRead ), Long.toString( linesWritten ),
         Long.toString( linesInput ), Long.toString( linesOutput ), Long.toString( linesUpdated ),
         Long.toString( linesRejected ), Long.toString( errors ), overrideDescription, convertSeconds( seconds ),
-        speed, priority, };
+        speed, priority, convertMemory( memoryReserved ), };
 
     return fields;
   }
 
+  private String convertMemory( long bytes ) {
+    if ( bytes <= 0 ) {
+      return "-";
+    }
+    return memoryDf.format( bytes / ( 1024.0 * 1024.0 ) ) + " MB";
+  }
+
   private String convertSeconds( double seconds ) {
     String retval = seconds + "s";
 
@@ -247,7 +278,8 @@ public class StepStatus {
 
   public String[] getSpoonSlaveLogFields() {
     String[] fields = getTransLogFields();
-    String[] retval = new String[fields.length - 1];
+    // Skip the row number and leave out the reserved memory, the slave server tree has no column for it
+    String[] retval = new String[fields.length - 2];
     for ( int i = 0; i < retval.length; i++ ) {
       retval[i] = fields[i + 1];
     }
@@ -508,4 +540,19 @@ public class StepStatus {
     this.sampleRows = sampleRows;
   }
 
+  /**
+   * @return the number of bytes the step reserved from the memory budget of the transformation
+   */
+  public long getMemoryReserved() {
+    return memoryReserved;
+  }
+
+  /**
+   * @param memoryReserved
+   *          the number of bytes the step reserved from the memory budget of the transformation
+   */
+  public void setMemoryReserved( long memoryReserved ) {
+    this.memoryReserved = memoryReserved;
+  }
+
 }
@@ -220,10 +220,9 @@ public class Constant extends BaseStep implements StepInterface {
 
   @Override
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
-    Object[] r = null;
-    r = getRow();
+    Object[][] rows = getRowBatch( ROW_BATCH_SIZE );
 
-    if ( r == null ) { // no more rows to be expected from the previous step(s)
+    if ( rows == null ) { // no more rows to be expected from the previous step(s)
       setOutputDone();
       return false;
     }
@@ -239,17 +238,23 @@ public class Constant extends BaseStep implements StepInterface {
       data.outputMeta.mergeRowMeta( constants );
     }
 
-    // Add the constant data to the end of the row.
-    r = RowDataUtil.addRowData( r, getInputRowMeta().size(), data.constants.getData() );
+    // Add the constant data to the end of the rows.
+    int inputSize = getInputRowMeta().size();
+    for ( int i = 0; i < rows.length; i++ ) {
+      rows[i] = RowDataUtil.addRowData( rows[i], inputSize, data.constants.getData() );
+    }
 
-    putRow( data.outputMeta, r );
+    long linesWrittenBefore = getLinesWritten();
+    putRowBatch( data.outputMeta, rows, rows.length );
 
     if ( log.isRowLevel() ) {
-      logRowlevel( BaseMessages.getString(
-        PKG, "Constant.Log.Wrote.Row", Long.toString( getLinesWritten() ), getInputRowMeta().getString( r ) ) );
+      for ( int i = 0; i < rows.length; i++ ) {
+        logRowlevel( BaseMessages.getString( PKG, "Constant.Log.Wrote.Row",
+          Long.toString( linesWrittenBefore + i + 1 ), getInputRowMeta().getString( rows[i] ) ) );
+      }
     }
 
-    if ( checkFeedback( getLinesWritten() ) ) {
+    if ( checkFeedback( linesWrittenBefore, getLinesWritten() ) ) {
       if ( log.isBasic() ) {
         logBasic( BaseMessages.getString( PKG, "Constant.Log.LineNr", Long.toString( getLinesWritten() ) ) );
       }
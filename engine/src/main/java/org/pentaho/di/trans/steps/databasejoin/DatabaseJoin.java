@@ -23,6 +23,8 @@
 package org.pentaho.di.trans.steps.databasejoin;
 
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.exception.KettleException;
@@ -30,6 +32,7 @@ import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.util.ExecutorUtil;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -57,6 +60,43 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
   }
 
   private synchronized void lookupValues( RowMetaInterface rowMeta, Object[] rowData ) throws KettleException {
+    Object[] lookupRowData = createParameters( rowMeta, rowData );
+
+    // Set the values on the prepared statement (for faster exec.)
+    ResultSet rs = data.db.openQuery( data.pstmt, data.lookupRowMeta, lookupRowData );
+
+    // Get a row from the database...
+    //
+    Object[] add = data.db.getRow( rs );
+    RowMetaInterface addMeta = data.db.getReturnRowMeta();
+
+    incrementLinesInput();
+
+    int counter = 0;
+    while ( add != null && ( meta.getRowLimit() == 0 || counter < meta.getRowLimit() ) ) {
+      counter++;
+
+      putJoinedRow( rowMeta, rowData, addMeta, add );
+
+      // Get a new row
+      if ( meta.getRowLimit() == 0 || counter < meta.getRowLimit() ) {
+        add = data.db.getRow( rs );
+        incrementLinesInput();
+      }
+    }
+
+    // Nothing found? Perhaps we have to put something out after all?
+    if ( counter == 0 && meta.isOuterJoin() ) {
+      putNotFoundRow( rowMeta, rowData, addMeta );
+    }
+
+    data.db.closeQuery( rs );
+  }
+
+  /**
+   * Construct the parameters row of the query from an input row.
+   */
+  private Object[] createParameters( RowMetaInterface rowMeta, Object[] rowData ) throws KettleException {
     if ( first ) {
       first = false;
 
@@ -89,97 +129,128 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
     for ( int i = 0; i < data.keynrs.length; i++ ) {
       lookupRowData[i] = rowData[data.keynrs[i]];
     }
+    return lookupRowData;
+  }
 
-    // Set the values on the prepared statement (for faster exec.)
-    ResultSet rs = data.db.openQuery( data.pstmt, data.lookupRowMeta, lookupRowData );
-
-    // Get a row from the database...
-    //
-    Object[] add = data.db.getRow( rs );
-    RowMetaInterface addMeta = data.db.getReturnRowMeta();
+  private void putJoinedRow( RowMetaInterface rowMeta, Object[] rowData, RowMetaInterface addMeta, Object[] add )
+    throws KettleStepException {
+    Object[] newRow = RowDataUtil.resizeArray( rowData, data.outputRowMeta.size() );
+    int newIndex = rowMeta.size();
+    for ( int i = 0; i < addMeta.size(); i++ ) {
+      newRow[newIndex++] = add[i];
+    }
+    // we have to clone, otherwise we only get the last new value
+    putRow( data.outputRowMeta, data.outputRowMeta.cloneRow( newRow ) );
 
-    incrementLinesInput();
+    if ( log.isRowLevel() ) {
+      logRowlevel( BaseMessages.getString( PKG, "DatabaseJoin.Log.PutoutRow" )
+        + data.outputRowMeta.getString( newRow ) );
+    }
+  }
 
-    int counter = 0;
-    while ( add != null && ( meta.getRowLimit() == 0 || counter < meta.getRowLimit() ) ) {
-      counter++;
+  private void putNotFoundRow( RowMetaInterface rowMeta, Object[] rowData, RowMetaInterface addMeta )
+    throws KettleStepException {
+    if ( data.notfound == null ) {
+      // Just return null values for all values...
+      //
+      data.notfound = new Object[addMeta.size()];
+    }
+    Object[] newRow = RowDataUtil.resizeArray( rowData, data.outputRowMeta.size() );
+    int newIndex = rowMeta.size();
+    for ( int i = 0; i < data.notfound.length; i++ ) {
+      newRow[newIndex++] = data.notfound[i];
+    }
+    putRow( data.outputRowMeta, newRow );
+  }
 
-      Object[] newRow = RowDataUtil.resizeArray( rowData, data.outputRowMeta.size() );
-      int newIndex = rowMeta.size();
-      for ( int i = 0; i < addMeta.size(); i++ ) {
-        newRow[newIndex++] = add[i];
-      }
-      // we have to clone, otherwise we only get the last new value
-      putRow( data.outputRowMeta, data.outputRowMeta.cloneRow( newRow ) );
+  /**
+   * Pass on the rows joined with the results of the oldest query in the pipeline.
+   *
+   * @return false if the step has to stop
+   */
+  private boolean putPipelineResult() throws KettleException {
+    QueryPipeline.Result result = data.pipeline.take();
+    if ( result.error != null ) {
+      return handleError( result.row, result.error );
+    }
 
-      if ( log.isRowLevel() ) {
-        logRowlevel( BaseMessages.getString( PKG, "DatabaseJoin.Log.PutoutRow" )
-          + data.outputRowMeta.getString( newRow ) );
-      }
+    for ( Object[] add : result.rows ) {
+      incrementLinesInput();
+      putJoinedRow( getInputRowMeta(), result.row, result.returnMeta, add );
+    }
+    if ( result.exhausted ) {
+      incrementLinesInput();
+    }
+    if ( result.rows.isEmpty() && meta.isOuterJoin() ) {
+      putNotFoundRow( getInputRowMeta(), result.row, result.returnMeta );
+    }
+    logFeedback();
+    return true;
+  }
 
-      // Get a new row
-      if ( meta.getRowLimit() == 0 || counter < meta.getRowLimit() ) {
-        add = data.db.getRow( rs );
-        incrementLinesInput();
+  private void logFeedback() {
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "DatabaseJoin.Log.LineNumber" ) + getLinesRead() );
       }
     }
+  }
 
-    // Nothing found? Perhaps we have to put something out after all?
-    if ( counter == 0 && meta.isOuterJoin() ) {
-      if ( data.notfound == null ) {
-        // Just return null values for all values...
-        //
-        data.notfound = new Object[data.db.getReturnRowMeta().size()];
-      }
-      Object[] newRow = RowDataUtil.resizeArray( rowData, data.outputRowMeta.size() );
-      int newIndex = rowMeta.size();
-      for ( int i = 0; i < data.notfound.length; i++ ) {
-        newRow[newIndex++] = data.notfound[i];
-      }
-      putRow( data.outputRowMeta, newRow );
+  /**
+   * Send the row to the error handling step or stop the transformation.
+   *
+   * @return false if the step has to stop
+   */
+  private boolean handleError( Object[] r, KettleException e ) throws KettleStepException {
+    if ( getStepMeta().isDoingErrorHandling() ) {
+      // Simply add this row to the error row
+      putError( getInputRowMeta(), r, 1, e.toString(), null, "DBJOIN001" );
+      return true;
     }
 
-    data.db.closeQuery( rs );
+    logError( BaseMessages.getString( PKG, "DatabaseJoin.Log.ErrorInStepRunning" ) + e.getMessage(), e );
+    setErrors( 1 );
+    stopAll();
+    setOutputDone(); // signal end to receiver(s)
+    return false;
   }
 
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
     meta = (DatabaseJoinMeta) smi;
     data = (DatabaseJoinData) sdi;
 
-    boolean sendToErrorRow = false;
-    String errorMessage = null;
-
     Object[] r = getRow(); // Get row from input rowset & set row busy!
     if ( r == null ) { // no more input to be expected...
+      // Pass on the rows of the queries still in flight
+      //
+      while ( data.pipeline != null && !data.pipeline.isEmpty() && !isStopped() ) {
+        if ( !putPipelineResult() ) {
+          return false;
+        }
+      }
       setOutputDone();
       return false;
     }
 
+    if ( data.pipeline != null ) {
+      try {
+        // The parameters of the first row also set up the parameter metadata
+        Object[] parameters = createParameters( getInputRowMeta(), r );
+        data.pipeline.submit( r, data.lookupRowMeta, parameters );
+      } catch ( KettleException e ) {
+        return handleError( r, e );
+      }
+      // Keep the connections busy: only wait for the oldest query once they are all running
+      //
+      return !data.pipeline.isFull() || putPipelineResult();
+    }
+
     try {
       lookupValues( getInputRowMeta(), r ); // add new values to the row in rowset[0].
 
-      if ( checkFeedback( getLinesRead() ) ) {
-        if ( log.isBasic() ) {
-          logBasic( BaseMessages.getString( PKG, "DatabaseJoin.Log.LineNumber" ) + getLinesRead() );
-        }
-      }
+      logFeedback();
     } catch ( KettleException e ) {
-
-      if ( getStepMeta().isDoingErrorHandling() ) {
-        sendToErrorRow = true;
-        errorMessage = e.toString();
-      } else {
-
-        logError( BaseMessages.getString( PKG, "DatabaseJoin.Log.ErrorInStepRunning" ) + e.getMessage(), e );
-        setErrors( 1 );
-        stopAll();
-        setOutputDone(); // signal end to receiver(s)
-        return false;
-      }
-      if ( sendToErrorRow ) {
-        // Simply add this row to the error row
-        putError( getInputRowMeta(), r, 1, errorMessage, null, "DBJOIN001" );
-      }
+      return handleError( r, e );
     }
 
     return true;
@@ -194,6 +265,9 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
       synchronized ( data.db ) {
         data.db.cancelStatement( data.pstmt );
       }
+      if ( data.pipeline != null ) {
+        data.pipeline.cancel();
+      }
       setStopped( true );
       data.isCanceled = true;
     }
@@ -235,6 +309,10 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
         }
         data.db.setQueryLimit( meta.getRowLimit() );
 
+        if ( meta.getParallelQueries() > 1 ) {
+          createPipeline( sql, meta.getParallelQueries() );
+        }
+
         return true;
       } catch ( KettleException e ) {
         logError( BaseMessages.getString( PKG, "DatabaseJoin.Log.DatabaseError" ) + e.getMessage(), e );
@@ -247,10 +325,49 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
     return false;
   }
 
+  /**
+   * Open the extra connections to run the query for several rows at the same time. With unique connections the
+   * queries have to share the single connection of the transformation, so they run one at a time.
+   */
+  private void createPipeline( String sql, int nrQueries ) throws KettleException {
+    if ( getTransMeta().isUsingUniqueConnections() ) {
+      logBasic( BaseMessages.getString( PKG, "DatabaseJoin.Log.NoParallelQueriesWithUniqueConnections" ) );
+      return;
+    }
+
+    List<QueryPipeline.QueryConnection> connections = new ArrayList<QueryPipeline.QueryConnection>( nrQueries );
+    connections.add( new QueryPipeline.QueryConnection( data.db, data.pstmt ) );
+    try {
+      for ( int i = 1; i < nrQueries; i++ ) {
+        Database db = new Database( this, meta.getDatabaseMeta() );
+        db.shareVariablesWith( this );
+        db.connect( getPartitionID() );
+        connections.add( new QueryPipeline.QueryConnection( db, db.prepareSQL( sql ) ) );
+        db.setQueryLimit( meta.getRowLimit() );
+      }
+    } catch ( KettleException e ) {
+      for ( int i = 1; i < connections.size(); i++ ) {
+        connections.get( i ).db.disconnect();
+      }
+      throw e;
+    }
+    data.pipeline = new QueryPipeline( connections, meta.getRowLimit(), ExecutorUtil.getExecutor() );
+
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "DatabaseJoin.Log.ParallelQueries", nrQueries ) );
+    }
+  }
+
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (DatabaseJoinMeta) smi;
     data = (DatabaseJoinData) sdi;
 
+    // The pipeline also disconnects the main connection
+    //
+    if ( data.pipeline != null ) {
+      data.pipeline.close();
+      data.pipeline = null;
+    }
     if ( data.db != null ) {
       data.db.disconnect();
     }
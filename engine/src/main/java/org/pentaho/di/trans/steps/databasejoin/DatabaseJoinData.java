@@ -44,6 +44,9 @@ public class DatabaseJoinData extends BaseStepData implements StepDataInterface
   public Object[] notfound; // Values in case nothing is found...
   public boolean isCanceled;
 
+  /** Runs the queries of several rows at the same time, null if they run one by one */
+  QueryPipeline pipeline;
+
   public DatabaseJoinData() {
     super();
 
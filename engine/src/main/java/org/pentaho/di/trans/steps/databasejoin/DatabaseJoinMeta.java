@@ -83,6 +83,9 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
    */
   private boolean replacevars;
 
+  /** Number of queries to keep running at the same time, each on its own connection (0 or 1: one at a time) */
+  private int parallelQueries;
+
   public DatabaseJoinMeta() {
     super(); // allocate BaseStepMeta
   }
@@ -177,6 +180,22 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
     this.rowLimit = rowLimit;
   }
 
+  /**
+   * @return the number of queries to keep running at the same time, each on its own connection
+   */
+  public int getParallelQueries() {
+    return parallelQueries;
+  }
+
+  /**
+   * @param parallelQueries
+   *          the number of queries to keep running at the same time, each on its own connection. The joined rows
+   *          are still passed on in the order of the input rows.
+   */
+  public void setParallelQueries( int parallelQueries ) {
+    this.parallelQueries = parallelQueries;
+  }
+
   /**
    * @return Returns the sql.
    */
@@ -228,6 +247,7 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
       outerJoin = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "outer_join" ) );
       replacevars = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "replace_vars" ) );
       rowLimit = Const.toInt( XMLHandler.getTagValue( stepnode, "rowlimit" ), 0 );
+      parallelQueries = Const.toInt( XMLHandler.getTagValue( stepnode, "parallel_queries" ), 0 );
 
       Node param = XMLHandler.getSubNode( stepnode, "parameter" );
       int nrparam = XMLHandler.countNodes( param, "field" );
@@ -250,6 +270,7 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
   public void setDefault() {
     databaseMeta = null;
     rowLimit = 0;
+    parallelQueries = 0;
     sql = "";
     outerJoin = false;
     parameterField = null;
@@ -345,6 +366,7 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
     retval.append( "    " ).append( XMLHandler.addTagValue( "sql", sql ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "outer_join", outerJoin ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "replace_vars", replacevars ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "parallel_queries", parallelQueries ) );
     retval.append( "    <parameter>" ).append( Const.CR );
     for ( int i = 0; i < parameterField.length; i++ ) {
       retval.append( "      <field>" ).append( Const.CR );
@@ -366,6 +388,7 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
       sql = rep.getStepAttributeString( id_step, "sql" );
       outerJoin = rep.getStepAttributeBoolean( id_step, "outer_join" );
       replacevars = rep.getStepAttributeBoolean( id_step, "replace_vars" );
+      parallelQueries = (int) rep.getStepAttributeInteger( id_step, "parallel_queries" );
 
       int nrparam = rep.countNrStepAttributes( id_step, "parameter_field" );
 
@@ -390,6 +413,7 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
       rep.saveStepAttribute( id_transformation, id_step, "sql", sql );
       rep.saveStepAttribute( id_transformation, id_step, "outer_join", outerJoin );
       rep.saveStepAttribute( id_transformation, id_step, "replace_vars", replacevars );
+      rep.saveStepAttribute( id_transformation, id_step, "parallel_queries", parallelQueries );
 
       for ( int i = 0; i < parameterField.length; i++ ) {
         rep.saveStepAttribute( id_transformation, id_step, i, "parameter_field", parameterField[i] );
@@ -0,0 +1,193 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.databasejoin;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Runs the query of a {@code DatabaseJoin} step for several input rows at the same time, every query on a connection
+ * of its own. The results are taken in the order the rows were submitted so the joined rows keep the input order.
+ */
+class QueryPipeline {
+  private final List<QueryConnection> connections;
+  private final BlockingQueue<QueryConnection> idle;
+  private final Deque<Future<Result>> inFlight;
+  private final ExecutorService executor;
+  private final int rowLimit;
+
+  /**
+   * @param connections the connections with the prepared query, as many as the number of queries to run at once
+   * @param rowLimit the maximum number of rows to read per query, 0 to read them all
+   * @param executor runs the queries
+   */
+  QueryPipeline( List<QueryConnection> connections, int rowLimit, ExecutorService executor ) {
+    this.connections = connections;
+    this.idle = new ArrayBlockingQueue<QueryConnection>( connections.size(), false, connections );
+    this.inFlight = new ArrayDeque<Future<Result>>( connections.size() );
+    this.executor = executor;
+    this.rowLimit = rowLimit;
+  }
+
+  /**
+   * @return true if as many queries are running as there are connections
+   */
+  boolean isFull() {
+    return inFlight.size() >= connections.size();
+  }
+
+  boolean isEmpty() {
+    return inFlight.isEmpty();
+  }
+
+  /**
+   * Start the query for an input row on the next idle connection.
+   */
+  void submit( final Object[] row, final RowMetaInterface paramMeta, final Object[] params ) {
+    inFlight.add( executor.submit( new Callable<Result>() {
+      @Override
+      public Result call() throws Exception {
+        QueryConnection connection = idle.take();
+        try {
+          return connection.query( row, paramMeta, params, rowLimit );
+        } catch ( KettleException e ) {
+          return new Result( row, null, null, false, e );
+        } finally {
+          idle.add( connection );
+        }
+      }
+    } ) );
+  }
+
+  /**
+   * Wait for the query of the oldest row still in flight.
+   */
+  Result take() throws KettleException {
+    Future<Result> future = inFlight.poll();
+    try {
+      return future.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( e );
+    } catch ( ExecutionException e ) {
+      throw new KettleException( e.getCause() );
+    }
+  }
+
+  /**
+   * Cancel the running queries.
+   */
+  void cancel() throws KettleDatabaseException {
+    for ( QueryConnection connection : connections ) {
+      connection.db.cancelStatement( connection.pstmt );
+    }
+  }
+
+  /**
+   * Wait for the queries in flight, their results are discarded, and disconnect.
+   */
+  void close() {
+    for ( Future<Result> future : inFlight ) {
+      try {
+        future.get();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch ( ExecutionException e ) {
+        // Nobody is waiting for the result anymore
+      }
+    }
+    inFlight.clear();
+    for ( QueryConnection connection : connections ) {
+      connection.db.disconnect();
+    }
+  }
+
+  /**
+   * A connection with the prepared query of the step.
+   */
+  static final class QueryConnection {
+    final Database db;
+    final PreparedStatement pstmt;
+
+    QueryConnection( Database db, PreparedStatement pstmt ) {
+      this.db = db;
+      this.pstmt = pstmt;
+    }
+
+    Result query( Object[] row, RowMetaInterface paramMeta, Object[] params, int rowLimit ) throws KettleException {
+      ResultSet rs = db.openQuery( pstmt, paramMeta, params );
+      try {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        boolean exhausted = false;
+        while ( rowLimit == 0 || rows.size() < rowLimit ) {
+          Object[] add = db.getRow( rs );
+          if ( add == null ) {
+            exhausted = true;
+            break;
+          }
+          rows.add( add );
+        }
+        return new Result( row, db.getReturnRowMeta(), rows, exhausted, null );
+      } finally {
+        db.closeQuery( rs );
+      }
+    }
+  }
+
+  /**
+   * The rows a query returned for an input row, or the error it failed with.
+   */
+  static final class Result {
+    final Object[] row;
+    final RowMetaInterface returnMeta;
+    final List<Object[]> rows;
+    /** True if all the rows were read, false if the row limit was reached */
+    final boolean exhausted;
+    final KettleException error;
+
+    Result( Object[] row, RowMetaInterface returnMeta, List<Object[]> rows, boolean exhausted,
+            KettleException error ) {
+      this.row = row;
+      this.returnMeta = returnMeta;
+      this.rows = rows;
+      this.exhausted = exhausted;
+      this.error = error;
+    }
+  }
+}
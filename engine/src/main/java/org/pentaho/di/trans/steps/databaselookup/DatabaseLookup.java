@@ -24,6 +24,7 @@ package org.pentaho.di.trans.steps.databaselookup;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.util.Utils;
@@ -32,6 +33,7 @@ import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.logging.Metrics;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -76,8 +78,57 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
    */
   @VisibleForTesting
   synchronized Object[] lookupValues( RowMetaInterface inputRowMeta, Object[] row ) throws KettleException {
-    Object[] outputRow = RowDataUtil.resizeArray( row, data.outputRowMeta.size() );
+    Object[] lookupRow = createLookupRow( inputRowMeta, row );
+
+    Object[] add;
+    boolean cache_now = false;
+    boolean cacheHit = false;
+
+    // First, check if we looked up before
+    if ( meta.isCached() ) {
+      add = data.cache.getRowFromCache( data.lookupMeta, lookupRow );
+      if ( add != null ) {
+        cacheHit = true;
+      }
+    } else {
+      add = null;
+    }
 
+    if ( add == null ) {
+      if ( !( meta.isCached() && meta.isLoadingAllDataInCache() ) || data.hasDBCondition ) { // do not go to the
+        // database when all rows
+        // are in (exception LIKE
+        // operator)
+        if ( log.isRowLevel() ) {
+          logRowlevel( BaseMessages.getString( PKG, "DatabaseLookup.Log.AddedValuesToLookupRow1" )
+            + meta.getStreamKeyField1().length
+            + BaseMessages.getString( PKG, "DatabaseLookup.Log.AddedValuesToLookupRow2" )
+            + data.lookupMeta.getString( lookupRow ) );
+        }
+
+        long startTime = data.sharedCache != null ? System.nanoTime() : 0L;
+        data.db.setValuesLookup( data.lookupMeta, lookupRow );
+        add = data.db.getLookup( meta.isFailingOnMultipleResults() );
+        cache_now = true;
+        if ( data.sharedCache != null ) {
+          data.sharedCache.recordLoad( System.nanoTime() - startTime );
+        }
+      }
+    }
+
+    // Only verify the data types if the data comes from the DB, NOT when we have a cache hit
+    // In that case, we already know the data type is OK.
+    if ( add != null && !cacheHit ) {
+      convertReturnedTypes( data.db.getReturnRowMeta(), add );
+    }
+
+    return addLookupResult( inputRowMeta, row, lookupRow, add, !cacheHit, cache_now );
+  }
+
+  /**
+   * Create the values to look up from the key fields of an input row, converted to the types of the table fields.
+   */
+  private Object[] createLookupRow( RowMetaInterface inputRowMeta, Object[] row ) throws KettleException {
     Object[] lookupRow = new Object[ data.lookupMeta.size() ];
     int lookupIndex = 0;
 
@@ -109,38 +160,37 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         lookupIndex++;
       }
     }
+    return lookupRow;
+  }
 
-    Object[] add;
-    boolean cache_now = false;
-    boolean cacheHit = false;
+  /**
+   * The assumption here is that the types are in the same order as the returned lookup row, but since we make the
+   * lookup row that should not be a problem.
+   */
+  private void convertReturnedTypes( RowMetaInterface returnedMeta, Object[] add ) throws KettleException {
+    int[] types = meta.getReturnValueDefaultType();
+    for ( int i = 0; i < types.length; i++ ) {
+      ValueMetaInterface returned = returnedMeta.getValueMeta( i );
+      ValueMetaInterface expected = data.returnMeta.getValueMeta( i );
 
-    // First, check if we looked up before
-    if ( meta.isCached() ) {
-      add = data.cache.getRowFromCache( data.lookupMeta, lookupRow );
-      if ( add != null ) {
-        cacheHit = true;
+      if ( returned != null && types[ i ] > 0 && types[ i ] != returned.getType() ) {
+        // Set the type to the default return type
+        add[ i ] = expected.convertData( returned, add[ i ] );
       }
-    } else {
-      add = null;
     }
+  }
 
-    if ( add == null ) {
-      if ( !( meta.isCached() && meta.isLoadingAllDataInCache() ) || data.hasDBCondition ) { // do not go to the
-        // database when all rows
-        // are in (exception LIKE
-        // operator)
-        if ( log.isRowLevel() ) {
-          logRowlevel( BaseMessages.getString( PKG, "DatabaseLookup.Log.AddedValuesToLookupRow1" )
-            + meta.getStreamKeyField1().length
-            + BaseMessages.getString( PKG, "DatabaseLookup.Log.AddedValuesToLookupRow2" )
-            + data.lookupMeta.getString( lookupRow ) );
-        }
-
-        data.db.setValuesLookup( data.lookupMeta, lookupRow );
-        add = data.db.getLookup( meta.isFailingOnMultipleResults() );
-        cache_now = true;
-      }
-    }
+  /**
+   * Add the looked up values to the input row, or the default values if nothing was found.
+   *
+   * @param add the looked up values, with the data types already verified, or null if nothing was found
+   * @param fromDatabase true if the values were looked up in the database rather than found in the cache
+   * @param storeInCache true to store the values in the cache
+   * @return the output row or null if the row doesn't go to the next steps
+   */
+  private Object[] addLookupResult( RowMetaInterface inputRowMeta, Object[] row, Object[] lookupRow, Object[] add,
+                                    boolean fromDatabase, boolean storeInCache ) throws KettleException {
+    Object[] outputRow = RowDataUtil.resizeArray( row, data.outputRowMeta.size() );
 
     if ( add == null ) { // nothing was found, unknown code: add default values
       if ( meta.isEatingRowOnLookupFailure() ) {
@@ -171,33 +221,15 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
           + Arrays.toString( add ) );
       }
 
-      // Only verify the data types if the data comes from the DB, NOT when we have a cache hit
-      // In that case, we already know the data type is OK.
-      if ( !cacheHit ) {
+      if ( fromDatabase ) {
         incrementLinesInput();
-
-        int[] types = meta.getReturnValueDefaultType();
-
-        // The assumption here is that the types are in the same order
-        // as the returned lookup row, but since we make the lookup row
-        // that should not be a problem.
-        //
-        for ( int i = 0; i < types.length; i++ ) {
-          ValueMetaInterface returned = data.db.getReturnRowMeta().getValueMeta( i );
-          ValueMetaInterface expected = data.returnMeta.getValueMeta( i );
-
-          if ( returned != null && types[ i ] > 0 && types[ i ] != returned.getType() ) {
-            // Set the type to the default return type
-            add[ i ] = expected.convertData( returned, add[ i ] );
-          }
-        }
       }
     }
 
     // Store in cache if we need to!
     // If we already loaded all data into the cache, storing more makes no sense.
     //
-    if ( meta.isCached() && cache_now && !meta.isLoadingAllDataInCache() && data.allEquals ) {
+    if ( meta.isCached() && storeInCache && !meta.isLoadingAllDataInCache() && data.allEquals ) {
       data.cache.storeRowInCache( meta, data.lookupMeta, lookupRow, add );
     }
 
@@ -311,6 +343,9 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
     Object[] r = getRow(); // Get row from input rowset & set row busy!
     if ( r == null ) { // no more input to be expected...
+      if ( data.lookupBatch != null && !data.lookupBatch.isEmpty() && !flushLookupBatch() ) {
+        return false;
+      }
       setOutputDone();
       return false;
     }
@@ -367,7 +402,16 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         }
       }
 
-      if ( meta.isCached() ) {
+      if ( isUsingSharedCache() ) {
+        if ( data.sharedCache == null ) {
+          data.sharedCache = findSharedCache();
+          if ( data.sharedCache == null ) {
+            throw new KettleStepException( BaseMessages.getString( PKG, "DatabaseLookup.Exception.FirstCopyNotFound",
+              getStepname() ) );
+          }
+        }
+        data.cache = data.sharedCache;
+      } else if ( meta.isCached() ) {
         data.cache = DefaultCache.newCache( data, meta.getCacheSize() );
       }
 
@@ -385,6 +429,16 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         loadAllTableDataIntoTheCache();
       }
 
+      // Look up the keys of several rows in a single query
+      //
+      if ( isBatchingLookups() && data.lookupMeta.size() == meta.getTableKeyField().length ) {
+        int batchSize = data.db.setBatchLookup(
+          environmentSubstitute( meta.getSchemaName() ), environmentSubstitute( meta.getTablename() ),
+          meta.getTableKeyField(), meta.getReturnValueField(), meta.getReturnValueNewName(),
+          meta.getOrderByClause(), meta.getLookupBatchSize()
+        );
+        data.lookupBatch = new LookupBatch( data.lookupMeta, batchSize );
+      }
     }
 
     if ( log.isRowLevel() ) {
@@ -393,34 +447,173 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
     }
 
     try {
+      if ( data.lookupBatch != null ) {
+        if ( addToLookupBatch( r ) ) {
+          return flushLookupBatch();
+        }
+        return true;
+      }
+
       // add new lookup values to the row
       Object[] outputRow = lookupValues( getInputRowMeta(), r );
 
       if ( outputRow != null ) {
-        // copy row to output rowset(s);
-        putRow( data.outputRowMeta, outputRow );
+        putLookupRow( r, outputRow );
+      }
+    } catch ( KettleException e ) {
+      return handleLookupError( r, e );
+    }
 
-        if ( log.isRowLevel() ) {
-          logRowlevel( BaseMessages.getString( PKG, "DatabaseLookup.Log.WroteRowToNextStep" )
-            + getInputRowMeta().getString( r ) );
+    return true;
+  }
+
+  private void putLookupRow( Object[] r, Object[] outputRow ) throws KettleStepException {
+    // copy row to output rowset(s);
+    putRow( data.outputRowMeta, outputRow );
+
+    if ( log.isRowLevel() ) {
+      logRowlevel( BaseMessages.getString( PKG, "DatabaseLookup.Log.WroteRowToNextStep" )
+        + getInputRowMeta().getString( r ) );
+    }
+    if ( checkFeedback( getLinesRead() ) ) {
+      logBasic( "linenr " + getLinesRead() );
+    }
+  }
+
+  /**
+   * Send the row to the error handling step or stop the transformation.
+   *
+   * @return false if the transformation is stopped
+   */
+  private boolean handleLookupError( Object[] r, KettleException e ) throws KettleStepException {
+    if ( getStepMeta().isDoingErrorHandling() ) {
+      putError( getInputRowMeta(), r, 1, e.getMessage(), null, "DBLOOKUPD001" );
+      return true;
+    }
+    logError( BaseMessages.getString( PKG, "DatabaseLookup.ERROR003.UnexpectedErrorDuringProcessing" )
+      + e.getMessage() );
+    setErrors( 1 );
+    stopAll();
+    setOutputDone(); // signal end to receiver(s)
+    return false;
+  }
+
+  /**
+   * Batch lookups only work with = conditions: the rows returned by the query are matched with the keys by value.
+   */
+  private boolean isBatchingLookups() {
+    if ( meta.getLookupBatchSize() <= 1 || meta.getKeyCondition().length == 0
+      || ( meta.isCached() && meta.isLoadingAllDataInCache() ) ) {
+      return false;
+    }
+    for ( String condition : meta.getKeyCondition() ) {
+      if ( !"=".equals( condition ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Add a row to the batch of rows waiting for a lookup. A row found in the cache is passed on right away if no rows
+   * are waiting in front of it.
+   *
+   * @return true if the batch is full
+   */
+  private boolean addToLookupBatch( Object[] r ) throws KettleException {
+    Object[] lookupRow = createLookupRow( getInputRowMeta(), r );
+    Object[] add = meta.isCached() ? data.cache.getRowFromCache( data.lookupMeta, lookupRow ) : null;
+    if ( add == null ) {
+      return data.lookupBatch.add( r, lookupRow );
+    }
+    if ( !data.lookupBatch.isEmpty() ) {
+      return data.lookupBatch.addCached( r, lookupRow, add );
+    }
+    Object[] outputRow = addLookupResult( getInputRowMeta(), r, lookupRow, add, false, false );
+    if ( outputRow != null ) {
+      putLookupRow( r, outputRow );
+    }
+    return false;
+  }
+
+  /**
+   * Look up the distinct keys of the rows in the batch with a single query and pass the rows on in their original
+   * order.
+   *
+   * @return false if the transformation is stopped
+   */
+  private boolean flushLookupBatch() throws KettleException {
+    LookupBatch batch = data.lookupBatch;
+    List<Object[]> keys = batch.getPendingKeys();
+    if ( !keys.isEmpty() ) {
+      try {
+        long startTime = System.nanoTime();
+        List<Object[]> results = data.db.getBatchLookup( data.lookupMeta, keys );
+        long nanos = System.nanoTime() - startTime;
+        data.batchQueries++;
+        data.batchKeys += keys.size();
+        data.batchNanos += nanos;
+        data.batchMaxNanos = Math.max( data.batchMaxNanos, nanos );
+        if ( data.sharedCache != null ) {
+          data.sharedCache.recordLoad( nanos );
+        }
+
+        if ( !batch.setResults( data.db.getBatchLookupRowMeta(), results, meta.isFailingOnMultipleResults() ) ) {
+          // The database returned rows that aren't equal to any of the keys here, e.g. because it compares
+          // strings case insensitively: look up the keys without a result one by one.
+          //
+          for ( LookupBatch.Entry entry : batch.getUnresolved() ) {
+            try {
+              data.db.setValuesLookup( data.lookupMeta, entry.lookupRow );
+              entry.result = data.db.getLookup( meta.isFailingOnMultipleResults() );
+              entry.resultMeta = data.db.getReturnRowMeta();
+            } catch ( KettleException e ) {
+              entry.error = e;
+            }
+          }
         }
-        if ( checkFeedback( getLinesRead() ) ) {
-          logBasic( "linenr " + getLinesRead() );
+      } catch ( KettleException e ) {
+        for ( LookupBatch.Entry entry : batch.getLookedUp() ) {
+          entry.error = e;
         }
       }
-    } catch ( KettleException e ) {
-      if ( getStepMeta().isDoingErrorHandling() ) {
-        putError( getInputRowMeta(), r, 1, e.getMessage(), null, "DBLOOKUPD001" );
-      } else {
-        logError( BaseMessages.getString( PKG, "DatabaseLookup.ERROR003.UnexpectedErrorDuringProcessing" )
-          + e.getMessage() );
-        setErrors( 1 );
-        stopAll();
-        setOutputDone(); // signal end to receiver(s)
-        return false;
+
+      for ( LookupBatch.Entry entry : batch.getLookedUp() ) {
+        if ( entry.error == null && entry.result != null ) {
+          try {
+            convertReturnedTypes( entry.resultMeta, entry.result );
+          } catch ( KettleException e ) {
+            entry.error = e;
+          }
+        }
       }
     }
 
+    try {
+      for ( int i = 0; i < batch.size(); i++ ) {
+        Object[] r = batch.getRow( i );
+        LookupBatch.Entry entry = batch.getEntry( i );
+        try {
+          if ( entry.error != null ) {
+            throw entry.error;
+          }
+          // The first row with a key looked up in the database stores the result in the cache
+          //
+          boolean first = !entry.cacheHit && !entry.passedOn;
+          entry.passedOn = true;
+          Object[] outputRow = addLookupResult( getInputRowMeta(), r, entry.lookupRow, entry.result, first, first );
+          if ( outputRow != null ) {
+            putLookupRow( r, outputRow );
+          }
+        } catch ( KettleException e ) {
+          if ( !handleLookupError( r, e ) ) {
+            return false;
+          }
+        }
+      }
+    } finally {
+      batch.clear();
+    }
     return true;
   }
 
@@ -588,6 +781,12 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
           }
         }
 
+        // The first copy creates the cache shared by all copies
+        //
+        if ( isUsingSharedCache() && getCopy() == 0 ) {
+          data.sharedCache = new TinyLfuCache( meta.getCacheSize(), getStepMeta().getCopies() );
+        }
+
         return true;
       } catch ( Exception e ) {
         logError( BaseMessages.getString( PKG, "DatabaseLookup.ERROR0004.UnexpectedErrorDuringInit" )
@@ -609,6 +808,24 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
       data.db.disconnect();
     }
 
+    // The last copy using the shared cache reports how well it did.
+    // The first copy keeps its reference: copies that never got a row fetch the cache from it to release it.
+    //
+    if ( data.batchQueries > 0 ) {
+      logBatchStatistics();
+    }
+    data.lookupBatch = null;
+
+    if ( isUsingSharedCache() ) {
+      TinyLfuCache sharedCache = data.sharedCache != null ? data.sharedCache : findSharedCache();
+      if ( sharedCache != null && sharedCache.release() ) {
+        logCacheStatistics( sharedCache );
+      }
+      if ( getCopy() > 0 ) {
+        data.sharedCache = null;
+      }
+    }
+
     // Recover memory immediately, allow in-memory data to be garbage collected
     //
     data.cache = null;
@@ -616,6 +833,62 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
     super.dispose( smi, sdi );
   }
 
+  /**
+   * The copies share a cache when caching lookups with only equality conditions, without loading all data upfront.
+   */
+  private boolean isUsingSharedCache() {
+    return meta.isCached() && meta.isSharingCache() && !meta.isLoadingAllDataInCache() && data.allEquals;
+  }
+
+  /**
+   * @return the cache shared by the copies of this step, created by the first copy
+   */
+  TinyLfuCache getSharedCache() {
+    return data.sharedCache;
+  }
+
+  private TinyLfuCache findSharedCache() {
+    StepInterface firstCopy = getTrans().getStepInterface( getStepname(), 0 );
+    if ( firstCopy instanceof DatabaseLookup ) {
+      return ( (DatabaseLookup) firstCopy ).getSharedCache();
+    }
+    return null;
+  }
+
+  private void logCacheStatistics( TinyLfuCache cache ) {
+    long loadMicros = TimeUnit.NANOSECONDS.toMicros( cache.getTotalLoadNanos() );
+    if ( log.isGatheringMetrics() ) {
+      log.snap( Metrics.METRIC_STEP_LOOKUP_CACHE_HITS, getStepname(), cache.getHitCount() );
+      log.snap( Metrics.METRIC_STEP_LOOKUP_CACHE_MISSES, getStepname(), cache.getMissCount() );
+      log.snap( Metrics.METRIC_STEP_LOOKUP_CACHE_HIT_RATIO, getStepname(), Math.round( cache.getHitRatio() ) );
+      log.snap( Metrics.METRIC_STEP_LOOKUP_CACHE_EVICTIONS, getStepname(), cache.getEvictionCount() );
+      log.snap( Metrics.METRIC_STEP_LOOKUP_CACHE_LOAD_SUM_TIME, getStepname(), loadMicros );
+      log.snap( Metrics.METRIC_STEP_LOOKUP_CACHE_LOAD_MAX_TIME, getStepname(),
+        TimeUnit.NANOSECONDS.toMicros( cache.getMaxLoadNanos() ) );
+    }
+    if ( log.isDetailed() ) {
+      long averageMicros = cache.getLoadCount() == 0 ? 0 : loadMicros / cache.getLoadCount();
+      logDetailed( BaseMessages.getString( PKG, "DatabaseLookup.Log.SharedCacheStatistics",
+        String.format( "%.1f", cache.getHitRatio() ), cache.getHitCount(), cache.getMissCount(),
+        cache.getEvictionCount(), averageMicros ) );
+    }
+  }
+
+  private void logBatchStatistics() {
+    long totalMicros = TimeUnit.NANOSECONDS.toMicros( data.batchNanos );
+    long maxMicros = TimeUnit.NANOSECONDS.toMicros( data.batchMaxNanos );
+    if ( log.isGatheringMetrics() ) {
+      log.snap( Metrics.METRIC_STEP_LOOKUP_BATCH_QUERIES, getStepname(), data.batchQueries );
+      log.snap( Metrics.METRIC_STEP_LOOKUP_BATCH_KEYS, getStepname(), data.batchKeys );
+      log.snap( Metrics.METRIC_STEP_LOOKUP_BATCH_SUM_TIME, getStepname(), totalMicros );
+      log.snap( Metrics.METRIC_STEP_LOOKUP_BATCH_MAX_TIME, getStepname(), maxMicros );
+    }
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "DatabaseLookup.Log.BatchLookupStatistics", data.batchKeys,
+        data.batchQueries, totalMicros / data.batchQueries, maxMicros ) );
+    }
+  }
+
   /*
    * this method is required in order to
    * provide ability for unit tests to
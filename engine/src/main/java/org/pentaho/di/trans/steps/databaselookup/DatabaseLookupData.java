@@ -34,6 +34,9 @@ import org.pentaho.di.trans.step.StepDataInterface;
  */
 public class DatabaseLookupData extends BaseStepData implements StepDataInterface {
   public Cache cache;
+
+  /** The cache shared by all copies of the step, null if every copy has its own */
+  public TinyLfuCache sharedCache;
   public Database db;
 
   public Object[] nullif; // Not found: default values...
@@ -49,6 +52,13 @@ public class DatabaseLookupData extends BaseStepData implements StepDataInterfac
   public int[] conditions;
   public boolean hasDBCondition;
 
+  /** The rows waiting for a batch lookup, null if every row is looked up with its own query */
+  LookupBatch lookupBatch;
+  public long batchQueries;
+  public long batchKeys;
+  public long batchNanos;
+  public long batchMaxNanos;
+
   public DatabaseLookupData() {
     super();
 
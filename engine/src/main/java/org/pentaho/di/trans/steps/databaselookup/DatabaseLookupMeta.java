@@ -120,6 +120,12 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
   /** Flag to make it load all data into the cache at startup */
   private boolean loadingAllDataInCache;
 
+  /** Flag to share a single cache between the copies of the step */
+  private boolean sharingCache;
+
+  /** Look up the keys of this many rows in a single query, 0 or 1 to run a query per row */
+  private int lookupBatchSize;
+
   /** Have the lookup fail if multiple results were found, renders the orderByClause useless */
   private boolean failingOnMultipleResults;
 
@@ -395,8 +401,10 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
       databaseMeta = DatabaseMeta.findDatabase( databases, con );
       cached = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "cache" ) );
       loadingAllDataInCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "cache_load_all" ) );
+      sharingCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "cache_shared" ) );
       csize = XMLHandler.getTagValue( stepnode, "cache_size" );
       cacheSize = Const.toInt( csize, 0 );
+      lookupBatchSize = Const.toInt( XMLHandler.getTagValue( stepnode, "lookup_batch_size" ), 0 );
       schemaName = XMLHandler.getTagValue( stepnode, "lookup", "schema" );
       tablename = XMLHandler.getTagValue( stepnode, "lookup", "table" );
 
@@ -451,6 +459,8 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
     databaseMeta = null;
     cached = false;
     cacheSize = 0;
+    sharingCache = false;
+    lookupBatchSize = 0;
     schemaName = "";
     tablename = BaseMessages.getString( PKG, "DatabaseLookupMeta.Default.TableName" );
 
@@ -515,7 +525,9 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
         XMLHandler.addTagValue( "connection", databaseMeta == null ? "" : databaseMeta.getName() ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "cache", cached ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "cache_load_all", loadingAllDataInCache ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "cache_shared", sharingCache ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "cache_size", cacheSize ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "lookup_batch_size", lookupBatchSize ) );
     retval.append( "    <lookup>" ).append( Const.CR );
     retval.append( "      " ).append( XMLHandler.addTagValue( "schema", schemaName ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "table", tablename ) );
@@ -554,7 +566,9 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
 
       cached = rep.getStepAttributeBoolean( id_step, "cache" );
       loadingAllDataInCache = rep.getStepAttributeBoolean( id_step, "cache_load_all" );
+      sharingCache = rep.getStepAttributeBoolean( id_step, "cache_shared" );
       cacheSize = (int) rep.getStepAttributeInteger( id_step, "cache_size" );
+      lookupBatchSize = (int) rep.getStepAttributeInteger( id_step, "lookup_batch_size" );
       schemaName = rep.getStepAttributeString( id_step, "lookup_schema" );
       tablename = rep.getStepAttributeString( id_step, "lookup_table" );
       orderByClause = rep.getStepAttributeString( id_step, "lookup_orderby" );
@@ -592,7 +606,9 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
       rep.saveDatabaseMetaStepAttribute( id_transformation, id_step, "id_connection", databaseMeta );
       rep.saveStepAttribute( id_transformation, id_step, "cache", cached );
       rep.saveStepAttribute( id_transformation, id_step, "cache_load_all", loadingAllDataInCache );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_shared", sharingCache );
       rep.saveStepAttribute( id_transformation, id_step, "cache_size", cacheSize );
+      rep.saveStepAttribute( id_transformation, id_step, "lookup_batch_size", lookupBatchSize );
       rep.saveStepAttribute( id_transformation, id_step, "lookup_schema", schemaName );
       rep.saveStepAttribute( id_transformation, id_step, "lookup_table", tablename );
       rep.saveStepAttribute( id_transformation, id_step, "lookup_orderby", orderByClause );
@@ -895,6 +911,36 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
     this.loadingAllDataInCache = loadingAllDataInCache;
   }
 
+  /**
+   * @return true if the copies of the step share a single cache
+   */
+  public boolean isSharingCache() {
+    return sharingCache;
+  }
+
+  /**
+   * @param sharingCache
+   *          true to share a single, frequency aware cache between the copies of the step
+   */
+  public void setSharingCache( boolean sharingCache ) {
+    this.sharingCache = sharingCache;
+  }
+
+  /**
+   * @return the number of rows to look up the keys of in a single query, 0 or 1 to run a query per row
+   */
+  public int getLookupBatchSize() {
+    return lookupBatchSize;
+  }
+
+  /**
+   * @param lookupBatchSize
+   *          the number of rows to look up the keys of in a single query, 0 or 1 to run a query per row
+   */
+  public void setLookupBatchSize( int lookupBatchSize ) {
+    this.lookupBatchSize = lookupBatchSize;
+  }
+
   @Override public RowMeta getRowMeta( StepDataInterface stepData ) {
     return (RowMeta) ( (DatabaseLookupData) stepData ).returnMeta;
   }
@@ -0,0 +1,311 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.databaselookup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * The input rows of a {@code DatabaseLookup} step waiting for their keys to be looked up in a single query, in the
+ * order they arrived. Rows with the same key share an entry so that every key is looked up only once per batch.
+ * <p>
+ * The rows returned by the query start with the key fields and are matched with the keys by value. A row that
+ * doesn't match any key, for example because the database compares strings case insensitively, is reported so that
+ * the keys still without a result can be looked up one by one.
+ */
+class LookupBatch {
+  private static Class<?> PKG = DatabaseLookupMeta.class; // for i18n purposes, needed by Translator2!!
+
+  /** Rows found in the cache wait in the batch too, but not forever */
+  static final int MAX_ROWS_PER_KEY = 10;
+
+  private final RowMetaInterface keyMeta;
+  private final int maxKeys;
+  private final int maxRows;
+
+  private final List<Object[]> rows;
+  private final List<Entry> entries;
+  private final Map<Key, Entry> pending;
+
+  /**
+   * @param keyMeta the metadata of the keys to look up
+   * @param maxKeys the number of keys to look up in a single query
+   */
+  LookupBatch( RowMetaInterface keyMeta, int maxKeys ) {
+    this.keyMeta = keyMeta;
+    this.maxKeys = maxKeys;
+    this.maxRows = maxKeys * MAX_ROWS_PER_KEY;
+    this.rows = new ArrayList<Object[]>( maxKeys );
+    this.entries = new ArrayList<Entry>( maxKeys );
+    this.pending = new LinkedHashMap<Key, Entry>( maxKeys * 2 );
+  }
+
+  /**
+   * Add a row with a key that needs to be looked up in the database.
+   *
+   * @return true if the batch is full
+   */
+  boolean add( Object[] row, Object[] lookupRow ) {
+    Key key = new Key( lookupRow );
+    Entry entry = pending.get( key );
+    if ( entry == null ) {
+      entry = new Entry( lookupRow, false );
+      pending.put( key, entry );
+    }
+    rows.add( row );
+    entries.add( entry );
+    return isFull();
+  }
+
+  /**
+   * Add a row with a key that was found in the cache: it only waits for the rows in front of it.
+   *
+   * @return true if the batch is full
+   */
+  boolean addCached( Object[] row, Object[] lookupRow, Object[] result ) {
+    Entry entry = new Entry( lookupRow, true );
+    entry.result = result;
+    rows.add( row );
+    entries.add( entry );
+    return isFull();
+  }
+
+  boolean isEmpty() {
+    return rows.isEmpty();
+  }
+
+  boolean isFull() {
+    return pending.size() >= maxKeys || rows.size() >= maxRows;
+  }
+
+  /**
+   * @return the distinct keys to look up in the database, in the order they arrived
+   */
+  List<Object[]> getPendingKeys() {
+    List<Object[]> keys = new ArrayList<Object[]>( pending.size() );
+    for ( Entry entry : pending.values() ) {
+      keys.add( entry.lookupRow );
+    }
+    return keys;
+  }
+
+  /**
+   * Hand the rows returned by the batch query to the keys they belong to. The first row of a key is its result, like
+   * with a single lookup limited to one row.
+   *
+   * @param resultMeta the metadata of the returned rows: the key fields followed by the returned fields
+   * @param results the returned rows
+   * @param failOnMultipleResults true to fail the lookup of a key with more than one row
+   * @return false if some of the rows don't belong to any of the keys
+   * @throws KettleValueException in case a returned key can't be converted to the type of the lookup keys
+   */
+  boolean setResults( RowMetaInterface resultMeta, List<Object[]> results, boolean failOnMultipleResults )
+    throws KettleValueException {
+    int nrKeys = keyMeta.size();
+    RowMetaInterface returnedMeta = new RowMeta();
+    for ( int i = nrKeys; i < resultMeta.size(); i++ ) {
+      returnedMeta.addValueMeta( resultMeta.getValueMeta( i ) );
+    }
+
+    boolean allMatched = true;
+    for ( Object[] result : results ) {
+      Object[] keyData = new Object[ nrKeys ];
+      for ( int i = 0; i < nrKeys; i++ ) {
+        ValueMetaInterface returned = resultMeta.getValueMeta( i );
+        ValueMetaInterface expected = keyMeta.getValueMeta( i );
+        keyData[ i ] =
+          returned.getType() == expected.getType() ? result[ i ] : expected.convertData( returned, result[ i ] );
+      }
+
+      Entry entry = pending.get( new Key( keyData ) );
+      if ( entry == null ) {
+        allMatched = false;
+      } else if ( entry.result == null ) {
+        entry.result = Arrays.copyOfRange( result, nrKeys, result.length );
+        entry.resultMeta = returnedMeta;
+      } else if ( failOnMultipleResults ) {
+        entry.error = new KettleDatabaseException(
+          BaseMessages.getString( PKG, "DatabaseLookup.Exception.MultipleResults" ) );
+      }
+    }
+    return allMatched;
+  }
+
+  /**
+   * @return the entries of the looked up keys without a result
+   */
+  List<Entry> getUnresolved() {
+    List<Entry> unresolved = new ArrayList<Entry>();
+    for ( Entry entry : pending.values() ) {
+      if ( entry.result == null ) {
+        unresolved.add( entry );
+      }
+    }
+    return unresolved;
+  }
+
+  /**
+   * @return the entries of the distinct keys looked up in the database
+   */
+  List<Entry> getLookedUp() {
+    return new ArrayList<Entry>( pending.values() );
+  }
+
+  int size() {
+    return rows.size();
+  }
+
+  Object[] getRow( int index ) {
+    return rows.get( index );
+  }
+
+  Entry getEntry( int index ) {
+    return entries.get( index );
+  }
+
+  void clear() {
+    rows.clear();
+    entries.clear();
+    pending.clear();
+  }
+
+  /**
+   * The lookup of a key and its result: null if nothing was found.
+   */
+  static final class Entry {
+    final Object[] lookupRow;
+    final boolean cacheHit;
+    Object[] result;
+    RowMetaInterface resultMeta;
+    KettleException error;
+
+    /** Set once the first row with this key is passed on */
+    boolean passedOn;
+
+    Entry( Object[] lookupRow, boolean cacheHit ) {
+      this.lookupRow = lookupRow;
+      this.cacheHit = cacheHit;
+    }
+  }
+
+  /**
+   * A key compared with the value metadata of the lookup keys. The hash code is based on the same normalization as
+   * the comparison: numbers and dates are hashed by value so that a returned key equals the looked up key even if its
+   * scale or class differs, and strings are hashed the way they are compared.
+   */
+  private final class Key {
+    private final Object[] data;
+    private final int hashCode;
+
+    Key( Object[] data ) {
+      this.data = data;
+      int hash = 1;
+      for ( int i = 0; i < data.length; i++ ) {
+        hash = 31 * hash + hashOf( keyMeta.getValueMeta( i ), data[ i ] );
+      }
+      this.hashCode = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+      if ( this == obj ) {
+        return true;
+      }
+      if ( !( obj instanceof Key ) ) {
+        return false;
+      }
+      Object[] other = ( (Key) obj ).data;
+      try {
+        for ( int i = 0; i < data.length; i++ ) {
+          if ( keyMeta.getValueMeta( i ).compare( data[ i ], other[ i ] ) != 0 ) {
+            return false;
+          }
+        }
+        return true;
+      } catch ( KettleValueException e ) {
+        return false;
+      }
+    }
+  }
+
+  private static int hashOf( ValueMetaInterface valueMeta, Object value ) {
+    try {
+      if ( valueMeta.isNull( value ) ) {
+        return 0;
+      }
+      switch ( valueMeta.getType() ) {
+        case ValueMetaInterface.TYPE_STRING:
+          return hashOfString( valueMeta, valueMeta.getString( value ) );
+        case ValueMetaInterface.TYPE_INTEGER:
+          return valueMeta.getInteger( value ).hashCode();
+        case ValueMetaInterface.TYPE_NUMBER:
+          return valueMeta.getNumber( value ).hashCode();
+        case ValueMetaInterface.TYPE_BIGNUMBER:
+          return valueMeta.getBigNumber( value ).stripTrailingZeros().hashCode();
+        case ValueMetaInterface.TYPE_DATE:
+        case ValueMetaInterface.TYPE_TIMESTAMP:
+          return Long.hashCode( valueMeta.getDate( value ).getTime() );
+        case ValueMetaInterface.TYPE_BOOLEAN:
+          return valueMeta.getBoolean( value ).hashCode();
+        default:
+          // Only the comparison decides
+          return 0;
+      }
+    } catch ( KettleValueException e ) {
+      return 0;
+    }
+  }
+
+  private static int hashOfString( ValueMetaInterface valueMeta, String value ) {
+    if ( !valueMeta.isCollatorDisabled() ) {
+      // A collator can consider strings equal in many ways, only the comparison decides
+      return 0;
+    }
+    String string = valueMeta.isIgnoreWhitespace() ? value.trim() : value;
+    if ( !valueMeta.isCaseInsensitive() ) {
+      return string.hashCode();
+    }
+    // The characters that String.compareToIgnoreCase() considers equal
+    int hash = 0;
+    for ( int i = 0; i < string.length(); i++ ) {
+      hash = 31 * hash + Character.toLowerCase( Character.toUpperCase( string.charAt( i ) ) );
+    }
+    return hash;
+  }
+}
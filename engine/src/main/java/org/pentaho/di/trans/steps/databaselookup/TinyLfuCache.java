@@ -0,0 +1,341 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.databaselookup;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * A bounded lookup cache that can be shared by all the copies of a Database lookup step.
+ * <p>
+ * The cache is split in segments by key hash, each guarded by its own lock, so copies looking up different keys seldom
+ * wait for each other. Every segment follows the W-TinyLFU policy: a new entry goes to a small LRU window and when it
+ * drops out of the window, it only replaces the least recently used entry of the main region if its key was looked up
+ * more often. The frequencies are estimated with a count-min sketch of 4-bit counters which are halved periodically to
+ * forget about old lookups. Unlike with plain LRU, a scan over keys that are looked up only once doesn't flush the
+ * popular entries out of the cache, at least not before their counts have aged.
+ * <p>
+ * Keys are kept as a single Long for a single integer key and as serialized bytes otherwise. Only lookups where all
+ * conditions are equalities can be cached like this.
+ *
+ * @since 9.0
+ */
+public class TinyLfuCache implements DatabaseLookupData.Cache {
+  private static final int MAX_SEGMENTS = 16;
+  private static final int MIN_SEGMENT_CAPACITY = 64;
+
+  private final Segment[] segments;
+  private final int segmentMask;
+
+  private final AtomicInteger users;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder loadNanos = new LongAdder();
+  private final AtomicLong maxLoadNanos = new AtomicLong();
+
+  /**
+   * @param capacity
+   *          the maximum number of entries, 0 or less for an unbounded cache
+   * @param users
+   *          the number of step copies sharing the cache, see {@link #release()}
+   */
+  public TinyLfuCache( int capacity, int users ) {
+    int nrSegments = 1;
+    while ( nrSegments < MAX_SEGMENTS && ( capacity <= 0 || capacity / ( nrSegments * 2 ) >= MIN_SEGMENT_CAPACITY ) ) {
+      nrSegments <<= 1;
+    }
+    segments = new Segment[nrSegments];
+    for ( int i = 0; i < nrSegments; i++ ) {
+      int segmentCapacity = capacity <= 0 ? 0 : capacity / nrSegments + ( i < capacity % nrSegments ? 1 : 0 );
+      segments[i] = new Segment( segmentCapacity );
+    }
+    segmentMask = nrSegments - 1;
+    this.users = new AtomicInteger( users );
+  }
+
+  @Override
+  public Object[] getRowFromCache( RowMetaInterface lookupMeta, Object[] lookupRow ) throws KettleException {
+    Object key = createKey( lookupMeta, lookupRow );
+    int hash = spread( key.hashCode() );
+    Object[] row = segments[hash & segmentMask].get( key, hash );
+    if ( row == null ) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return row;
+  }
+
+  @Override
+  public void storeRowInCache( DatabaseLookupMeta meta, RowMetaInterface lookupMeta, Object[] lookupRow,
+                               Object[] add ) {
+    Object key;
+    try {
+      key = createKey( lookupMeta, lookupRow );
+    } catch ( KettleValueException e ) {
+      return; // the row is simply not cached
+    }
+    int hash = spread( key.hashCode() );
+    if ( segments[hash & segmentMask].put( key, hash, add ) ) {
+      evictions.increment();
+    }
+  }
+
+  /**
+   * Record the time it took to look up a row in the database after a cache miss.
+   */
+  public void recordLoad( long nanos ) {
+    loads.increment();
+    loadNanos.add( nanos );
+    long max = maxLoadNanos.get();
+    while ( nanos > max && !maxLoadNanos.compareAndSet( max, nanos ) ) {
+      max = maxLoadNanos.get();
+    }
+  }
+
+  /**
+   * Signal that a step copy no longer uses the cache.
+   *
+   * @return true for the last copy
+   */
+  public boolean release() {
+    return users.decrementAndGet() == 0;
+  }
+
+  public int getSize() {
+    int size = 0;
+    for ( Segment segment : segments ) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return the percentage of lookups answered by the cache
+   */
+  public double getHitRatio() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return total == 0 ? 0.0 : 100.0 * hitCount / total;
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  public long getLoadCount() {
+    return loads.sum();
+  }
+
+  public long getTotalLoadNanos() {
+    return loadNanos.sum();
+  }
+
+  public long getMaxLoadNanos() {
+    return maxLoadNanos.get();
+  }
+
+  private static Object createKey( RowMetaInterface lookupMeta, Object[] lookupRow ) throws KettleValueException {
+    if ( lookupMeta.size() == 1 && lookupRow[0] instanceof Long && lookupMeta.getValueMeta( 0 ).isInteger() ) {
+      return lookupRow[0];
+    }
+    return new BinaryKey( RowMeta.extractData( lookupMeta, lookupRow ) );
+  }
+
+  private static int spread( int hashCode ) {
+    int h = hashCode * 0x9E3779B9;
+    return h ^ ( h >>> 16 );
+  }
+
+  private static final class BinaryKey {
+    private final byte[] bytes;
+    private final int hashCode;
+
+    BinaryKey( byte[] bytes ) {
+      this.bytes = bytes;
+      this.hashCode = Arrays.hashCode( bytes );
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+      return obj instanceof BinaryKey && Arrays.equals( bytes, ( (BinaryKey) obj ).bytes );
+    }
+  }
+
+  /**
+   * A part of the cache with its own window and main region, both in LRU order, and its own frequency sketch.
+   */
+  private static final class Segment {
+    private final LinkedHashMap<Object, Object[]> window = new LinkedHashMap<Object, Object[]>( 16, 0.75f, true );
+    private final LinkedHashMap<Object, Object[]> main = new LinkedHashMap<Object, Object[]>( 16, 0.75f, true );
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final FrequencySketch sketch;
+
+    Segment( int capacity ) {
+      if ( capacity <= 0 ) {
+        // Unbounded: nothing is ever evicted, there's no need to keep track of frequencies
+        windowCapacity = Integer.MAX_VALUE;
+        mainCapacity = 0;
+        sketch = null;
+      } else {
+        windowCapacity = Math.max( 1, capacity / 100 );
+        mainCapacity = capacity - windowCapacity;
+        sketch = new FrequencySketch( capacity );
+      }
+    }
+
+    synchronized Object[] get( Object key, int hash ) {
+      if ( sketch != null ) {
+        sketch.increment( hash );
+      }
+      Object[] row = window.get( key );
+      return row != null ? row : main.get( key );
+    }
+
+    /**
+     * @return true if an entry was evicted
+     */
+    synchronized boolean put( Object key, int hash, Object[] row ) {
+      if ( main.containsKey( key ) ) {
+        main.put( key, row );
+        return false;
+      }
+      window.put( key, row );
+      if ( window.size() <= windowCapacity ) {
+        return false;
+      }
+
+      // The least recently used entry of the window either moves to the main region or is evicted
+      //
+      Iterator<Map.Entry<Object, Object[]>> iterator = window.entrySet().iterator();
+      Map.Entry<Object, Object[]> candidate = iterator.next();
+      iterator.remove();
+      if ( main.size() < mainCapacity ) {
+        main.put( candidate.getKey(), candidate.getValue() );
+        return false;
+      }
+      if ( mainCapacity > 0 ) {
+        Map.Entry<Object, Object[]> victim = main.entrySet().iterator().next();
+        if ( sketch.frequency( spread( candidate.getKey().hashCode() ) )
+          > sketch.frequency( spread( victim.getKey().hashCode() ) ) ) {
+          main.remove( victim.getKey() );
+          main.put( candidate.getKey(), candidate.getValue() );
+        }
+      }
+      return true;
+    }
+
+    synchronized int size() {
+      return window.size() + main.size();
+    }
+  }
+
+  /**
+   * A count-min sketch of 4-bit counters, 16 to a long. Every key is counted in 4 counters and its frequency is the
+   * lowest of them. After 10 times as many increments as the capacity of the cache, all counters are halved.
+   */
+  static final class FrequencySketch {
+    private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch( int capacity ) {
+      int length = 8;
+      while ( length < capacity && length < ( 1 << 24 ) ) {
+        length <<= 1;
+      }
+      table = new long[length];
+      tableMask = length - 1;
+      sampleSize = (int) Math.min( 10L * capacity, Integer.MAX_VALUE );
+    }
+
+    int frequency( int hash ) {
+      int frequency = 15;
+      for ( int i = 0; i < SEEDS.length; i++ ) {
+        long h = indexHash( hash, i );
+        int shift = (int) ( h >>> 60 ) << 2;
+        frequency = Math.min( frequency, (int) ( table[(int) h & tableMask] >>> shift ) & 0xF );
+      }
+      return frequency;
+    }
+
+    void increment( int hash ) {
+      boolean added = false;
+      for ( int i = 0; i < SEEDS.length; i++ ) {
+        long h = indexHash( hash, i );
+        int index = (int) h & tableMask;
+        int shift = (int) ( h >>> 60 ) << 2;
+        if ( ( ( table[index] >>> shift ) & 0xF ) < 15 ) {
+          table[index] += 1L << shift;
+          added = true;
+        }
+      }
+      if ( added && ++additions >= sampleSize ) {
+        reset();
+      }
+    }
+
+    private void reset() {
+      for ( int i = 0; i < table.length; i++ ) {
+        table[i] = ( table[i] >>> 1 ) & RESET_MASK;
+      }
+      additions >>>= 1;
+    }
+
+    private static long indexHash( int hash, int i ) {
+      long h = ( hash + SEEDS[i] ) * SEEDS[i];
+      return h ^ ( h >>> 29 );
+    }
+  }
+}
@@ -38,6 +38,9 @@ import java.util.Collections;
 import org.apache.commons.math.stat.descriptive.rank.Percentile;
 import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.BlockCompressionInputStream;
+import org.pentaho.di.core.compress.BlockCompressionOutputStream;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
@@ -280,6 +283,8 @@ public class GroupBy extends BaseStep implements StepInterface {
         calcAggregate( data.previous );
         addToBuffer( data.previous );
       }
+      // Flush the rows on file (if any) before reading them back
+      closeOutput();
       data.groupResult = getAggregateResult();
 
       Object[] row = getRowFromBuffer();
@@ -427,11 +432,19 @@ public class GroupBy extends BaseStep implements StepInterface {
 
       switch ( meta.getAggregateType()[ i ] ) {
         case GroupByMeta.TYPE_GROUP_SUM:
-          data.agg[ i ] = ValueDataUtil.sum( valueMeta, value, subjMeta, subj );
+          if ( data.sums != null && data.sums[ i ] != null ) {
+            data.sums[ i ].add( subjMeta, subj );
+          } else {
+            data.agg[ i ] = ValueDataUtil.sum( valueMeta, value, subjMeta, subj );
+          }
           break;
         case GroupByMeta.TYPE_GROUP_AVERAGE:
           if ( !subjMeta.isNull( subj ) ) {
-            data.agg[ i ] = ValueDataUtil.sum( valueMeta, value, subjMeta, subj );
+            if ( data.sums != null && data.sums[ i ] != null ) {
+              data.sums[ i ].add( subjMeta, subj );
+            } else {
+              data.agg[ i ] = ValueDataUtil.sum( valueMeta, value, subjMeta, subj );
+            }
             data.counts[ i ]++;
           }
           break;
@@ -581,6 +594,7 @@ public class GroupBy extends BaseStep implements StepInterface {
     }
     data.distinctObjs = null;
     data.agg = new Object[ data.subjectnrs.length ];
+    data.sums = new NumericAccumulator[ data.subjectnrs.length ];
     data.mean = new double[ data.subjectnrs.length ]; // sets all doubles to 0.0
     data.aggMeta = new RowMeta();
 
@@ -603,6 +617,10 @@ public class GroupBy extends BaseStep implements StepInterface {
           } else {
             vMeta = new ValueMetaNumber( meta.getAggregateField()[ i ] );
           }
+          if ( aggType == GroupByMeta.TYPE_GROUP_SUM || aggType == GroupByMeta.TYPE_GROUP_AVERAGE ) {
+            // Sum in a primitive slot, the value is only built in getAggregateResult()
+            data.sums[ i ] = NumericAccumulator.create( vMeta );
+          }
           break;
         case GroupByMeta.TYPE_GROUP_MEDIAN:
         case GroupByMeta.TYPE_GROUP_PERCENTILE:
@@ -702,6 +720,9 @@ public class GroupBy extends BaseStep implements StepInterface {
 
     for ( int i = 0; i < data.subjectnrs.length; i++ ) {
       Object ag = data.agg[ i ];
+      if ( data.sums != null && data.sums[ i ] != null ) {
+        ag = data.sums[ i ].getValue();
+      }
       switch ( meta.getAggregateType()[ i ] ) {
         case GroupByMeta.TYPE_GROUP_SUM:
           break;
@@ -797,7 +818,8 @@ public class GroupBy extends BaseStep implements StepInterface {
         }
         data.tempFile = File.createTempFile( getMeta().getPrefix(), ".tmp", new File( pathToTmp ) );
         data.fosToTempFile = new FileOutputStream( data.tempFile );
-        data.dosToTempFile = new DataOutputStream( data.fosToTempFile );
+        data.dosToTempFile =
+          new DataOutputStream( new BlockCompressionOutputStream( data.fosToTempFile, data.compressionProvider ) );
         data.firstRead = true;
       } catch ( IOException e ) {
         throw new KettleFileException( BaseMessages.getString( PKG, "GroupBy.Exception.UnableToCreateTemporaryFile" ),
@@ -824,7 +846,8 @@ public class GroupBy extends BaseStep implements StepInterface {
         // Open the inputstream first...
         try {
           data.fisToTmpFile = new FileInputStream( data.tempFile );
-          data.disToTmpFile = new DataInputStream( data.fisToTmpFile );
+          data.disToTmpFile = new DataInputStream(
+            new BlockCompressionInputStream( data.fisToTmpFile, data.compressionProvider, true ) );
           data.firstRead = false;
         } catch ( IOException e ) {
           throw new KettleFileException( BaseMessages.getString(
@@ -896,6 +919,16 @@ public class GroupBy extends BaseStep implements StepInterface {
 
       data.rowsOnFile = 0;
 
+      String compressionType = environmentSubstitute( meta.getCompressionType() );
+      if ( !Utils.isEmpty( compressionType ) ) {
+        data.compressionProvider =
+          CompressionProviderFactory.getInstance().getCompressionProviderByName( compressionType );
+        if ( data.compressionProvider == null ) {
+          logError( BaseMessages.getString( PKG, "GroupBy.Log.UnknownCompressionType", compressionType ) );
+          return false;
+        }
+      }
+
       return true;
     }
     return false;
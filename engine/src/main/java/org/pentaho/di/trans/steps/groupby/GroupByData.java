@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
+import org.pentaho.di.core.compress.CompressionProvider;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -49,6 +50,10 @@ public class GroupByData extends BaseStepData implements StepDataInterface {
    */
   public RowMetaInterface aggMeta;
   public Object[] agg;
+  /**
+   * running totals of the sum and average aggregates, null for the other aggregates
+   */
+  public NumericAccumulator[] sums;
   public RowMetaInterface groupMeta;
   public RowMetaInterface groupAggMeta; // for speed: groupMeta+aggMeta
   public int[] groupnrs;
@@ -70,6 +75,8 @@ public class GroupByData extends BaseStepData implements StepDataInterface {
 
   public DataOutputStream dosToTempFile;
 
+  public CompressionProvider compressionProvider;
+
   public int rowsOnFile;
 
   public boolean firstRead;
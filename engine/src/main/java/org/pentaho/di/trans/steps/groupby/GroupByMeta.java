@@ -148,6 +148,11 @@ public class GroupByMeta extends BaseStepMeta implements StepMetaInterface {
    */
   private String prefix;
 
+  /**
+   * The name of the compression provider for the temp files, not compressed if empty
+   */
+  private String compressionType;
+
   /**
    * Indicate that some rows don't need to be considered : TODO: make work in GUI & worker
    */
@@ -357,6 +362,7 @@ public class GroupByMeta extends BaseStepMeta implements StepMetaInterface {
 
       directory = XMLHandler.getTagValue( stepnode, "directory" );
       prefix = XMLHandler.getTagValue( stepnode, "prefix" );
+      compressionType = XMLHandler.getTagValue( stepnode, "compression_type" );
 
       addingLineNrInGroup = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "add_linenr" ) );
       lineNrInGroupField = XMLHandler.getTagValue( stepnode, "linenr_fieldname" );
@@ -433,6 +439,7 @@ public class GroupByMeta extends BaseStepMeta implements StepMetaInterface {
   public void setDefault() {
     directory = "%%java.io.tmpdir%%";
     prefix = "grp";
+    compressionType = null;
 
     passAllRows = false;
     aggregateIgnored = false;
@@ -576,6 +583,7 @@ public class GroupByMeta extends BaseStepMeta implements StepMetaInterface {
     retval.append( "      " ).append( XMLHandler.addTagValue( "field_ignore", aggregateIgnoredField ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "directory", directory ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "prefix", prefix ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "compression_type", compressionType ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "add_linenr", addingLineNrInGroup ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "linenr_fieldname", lineNrInGroupField ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "give_back_row", alwaysGivingBackOneRow ) );
@@ -611,6 +619,7 @@ public class GroupByMeta extends BaseStepMeta implements StepMetaInterface {
       aggregateIgnoredField = rep.getStepAttributeString( id_step, "field_ignore" );
       directory = rep.getStepAttributeString( id_step, "directory" );
       prefix = rep.getStepAttributeString( id_step, "prefix" );
+      compressionType = rep.getStepAttributeString( id_step, "compression_type" );
       addingLineNrInGroup = rep.getStepAttributeBoolean( id_step, "add_linenr" );
       lineNrInGroupField = rep.getStepAttributeString( id_step, "linenr_fieldname" );
 
@@ -652,6 +661,7 @@ public class GroupByMeta extends BaseStepMeta implements StepMetaInterface {
       rep.saveStepAttribute( id_transformation, id_step, "field_ignore", aggregateIgnoredField );
       rep.saveStepAttribute( id_transformation, id_step, "directory", directory );
       rep.saveStepAttribute( id_transformation, id_step, "prefix", prefix );
+      rep.saveStepAttribute( id_transformation, id_step, "compression_type", compressionType );
       rep.saveStepAttribute( id_transformation, id_step, "add_linenr", addingLineNrInGroup );
       rep.saveStepAttribute( id_transformation, id_step, "linenr_fieldname", lineNrInGroupField );
       rep.saveStepAttribute( id_transformation, id_step, "give_back_row", alwaysGivingBackOneRow );
@@ -731,6 +741,20 @@ public class GroupByMeta extends BaseStepMeta implements StepMetaInterface {
     this.prefix = prefix;
   }
 
+  /**
+   * @return the name of the compression provider for the temp files, not compressed if empty
+   */
+  public String getCompressionType() {
+    return compressionType;
+  }
+
+  /**
+   * @param compressionType the name of the compression provider for the temp files
+   */
+  public void setCompressionType( String compressionType ) {
+    this.compressionType = compressionType;
+  }
+
   /**
    * @return the addingLineNrInGroup
    */
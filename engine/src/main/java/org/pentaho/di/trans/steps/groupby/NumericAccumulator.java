@@ -0,0 +1,220 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.groupby;
+
+import java.math.BigDecimal;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.ValueDataUtil;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Accumulates the sum of a numeric aggregate without allocating a value object for every row. The running total is
+ * kept in a primitive slot chosen from the type of the aggregate: a long for integers, a double for numbers and an
+ * unscaled long with a scale for big numbers. The result object is only built once the group is complete.
+ * <p>
+ * The outcome is the same as that of {@link ValueDataUtil#sum(ValueMetaInterface, Object, ValueMetaInterface, Object)}:
+ * null values are skipped, the sum of only null values is null, integers wrap around like Java longs do and big
+ * numbers are added exactly. A big number sum that no longer fits in a long continues as a {@link BigDecimal}.
+ *
+ * @since 9.0
+ */
+public abstract class NumericAccumulator {
+
+  /**
+   * Creates the accumulator for an aggregate of the given type.
+   *
+   * @param aggMeta the value meta of the aggregate
+   * @return the accumulator or null if there is no specialized accumulator for the type of the aggregate
+   */
+  public static NumericAccumulator create( ValueMetaInterface aggMeta ) {
+    switch ( aggMeta.getType() ) {
+      case ValueMetaInterface.TYPE_INTEGER:
+        return new IntegerSum();
+      case ValueMetaInterface.TYPE_NUMBER:
+        return new NumberSum();
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        return new BigNumberSum();
+      default:
+        return null;
+    }
+  }
+
+  protected boolean empty = true;
+
+  /**
+   * Adds a value to the sum, null values are ignored.
+   *
+   * @param subjMeta the value meta of the subject
+   * @param subj the subject value, in the storage type of the subject meta
+   * @throws KettleValueException in case the value can't be converted to the type of the sum
+   */
+  public abstract void add( ValueMetaInterface subjMeta, Object subj ) throws KettleValueException;
+
+  /**
+   * Adds the sum of another accumulator of the same type, for instance the partial sum of another step copy.
+   *
+   * @param other the other accumulator
+   */
+  public abstract void merge( NumericAccumulator other );
+
+  /**
+   * @return the sum as a value of the aggregate type or null if only null values were added
+   */
+  public abstract Object getValue();
+
+  /**
+   * @return true if no value other than null was added
+   */
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  private static final class IntegerSum extends NumericAccumulator {
+    private long sum;
+
+    @Override
+    public void add( ValueMetaInterface subjMeta, Object subj ) throws KettleValueException {
+      Long value = subjMeta.getInteger( subj );
+      if ( value != null ) {
+        sum += value.longValue();
+        empty = false;
+      }
+    }
+
+    @Override
+    public void merge( NumericAccumulator other ) {
+      if ( !other.empty ) {
+        sum += ( (IntegerSum) other ).sum;
+        empty = false;
+      }
+    }
+
+    @Override
+    public Object getValue() {
+      return empty ? null : Long.valueOf( sum );
+    }
+  }
+
+  private static final class NumberSum extends NumericAccumulator {
+    private double sum;
+
+    @Override
+    public void add( ValueMetaInterface subjMeta, Object subj ) throws KettleValueException {
+      Double value = subjMeta.getNumber( subj );
+      if ( value != null ) {
+        sum += value.doubleValue();
+        empty = false;
+      }
+    }
+
+    @Override
+    public void merge( NumericAccumulator other ) {
+      if ( !other.empty ) {
+        sum += ( (NumberSum) other ).sum;
+        empty = false;
+      }
+    }
+
+    @Override
+    public Object getValue() {
+      return empty ? null : Double.valueOf( sum );
+    }
+  }
+
+  static final class BigNumberSum extends NumericAccumulator {
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+      POWERS_OF_TEN[0] = 1L;
+      for ( int i = 1; i < POWERS_OF_TEN.length; i++ ) {
+        POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10L;
+      }
+    }
+
+    private long unscaled;
+    private int scale;
+    private BigDecimal overflow;
+
+    @Override
+    public void add( ValueMetaInterface subjMeta, Object subj ) throws KettleValueException {
+      BigDecimal value = subjMeta.getBigNumber( subj );
+      if ( value != null ) {
+        add( value );
+      }
+    }
+
+    @Override
+    public void merge( NumericAccumulator other ) {
+      if ( !other.empty ) {
+        add( ( (BigNumberSum) other ).getBigValue() );
+      }
+    }
+
+    void add( BigDecimal value ) {
+      if ( overflow == null && value.precision() < POWERS_OF_TEN.length ) {
+        try {
+          // Values with up to 18 digits have a compact unscaled long. Moving the decimal point to the end reads it
+          // without creating a BigInteger, the short lived BigDecimal in between doesn't escape this method.
+          //
+          long u =
+            value.scale() == 0 ? value.longValueExact() : value.scaleByPowerOfTen( value.scale() ).longValueExact();
+          if ( empty ) {
+            unscaled = u;
+            scale = value.scale();
+          } else if ( value.scale() > scale ) {
+            // Keep the value of the sum while moving it to the larger scale, just like BigDecimal.add() does
+            //
+            long rescaled = multiplyByPowerOfTen( unscaled, value.scale() - scale );
+            unscaled = Math.addExact( rescaled, u );
+            scale = value.scale();
+          } else {
+            unscaled = Math.addExact( unscaled, multiplyByPowerOfTen( u, scale - value.scale() ) );
+          }
+          empty = false;
+          return;
+        } catch ( ArithmeticException e ) {
+          // The sum doesn't fit in a long anymore, continue with a BigDecimal
+        }
+      }
+      overflow = empty ? value : getBigValue().add( value );
+      empty = false;
+    }
+
+    private static long multiplyByPowerOfTen( long value, int exponent ) {
+      if ( exponent >= POWERS_OF_TEN.length ) {
+        throw new ArithmeticException( "Scale difference too large: " + exponent );
+      }
+      return Math.multiplyExact( value, POWERS_OF_TEN[exponent] );
+    }
+
+    private BigDecimal getBigValue() {
+      return overflow != null ? overflow : BigDecimal.valueOf( unscaled, scale );
+    }
+
+    @Override
+    public Object getValue() {
+      return empty ? null : getBigValue();
+    }
+  }
+}
@@ -33,13 +33,19 @@ import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.pentaho.di.core.AdaptiveRowSet;
 import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.compress.BlockCompressionInputStream;
+import org.pentaho.di.core.compress.BlockCompressionOutputStream;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -73,6 +79,10 @@ public class JoinRows extends BaseStep implements StepInterface {
     //
     openRemoteInputStepSocketsOnce();
 
+    // The cached rows are written to the temporary files as well, so they are the first to go when memory is short
+    //
+    data.memoryConsumer = registerMemoryConsumer( TransMemoryManager.SPILL_PRIORITY_CACHE );
+
     try {
       // Start with the caching of the data, write later...
       data.caching = true;
@@ -158,7 +168,10 @@ public class JoinRows extends BaseStep implements StepInterface {
         if ( data.dataInputStream[filenr] == null ) {
           try {
             data.fileInputStream[filenr] = new FileInputStream( data.file[filenr] );
-            data.dataInputStream[filenr] = new DataInputStream( data.fileInputStream[filenr] );
+            // The file is read again for every main row, so don't start a read-ahead task for each pass
+            //
+            data.dataInputStream[filenr] = new DataInputStream(
+              new BlockCompressionInputStream( data.fileInputStream[filenr], data.compressionProvider, false ) );
           } catch ( FileNotFoundException fnfe ) {
             logError( BaseMessages.getString( PKG, "JoinRows.Log.UnableToFindOrOpenTemporaryFile" )
               + data.file[filenr] + "] : " + fnfe.toString() );
@@ -360,7 +373,8 @@ public class JoinRows extends BaseStep implements StepInterface {
         data.fileOutputStream[data.filenr] = new FileOutputStream( data.file[data.filenr] );
 
         // Open the data output stream...
-        data.dataOutputStream[data.filenr] = new DataOutputStream( data.fileOutputStream[data.filenr] );
+        data.dataOutputStream[data.filenr] = new DataOutputStream(
+          new BlockCompressionOutputStream( data.fileOutputStream[data.filenr], data.compressionProvider ) );
       } catch ( FileNotFoundException fnfe ) {
         logError( BaseMessages.getString( PKG, "JoinRows.Log.UnableToOpenOutputstream" )
           + data.file[data.filenr].toString() + "] : " + fnfe.toString() );
@@ -392,13 +406,21 @@ public class JoinRows extends BaseStep implements StepInterface {
       //
       // Perhaps we want to cache this data??
       //
-      if ( data.size[data.filenr] <= meta.getCacheSize() ) {
+      if ( data.cacheDropped ) {
+        // Memory was short: all rows are read back from the temporary files
+        //
+        data.cache[data.filenr] = null;
+      } else if ( data.size[data.filenr] <= meta.getCacheSize() ) {
         if ( data.cache[data.filenr] == null ) {
           data.cache[data.filenr] = new ArrayList<Object[]>();
         }
 
         // Add this row to the cache!
         data.cache[data.filenr].add( rowData );
+
+        if ( !data.memoryConsumer.allocate( AdaptiveRowSet.estimateRowBytes( rowData ) ) ) {
+          dropCache();
+        }
       } else {
         // we can't cope with this many rows: reset the cache...
         if ( log.isDetailed() ) {
@@ -429,6 +451,20 @@ public class JoinRows extends BaseStep implements StepInterface {
     return true;
   }
 
+  /**
+   * Give the memory of the cached rows back to the transformation, they are read back from the temporary files.
+   */
+  private void dropCache() {
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "JoinRows.Log.DroppingCache" ) );
+    }
+    for ( int i = 1; i < data.cache.length; i++ ) {
+      data.cache[i] = null;
+    }
+    data.cacheDropped = true;
+    data.memoryConsumer.freeAll();
+  }
+
   private RowMetaInterface createOutputRowMeta( RowMetaInterface[] fileRowMeta ) {
     RowMetaInterface outputRowMeta = new RowMeta();
     for ( int i = 0; i < data.fileRowMeta.length; i++ ) {
@@ -437,6 +473,26 @@ public class JoinRows extends BaseStep implements StepInterface {
     return outputRowMeta;
   }
 
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (JoinRowsMeta) smi;
+    data = (JoinRowsData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+
+    String compressionType = environmentSubstitute( meta.getCompressionType() );
+    if ( !Utils.isEmpty( compressionType ) ) {
+      data.compressionProvider =
+        CompressionProviderFactory.getInstance().getCompressionProviderByName( compressionType );
+      if ( data.compressionProvider == null ) {
+        logError( BaseMessages.getString( PKG, "JoinRows.Log.UnknownCompressionType", compressionType ) );
+        return false;
+      }
+    }
+    return true;
+  }
+
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (JoinRowsMeta) smi;
     data = (JoinRowsData) sdi;
@@ -30,7 +30,9 @@ import java.io.FileOutputStream;
 import java.util.List;
 
 import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.compress.CompressionProvider;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -53,9 +55,17 @@ public class JoinRowsData extends BaseStepData implements StepDataInterface {
 
   public boolean caching;
 
+  /**
+   * Set when the caches were dropped to stay within the memory budget of the transformation
+   */
+  public boolean cacheDropped;
+  public TransMemoryManager.Consumer memoryConsumer;
+
   public FileOutputStream[] fileOutputStream;
   public DataOutputStream[] dataOutputStream;
 
+  public CompressionProvider compressionProvider;
+
   public Object[][] joinrow;
 
   /**
@@ -66,6 +66,10 @@ public class JoinRowsMeta extends BaseStepMeta implements StepMetaInterface {
   @Injection( name = "MAX_CACHE_SIZE" )
   private int cacheSize;
 
+  /** The name of the compression provider for the temporary files, not compressed if empty */
+  @Injection( name = "COMPRESSION_TYPE" )
+  private String compressionType;
+
   /** Which step is providing the lookup data? */
   private StepMeta mainStep;
 
@@ -151,6 +155,21 @@ public class JoinRowsMeta extends BaseStepMeta implements StepMetaInterface {
     this.prefix = prefix;
   }
 
+  /**
+   * @return Returns the name of the compression provider for the temporary files, not compressed if empty.
+   */
+  public String getCompressionType() {
+    return compressionType;
+  }
+
+  /**
+   * @param compressionType
+   *          The name of the compression provider for the temporary files.
+   */
+  public void setCompressionType( String compressionType ) {
+    this.compressionType = compressionType;
+  }
+
   /**
    * @return Returns the condition.
    */
@@ -193,6 +212,7 @@ public class JoinRowsMeta extends BaseStepMeta implements StepMetaInterface {
       directory = XMLHandler.getTagValue( stepnode, "directory" );
       prefix = XMLHandler.getTagValue( stepnode, "prefix" );
       cacheSize = Const.toInt( XMLHandler.getTagValue( stepnode, "cache_size" ), -1 );
+      compressionType = XMLHandler.getTagValue( stepnode, "compression_type" );
 
       mainStepname = XMLHandler.getTagValue( stepnode, "main" );
 
@@ -217,6 +237,7 @@ public class JoinRowsMeta extends BaseStepMeta implements StepMetaInterface {
     directory = "%%java.io.tmpdir%%";
     prefix = "out";
     cacheSize = 500;
+    compressionType = null;
 
     mainStepname = null;
   }
@@ -228,6 +249,7 @@ public class JoinRowsMeta extends BaseStepMeta implements StepMetaInterface {
     retval.append( "      " ).append( XMLHandler.addTagValue( "directory", directory ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "prefix", prefix ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "cache_size", cacheSize ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "compression_type", compressionType ) );
 
     if ( mainStepname == null ) {
       mainStepname = getLookupStepname();
@@ -251,6 +273,7 @@ public class JoinRowsMeta extends BaseStepMeta implements StepMetaInterface {
       directory = rep.getStepAttributeString( id_step, "directory" );
       prefix = rep.getStepAttributeString( id_step, "prefix" );
       cacheSize = (int) rep.getStepAttributeInteger( id_step, "cache_size" );
+      compressionType = rep.getStepAttributeString( id_step, "compression_type" );
 
       mainStepname = rep.getStepAttributeString( id_step, "main" );
 
@@ -270,6 +293,7 @@ public class JoinRowsMeta extends BaseStepMeta implements StepMetaInterface {
       rep.saveStepAttribute( id_transformation, id_step, "directory", directory );
       rep.saveStepAttribute( id_transformation, id_step, "prefix", prefix );
       rep.saveStepAttribute( id_transformation, id_step, "cache_size", cacheSize );
+      rep.saveStepAttribute( id_transformation, id_step, "compression_type", compressionType );
 
       if ( mainStepname == null ) {
         mainStepname = getLookupStepname();
@@ -24,8 +24,11 @@ package org.pentaho.di.trans.steps.memgroupby;
 
 import java.util.Set;
 
+import org.pentaho.di.trans.steps.groupby.NumericAccumulator;
+
 public class Aggregate {
   public Object[] agg;
+  public NumericAccumulator[] sums;
   public long[] counts;
   public Set<Object>[] distinctObjs;
   public double[] mean;
@@ -22,14 +22,25 @@
 
 package org.pentaho.di.trans.steps.memgroupby;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.math.stat.descriptive.rank.Percentile;
+import org.pentaho.di.core.AdaptiveRowSet;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.BlockCompressionInputStream;
+import org.pentaho.di.core.compress.BlockCompressionOutputStream;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleValueException;
@@ -44,13 +55,17 @@ import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.steps.groupby.NumericAccumulator;
 import org.pentaho.di.trans.steps.memgroupby.MemoryGroupByData.HashEntry;
+import org.pentaho.di.trans.steps.memgroupby.MemoryGroupByData.PartialResult;
+import org.pentaho.di.trans.steps.memgroupby.MemoryGroupByData.SpillPartition;
 
 /**
  * Groups information based on aggregation rules. (sum, count, ...)
@@ -61,6 +76,17 @@ import org.pentaho.di.trans.steps.memgroupby.MemoryGroupByData.HashEntry;
 public class MemoryGroupBy extends BaseStep implements StepInterface {
   private static Class<?> PKG = MemoryGroupByMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /**
+   * The number of temporary files the rows of new groups are spread over when the groups no longer fit in memory
+   */
+  static final int SPILL_PARTITIONS = 16;
+
+  /**
+   * The number of groups aggregated in memory before spilling, even when over the memory budget, so every pass over
+   * the spilled rows makes progress
+   */
+  static final int MIN_GROUPS_IN_MEMORY = 1000;
+
   private MemoryGroupByMeta meta;
 
   private MemoryGroupByData data;
@@ -84,8 +110,16 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
 
     Object[] r = getRow(); // get row!
 
+    // The other copies hand over their groups to the first copy, which combines them with its own
+    //
+    if ( r == null && data.combiningCopies && getCopy() > 0 ) {
+      handOverGroups();
+      setOutputDone();
+      return false;
+    }
+
     if ( first ) {
-      if ( ( r == null ) && ( !meta.isAlwaysGivingBackOneRow() ) ) {
+      if ( ( r == null ) && ( !meta.isAlwaysGivingBackOneRow() ) && ( !data.combiningCopies ) ) {
         setOutputDone();
         return false;
       }
@@ -97,6 +131,10 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       compatibilityMode = ValueMetaBase.convertStringToBoolean(
         getVariable( Const.KETTLE_COMPATIBILITY_MEMORY_GROUP_BY_SUM_AVERAGE_RETURN_NUMBER_TYPE, "N" ) );
 
+      // The groups count against the memory budget of the transformation, see addToAggregate()
+      //
+      data.memoryConsumer = registerMemoryConsumer( TransMemoryManager.SPILL_PRIORITY_DEFAULT );
+
       // What is the output looking like?
       //
       data.inputRowMeta = getInputRowMeta();
@@ -119,8 +157,9 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       data.subjectnrs = new int[meta.getSubjectField().length];
       data.groupnrs = new int[meta.getGroupField().length];
 
-      // If the step does not receive any rows, we can not lookup field position indexes
-      if ( r != null ) {
+      // If the step does not receive any rows, we can not lookup field position indexes,
+      // unless we need them for the groups of the other step copies.
+      if ( r != null || data.combiningCopies ) {
         for ( int i = 0; i < meta.getSubjectField().length; i++ ) {
           if ( meta.getAggregateType()[i] == MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY ) {
             data.subjectnrs[i] = 0;
@@ -174,6 +213,10 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
     // Here is where we start to do the real work...
     //
     if ( r == null ) { // no more input to be expected... (or none received in the first place)
+      if ( data.combiningCopies && !combineGroupsOfCopies() ) {
+        setOutputDone();
+        return false;
+      }
       handleLastOfGroup();
 
       setOutputDone();
@@ -197,27 +240,14 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
   }
 
   private void handleLastOfGroup() throws KettleException {
-    // Dump the content of the map...
-    //
-    for ( HashEntry entry : data.map.keySet() ) {
-      Aggregate aggregate = data.map.get( entry );
-      Object[] aggregateResult = getAggregateResult( aggregate );
+    boolean spilled = data.spillPartitions != null || !data.pendingPartitions.isEmpty();
 
-      Object[] outputRowData = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
-      int index = 0;
-      for ( int i = 0; i < data.groupMeta.size(); i++ ) {
-        outputRowData[index++] = data.groupMeta.getValueMeta( i ).convertToNormalStorageType( entry.getGroupData()[i] );
-      }
-      for ( int i = 0; i < data.aggMeta.size(); i++ ) {
-        outputRowData[index++] = data.aggMeta.getValueMeta( i ).convertToNormalStorageType( aggregateResult[i] );
-      }
-      putRow( data.outputRowMeta, outputRowData );
-    }
+    outputGroups();
 
     // What if we always need to give back one row?
     // This means we give back 0 for count all, count distinct, null for everything else
     //
-    if ( data.map.isEmpty() && meta.isAlwaysGivingBackOneRow() ) {
+    if ( data.map.isEmpty() && !spilled && meta.isAlwaysGivingBackOneRow() ) {
       Object[] outputRowData = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
       int index = 0;
       for ( int i = 0; i < data.groupMeta.size(); i++ ) {
@@ -234,6 +264,352 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       }
       putRow( data.outputRowMeta, outputRowData );
     }
+
+    aggregateSpilledPartitions();
+  }
+
+  /**
+   * Dump the content of the map...
+   */
+  private void outputGroups() throws KettleException {
+    for ( HashEntry entry : data.map.keySet() ) {
+      Aggregate aggregate = data.map.get( entry );
+      Object[] aggregateResult = getAggregateResult( aggregate );
+
+      Object[] outputRowData = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
+      int index = 0;
+      for ( int i = 0; i < data.groupMeta.size(); i++ ) {
+        outputRowData[index++] = data.groupMeta.getValueMeta( i ).convertToNormalStorageType( entry.getGroupData()[i] );
+      }
+      for ( int i = 0; i < data.aggMeta.size(); i++ ) {
+        outputRowData[index++] = data.aggMeta.getValueMeta( i ).convertToNormalStorageType( aggregateResult[i] );
+      }
+      putRow( data.outputRowMeta, outputRowData );
+    }
+  }
+
+  /**
+   * Stop adding groups to the map: from now on the rows of new groups are written to temporary files, partitioned on
+   * the hash of the group. The groups that are in memory keep being aggregated in memory, so every group is either
+   * completely in memory or completely on disk.
+   */
+  private void startSpilling() {
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "MemoryGroupBy.Log.SpillingNewGroups", data.map.size() ) );
+    }
+    data.spillPartitions = new SpillPartition[SPILL_PARTITIONS];
+  }
+
+  private void spillRow( HashEntry entry, Object[] r ) throws KettleException {
+    int partitionNr = getSpillPartition( entry.hashCode(), data.spillLevel );
+    SpillPartition partition = data.spillPartitions[partitionNr];
+    try {
+      if ( partition == null ) {
+        partition = new SpillPartition( File.createTempFile( "memgroupby", ".tmp" ), data.spillLevel + 1 );
+        data.spillPartitions[partitionNr] = partition;
+        partition.outputStream =
+          new DataOutputStream( new BlockCompressionOutputStream( new FileOutputStream( partition.file ), null ) );
+      }
+    } catch ( IOException e ) {
+      throw new KettleException(
+        BaseMessages.getString( PKG, "MemoryGroupBy.Exception.UnableToCreateTemporaryFile" ), e );
+    }
+    data.inputRowMeta.writeData( partition.outputStream, r );
+    partition.rows++;
+  }
+
+  /**
+   * Pick the partition of a group with a different hash function for every level, so that the groups of a partition
+   * that didn't fit in memory are spread over all partitions of the next level.
+   */
+  static int getSpillPartition( int hashCode, int level ) {
+    int h = hashCode ^ ( level * 0x9E3779B9 );
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return h & ( SPILL_PARTITIONS - 1 );
+  }
+
+  /**
+   * Close the temporary files of the current pass and queue them for aggregation, before any partitions spilled by
+   * earlier passes to keep the number of files on disk down.
+   */
+  private void finishSpilling() throws KettleException {
+    if ( data.spillPartitions == null ) {
+      return;
+    }
+    for ( int i = data.spillPartitions.length - 1; i >= 0; i-- ) {
+      SpillPartition partition = data.spillPartitions[i];
+      if ( partition != null ) {
+        try {
+          partition.outputStream.close();
+        } catch ( IOException e ) {
+          throw new KettleException( BaseMessages.getString( PKG, "MemoryGroupBy.Exception.UnableToWriteTemporaryFile",
+            partition.file ), e );
+        } finally {
+          partition.outputStream = null;
+        }
+        data.pendingPartitions.push( partition );
+      }
+    }
+    data.spillPartitions = null;
+  }
+
+  /**
+   * Aggregate the rows that were written to temporary files, one partition at a time.
+   */
+  private void aggregateSpilledPartitions() throws KettleException {
+    finishSpilling();
+
+    while ( !data.pendingPartitions.isEmpty() && !isStopped() ) {
+      SpillPartition partition = data.pendingPartitions.pop();
+
+      data.map.clear();
+      if ( data.memoryConsumer != null ) {
+        data.memoryConsumer.freeAll();
+      }
+      data.spillLevel = partition.level;
+
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "MemoryGroupBy.Log.AggregatingSpilledPartition", partition.rows,
+          partition.level ) );
+      }
+
+      DataInputStream inputStream = null;
+      try {
+        inputStream =
+          new DataInputStream( new BlockCompressionInputStream( new FileInputStream( partition.file ), null, true ) );
+        for ( long i = 0; i < partition.rows; i++ ) {
+          addToAggregate( data.inputRowMeta.readData( inputStream ) );
+        }
+      } catch ( IOException e ) {
+        throw new KettleException( BaseMessages.getString(
+          PKG, "MemoryGroupBy.Exception.UnableToReadBackRowFromTemporaryFile" ), e );
+      } finally {
+        BaseStep.closeQuietly( inputStream );
+        partition.file.delete();
+      }
+
+      outputGroups();
+      finishSpilling();
+    }
+    data.spillLevel = 0;
+  }
+
+  /**
+   * Hand over the groups of this copy to the first copy of the step.
+   */
+  private void handOverGroups() throws KettleException {
+    StepInterface firstCopy = getTrans().getStepInterface( getStepname(), 0 );
+    if ( !( firstCopy instanceof MemoryGroupBy ) ) {
+      throw new KettleException( BaseMessages.getString( PKG, "MemoryGroupBy.Exception.FirstCopyNotFound",
+        getStepname() ) );
+    }
+    ( (MemoryGroupBy) firstCopy ).addPartialResult(
+      new PartialResult( data.map, data.inputRowMeta, data.groupMeta, data.aggMeta ) );
+    data.map = new HashMap<HashEntry, Aggregate>();
+  }
+
+  /**
+   * Used by the other copies of the step to hand over their groups to this, the first copy.
+   *
+   * @param partialResult the groups of another copy
+   */
+  void addPartialResult( PartialResult partialResult ) {
+    data.partialResults.add( partialResult );
+  }
+
+  /**
+   * Wait for the other copies of the step to hand over their groups and merge them into the groups of this copy.
+   *
+   * @return false if the step was stopped while waiting
+   */
+  private boolean combineGroupsOfCopies() throws KettleException {
+    int copies = getStepMeta().getCopies();
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "MemoryGroupBy.Log.CombiningCopies", copies - 1 ) );
+    }
+    for ( int received = 1; received < copies; ) {
+      if ( isStopped() ) {
+        return false;
+      }
+      PartialResult partialResult;
+      try {
+        partialResult = data.partialResults.poll( 100, TimeUnit.MILLISECONDS );
+      } catch ( InterruptedException e ) {
+        return false;
+      }
+      if ( partialResult != null ) {
+        mergeGroups( partialResult );
+        received++;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Used for junits in MemoryGroupByCombineCopiesTest
+   *
+   * @param partialResult the groups of another copy of the step
+   * @throws KettleException
+   */
+  void mergeGroups( PartialResult partialResult ) throws KettleException {
+    if ( partialResult.map.isEmpty() ) {
+      return;
+    }
+    if ( data.map.isEmpty() ) {
+      // Nothing to merge with: take over the groups together with the metadata they were aggregated with
+      //
+      data.map = partialResult.map;
+      data.inputRowMeta = partialResult.inputRowMeta;
+      data.groupMeta = partialResult.groupMeta;
+      data.aggMeta = partialResult.aggMeta;
+      return;
+    }
+    for ( Map.Entry<HashEntry, Aggregate> entry : partialResult.map.entrySet() ) {
+      Aggregate aggregate = data.map.get( entry.getKey() );
+      if ( aggregate == null ) {
+        data.map.put( entry.getKey(), entry.getValue() );
+      } else {
+        mergeAggregate( aggregate, entry.getValue() );
+      }
+    }
+  }
+
+  /**
+   * Add the aggregates of the same group in another step copy. First, last and concatenation follow the order of the
+   * step copies instead of the order of the input rows.
+   *
+   * @param aggregate the aggregate to add to
+   * @param other the aggregate of the other copy
+   * @throws KettleException
+   */
+  @SuppressWarnings( "unchecked" ) void mergeAggregate( Aggregate aggregate, Aggregate other ) throws KettleException {
+    for ( int i = 0; i < data.subjectnrs.length; i++ ) {
+      ValueMetaInterface subjMeta = data.inputRowMeta.getValueMeta( data.subjectnrs[i] );
+      Object value = aggregate.agg[i];
+      Object otherValue = other.agg[i];
+      ValueMetaInterface valueMeta = data.aggMeta.getValueMeta( i );
+
+      switch ( meta.getAggregateType()[i] ) {
+        case MemoryGroupByMeta.TYPE_GROUP_SUM:
+        case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
+          if ( aggregate.sums != null && aggregate.sums[i] != null ) {
+            aggregate.sums[i].merge( other.sums[i] );
+          } else {
+            aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, valueMeta, otherValue );
+          }
+          aggregate.counts[i] += other.counts[i];
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_MEDIAN:
+        case MemoryGroupByMeta.TYPE_GROUP_PERCENTILE:
+          ( (List<Double>) value ).addAll( (List<Double>) otherValue );
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_STANDARD_DEVIATION:
+          long n1 = aggregate.counts[i];
+          long n2 = other.counts[i];
+          if ( n1 == 0 ) {
+            aggregate.agg[i] = otherValue;
+            aggregate.mean[i] = other.mean[i];
+          } else if ( n2 > 0 ) {
+            // Combine the means and the sums of squared differences of both parts, see Chan et al.
+            double n = n1 + n2;
+            double delta = other.mean[i] - aggregate.mean[i];
+            aggregate.mean[i] += delta * n2 / n;
+            aggregate.agg[i] = (Double) value + (Double) otherValue + delta * delta * ( (double) n1 * n2 ) / n;
+          }
+          aggregate.counts[i] = n1 + n2;
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_DISTINCT:
+          if ( other.distinctObjs != null && other.distinctObjs[i] != null ) {
+            if ( aggregate.distinctObjs == null ) {
+              aggregate.distinctObjs = new Set[meta.getSubjectField().length];
+            }
+            if ( aggregate.distinctObjs[i] == null ) {
+              aggregate.distinctObjs[i] = other.distinctObjs[i];
+            } else {
+              aggregate.distinctObjs[i].addAll( other.distinctObjs[i] );
+            }
+            aggregate.counts[i] = aggregate.distinctObjs[i].size();
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL:
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY:
+          aggregate.counts[i] += other.counts[i];
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_MIN:
+          boolean otherIsNull = subjMeta.isNull( otherValue );
+          boolean valueIsNull = valueMeta.isNull( value );
+          if ( minNullIsValued || ( !otherIsNull && !valueIsNull ) ) {
+            aggregate.agg[i] = subjMeta.compare( otherValue, valueMeta, value ) < 0 ? otherValue : value;
+          } else if ( valueIsNull && !otherIsNull ) {
+            aggregate.agg[i] = otherValue;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_MAX:
+          if ( subjMeta.compare( otherValue, valueMeta, value ) > 0 ) {
+            aggregate.agg[i] = otherValue;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_FIRST:
+          if ( !subjMeta.isNull( otherValue ) && value == null ) {
+            aggregate.agg[i] = otherValue;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_LAST:
+          if ( !subjMeta.isNull( otherValue ) ) {
+            aggregate.agg[i] = otherValue;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_FIRST_INCL_NULL:
+          if ( aggregate.counts[i] == 0 ) {
+            aggregate.agg[i] = otherValue;
+            aggregate.counts[i] = other.counts[i];
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_LAST_INCL_NULL:
+          aggregate.agg[i] = otherValue;
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_CONCAT_COMMA:
+        case MemoryGroupByMeta.TYPE_GROUP_CONCAT_STRING:
+          StringBuilder sb = (StringBuilder) value;
+          StringBuilder otherSb = (StringBuilder) otherValue;
+          if ( otherSb.length() > 0 ) {
+            if ( sb.length() > 0 ) {
+              if ( meta.getAggregateType()[i] == MemoryGroupByMeta.TYPE_GROUP_CONCAT_COMMA ) {
+                sb.append( ", " );
+              } else if ( !Utils.isEmpty( meta.getValueField()[i] ) ) {
+                sb.append( environmentSubstitute( meta.getValueField()[i] ) );
+              }
+            }
+            sb.append( otherSb );
+          }
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * Remove the temporary files that are left when the step is stopped.
+   */
+  private void deleteSpilledPartitions() {
+    if ( data.spillPartitions != null ) {
+      for ( SpillPartition partition : data.spillPartitions ) {
+        if ( partition != null ) {
+          BaseStep.closeQuietly( partition.outputStream );
+          partition.file.delete();
+        }
+      }
+      data.spillPartitions = null;
+    }
+    for ( SpillPartition partition : data.pendingPartitions ) {
+      partition.file.delete();
+    }
+    data.pendingPartitions.clear();
   }
 
   /**
@@ -252,6 +628,13 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
 
     Aggregate aggregate = data.map.get( entry );
     if ( aggregate == null ) {
+      if ( data.spillPartitions != null ) {
+        // No room for new groups, aggregate this one later
+        //
+        spillRow( entry, r );
+        return;
+      }
+
       // Create a new value...
       //
       aggregate = new Aggregate();
@@ -260,6 +643,15 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       // Store it in the map!
       //
       data.map.put( entry, aggregate );
+
+      // Over the memory budget of the transformation? Keep the groups we have and spill the rows of new ones.
+      //
+      if ( data.memoryConsumer != null
+        && !data.memoryConsumer.allocate( AdaptiveRowSet.estimateRowBytes( groupData )
+          + AdaptiveRowSet.estimateRowBytes( aggregate.agg ) )
+        && data.map.size() >= MIN_GROUPS_IN_MEMORY && !data.combiningCopies ) {
+        startSpilling();
+      }
     }
 
     for ( int i = 0; i < data.subjectnrs.length; i++ ) {
@@ -270,11 +662,19 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
 
       switch ( meta.getAggregateType()[i] ) {
         case MemoryGroupByMeta.TYPE_GROUP_SUM:
-          aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, subjMeta, subj );
+          if ( aggregate.sums != null && aggregate.sums[i] != null ) {
+            aggregate.sums[i].add( subjMeta, subj );
+          } else {
+            aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, subjMeta, subj );
+          }
           break;
         case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
           if ( !subjMeta.isNull( subj ) ) {
-            aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, subjMeta, subj );
+            if ( aggregate.sums != null && aggregate.sums[i] != null ) {
+              aggregate.sums[i].add( subjMeta, subj );
+            } else {
+              aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, subjMeta, subj );
+            }
             aggregate.counts[i]++;
           }
           break;
@@ -438,6 +838,19 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
         case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
           vMeta = !compatibilityMode && subjMeta.isNumeric() ? subjMeta.clone() : new ValueMetaNumber();
           vMeta.setName( meta.getAggregateField()[i] );
+          // The sums are always calculated in normal storage. ValueDataUtil.sum() used to switch the aggregate meta
+          // when it saw the first value, the accumulators never call it so it is set here.
+          vMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+          if ( aggregate != null ) {
+            // Sum in a primitive slot, the value is only built in getAggregateResult()
+            NumericAccumulator sum = NumericAccumulator.create( vMeta );
+            if ( sum != null ) {
+              if ( aggregate.sums == null ) {
+                aggregate.sums = new NumericAccumulator[data.subjectnrs.length];
+              }
+              aggregate.sums[i] = sum;
+            }
+          }
           break;
         case MemoryGroupByMeta.TYPE_GROUP_FIRST:
         case MemoryGroupByMeta.TYPE_GROUP_LAST:
@@ -502,6 +915,9 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
     if ( data.subjectnrs != null ) {
       for ( int i = 0; i < data.subjectnrs.length; i++ ) {
         Object ag = aggregate.agg[i];
+        if ( aggregate.sums != null && aggregate.sums[i] != null ) {
+          ag = aggregate.sums[i].getValue();
+        }
         switch ( meta.getAggregateType()[i] ) {
           case MemoryGroupByMeta.TYPE_GROUP_SUM:
             break;
@@ -565,6 +981,7 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
 
     if ( super.init( smi, sdi ) ) {
       data.map = new HashMap<HashEntry, Aggregate>( 5000 );
+      data.combiningCopies = meta.isCombiningCopies() && getStepMeta().getCopies() > 1;
       return true;
     }
     return false;
@@ -572,6 +989,7 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
 
   @Override
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    deleteSpilledPartitions();
     super.dispose( smi, sdi );
     ( (MemoryGroupByData) sdi ).clear();
   }
@@ -585,6 +1003,9 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
     // Clear the complete cache...
     //
     data.map.clear();
+    if ( data.memoryConsumer != null ) {
+      data.memoryConsumer.freeAll();
+    }
 
     data.newBatch = true;
   }
@@ -22,11 +22,18 @@
 
 package org.pentaho.di.trans.steps.memgroupby;
 
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -99,6 +106,66 @@ public class MemoryGroupByData extends BaseStepData implements StepDataInterface
 
   public boolean newBatch;
 
+  public TransMemoryManager.Consumer memoryConsumer;
+
+  /**
+   * The partitions the rows of new groups are written to once the groups no longer fit in memory, null while they do
+   */
+  public SpillPartition[] spillPartitions;
+
+  /**
+   * The partitions that were spilled and still need to be aggregated
+   */
+  public Deque<SpillPartition> pendingPartitions = new ArrayDeque<SpillPartition>();
+
+  /**
+   * 0 while aggregating the input rows, the level of the spilled partition that's being aggregated otherwise
+   */
+  public int spillLevel;
+
+  /**
+   * True if every copy of the step aggregates the rows it receives and the first copy combines the groups of all copies
+   */
+  public boolean combiningCopies;
+
+  /**
+   * The groups the other copies of the step hand over to the first copy once they have read all their rows
+   */
+  public final BlockingQueue<PartialResult> partialResults = new LinkedBlockingQueue<PartialResult>();
+
+  /**
+   * The groups of one step copy with the metadata they were aggregated with.
+   */
+  public static class PartialResult {
+    public final HashMap<HashEntry, Aggregate> map;
+    public final RowMetaInterface inputRowMeta;
+    public final RowMetaInterface groupMeta;
+    public final RowMetaInterface aggMeta;
+
+    public PartialResult( HashMap<HashEntry, Aggregate> map, RowMetaInterface inputRowMeta,
+      RowMetaInterface groupMeta, RowMetaInterface aggMeta ) {
+      this.map = map;
+      this.inputRowMeta = inputRowMeta;
+      this.groupMeta = groupMeta;
+      this.aggMeta = aggMeta;
+    }
+  }
+
+  /**
+   * A temporary file with the rows of groups that didn't fit in memory, all with the same hash partition.
+   */
+  public static class SpillPartition {
+    public final File file;
+    public final int level;
+    public DataOutputStream outputStream;
+    public long rows;
+
+    public SpillPartition( File file, int level ) {
+      this.file = file;
+      this.level = level;
+    }
+  }
+
   public MemoryGroupByData() {
     super();
 
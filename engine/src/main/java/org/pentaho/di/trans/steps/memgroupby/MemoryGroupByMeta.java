@@ -146,6 +146,10 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
   /** Flag to indicate that we always give back one row. Defaults to true for existing transformations. */
   private boolean alwaysGivingBackOneRow;
 
+  @Injection( name = "COMBINECOPIES", group = "FIELDS" )
+  /** Flag to indicate that the copies of the step aggregate their rows locally and combine the groups at the end. */
+  private boolean combiningCopies;
+
   public MemoryGroupByMeta() {
     super(); // allocate BaseStepMeta
   }
@@ -289,6 +293,7 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
       } else {
         alwaysGivingBackOneRow = "Y".equalsIgnoreCase( giveBackRow );
       }
+      combiningCopies = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "combine_copies" ) );
     } catch ( Exception e ) {
       throw new KettleXMLException( BaseMessages.getString(
         PKG, "MemoryGroupByMeta.Exception.UnableToLoadStepInfoFromXML" ), e );
@@ -445,6 +450,7 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
     StringBuilder retval = new StringBuilder( 500 );
 
     retval.append( "      " ).append( XMLHandler.addTagValue( "give_back_row", alwaysGivingBackOneRow ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "combine_copies", combiningCopies ) );
 
     retval.append( "      <group>" ).append( Const.CR );
     for ( int i = 0; i < groupField.length; i++ ) {
@@ -494,6 +500,7 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
       }
 
       alwaysGivingBackOneRow = rep.getStepAttributeBoolean( id_step, 0, "give_back_row", hasNumberOfValues );
+      combiningCopies = rep.getStepAttributeBoolean( id_step, "combine_copies" );
     } catch ( Exception e ) {
       throw new KettleException( BaseMessages.getString(
         PKG, "MemoryGroupByMeta.Exception.UnexpectedErrorInReadingStepInfoFromRepository" ), e );
@@ -504,6 +511,7 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
   public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step ) throws KettleException {
     try {
       rep.saveStepAttribute( id_transformation, id_step, "give_back_row", alwaysGivingBackOneRow );
+      rep.saveStepAttribute( id_transformation, id_step, "combine_copies", combiningCopies );
 
       for ( int i = 0; i < groupField.length; i++ ) {
         rep.saveStepAttribute( id_transformation, id_step, i, "group_name", groupField[i] );
@@ -567,6 +575,22 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
     this.alwaysGivingBackOneRow = alwaysGivingBackOneRow;
   }
 
+  /**
+   * @return true if the copies of the step aggregate their rows locally and the first copy combines the groups of all
+   *         copies at the end, so the input rows don't need to be partitioned over the copies
+   */
+  public boolean isCombiningCopies() {
+    return combiningCopies;
+  }
+
+  /**
+   * @param combiningCopies
+   *          true to aggregate locally in every step copy and combine the groups of all copies at the end
+   */
+  public void setCombiningCopies( boolean combiningCopies ) {
+    this.combiningCopies = combiningCopies;
+  }
+
   /**
    * If we use injection we can have different arrays lengths.
    * We need synchronize them for consistency behavior with UI
@@ -0,0 +1,299 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBase;
+
+/**
+ * Sorts rows on a normalized binary prefix of their sort keys. The prefix is calculated once per row and is built so
+ * that comparing two prefixes as unsigned bytes gives the same order as comparing the keys themselves. Only rows with
+ * equal prefixes are compared with the full row comparator. The sort itself is spread over the available cores.
+ * <p>
+ * Numbers, integers, dates and booleans are encoded completely so the next key can follow them in the prefix. Strings
+ * and big numbers are encoded as far as the prefix allows and end the prefix.
+ */
+public class NormalizedKeySorter {
+
+  /** The number of key bytes kept per row */
+  static final int KEY_BYTES = 16;
+
+  private final ValueMetaInterface[] valueMetas;
+  private final int[] fieldNrs;
+  private final Collator[] collators;
+  private final Comparator<Object[]> rowComparator;
+  private final Comparator<SortEntry> entryComparator;
+
+  /**
+   * @param rowMeta
+   *          the row metadata with the sort options (descending, case insensitive, collator) set on the keys
+   * @param fieldNrs
+   *          the indexes of the sort keys
+   * @param rowComparator
+   *          the comparator that gives the full order of the rows
+   */
+  public NormalizedKeySorter( RowMetaInterface rowMeta, int[] fieldNrs, Comparator<Object[]> rowComparator ) {
+    this.rowComparator = rowComparator;
+
+    // Use the leading keys we can normalize, up to the first one that doesn't fit in the prefix completely
+    //
+    List<ValueMetaInterface> metas = new ArrayList<ValueMetaInterface>();
+    for ( int fieldNr : fieldNrs ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( fieldNr );
+      if ( !isSupported( valueMeta ) ) {
+        break;
+      }
+      metas.add( valueMeta );
+      if ( !isFixedLength( valueMeta ) ) {
+        break;
+      }
+    }
+
+    valueMetas = metas.toArray( new ValueMetaInterface[ metas.size() ] );
+    this.fieldNrs = Arrays.copyOf( fieldNrs, valueMetas.length );
+    collators = new Collator[ valueMetas.length ];
+    for ( int i = 0; i < valueMetas.length; i++ ) {
+      if ( valueMetas[ i ].isString() && !valueMetas[ i ].isCollatorDisabled() ) {
+        collators[ i ] = ( (ValueMetaBase) valueMetas[ i ] ).getCollator();
+      }
+    }
+
+    entryComparator = new Comparator<SortEntry>() {
+      @Override
+      public int compare( SortEntry e1, SortEntry e2 ) {
+        int cmp = Long.compareUnsigned( e1.key0, e2.key0 );
+        if ( cmp == 0 ) {
+          cmp = Long.compareUnsigned( e1.key1, e2.key1 );
+          if ( cmp == 0 ) {
+            cmp = NormalizedKeySorter.this.rowComparator.compare( e1.row, e2.row );
+          }
+        }
+        return cmp;
+      }
+    };
+  }
+
+  static boolean isSupported( ValueMetaInterface valueMeta ) {
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_INTEGER:
+      case ValueMetaInterface.TYPE_NUMBER:
+      case ValueMetaInterface.TYPE_DATE:
+      case ValueMetaInterface.TYPE_BOOLEAN:
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        return true;
+      case ValueMetaInterface.TYPE_STRING:
+        return valueMeta.isCollatorDisabled()
+          || valueMeta instanceof ValueMetaBase && ( (ValueMetaBase) valueMeta ).getCollator() != null;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isFixedLength( ValueMetaInterface valueMeta ) {
+    return valueMeta.getType() != ValueMetaInterface.TYPE_STRING
+      && valueMeta.getType() != ValueMetaInterface.TYPE_BIGNUMBER;
+  }
+
+  /**
+   * @return true if at least the first sort key can be normalized
+   */
+  public boolean isEnabled() {
+    return valueMetas.length > 0;
+  }
+
+  /**
+   * Sort the rows in place, equal rows keep their order.
+   *
+   * @param rows
+   *          the rows to sort
+   * @throws KettleValueException
+   *           in case a key value can't be normalized
+   */
+  public void sort( List<Object[]> rows ) throws KettleValueException {
+    SortEntry[] entries = new SortEntry[ rows.size() ];
+    KeyBuilder key = new KeyBuilder();
+    for ( int i = 0; i < entries.length; i++ ) {
+      Object[] row = rows.get( i );
+      normalize( row, key );
+      entries[ i ] = new SortEntry( key.key0, key.key1, row );
+    }
+
+    Arrays.parallelSort( entries, entryComparator );
+
+    for ( int i = 0; i < entries.length; i++ ) {
+      rows.set( i, entries[ i ].row );
+    }
+  }
+
+  void normalize( Object[] row, KeyBuilder key ) throws KettleValueException {
+    key.reset();
+    for ( int i = 0; i < valueMetas.length && !key.isFull(); i++ ) {
+      ValueMetaInterface valueMeta = valueMetas[ i ];
+      Object value = row[ fieldNrs[ i ] ];
+      int start = key.position;
+
+      if ( valueMeta.isNull( value ) ) {
+        // Nulls come first, the same as in ValueMetaBase.compare()
+        key.put( 0 );
+      } else {
+        key.put( 1 );
+        switch ( valueMeta.getType() ) {
+          case ValueMetaInterface.TYPE_INTEGER:
+            key.putLong( valueMeta.getInteger( value ) ^ Long.MIN_VALUE );
+            break;
+          case ValueMetaInterface.TYPE_NUMBER:
+            key.putDouble( valueMeta.getNumber( value ) );
+            break;
+          case ValueMetaInterface.TYPE_DATE:
+            key.putLong( valueMeta.getDate( value ).getTime() ^ Long.MIN_VALUE );
+            break;
+          case ValueMetaInterface.TYPE_BOOLEAN:
+            key.put( valueMeta.getBoolean( value ) ? 1 : 0 );
+            break;
+          case ValueMetaInterface.TYPE_BIGNUMBER:
+            // Rounding to a double keeps the order but not the difference between close values
+            key.putDouble( valueMeta.getBigNumber( value ).doubleValue() );
+            break;
+          case ValueMetaInterface.TYPE_STRING:
+            putString( valueMeta, collators[ i ], valueMeta.getString( value ), key );
+            break;
+          default:
+            break;
+        }
+      }
+
+      // The prefix ends with a key that isn't completely encoded: the unused bytes are part of that key
+      //
+      int end = isFixedLength( valueMeta ) ? key.position : KEY_BYTES;
+      if ( valueMeta.isSortedDescending() ) {
+        key.invert( start, end );
+      }
+      if ( end == KEY_BYTES ) {
+        break;
+      }
+    }
+  }
+
+  private static void putString( ValueMetaInterface valueMeta, Collator collator, String string, KeyBuilder key ) {
+    if ( valueMeta.isIgnoreWhitespace() ) {
+      string = string.trim();
+    }
+    if ( collator != null ) {
+      byte[] bytes = collator.getCollationKey( string ).toByteArray();
+      for ( int i = 0; i < bytes.length && !key.isFull(); i++ ) {
+        key.put( bytes[ i ] );
+      }
+    } else {
+      for ( int i = 0; i < string.length() && !key.isFull(); i++ ) {
+        char c = string.charAt( i );
+        if ( valueMeta.isCaseInsensitive() ) {
+          if ( Character.isSurrogate( c ) ) {
+            // Case folding of supplementary characters depends on the Java version, leave it to the comparator
+            break;
+          }
+          // The same folding as String.compareToIgnoreCase()
+          c = Character.toLowerCase( Character.toUpperCase( c ) );
+        }
+        key.put( c >>> 8 );
+        key.put( c );
+      }
+    }
+  }
+
+  /**
+   * Collects the key bytes of a row in two longs, most significant byte first.
+   */
+  static final class KeyBuilder {
+    long key0;
+    long key1;
+    int position;
+
+    void reset() {
+      key0 = 0L;
+      key1 = 0L;
+      position = 0;
+    }
+
+    boolean isFull() {
+      return position >= KEY_BYTES;
+    }
+
+    /**
+     * Add a byte, bytes that don't fit anymore are dropped.
+     */
+    void put( int b ) {
+      if ( position < 8 ) {
+        key0 |= ( b & 0xFFL ) << ( 56 - 8 * position );
+      } else if ( position < KEY_BYTES ) {
+        key1 |= ( b & 0xFFL ) << ( 56 - 8 * ( position - 8 ) );
+      } else {
+        return;
+      }
+      position++;
+    }
+
+    void putLong( long value ) {
+      for ( int shift = 56; shift >= 0; shift -= 8 ) {
+        put( (int) ( value >>> shift ) );
+      }
+    }
+
+    /**
+     * The same order as Double.compare(): negative numbers are inverted, positive ones get the sign bit set.
+     */
+    void putDouble( double value ) {
+      long bits = Double.doubleToLongBits( value );
+      putLong( bits < 0 ? ~bits : bits ^ Long.MIN_VALUE );
+    }
+
+    void invert( int from, int to ) {
+      for ( int i = from; i < to; i++ ) {
+        if ( i < 8 ) {
+          key0 ^= 0xFFL << ( 56 - 8 * i );
+        } else {
+          key1 ^= 0xFFL << ( 56 - 8 * ( i - 8 ) );
+        }
+      }
+    }
+  }
+
+  private static final class SortEntry {
+    private final long key0;
+    private final long key1;
+    private final Object[] row;
+
+    SortEntry( long key0, long key1, Object[] row ) {
+      this.key0 = key0;
+      this.key1 = key1;
+      this.row = row;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Merges a number of sorted row sources into one sorted stream using a tournament (loser) tree. The tree keeps the
+ * loser of each match in its inner nodes, so that finding the next row only takes one comparison per level of the tree
+ * (log2 of the number of sources) instead of a search through all sources.
+ * <p>
+ * Rows with equal keys are returned in the order of their sources.
+ */
+public class RowMergeTree {
+
+  /**
+   * A sorted stream of rows.
+   */
+  public interface RowSource {
+    /**
+     * @return the next row or null if there are no more rows
+     * @throws KettleException
+     *           in case the row could not be read
+     */
+    Object[] nextRow() throws KettleException;
+  }
+
+  private final RowSource[] sources;
+  private final Comparator<Object[]> comparator;
+  private final int size;
+
+  /** The current row of each source, null once it is exhausted */
+  private final Object[][] heads;
+
+  /** The loser of the match in each inner node, the overall winner in position 0 */
+  private final int[] tree;
+
+  /**
+   * Create a merge tree and read the first row of each source.
+   *
+   * @param sources
+   *          the sorted sources to merge
+   * @param comparator
+   *          the comparator the sources are sorted with
+   * @throws KettleException
+   *           in case a row could not be read
+   */
+  public RowMergeTree( List<? extends RowSource> sources, Comparator<Object[]> comparator ) throws KettleException {
+    this.sources = sources.toArray( new RowSource[ sources.size() ] );
+    this.comparator = comparator;
+    this.size = this.sources.length;
+
+    heads = new Object[ size ][];
+    tree = new int[ Math.max( size, 1 ) ];
+    for ( int i = 0; i < size; i++ ) {
+      heads[ i ] = this.sources[ i ].nextRow();
+    }
+
+    // Start with a virtual source that beats all others in every inner node and play all sources up the tree.
+    //
+    for ( int i = 1; i < size; i++ ) {
+      tree[ i ] = size;
+    }
+    for ( int i = size - 1; i >= 0; i-- ) {
+      replay( i );
+    }
+  }
+
+  /**
+   * @return the smallest row of all sources or null if all sources are exhausted
+   * @throws KettleException
+   *           in case a row could not be read
+   */
+  public Object[] next() throws KettleException {
+    if ( size == 0 ) {
+      return null;
+    }
+    int winner = tree[ 0 ];
+    Object[] row = heads[ winner ];
+    if ( row != null ) {
+      heads[ winner ] = sources[ winner ].nextRow();
+      replay( winner );
+    }
+    return row;
+  }
+
+  /**
+   * Play the current row of a source against the losers on the path to the root of the tree.
+   */
+  private void replay( int source ) {
+    int winner = source;
+    for ( int node = ( source + size ) >> 1; node > 0; node >>= 1 ) {
+      if ( beats( tree[ node ], winner ) ) {
+        int loser = winner;
+        winner = tree[ node ];
+        tree[ node ] = loser;
+      }
+    }
+    tree[ 0 ] = winner;
+  }
+
+  private boolean beats( int a, int b ) {
+    if ( a == size ) {
+      return true;
+    }
+    if ( b == size ) {
+      return false;
+    }
+    Object[] rowA = heads[ a ];
+    Object[] rowB = heads[ b ];
+    if ( rowA == null ) {
+      return false;
+    }
+    if ( rowB == null ) {
+      return true;
+    }
+    int cmp = comparator.compare( rowA, rowB );
+    return cmp < 0 || ( cmp == 0 && a < b );
+  }
+}
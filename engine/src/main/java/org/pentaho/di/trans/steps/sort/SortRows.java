@@ -22,8 +22,6 @@
 
 package org.pentaho.di.trans.steps.sort;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -34,20 +32,24 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
+import org.pentaho.di.core.AdaptiveRowSet;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.BlockCompressionInputStream;
+import org.pentaho.di.core.compress.BlockCompressionOutputStream;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.vfs.KettleVFS;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -64,6 +66,9 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 public class SortRows extends BaseStep implements StepInterface {
   private static Class<?> PKG = SortRows.class; // for i18n
 
+  /** The compression provider for the temp files if none is specified */
+  private static final String DEFAULT_COMPRESSION_TYPE = "GZip";
+
   private SortRowsMeta meta;
   private SortRowsData data;
 
@@ -87,6 +92,10 @@ public class SortRows extends BaseStep implements StepInterface {
     // Save row
     data.buffer.add( r );
 
+    // Account for the row in the memory budget of the transformation, spill when asked to
+    //
+    boolean withinBudget = data.memoryConsumer.allocate( AdaptiveRowSet.estimateRowBytes( r ) );
+
     // Check the free memory every 1000 rows...
     //
     data.freeCounter++;
@@ -110,6 +119,12 @@ public class SortRows extends BaseStep implements StepInterface {
     doSort |=
         data.freeMemoryPctLimit > 0 && data.freeMemoryPct < data.freeMemoryPctLimit
             && data.buffer.size() >= data.minSortSize;
+    if ( !withinBudget && data.buffer.size() >= data.minSortSize ) {
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.MemoryBudgetExceeded", data.buffer.size() ) );
+      }
+      doSort = true;
+    }
     if ( log.isDebug() ) {
       this.logDebug( BaseMessages.getString( PKG, "SortRows.Debug.StartDumpToDisk", data.freeMemoryPct, data.buffer
           .size() ) );
@@ -133,23 +148,12 @@ public class SortRows extends BaseStep implements StepInterface {
 
     // Then write them to disk...
     DataOutputStream dos;
-    GZIPOutputStream gzos;
     int p;
 
     try {
-      FileObject fileObject =
-          KettleVFS.createTempFile( meta.getPrefix(), ".tmp", environmentSubstitute( meta.getDirectory() ),
-              getTransMeta() );
-
+      FileObject fileObject = createTempFile();
       data.files.add( fileObject ); // Remember the files!
-      OutputStream outputStream = KettleVFS.getOutputStream( fileObject, false );
-      if ( data.compressFiles ) {
-        gzos = new GZIPOutputStream( new BufferedOutputStream( outputStream ) );
-        dos = new DataOutputStream( gzos );
-      } else {
-        dos = new DataOutputStream( new BufferedOutputStream( outputStream, 500000 ) );
-        gzos = null;
-      }
+      dos = getTempFileOutputStream( fileObject );
 
       // Just write the data, nothing else
       List<Integer> duplicates = new ArrayList<Integer>();
@@ -205,13 +209,10 @@ public class SortRows extends BaseStep implements StepInterface {
 
       // Clear the list
       data.buffer.clear();
+      data.memoryConsumer.freeAll();
 
       // Close temp-file
-      dos.close(); // close data stream
-      if ( gzos != null ) {
-        gzos.close(); // close gzip stream
-      }
-      outputStream.close(); // close file stream
+      dos.close();
 
       // How much memory do we have left?
       //
@@ -230,64 +231,124 @@ public class SortRows extends BaseStep implements StepInterface {
     data.getBufferIndex = 0;
   }
 
-  private DataInputStream getDataInputStream( GZIPInputStream gzipInputStream ) {
-    DataInputStream result = new DataInputStream( gzipInputStream );
-    data.gzis.add( gzipInputStream );
-    return result;
+  private FileObject createTempFile() throws KettleFileException {
+    return KettleVFS.createTempFile( meta.getPrefix(), ".tmp", environmentSubstitute( meta.getDirectory() ),
+      getTransMeta() );
   }
 
-  // get sorted rows from available files in iterative manner.
-  // that means call to this method will continue to return rows
-  // till all temp files will not be read to the end.
-  Object[] getBuffer() throws KettleValueException {
-    Object[] retval;
+  private DataOutputStream getTempFileOutputStream( FileObject fileObject ) throws KettleFileException,
+    IOException {
+    OutputStream outputStream = KettleVFS.getOutputStream( fileObject, false );
+    return new DataOutputStream( new BlockCompressionOutputStream( outputStream, data.compressionProvider ) );
+  }
 
-    // Open all files at once and read one row from each file...
-    if ( data.files.size() > 0 && ( data.dis.size() == 0 || data.fis.size() == 0 ) ) {
-      if ( log.isBasic() ) {
-        logBasic( BaseMessages.getString( PKG, "SortRows.Basic.OpeningTempFiles", data.files.size() ) );
+  private DataInputStream getTempFileInputStream( FileObject fileObject ) throws KettleFileException,
+    IOException {
+    InputStream inputStream = KettleVFS.getInputStream( fileObject );
+    return new DataInputStream( new BlockCompressionInputStream( inputStream, data.compressionProvider, true ) );
+  }
+
+  /**
+   * Open the first temp files for reading.
+   */
+  private List<TempFileReader> openTempFiles( int count ) throws KettleException, IOException {
+    List<TempFileReader> readers = new ArrayList<TempFileReader>( count );
+    for ( int f = 0; f < count && !isStopped(); f++ ) {
+      FileObject fileObject = data.files.get( f );
+      if ( log.isDetailed() ) {
+        String filename = KettleVFS.getFilename( fileObject );
+        logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.OpeningTempFile", filename ) );
+        logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.FromFileExpectingRows",
+            filename, data.bufferSizes.get( f ) ) );
       }
+      DataInputStream di = getTempFileInputStream( fileObject );
+      data.dis.add( di );
+      readers.add( new TempFileReader( fileObject, di ) );
+    }
+    return readers;
+  }
+
+  /**
+   * Merge the first (oldest) temp files into a new temp file at the end of the list. This limits the number of files
+   * that are open at the same time and the depth of the merge tree.
+   */
+  void mergeTempFiles( int count ) throws KettleException {
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.MergingTempFiles", count, data.files.size() ) );
+    }
+
+    List<TempFileReader> readers = new ArrayList<TempFileReader>();
+    try {
+      readers = openTempFiles( count );
+      RowMergeTree mergeTree = new RowMergeTree( readers, data.rowComparator );
 
+      FileObject fileObject = createTempFile();
+      data.files.add( fileObject );
+      data.bufferSizes.add( 0 );
+
+      int nrRows = 0;
+      DataOutputStream dos = getTempFileOutputStream( fileObject );
       try {
-        for ( int f = 0; f < data.files.size() && !isStopped(); f++ ) {
-          FileObject fileObject = data.files.get( f );
-          String filename = KettleVFS.getFilename( fileObject );
-          if ( log.isDetailed() ) {
-            logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.OpeningTempFile", filename ) );
+        Object[] previousRow = null;
+        Object[] row = mergeTree.next();
+        while ( row != null && !isStopped() ) {
+          if ( !meta.isOnlyPassingUniqueRows() || previousRow == null
+              || data.outputRowMeta.compare( row, previousRow, data.fieldnrs ) != 0 ) {
+            data.outputRowMeta.writeData( dos, row );
+            nrRows++;
           }
-          InputStream fi = KettleVFS.getInputStream( fileObject );
-          DataInputStream di;
-          data.fis.add( fi );
-          if ( data.compressFiles ) {
-            di = getDataInputStream( new GZIPInputStream( new BufferedInputStream( fi ) ) );
-          } else {
-            di = new DataInputStream( new BufferedInputStream( fi, 50000 ) );
-          }
-          data.dis.add( di );
+          previousRow = row;
+          row = mergeTree.next();
+        }
+      } finally {
+        dos.close();
+      }
+      data.bufferSizes.set( data.bufferSizes.size() - 1, nrRows );
 
-          // How long is the buffer?
-          int buffersize = data.bufferSizes.get( f );
+      // The merged files are deleted once they are read
+      //
+      for ( int f = 0; f < readers.size(); f++ ) {
+        data.files.remove( 0 );
+        data.bufferSizes.remove( 0 );
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Error merging temp-files!", e );
+    } finally {
+      for ( TempFileReader reader : readers ) {
+        reader.close();
+      }
+      for ( DataInputStream dis : data.dis ) {
+        BaseStep.closeQuietly( dis );
+      }
+      data.dis.clear();
+    }
+  }
 
-          if ( log.isDetailed() ) {
-            logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.FromFileExpectingRows",
-                filename, buffersize ) );
-          }
+  // get sorted rows from available files in iterative manner.
+  // that means call to this method will continue to return rows
+  // till all temp files will not be read to the end.
+  Object[] getBuffer() throws KettleException {
+    Object[] retval;
 
-          if ( buffersize > 0 ) {
-            Object[] row = data.outputRowMeta.readData( di );
-            data.rowbuffer.add( row ); // new row from input stream
-            data.tempRows.add( new RowTempFile( row, f ) );
-          }
+    // Open the files and read one row from each file...
+    if ( data.files.size() > 0 && data.mergeTree == null ) {
+      try {
+        // Merge the oldest files until the rest can be merged at once
+        //
+        while ( data.files.size() > data.maxMergeFiles && !isStopped() ) {
+          mergeTempFiles( data.maxMergeFiles );
         }
 
-        // Sort the data row buffer
-        Collections.sort( data.tempRows, data.comparator );
+        if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "SortRows.Basic.OpeningTempFiles", data.files.size() ) );
+        }
+        data.mergeTree = new RowMergeTree( openTempFiles( data.files.size() ), data.rowComparator );
       } catch ( Exception e ) {
-        logError( BaseMessages.getString( PKG, "SortRows.Error.ErrorReadingBackTempFiles" ), e );
+        throw new KettleException( BaseMessages.getString( PKG, "SortRows.Error.ErrorReadingBackTempFiles" ), e );
       }
     }
 
-    if ( data.files.size() == 0 ) {
+    if ( data.mergeTree == null ) {
       // read from in-memory processing
 
       if ( data.getBufferIndex < data.buffer.size() ) {
@@ -297,77 +358,9 @@ public class SortRows extends BaseStep implements StepInterface {
         retval = null;
       }
     } else {
-      // read from disk processing
-
-      if ( data.rowbuffer.size() == 0 ) {
-        retval = null;
-      } else {
-        // We now have "filenr" rows waiting: which one is the smallest?
-        //
-        if ( log.isRowLevel() ) {
-          for ( int i = 0; i < data.rowbuffer.size() && !isStopped(); i++ ) {
-            Object[] b = data.rowbuffer.get( i );
-            logRowlevel( BaseMessages
-                .getString( PKG, "SortRows.RowLevel.PrintRow", i, data.outputRowMeta.getString( b ) ) );
-          }
-        }
-
-        RowTempFile rowTempFile = data.tempRows.remove( 0 );
-        retval = rowTempFile.row;
-        int smallest = rowTempFile.fileNumber;
-
-        // now get another Row for position smallest
-
-        FileObject file = data.files.get( smallest );
-        DataInputStream di = data.dis.get( smallest );
-        InputStream fi = data.fis.get( smallest );
-
-        try {
-          Object[] row2 = data.outputRowMeta.readData( di );
-          RowTempFile extra = new RowTempFile( row2, smallest );
-
-          int index = Collections.binarySearch( data.tempRows, extra, data.comparator );
-          if ( index < 0 ) {
-            data.tempRows.add( index * ( -1 ) - 1, extra );
-          } else {
-            data.tempRows.add( index, extra );
-          }
-        } catch ( KettleFileException fe ) { // empty file or EOF mostly
-          GZIPInputStream gzfi = ( data.compressFiles ) ? data.gzis.get( smallest ) : null;
-          try {
-            di.close();
-            fi.close();
-            if ( gzfi != null ) {
-              gzfi.close();
-            }
-            file.delete();
-          } catch ( IOException e ) {
-            logError( BaseMessages.getString( PKG, "SortRows.Error.UnableToCloseFile", smallest, file.toString() ) );
-            setErrors( 1 );
-            stopAll();
-            return null;
-          }
-
-          data.files.remove( smallest );
-          data.dis.remove( smallest );
-          data.fis.remove( smallest );
-
-          if ( gzfi != null ) {
-            data.gzis.remove( smallest );
-          }
-
-          // Also update all file numbers in in data.tempRows if they are larger
-          // than smallest.
-          //
-          for ( RowTempFile rtf : data.tempRows ) {
-            if ( rtf.fileNumber > smallest ) {
-              rtf.fileNumber--;
-            }
-          }
-        } catch ( SocketTimeoutException e ) {
-          throw new KettleValueException( e ); // should never happen on local files
-        }
-      }
+      // read from disk processing: the tree gives us the smallest of the rows waiting in the files
+      //
+      retval = data.mergeTree.next();
     }
     return retval;
   }
@@ -418,7 +411,6 @@ public class SortRows extends BaseStep implements StepInterface {
       // Metadata
       data.outputRowMeta = inputRowMeta.clone();
       meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
-      data.comparator = new RowTemapFileComparator( data.outputRowMeta, data.fieldnrs );
 
       for ( int i = 0; i < fieldNames.length; i++ ) {
         data.fieldnrs[i] = inputRowMeta.indexOfValue( fieldNames[i] );
@@ -438,6 +430,7 @@ public class SortRows extends BaseStep implements StepInterface {
         i++;
       }
       data.rowComparator = new RowObjectArrayComparator( data.outputRowMeta, data.fieldnrs );
+      data.keySorter = new NormalizedKeySorter( data.outputRowMeta, data.fieldnrs, data.rowComparator );
     } // end if first
 
     // it is not first row and it is null
@@ -570,16 +563,27 @@ public class SortRows extends BaseStep implements StepInterface {
     //
     data.buffer = new ArrayList<Object[]>( 5000 );
 
-    // Buffer for reading from disk
-    //
-    data.rowbuffer = new ArrayList<Object[]>( 5000 );
-
     data.compressFiles = getBooleanValueOfVariable( meta.getCompressFilesVariable(), meta.getCompressFiles() );
+    if ( data.compressFiles ) {
+      String compressionType = environmentSubstitute( meta.getCompressionType() );
+      if ( Utils.isEmpty( compressionType ) ) {
+        compressionType = DEFAULT_COMPRESSION_TYPE;
+      }
+      data.compressionProvider =
+        CompressionProviderFactory.getInstance().getCompressionProviderByName( compressionType );
+      if ( data.compressionProvider == null ) {
+        logError( BaseMessages.getString( PKG, "SortRows.Error.UnknownCompressionType", compressionType ) );
+        return false;
+      }
+    }
 
-    data.tempRows = new ArrayList<RowTempFile>();
+    data.maxMergeFiles = Math.max( 2, Const.toInt( getVariable( Const.KETTLE_SORT_MAX_MERGE_FILES ),
+        Const.SORT_MAX_MERGE_FILES ) );
 
     data.minSortSize = 5000;
 
+    data.memoryConsumer = registerMemoryConsumer( TransMemoryManager.SPILL_PRIORITY_DEFAULT );
+
     return true;
   }
 
@@ -593,20 +597,18 @@ public class SortRows extends BaseStep implements StepInterface {
 
     // Clean out the sort buffer
     data.buffer.clear();
+    if ( data.memoryConsumer != null ) {
+      data.memoryConsumer.freeAll();
+    }
     data.getBufferIndex = 0;
-    data.rowbuffer.clear();
+    data.mergeTree = null;
 
     // close any open DataInputStream objects
     if ( ( data.dis != null ) && ( data.dis.size() > 0 ) ) {
       for ( DataInputStream dis : data.dis ) {
         BaseStep.closeQuietly( dis );
       }
-    }
-    // close any open InputStream objects
-    if ( ( data.fis != null ) && ( data.fis.size() > 0 ) ) {
-      for ( InputStream is : data.fis ) {
-        BaseStep.closeQuietly( is );
-      }
+      data.dis.clear();
     }
     // remove temp files
     for ( int f = 0; f < data.files.size(); f++ ) {
@@ -619,6 +621,8 @@ public class SortRows extends BaseStep implements StepInterface {
         logError( e.getLocalizedMessage(), e );
       }
     }
+    data.files.clear();
+    data.bufferSizes.clear();
   }
 
   /**
@@ -626,7 +630,16 @@ public class SortRows extends BaseStep implements StepInterface {
    */
   void quickSort( List<Object[]> elements ) throws KettleException {
     if ( elements.size() > 0 ) {
-      Collections.sort( elements, data.rowComparator );
+      if ( data.keySorter != null && data.keySorter.isEnabled() ) {
+        try {
+          data.keySorter.sort( elements );
+        } catch ( KettleValueException e ) {
+          // Leave it to the comparator to report the values that can't be compared
+          Collections.sort( elements, data.rowComparator );
+        }
+      } else {
+        Collections.sort( elements, data.rowComparator );
+      }
 
       long nrConversions = 0L;
       for ( ValueMetaInterface valueMeta : data.outputRowMeta.getValueMetaList() ) {
@@ -687,15 +700,15 @@ public class SortRows extends BaseStep implements StepInterface {
     }
   }
 
-  private class RowTemapFileComparator extends SortRowsComparator implements Comparator<RowTempFile> {
-    RowTemapFileComparator( RowMetaInterface rowMeta, int[] fieldNrs ) {
+  private class RowObjectArrayComparator extends SortRowsComparator implements Comparator<Object[]> {
+    RowObjectArrayComparator( RowMetaInterface rowMeta, int[] fieldNrs ) {
       super( rowMeta, fieldNrs );
     }
 
     @Override
-    public int compare( RowTempFile o1, RowTempFile o2 ) {
+    public int compare( Object[] o1, Object[] o2 ) {
       try {
-        return rowMeta.compare( o1.row, o2.row, fieldNrs );
+        return rowMeta.compare( o1, o2, fieldNrs );
       } catch ( KettleValueException e ) {
         logError( "Error comparing rows: " + e.toString() );
         return 0;
@@ -703,18 +716,44 @@ public class SortRows extends BaseStep implements StepInterface {
     }
   }
 
-  private class RowObjectArrayComparator extends SortRowsComparator implements Comparator<Object[]> {
-    RowObjectArrayComparator( RowMetaInterface rowMeta, int[] fieldNrs ) {
-      super( rowMeta, fieldNrs );
+  /**
+   * Reads the rows of a temp file one by one, the file is closed and deleted once all rows are read.
+   */
+  private class TempFileReader implements RowMergeTree.RowSource {
+    private final FileObject fileObject;
+    private DataInputStream dis;
+
+    TempFileReader( FileObject fileObject, DataInputStream dis ) {
+      this.fileObject = fileObject;
+      this.dis = dis;
     }
 
     @Override
-    public int compare( Object[] o1, Object[] o2 ) {
+    public Object[] nextRow() throws KettleException {
+      if ( dis == null ) {
+        return null;
+      }
       try {
-        return rowMeta.compare( o1, o2, fieldNrs );
-      } catch ( KettleValueException e ) {
-        logError( "Error comparing rows: " + e.toString() );
-        return 0;
+        return data.outputRowMeta.readData( dis );
+      } catch ( KettleFileException e ) { // EOF
+        close();
+        return null;
+      } catch ( SocketTimeoutException e ) {
+        throw new KettleValueException( e ); // should never happen on local files
+      }
+    }
+
+    void close() {
+      if ( dis == null ) {
+        return;
+      }
+      BaseStep.closeQuietly( dis );
+      dis = null;
+      try {
+        fileObject.delete();
+      } catch ( FileSystemException e ) {
+        logError( BaseMessages.getString( PKG, "SortRows.Error.UnableToCloseFile", data.files.indexOf( fileObject ),
+          fileObject.toString() ), e );
       }
     }
   }
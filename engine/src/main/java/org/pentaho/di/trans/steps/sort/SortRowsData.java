@@ -23,14 +23,14 @@
 package org.pentaho.di.trans.steps.sort;
 
 import java.io.DataInputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.compress.CompressionProvider;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -43,25 +43,27 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
   public List<Object[]> buffer;
   public int getBufferIndex;
 
-  public List<InputStream> fis;
-  public List<GZIPInputStream> gzis;
   public List<DataInputStream> dis;
-  public List<Object[]> rowbuffer;
   public List<Integer> bufferSizes;
 
-  // To store rows and file references
-  public List<RowTempFile> tempRows;
+  // Merges the rows of the temp files
+  public RowMergeTree mergeTree;
+  public int maxMergeFiles;
 
   public int[] fieldnrs; // the corresponding field numbers;
   public FileObject fil;
   public RowMetaInterface outputRowMeta;
   public int sortSize;
   public boolean compressFiles;
+  public CompressionProvider compressionProvider;
   public int[] convertKeysToNative;
   public boolean convertAnyKeysToNative;
 
-  Comparator<RowTempFile> comparator;
   Comparator<Object[]> rowComparator;
+  NormalizedKeySorter keySorter;
+
+  // The share of the memory budget of the transformation taken by the buffer
+  TransMemoryManager.Consumer memoryConsumer;
 
   public int freeCounter;
   public int freeMemoryPct;
@@ -80,8 +82,6 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
     super();
 
     files = new ArrayList<FileObject>();
-    fis = new ArrayList<InputStream>();
-    gzis = new ArrayList<GZIPInputStream>();
     dis = new ArrayList<DataInputStream>();
     bufferSizes = new ArrayList<Integer>();
 
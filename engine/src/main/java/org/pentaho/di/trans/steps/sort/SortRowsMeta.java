@@ -121,6 +121,10 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
   /** The variable to use to set the compressFiles option boolean */
   private String compressFilesVariable;
 
+  /** The name of the compression provider to compress the temporary files with, GZip if empty */
+  @Injection( name = "COMPRESSION_TYPE" )
+  private String compressionType;
+
   public SortRowsMeta() {
     super(); // allocate BaseStepMeta
   }
@@ -225,6 +229,7 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
       freeMemoryLimit = XMLHandler.getTagValue( stepnode, "free_memory" );
       compressFiles = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "compress" ) );
       compressFilesVariable = XMLHandler.getTagValue( stepnode, "compress_variable" );
+      compressionType = XMLHandler.getTagValue( stepnode, "compression_type" );
       onlyPassingUniqueRows = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "unique_rows" ) );
 
       Node fields = XMLHandler.getSubNode( stepnode, "fields" );
@@ -261,6 +266,7 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
     freeMemoryLimit = null;
     compressFiles = false;
     compressFilesVariable = null;
+    compressionType = null;
     onlyPassingUniqueRows = false;
 
     int nrfields = 0;
@@ -291,6 +297,7 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
     retval.append( "      " ).append( XMLHandler.addTagValue( "free_memory", freeMemoryLimit ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "compress", compressFiles ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "compress_variable", compressFilesVariable ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "compression_type", compressionType ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "unique_rows", onlyPassingUniqueRows ) );
 
     retval.append( "    <fields>" ).append( Const.CR );
@@ -320,6 +327,7 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
 
       compressFiles = rep.getStepAttributeBoolean( id_step, "compress" );
       compressFilesVariable = rep.getStepAttributeString( id_step, "compress_variable" );
+      compressionType = rep.getStepAttributeString( id_step, "compression_type" );
 
       onlyPassingUniqueRows = rep.getStepAttributeBoolean( id_step, "unique_rows" );
 
@@ -373,6 +381,7 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
       rep.saveStepAttribute( id_transformation, id_step, "free_memory", freeMemoryLimit );
       rep.saveStepAttribute( id_transformation, id_step, "compress", compressFiles );
       rep.saveStepAttribute( id_transformation, id_step, "compress_variable", compressFilesVariable );
+      rep.saveStepAttribute( id_transformation, id_step, "compression_type", compressionType );
       rep.saveStepAttribute( id_transformation, id_step, "unique_rows", onlyPassingUniqueRows );
 
       for ( int i = 0; i < fieldName.length; i++ ) {
@@ -582,6 +591,21 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
     this.compressFilesVariable = compressFilesVariable;
   }
 
+  /**
+   * @return the name of the compression provider for the temporary files, GZip if empty
+   */
+  public String getCompressionType() {
+    return compressionType;
+  }
+
+  /**
+   * @param compressionType
+   *          the name of the compression provider for the temporary files
+   */
+  public void setCompressionType( String compressionType ) {
+    this.compressionType = compressionType;
+  }
+
   /**
    * @return the caseSensitive
    */
@@ -0,0 +1,101 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.streamlookup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.SocketTimeoutException;
+
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Serializes keys and de-serializes values with buffers that are reused from row to row, so that a lookup in the
+ * off-heap index doesn't allocate byte arrays or streams.
+ */
+class RowBuffer {
+  private final Output output = new Output();
+  private final DataOutputStream dataOutputStream = new DataOutputStream( output );
+  private final Input input = new Input();
+  private final DataInputStream dataInputStream = new DataInputStream( input );
+
+  /**
+   * Serialize a row in the buffer returned by {@link #getBytes()}.
+   *
+   * @return the number of bytes of the serialized row
+   */
+  int write( RowMetaInterface rowMeta, Object[] row ) throws KettleFileException {
+    output.reset();
+    rowMeta.writeData( dataOutputStream, row );
+    return output.size();
+  }
+
+  /**
+   * @return the buffer with the last row that was written
+   */
+  byte[] getBytes() {
+    return output.getBuffer();
+  }
+
+  /**
+   * @return a buffer of at least the given length to copy a serialized row into
+   */
+  byte[] getReadBuffer( int length ) {
+    return input.prepare( length );
+  }
+
+  /**
+   * De-serialize the row that was copied into the read buffer.
+   */
+  Object[] read( RowMetaInterface rowMeta ) throws KettleFileException, SocketTimeoutException {
+    return rowMeta.readData( dataInputStream );
+  }
+
+  private static class Output extends ByteArrayOutputStream {
+    Output() {
+      super( 256 );
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+
+  private static class Input extends ByteArrayInputStream {
+    Input() {
+      super( new byte[256] );
+    }
+
+    byte[] prepare( int length ) {
+      if ( buf.length < length ) {
+        buf = new byte[Math.max( length, 2 * buf.length )];
+      }
+      pos = 0;
+      mark = 0;
+      count = length;
+      return buf;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.streamlookup;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The lookup table shared by all the copies of a Stream lookup step.
+ * <p>
+ * The table is split in as many partitions as there are copies: every copy builds the partition of the keys that hash
+ * to its copy number in its own step data. Lookup rows that a copy receives for another partition are routed to the
+ * copy that owns it. Once a copy has read all the lookup rows and the rows routed to it, it publishes its partition.
+ * The partitions are never changed after that so all the copies can probe them without any locking.
+ *
+ * @since 9.0
+ */
+class SharedLookupTable {
+  private final int nrPartitions;
+  private final Queue<KeyValue>[] routedRows;
+  private final AtomicReferenceArray<StreamLookupData> partitions;
+  private final AtomicReference<StreamLookupData> metadataSource;
+  private final CountDownLatch readers;
+  private final CountDownLatch publishers;
+
+  @SuppressWarnings( "unchecked" )
+  SharedLookupTable( int nrPartitions ) {
+    this.nrPartitions = nrPartitions;
+    routedRows = new Queue[nrPartitions];
+    for ( int i = 0; i < nrPartitions; i++ ) {
+      routedRows[i] = new ConcurrentLinkedQueue<KeyValue>();
+    }
+    partitions = new AtomicReferenceArray<StreamLookupData>( nrPartitions );
+    metadataSource = new AtomicReference<StreamLookupData>();
+    readers = new CountDownLatch( nrPartitions );
+    publishers = new CountDownLatch( nrPartitions );
+  }
+
+  int getNrPartitions() {
+    return nrPartitions;
+  }
+
+  /**
+   * @param hashCode
+   *          the hash code of the key, as calculated by the key row metadata
+   * @return the partition holding the key
+   */
+  int partitionOf( int hashCode ) {
+    int hash = hashCode ^ ( hashCode >>> 16 );
+    return ( hash & Integer.MAX_VALUE ) % nrPartitions;
+  }
+
+  /**
+   * Hand a lookup row over to the copy that builds the given partition.
+   */
+  void route( int partition, KeyValue keyValue ) {
+    routedRows[partition].add( keyValue );
+  }
+
+  /**
+   * @return the next row routed to the given partition or null if there are no more
+   */
+  KeyValue pollRouted( int partition ) {
+    return routedRows[partition].poll();
+  }
+
+  /**
+   * Signal that a copy has read all its lookup rows. The first copy that read any makes its metadata available to the
+   * copies that didn't get a single one.
+   */
+  void finishReading( StreamLookupData data ) {
+    if ( data.hasLookupRows ) {
+      metadataSource.compareAndSet( null, data );
+    }
+    readers.countDown();
+  }
+
+  /**
+   * @return true if all the copies read their lookup rows, false if the timeout expired first
+   */
+  boolean awaitReaders( long timeout, TimeUnit unit ) throws InterruptedException {
+    return readers.await( timeout, unit );
+  }
+
+  /**
+   * @return the step data of a copy that read lookup rows, null if there weren't any
+   */
+  StreamLookupData getMetadataSource() {
+    return metadataSource.get();
+  }
+
+  /**
+   * Publish the partition built by a copy. It must not be changed afterwards.
+   */
+  void publish( int partition, StreamLookupData data ) {
+    partitions.set( partition, data );
+    publishers.countDown();
+  }
+
+  /**
+   * @return true if all the partitions are published, false if the timeout expired first
+   */
+  boolean awaitPartitions( long timeout, TimeUnit unit ) throws InterruptedException {
+    return publishers.await( timeout, unit );
+  }
+
+  /**
+   * @return the published partition, only to be called after {@link #awaitPartitions(long, TimeUnit)} returned true
+   */
+  StreamLookupData getPartition( int partition ) {
+    return partitions.get( partition );
+  }
+}
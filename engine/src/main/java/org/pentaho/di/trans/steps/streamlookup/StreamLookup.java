@@ -24,14 +24,21 @@ package org.pentaho.di.trans.steps.streamlookup;
 
 import java.math.BigDecimal;
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import org.pentaho.di.core.AdaptiveRowSet;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.hash.ByteArrayHashIndex;
+import org.pentaho.di.core.hash.OffHeapHashIndex;
+import org.pentaho.di.core.hash.OffHeapLongHashIndex;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -40,6 +47,7 @@ import org.pentaho.di.core.row.value.ValueMetaFactory;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -150,10 +158,33 @@ public class StreamLookup extends BaseStep implements StepInterface {
     int[] valueNrs = new int[meta.getValue().length];
     boolean firstRun = true;
 
-    // Which row set do we read from?
+    // The lookup data stays in memory: it counts against the memory budget of the transformation
     //
-    RowSet rowSet = findInputRowSet( data.infoStream.getStepname() );
-    Object[] rowData = getRowFrom( rowSet ); // rows are originating from "lookup_from"
+    data.memoryConsumer = registerMemoryConsumer( TransMemoryManager.NOT_SPILLABLE );
+
+    // The copies of the step share one lookup table: the first copy created it in init()
+    //
+    if ( meta.isSharingLookupTable() && getStepMeta().getCopies() > 1 ) {
+      if ( data.sharedTable == null ) {
+        data.sharedTable = findSharedTable();
+      }
+      data.lookupRowsCopied = isReceivingAllLookupRows();
+    }
+
+    // Which row sets do we read from? A shared table can be built from several copies of the lookup step.
+    //
+    Iterator<RowSet> infoRowSets;
+    if ( data.sharedTable == null ) {
+      infoRowSets = Collections.singletonList( findInputRowSet( data.infoStream.getStepname() ) ).iterator();
+    } else {
+      infoRowSets = findInfoRowSets( data.infoStream.getStepname() ).iterator();
+    }
+    RowSet rowSet = null;
+    Object[] rowData = null;
+    while ( rowData == null && infoRowSets.hasNext() ) {
+      rowSet = infoRowSets.next();
+      rowData = getRowFrom( rowSet ); // rows are originating from "lookup_from"
+    }
     while ( rowData != null ) {
       if ( log.isRowLevel() ) {
         logRowlevel( BaseMessages.getString( PKG, "StreamLookup.Log.ReadLookupRow" )
@@ -213,14 +244,129 @@ public class StreamLookup extends BaseStep implements StepInterface {
         valueData[i] = rowData[valueNrs[i]];
       }
 
-      addToCache( data.cacheKeyMeta, keyData, data.cacheValueMeta, valueData );
+      if ( data.sharedTable == null ) {
+        addLookupRow( keyData, valueData );
+      } else {
+        int partition = data.sharedTable.partitionOf( data.cacheKeyMeta.hashCode( keyData ) );
+        if ( partition == getCopy() ) {
+          addLookupRow( keyData, valueData );
+        } else if ( !data.lookupRowsCopied ) {
+          // The copy that builds the partition of this key never gets to see the row: hand it over
+          //
+          data.sharedTable.route( partition, new KeyValue( keyData, valueData ) );
+        }
+      }
 
       rowData = getRowFrom( rowSet );
+      while ( rowData == null && infoRowSets.hasNext() ) {
+        rowSet = infoRowSets.next();
+        rowData = getRowFrom( rowSet );
+      }
+    }
+
+    if ( data.sharedTable != null ) {
+      buildSharedPartition();
     }
 
     return true;
   }
 
+  private void addLookupRow( Object[] keyData, Object[] valueData ) throws KettleValueException {
+    addToCache( data.cacheKeyMeta, keyData, data.cacheValueMeta, valueData );
+    data.memoryConsumer.allocate( AdaptiveRowSet.estimateRowBytes( keyData )
+      + AdaptiveRowSet.estimateRowBytes( valueData ) );
+  }
+
+  /**
+   * Finish the partition of the shared lookup table built by this copy and wait until all the copies published theirs.
+   * If the step is stopped in the meantime, the first lookup bails out.
+   */
+  private void buildSharedPartition() throws KettleException {
+    SharedLookupTable table = data.sharedTable;
+    table.finishReading( data );
+    try {
+      while ( !table.awaitReaders( 100, TimeUnit.MILLISECONDS ) ) {
+        if ( isStopped() ) {
+          return;
+        }
+      }
+
+      // A copy that didn't receive any lookup rows still needs the metadata to add routed rows and to probe
+      //
+      if ( !data.hasLookupRows && table.getMetadataSource() != null ) {
+        StreamLookupData source = table.getMetadataSource();
+        data.hasLookupRows = true;
+        data.infoMeta = source.infoMeta.clone();
+        data.keyTypes = source.keyTypes.clone();
+        data.cacheKeyMeta = source.cacheKeyMeta.clone();
+        data.cacheValueMeta = source.cacheValueMeta.clone();
+      }
+
+      KeyValue keyValue = table.pollRouted( getCopy() );
+      while ( keyValue != null ) {
+        addLookupRow( keyValue.getKey(), keyValue.getValue() );
+        keyValue = table.pollRouted( getCopy() );
+      }
+
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "StreamLookup.Log.PublishingPartition", getCopy(),
+          table.getNrPartitions() ) );
+      }
+      table.publish( getCopy(), data );
+      while ( !table.awaitPartitions( 100, TimeUnit.MILLISECONDS ) ) {
+        if ( isStopped() ) {
+          return;
+        }
+      }
+    } catch ( InterruptedException e ) {
+      throw new KettleException( e );
+    }
+  }
+
+  /**
+   * @return the shared lookup table, created by the first copy of the step
+   */
+  SharedLookupTable getSharedTable() {
+    return data.sharedTable;
+  }
+
+  /**
+   * With a shared table a copy only adds the lookup rows of its own partition. It can skip the others if every copy
+   * receives all the lookup rows: the lookup step runs in a single copy or copies its rows to all copies of this step
+   * (N:M). With as many copies on both sides (N:N), distribution or partitioning each copy only gets part of the rows.
+   *
+   * @return true if this copy receives every lookup row
+   */
+  private boolean isReceivingAllLookupRows() {
+    StepMeta infoStepMeta = data.infoStream.getStepMeta();
+    if ( infoStepMeta.isDistributes() || infoStepMeta.isPartitioned() || getStepMeta().isPartitioned() ) {
+      return false;
+    }
+    return infoStepMeta.getCopies() == 1 || infoStepMeta.getCopies() != getStepMeta().getCopies();
+  }
+
+  /**
+   * @return the row sets from all the copies of the lookup step to this copy
+   */
+  private List<RowSet> findInfoRowSets( String infoStepname ) {
+    List<RowSet> infoRowSets = new ArrayList<RowSet>();
+    for ( RowSet rowSet : getInputRowSets() ) {
+      if ( infoStepname.equalsIgnoreCase( rowSet.getOriginStepName() ) ) {
+        infoRowSets.add( rowSet );
+      }
+    }
+    return infoRowSets;
+  }
+
+  private SharedLookupTable findSharedTable() throws KettleException {
+    StepInterface firstCopy = getTrans().getStepInterface( getStepname(), 0 );
+    if ( !( firstCopy instanceof StreamLookup ) || ( (StreamLookup) firstCopy ).getSharedTable() == null ) {
+      throw new KettleException( BaseMessages.getString( PKG, "StreamLookup.Exception.FirstCopyNotFound",
+        getStepname() ) );
+    }
+    return ( (StreamLookup) firstCopy ).getSharedTable();
+  }
+
   private Object[] lookupValues( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
     // See if we need to stop.
     if ( isStopped() ) {
@@ -304,6 +450,8 @@ public class StreamLookup extends BaseStep implements StepInterface {
         } else {
           data.list.set( idx, keyValue ); // Overwrite to simulate Hashtable behaviour
         }
+      } else if ( meta.isUsingOffHeapIndex() ) {
+        addToOffHeapIndex( keyMeta, keyData, valueMeta, valueData );
       } else {
         if ( meta.isUsingIntegerPair() ) {
           if ( !data.metadataVerifiedIntegerPair ) {
@@ -335,27 +483,104 @@ public class StreamLookup extends BaseStep implements StepInterface {
     }
   }
 
+  private void addToOffHeapIndex( RowMetaInterface keyMeta, Object[] keyData, RowMetaInterface valueMeta,
+    Object[] valueData ) throws KettleValueException {
+    if ( data.offHeapIndex == null && data.offHeapLongIndex == null ) {
+      data.rowBuffer = new RowBuffer();
+      // A single integer key is hashed as a primitive long, it doesn't need to be serialized
+      //
+      if ( keyMeta.size() == 1 && keyMeta.getValueMeta( 0 ).isInteger() ) {
+        data.offHeapLongIndex = new OffHeapLongHashIndex();
+      } else {
+        data.offHeapIndex = new OffHeapHashIndex();
+      }
+    }
+
+    byte[] value = RowMeta.extractData( valueMeta, valueData );
+    if ( data.offHeapLongIndex != null ) {
+      Long key = keyMeta.getInteger( keyData, 0 );
+      if ( key == null ) {
+        data.offHeapNullKeyValue = value;
+      } else {
+        data.offHeapLongIndex.put( key, value );
+      }
+    } else {
+      data.offHeapIndex.put( RowMeta.extractData( keyMeta, keyData ), value );
+    }
+  }
+
+  private Object[] getFromOffHeapIndex( StreamLookupData table, RowMetaInterface keyMeta, Object[] keyData )
+    throws KettleValueException {
+    // The buffers are always those of this copy, the index can be a partition built by another one
+    //
+    if ( data.rowBuffer == null ) {
+      data.rowBuffer = new RowBuffer();
+    }
+    try {
+      if ( table.offHeapLongIndex != null ) {
+        Long key = keyMeta.getInteger( keyData, 0 );
+        if ( key == null ) {
+          return table.offHeapNullKeyValue == null ? null
+            : RowMeta.getRow( data.cacheValueMeta, table.offHeapNullKeyValue );
+        }
+        long address = table.offHeapLongIndex.find( key );
+        if ( address < 0 ) {
+          return null;
+        }
+        int length = table.offHeapLongIndex.getValueLength( address );
+        table.offHeapLongIndex.readValue( address, data.rowBuffer.getReadBuffer( length ) );
+      } else if ( table.offHeapIndex != null ) {
+        int keyLength = data.rowBuffer.write( keyMeta, keyData );
+        long address = table.offHeapIndex.find( data.rowBuffer.getBytes(), keyLength );
+        if ( address < 0 ) {
+          return null;
+        }
+        int length = table.offHeapIndex.getValueLength( address );
+        table.offHeapIndex.readValue( address, data.rowBuffer.getReadBuffer( length ) );
+      } else {
+        return null; // an empty partition
+      }
+      return data.rowBuffer.read( data.cacheValueMeta );
+    } catch ( KettleValueException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new KettleValueException( e );
+    }
+  }
+
   private Object[] getFromCache( RowMetaInterface keyMeta, Object[] keyData ) throws KettleValueException {
+    // With a shared table, the key is in the partition built by one of the copies
+    //
+    StreamLookupData table = data;
+    if ( data.sharedTable != null ) {
+      table = data.sharedTable.getPartition( data.sharedTable.partitionOf( keyMeta.hashCode( keyData ) ) );
+    }
+
     if ( meta.isMemoryPreservationActive() ) {
       if ( meta.isUsingSortedList() ) {
         KeyValue keyValue = new KeyValue( keyData, null );
-        int idx = Collections.binarySearch( data.list, keyValue, data.comparator );
+        int idx = Collections.binarySearch( table.list, keyValue, data.comparator );
         if ( idx < 0 ) {
           return null; // nothing found
         }
 
-        keyValue = data.list.get( idx );
+        keyValue = table.list.get( idx );
         return keyValue.getValue();
+      } else if ( meta.isUsingOffHeapIndex() ) {
+        return getFromOffHeapIndex( table, keyMeta, keyData );
       } else {
         if ( meta.isUsingIntegerPair() ) {
-          Long value = data.longIndex.get( keyMeta.getInteger( keyData, 0 ) );
+          Long value = table.longIndex.get( keyMeta.getInteger( keyData, 0 ) );
           if ( value == null ) {
             return null;
           }
           return new Object[] { value, };
         } else {
           try {
-            byte[] value = data.hashIndex.get( RowMeta.extractData( keyMeta, keyData ) );
+            if ( table.hashIndex == null ) {
+              return null;
+            }
+            byte[] value = table.hashIndex.get( RowMeta.extractData( keyMeta, keyData ) );
             if ( value == null ) {
               return null;
             }
@@ -367,7 +592,7 @@ public class StreamLookup extends BaseStep implements StepInterface {
         }
       }
     } else {
-      return data.look.get( new RowMetaAndData( keyMeta, keyData ) );
+      return table.look.get( new RowMetaAndData( keyMeta, keyData ) );
     }
   }
 
@@ -468,6 +693,9 @@ public class StreamLookup extends BaseStep implements StepInterface {
 
     if ( super.init( smi, sdi ) ) {
       data.readLookupValues = true;
+      if ( meta.isSharingLookupTable() && getStepMeta().getCopies() > 1 && getCopy() == 0 ) {
+        data.sharedTable = new SharedLookupTable( getStepMeta().getCopies() );
+      }
 
       return true;
     }
@@ -477,12 +705,20 @@ public class StreamLookup extends BaseStep implements StepInterface {
 
   @Override
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
-    // Recover memory immediately, allow in-memory data to be garbage collected
+    // Recover memory immediately, allow in-memory data to be garbage collected.
+    // The partition of a shared table is left alone: the other copies keep probing it until they are finished too.
     //
-    data.look = null;
-    data.list = null;
-    data.hashIndex = null;
-    data.longIndex = null;
+    if ( data.sharedTable == null ) {
+      data.look = null;
+      data.list = null;
+      data.hashIndex = null;
+      data.longIndex = null;
+      data.offHeapIndex = null;
+      data.offHeapLongIndex = null;
+      data.offHeapNullKeyValue = null;
+    }
+    data.rowBuffer = null;
+    data.sharedTable = null;
 
     super.dispose( smi, sdi );
   }
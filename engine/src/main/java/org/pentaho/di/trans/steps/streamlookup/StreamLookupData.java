@@ -32,7 +32,10 @@ import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.hash.ByteArrayHashIndex;
 import org.pentaho.di.core.hash.LongHashIndex;
+import org.pentaho.di.core.hash.OffHeapHashIndex;
+import org.pentaho.di.core.hash.OffHeapLongHashIndex;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.errorhandling.StreamInterface;
@@ -74,6 +77,22 @@ public class StreamLookupData extends BaseStepData implements StepDataInterface
   public ByteArrayHashIndex hashIndex;
   public LongHashIndex longIndex;
 
+  /** The lookup rows kept outside of the Java heap, keyed by a single integer or by the serialized key */
+  public OffHeapHashIndex offHeapIndex;
+  public OffHeapLongHashIndex offHeapLongIndex;
+
+  /** The value of a null integer key, which can't be stored in the off-heap long index */
+  public byte[] offHeapNullKeyValue;
+
+  /** Reusable buffers to serialize keys and read values from the off-heap index */
+  RowBuffer rowBuffer;
+
+  /** The lookup table shared by the copies of the step, null if every copy has a table of its own */
+  SharedLookupTable sharedTable;
+
+  /** True if every copy receives all the lookup rows, false if they are distributed over the copies */
+  public boolean lookupRowsCopied;
+
   public RowMetaInterface lookupMeta;
 
   public RowMetaInterface infoMeta;
@@ -90,6 +109,9 @@ public class StreamLookupData extends BaseStepData implements StepDataInterface
 
   public StreamInterface infoStream;
 
+  // The share of the memory budget of the transformation taken by the lookup data
+  public TransMemoryManager.Consumer memoryConsumer;
+
   public StreamLookupData() {
     super();
     look = new HashMap<RowMetaAndData, Object[]>();
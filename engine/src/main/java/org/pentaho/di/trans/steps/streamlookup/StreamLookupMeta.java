@@ -101,6 +101,14 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
   @Injection( name = "INTEGER_PAIR" )
   private boolean usingIntegerPair;
 
+  /** Keep the lookup rows outside of the Java heap, in a primitive hash index */
+  @Injection( name = "OFF_HEAP_INDEX" )
+  private boolean usingOffHeapIndex;
+
+  /** Build a single lookup table for all the copies of the step */
+  @Injection( name = "SHARE_LOOKUP_TABLE" )
+  private boolean sharingLookupTable;
+
   public StreamLookupMeta() {
     super(); // allocate BaseStepMeta
   }
@@ -165,6 +173,8 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
       setMemoryPreservationActive( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "preserve_memory" ) ) );
       setUsingSortedList( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "sorted_list" ) ) );
       setUsingIntegerPair( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "integer_pair" ) ) );
+      setUsingOffHeapIndex( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "off_heap_index" ) ) );
+      setSharingLookupTable( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "share_lookup_table" ) ) );
 
       Node lookup = XMLHandler.getSubNode( stepnode, "lookup" );
       nrkeys = XMLHandler.countNodes( lookup, "key" );
@@ -212,6 +222,8 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
     setMemoryPreservationActive( true );
     setUsingSortedList( false );
     setUsingIntegerPair( false );
+    setUsingOffHeapIndex( false );
+    setSharingLookupTable( false );
 
     allocate( 0, 0 );
   }
@@ -255,6 +267,8 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
     retval.append( "    " ).append( XMLHandler.addTagValue( "preserve_memory", isMemoryPreservationActive() ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "sorted_list", isUsingSortedList() ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "integer_pair", isUsingIntegerPair() ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "off_heap_index", isUsingOffHeapIndex() ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "share_lookup_table", isSharingLookupTable() ) );
 
     retval.append( "    <lookup>" ).append( Const.CR );
     for ( int i = 0; i < getKeystream().length; i++ ) {
@@ -289,6 +303,8 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
       setMemoryPreservationActive( rep.getStepAttributeBoolean( id_step, "preserve_memory" ) );
       setUsingSortedList( rep.getStepAttributeBoolean( id_step, "sorted_list" ) );
       setUsingIntegerPair( rep.getStepAttributeBoolean( id_step, "integer_pair" ) );
+      setUsingOffHeapIndex( rep.getStepAttributeBoolean( id_step, "off_heap_index" ) );
+      setSharingLookupTable( rep.getStepAttributeBoolean( id_step, "share_lookup_table" ) );
 
       int nrkeys = rep.countNrStepAttributes( id_step, "lookup_key_name" );
       int nrvalues = rep.countNrStepAttributes( id_step, "return_value_name" );
@@ -326,6 +342,8 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
       rep.saveStepAttribute( id_transformation, id_step, "preserve_memory", isMemoryPreservationActive() );
       rep.saveStepAttribute( id_transformation, id_step, "sorted_list", isUsingSortedList() );
       rep.saveStepAttribute( id_transformation, id_step, "integer_pair", isUsingIntegerPair() );
+      rep.saveStepAttribute( id_transformation, id_step, "off_heap_index", isUsingOffHeapIndex() );
+      rep.saveStepAttribute( id_transformation, id_step, "share_lookup_table", isSharingLookupTable() );
 
       for ( int i = 0; i < getKeystream().length; i++ ) {
         rep.saveStepAttribute( id_transformation, id_step, i, "lookup_key_name", getKeystream()[i] );
@@ -666,6 +684,36 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
     this.usingIntegerPair = usingIntegerPair;
   }
 
+  /**
+   * @return true if the lookup rows are kept outside of the Java heap
+   */
+  public boolean isUsingOffHeapIndex() {
+    return usingOffHeapIndex;
+  }
+
+  /**
+   * @param usingOffHeapIndex
+   *          true to keep the lookup rows outside of the Java heap, used together with memory preservation
+   */
+  public void setUsingOffHeapIndex( boolean usingOffHeapIndex ) {
+    this.usingOffHeapIndex = usingOffHeapIndex;
+  }
+
+  /**
+   * @return true if the copies of the step build and probe a single lookup table
+   */
+  public boolean isSharingLookupTable() {
+    return sharingLookupTable;
+  }
+
+  /**
+   * @param sharingLookupTable
+   *          true to have the copies of the step build and probe a single lookup table instead of one table each
+   */
+  public void setSharingLookupTable( boolean sharingLookupTable ) {
+    this.sharingLookupTable = sharingLookupTable;
+  }
+
   /**
    * If we use injection we can have different arrays lengths.
    * We need synchronize them for consistency behavior with UI
@@ -0,0 +1,143 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableoutput;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Inserts the rows for a table with <code>INSERT ... VALUES ( ... ), ( ... )</code> statements, many rows per
+ * execution. The rows are collected until there are enough to execute the prepared statement for a full set of rows,
+ * which is reused. The rows left at a commit are inserted with a statement prepared for just that number of rows.
+ */
+class MultiRowInsert {
+  /** The most rows to insert with one statement, very long statements take longer to parse than they save */
+  static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+  private final Database db;
+  private final String schemaName;
+  private final String tableName;
+  private final RowMetaInterface rowMeta;
+  private final int rowsPerStatement;
+  private final List<Object[]> rows;
+
+  private PreparedStatement statement;
+
+  MultiRowInsert( Database db, String schemaName, String tableName, RowMetaInterface rowMeta, int rowsPerStatement ) {
+    this.db = db;
+    this.schemaName = schemaName;
+    this.tableName = tableName;
+    this.rowMeta = rowMeta;
+    this.rowsPerStatement = rowsPerStatement;
+    this.rows = new ArrayList<Object[]>( rowsPerStatement );
+  }
+
+  /**
+   * @return the number of rows to insert per statement, within the parameter limit of the database and the commit size
+   */
+  static int getRowsPerStatement( DatabaseMeta databaseMeta, int nrFields, int commitSize ) {
+    int rows = Math.min( commitSize, MAX_ROWS_PER_STATEMENT );
+    if ( nrFields > 0 ) {
+      rows = Math.min( rows, databaseMeta.getMaxStatementParameters() / nrFields );
+    }
+    return Math.max( 1, rows );
+  }
+
+  /**
+   * Add a row, the collected rows are inserted once there are enough for a statement.
+   */
+  void add( Object[] row ) throws KettleDatabaseException {
+    rows.add( row );
+    if ( rows.size() >= rowsPerStatement ) {
+      flush();
+    }
+  }
+
+  /**
+   * Insert the collected rows.
+   */
+  void flush() throws KettleDatabaseException {
+    if ( rows.isEmpty() ) {
+      return;
+    }
+    boolean full = rows.size() == rowsPerStatement;
+    PreparedStatement ps;
+    if ( full ) {
+      if ( statement == null ) {
+        statement = prepare( rowsPerStatement );
+      }
+      ps = statement;
+    } else {
+      ps = prepare( rows.size() );
+    }
+
+    try {
+      db.setMultiRowValues( rowMeta, rows, ps );
+      ps.executeUpdate();
+    } catch ( SQLException e ) {
+      throw new KettleDatabaseException( "Error inserting " + rows.size() + " rows into table [" + tableName + "]", e );
+    } finally {
+      rows.clear();
+      if ( !full ) {
+        close( ps );
+      }
+    }
+  }
+
+  /**
+   * @return the number of rows collected and not inserted yet
+   */
+  int size() {
+    return rows.size();
+  }
+
+  /**
+   * Close the reused statement. Rows not flushed yet are discarded.
+   */
+  void close() throws KettleDatabaseException {
+    rows.clear();
+    if ( statement != null ) {
+      close( statement );
+      statement = null;
+    }
+  }
+
+  private PreparedStatement prepare( int nrRows ) throws KettleDatabaseException {
+    return db.prepareSQL( db.getMultiRowInsertStatement( schemaName, tableName, rowMeta, nrRows ) );
+  }
+
+  private static void close( PreparedStatement ps ) throws KettleDatabaseException {
+    try {
+      ps.close();
+    } catch ( SQLException e ) {
+      throw new KettleDatabaseException( "Unable to close prepared statement", e );
+    }
+  }
+}
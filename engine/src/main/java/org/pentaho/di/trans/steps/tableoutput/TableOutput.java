@@ -30,10 +30,12 @@ import org.pentaho.di.core.exception.KettleDatabaseBatchException;
 import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.logging.Metrics;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.util.ExecutorUtil;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
@@ -47,8 +49,10 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Writes rows to a database table.
@@ -77,6 +81,15 @@ public class TableOutput extends BaseStep implements StepInterface {
       if ( first && meta.truncateTable() ) {
         truncateTable();
       }
+      if ( data.writerPool != null ) {
+        try {
+          finishWriters();
+        } catch ( KettleException e ) {
+          logError( "Because of an error, this step can't continue: ", e );
+          setErrors( 1 );
+          stopAll();
+        }
+      }
       return false;
     }
 
@@ -239,16 +252,29 @@ public class TableOutput extends BaseStep implements StepInterface {
       throw new KettleStepException( "The tablename is not defined (empty)" );
     }
 
-    insertStatement = data.preparedStatements.get( tableName );
-    if ( insertStatement == null ) {
-      String sql =
-        data.db
-          .getInsertStatement( environmentSubstitute( meta.getSchemaName() ), tableName, data.insertRowMeta );
-      if ( log.isDetailed() ) {
-        logDetailed( "Prepared statement : " + sql );
+    if ( data.writerPool != null ) {
+      // The writers insert the row, it is passed on once the batch it's in is committed
+      //
+      if ( !data.writerPool.isStarted() ) {
+        startWriters( rowMeta, tableName );
+      }
+      data.writerPool.write( getWriterNr( rowMeta, r, tableName ), tableName, insertRowData, outputRowData );
+      putWrittenRows();
+      return null;
+    }
+
+    if ( !data.multiRowInsert ) {
+      insertStatement = data.preparedStatements.get( tableName );
+      if ( insertStatement == null ) {
+        String sql =
+          data.db
+            .getInsertStatement( environmentSubstitute( meta.getSchemaName() ), tableName, data.insertRowMeta );
+        if ( log.isDetailed() ) {
+          logDetailed( "Prepared statement : " + sql );
+        }
+        insertStatement = data.db.prepareSQL( sql, meta.isReturningGeneratedKeys() );
+        data.preparedStatements.put( tableName, insertStatement );
       }
-      insertStatement = data.db.prepareSQL( sql, meta.isReturningGeneratedKeys() );
-      data.preparedStatements.put( tableName, insertStatement );
     }
 
     try {
@@ -258,9 +284,13 @@ public class TableOutput extends BaseStep implements StepInterface {
       if ( data.useSafePoints ) {
         data.savepoint = data.db.setSavepoint();
       }
-      data.db.setValues( data.insertRowMeta, insertRowData, insertStatement );
-      data.db.insertRow( insertStatement, data.batchMode, false ); // false: no commit, it is handled in this step
-                                                                   // different
+      if ( data.multiRowInsert ) {
+        getMultiRowInsert( tableName ).add( insertRowData );
+      } else {
+        data.db.setValues( data.insertRowMeta, insertRowData, insertStatement );
+        data.db.insertRow( insertStatement, data.batchMode, false ); // false: no commit, it is handled in this step
+                                                                     // different
+      }
       if ( isRowLevel() ) {
         logRowlevel( "Written row: " + data.insertRowMeta.getString( insertRowData ) );
       }
@@ -287,7 +317,10 @@ public class TableOutput extends BaseStep implements StepInterface {
       //
 
       if ( ( data.commitSize > 0 ) && ( ( commitCounter % data.commitSize ) == 0 ) ) {
-        if ( data.db.getUseBatchInsert( data.batchMode ) ) {
+        if ( data.multiRowInsert ) {
+          data.multiRowInserts.get( tableName ).flush();
+          data.db.commit();
+        } else if ( data.db.getUseBatchInsert( data.batchMode ) ) {
           try {
             insertStatement.executeBatch();
             data.db.commit();
@@ -432,14 +465,128 @@ public class TableOutput extends BaseStep implements StepInterface {
     return log.isRowLevel();
   }
 
+  private MultiRowInsert getMultiRowInsert( String tableName ) {
+    MultiRowInsert multiRowInsert = data.multiRowInserts.get( tableName );
+    if ( multiRowInsert == null ) {
+      int rowsPerStatement =
+        MultiRowInsert.getRowsPerStatement( data.databaseMeta, data.insertRowMeta.size(), data.commitSize );
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "TableOutput.Log.MultiRowInsert", tableName, rowsPerStatement ) );
+      }
+      multiRowInsert =
+        new MultiRowInsert( data.db, environmentSubstitute( meta.getSchemaName() ), tableName, data.insertRowMeta,
+          rowsPerStatement );
+      data.multiRowInserts.put( tableName, multiRowInsert );
+    }
+    return multiRowInsert;
+  }
+
+  private void startWriters( RowMetaInterface rowMeta, String tableName ) throws KettleStepException {
+    String routingField = environmentSubstitute( meta.getWriterRoutingField() );
+    if ( !Utils.isEmpty( routingField ) ) {
+      data.indexOfWriterRoutingField = rowMeta.indexOfValue( routingField );
+      if ( data.indexOfWriterRoutingField < 0 ) {
+        throw new KettleStepException( BaseMessages.getString(
+          PKG, "TableOutput.Exception.FieldRequired", routingField ) );
+      }
+    }
+    int rowsPerStatement = 0;
+    if ( data.multiRowInsert ) {
+      rowsPerStatement =
+        MultiRowInsert.getRowsPerStatement( data.databaseMeta, data.insertRowMeta.size(), data.commitSize );
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "TableOutput.Log.MultiRowInsert", tableName, rowsPerStatement ) );
+      }
+    }
+    data.writerPool.start( data.insertRowMeta, rowsPerStatement );
+  }
+
+  /**
+   * Rows with the same routing value go to the same writer. Without a routing field the rows of a partition table all
+   * go to the same writer and otherwise the writers take turns.
+   */
+  private int getWriterNr( RowMetaInterface rowMeta, Object[] r, String tableName ) throws KettleException {
+    if ( data.indexOfWriterRoutingField >= 0 ) {
+      ValueMetaInterface routingValue = rowMeta.getValueMeta( data.indexOfWriterRoutingField );
+      return data.writerPool.getWriterNr( routingValue.hashCode( r[data.indexOfWriterRoutingField] ) );
+    }
+    if ( meta.isPartitioningEnabled() ) {
+      return data.writerPool.getWriterNr( tableName.hashCode() );
+    }
+    return data.writerPool.nextWriterNr();
+  }
+
+  /**
+   * Pass on the rows of the batches the writers are done with.
+   */
+  private void putWrittenRows() throws KettleException {
+    for ( TableWriterPool.Batch batch = data.writerPool.poll(); batch != null; batch = data.writerPool.poll() ) {
+      if ( batch.isFailed() ) {
+        processBatchException( batch.errorMessage, batch.updateCounts, batch.exceptions, batch.rows );
+      } else {
+        for ( Object[] row : batch.rows ) {
+          putRow( data.outputRowMeta, row );
+          incrementLinesOutput();
+        }
+      }
+    }
+  }
+
+  private void finishWriters() throws KettleException {
+    data.writerPool.finish();
+    putWrittenRows();
+  }
+
+  private void closeWriters() {
+    try {
+      boolean rollback = getErrors() > 0;
+      data.writerPool.close( rollback );
+      if ( !rollback ) {
+        putWrittenRows();
+      }
+    } catch ( KettleException e ) {
+      logError( "Unexpected error committing the database connection.", e );
+      setErrors( 1 );
+      stopAll();
+    }
+    logWriterStatistics();
+    data.writerPool = null;
+  }
+
+  private void logWriterStatistics() {
+    for ( TableWriterPool.Writer writer : data.writerPool.getWriters() ) {
+      if ( writer.getBatches() == 0 ) {
+        continue;
+      }
+      long totalMicros = TimeUnit.NANOSECONDS.toMicros( writer.getBatchNanos() );
+      long maxMicros = TimeUnit.NANOSECONDS.toMicros( writer.getMaxBatchNanos() );
+      if ( log.isGatheringMetrics() ) {
+        String subject = getStepname() + " writer " + writer.nr;
+        log.snap( Metrics.METRIC_STEP_WRITER_ROWS, subject, writer.getRows() );
+        log.snap( Metrics.METRIC_STEP_WRITER_BATCHES, subject, writer.getBatches() );
+        log.snap( Metrics.METRIC_STEP_WRITER_BATCH_SUM_TIME, subject, totalMicros );
+        log.snap( Metrics.METRIC_STEP_WRITER_BATCH_MAX_TIME, subject, maxMicros );
+      }
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "TableOutput.Log.WriterStatistics", writer.nr, writer.getRows(),
+          writer.getBatches(), totalMicros / writer.getBatches(), maxMicros ) );
+      }
+    }
+  }
+
   private void processBatchException( String errorMessage, int[] updateCounts, List<Exception> exceptionsList ) throws KettleException {
+    processBatchException( errorMessage, updateCounts, exceptionsList, data.batchBuffer );
+  }
+
+  private void processBatchException( String errorMessage, int[] updateCounts, List<Exception> exceptionsList,
+                                      List<Object[]> batchBuffer ) throws KettleException {
     // There was an error with the commit
     // We should put all the failing rows out there...
     //
     if ( updateCounts != null ) {
       int errNr = 0;
       for ( int i = 0; i < updateCounts.length; i++ ) {
-        Object[] row = data.batchBuffer.get( i );
+        Object[] row = batchBuffer.get( i );
         if ( updateCounts[i] > 0 ) {
           // send the error foward
           putRow( data.outputRowMeta, row );
@@ -458,14 +605,14 @@ public class TableOutput extends BaseStep implements StepInterface {
       // If we don't have update counts, it probably means the DB doesn't support it.
       // In this case we don't have a choice but to consider all inserted rows to be error rows.
       //
-      for ( int i = 0; i < data.batchBuffer.size(); i++ ) {
-        Object[] row = data.batchBuffer.get( i );
+      for ( int i = 0; i < batchBuffer.size(); i++ ) {
+        Object[] row = batchBuffer.get( i );
         putError( data.outputRowMeta, row, 1L, errorMessage, null, "TOP0003" );
       }
     }
 
     // Clear the buffer afterwards...
-    data.batchBuffer.clear();
+    batchBuffer.clear();
   }
 
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
@@ -505,6 +652,18 @@ public class TableOutput extends BaseStep implements StepInterface {
         // Per PDI-6211 : give a warning that batch mode operation in combination with step error handling can lead to
         // incorrectly processed rows.
         //
+        // Insert many rows per statement on databases that are faster at it. A failing statement fails all of its
+        // rows, which doesn't mix with error handling or ignoring errors.
+        //
+        if ( meta.isMultiRowInsert() ) {
+          data.multiRowInsert =
+            data.batchMode && data.databaseMeta.supportsMultiRowInsert()
+              && !getStepMeta().isDoingErrorHandling() && !meta.ignoreErrors();
+          if ( !data.multiRowInsert ) {
+            logBasic( BaseMessages.getString( PKG, "TableOutput.Log.MultiRowInsertDisabled" ) );
+          }
+        }
+
         if ( getStepMeta().isDoingErrorHandling() && !dbInterface.supportsErrorHandlingOnBatchUpdates() ) {
           log.logMinimal( BaseMessages.getString(
             PKG, "TableOutput.Warning.ErrorHandlingIsNotFullySupportedWithBatchProcessing" ) );
@@ -540,6 +699,18 @@ public class TableOutput extends BaseStep implements StepInterface {
         }
         data.db.setCommit( data.commitSize );
 
+        // Insert over several connections at once. The writers only batch their rows, they don't do savepoints or
+        // generated keys and can't be part of the single transaction of unique connections.
+        //
+        int nrWriters = Const.toInt( environmentSubstitute( meta.getNrWriters() ), 1 );
+        if ( nrWriters > 1 ) {
+          if ( data.batchMode && data.db.getUseBatchInsert( data.batchMode ) ) {
+            createWriterPool( nrWriters );
+          } else {
+            logBasic( BaseMessages.getString( PKG, "TableOutput.Log.NoWritersWithoutBatchMode" ) );
+          }
+        }
+
         if ( !meta.isPartitioningEnabled() && !meta.isTableNameInField() ) {
           data.tableName = environmentSubstitute( meta.getTableName() );
         }
@@ -554,6 +725,31 @@ public class TableOutput extends BaseStep implements StepInterface {
     return false;
   }
 
+  private void createWriterPool( int nrWriters ) throws KettleException {
+    List<Database> connections = new ArrayList<Database>( nrWriters );
+    try {
+      for ( int i = 0; i < nrWriters; i++ ) {
+        Database db = new Database( this, meta.getDatabaseMeta() );
+        db.shareVariablesWith( this );
+        connections.add( db );
+        db.connect( getPartitionID() );
+        db.setCommit( data.commitSize );
+      }
+    } catch ( KettleException e ) {
+      for ( Database db : connections ) {
+        db.disconnect();
+      }
+      throw e;
+    }
+
+    data.writerPool =
+      new TableWriterPool( connections, environmentSubstitute( meta.getSchemaName() ), data.commitSize,
+        getStepMeta().isDoingErrorHandling(), ExecutorUtil.getExecutor() );
+    if ( log.isBasic() ) {
+      logBasic( BaseMessages.getString( PKG, "TableOutput.Log.Writers", nrWriters ) );
+    }
+  }
+
   void truncateTable() throws KettleDatabaseException {
     if ( !meta.isPartitioningEnabled() && !meta.isTableNameInField() ) {
       // Only the first one truncates in a non-partitioned step copy
@@ -563,6 +759,12 @@ public class TableOutput extends BaseStep implements StepInterface {
         data.db.truncateTable( environmentSubstitute( meta.getSchemaName() ), environmentSubstitute( meta
           .getTableName() ) );
 
+        // The writers insert over their own connections: they would wait for the lock of a transactional
+        // truncate until this connection commits in dispose(), after waiting for them.
+        //
+        if ( data.writerPool != null ) {
+          data.db.commit();
+        }
       }
     }
   }
@@ -571,8 +773,24 @@ public class TableOutput extends BaseStep implements StepInterface {
     meta = (TableOutputMeta) smi;
     data = (TableOutputData) sdi;
 
+    if ( data.writerPool != null ) {
+      closeWriters();
+    }
+
     if ( data.db != null ) {
       try {
+        if ( !data.multiRowInserts.isEmpty() ) {
+          for ( MultiRowInsert multiRowInsert : data.multiRowInserts.values() ) {
+            if ( getErrors() == 0 ) {
+              multiRowInsert.flush();
+            }
+            multiRowInsert.close();
+          }
+          data.multiRowInserts.clear();
+          if ( getErrors() == 0 ) {
+            data.db.commit();
+          }
+        }
         for ( String schemaTable : data.preparedStatements.keySet() ) {
           // Get a commit counter per prepared statement to keep track of separate tables, etc.
           //
@@ -62,6 +62,12 @@ public class TableOutputData extends BaseStepData implements StepDataInterface {
 
   /** Use batch mode or not? */
   public boolean batchMode;
+
+  /** Insert many rows per statement instead of batches of single row statements? */
+  public boolean multiRowInsert;
+
+  /** The multi-row inserts per table */
+  Map<String, MultiRowInsert> multiRowInserts;
   public int indexOfTableNameField;
 
   public List<Object[]> batchBuffer;
@@ -78,6 +84,10 @@ public class TableOutputData extends BaseStepData implements StepDataInterface {
 
   public int commitSize;
 
+  /** Inserts the rows over several connections at the same time, null when using only the one of the step */
+  TableWriterPool writerPool;
+  public int indexOfWriterRoutingField;
+
   public TableOutputData() {
     super();
 
@@ -89,9 +99,11 @@ public class TableOutputData extends BaseStepData implements StepDataInterface {
 
     indexOfPartitioningField = -1;
     indexOfTableNameField = -1;
+    indexOfWriterRoutingField = -1;
 
     batchBuffer = new ArrayList<Object[]>();
     commitCounterMap = new HashMap<String, Integer>();
+    multiRowInserts = new HashMap<String, MultiRowInsert>();
 
     releaseSavepoint = true;
   }
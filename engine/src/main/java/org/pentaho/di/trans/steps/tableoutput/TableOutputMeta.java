@@ -79,6 +79,9 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
   private boolean ignoreErrors;
   private boolean useBatchUpdate;
 
+  /** Insert many rows per statement instead of a batch of single row statements */
+  private boolean multiRowInsert;
+
   private boolean partitioningEnabled;
   private String partitioningField;
   private boolean partitioningDaily;
@@ -91,6 +94,12 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
   private boolean returningGeneratedKeys;
   private String generatedKeyField;
 
+  /** The number of connections to insert over at the same time */
+  private String nrWriters;
+
+  /** The field to route the rows to the writers by, rows with the same value go to the same writer */
+  private String writerRoutingField;
+
   /** Do we explicitly select the fields to update in the database */
   private boolean specifyFields;
 
@@ -133,6 +142,53 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
     this.returningGeneratedKeys = returningGeneratedKeys;
   }
 
+  /**
+   * @return true to insert many rows with one <code>INSERT ... VALUES ( ... ), ( ... )</code> statement on databases
+   *         that are faster at it than at batches of single row inserts
+   */
+  public boolean isMultiRowInsert() {
+    return multiRowInsert;
+  }
+
+  /**
+   * @param multiRowInsert
+   *          true to insert many rows per statement, only used in batch mode without error handling
+   */
+  public void setMultiRowInsert( boolean multiRowInsert ) {
+    this.multiRowInsert = multiRowInsert;
+  }
+
+  /**
+   * @return the number of writers, each inserting the rows routed to it over a connection of its own
+   */
+  public String getNrWriters() {
+    return nrWriters;
+  }
+
+  /**
+   * @param nrWriters
+   *          the number of writers, 1 to insert all rows over the connection of the step
+   */
+  public void setNrWriters( String nrWriters ) {
+    this.nrWriters = nrWriters;
+  }
+
+  /**
+   * @return the field to route the rows to the writers by
+   */
+  public String getWriterRoutingField() {
+    return writerRoutingField;
+  }
+
+  /**
+   * @param writerRoutingField
+   *          the field to route the rows to the writers by. Rows with the same value always go to the same writer, so
+   *          they don't end up waiting for each other's locks.
+   */
+  public void setWriterRoutingField( String writerRoutingField ) {
+    this.writerRoutingField = writerRoutingField;
+  }
+
   /**
    * @return Returns the tableNameInTable.
    */
@@ -242,6 +298,7 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
     super(); // allocate BaseStepMeta
     useBatchUpdate = true;
     commitSize = "1000";
+    nrWriters = "1";
 
     fieldStream = new String[0];
     fieldDatabase = new String[0];
@@ -412,6 +469,7 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       truncateTable = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "truncate" ) );
       ignoreErrors = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "ignore_errors" ) );
       useBatchUpdate = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "use_batch" ) );
+      multiRowInsert = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "multi_row_insert" ) );
 
       // If not present it will be false to be compatible with pre-v3.2
       specifyFields = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "specify_fields" ) );
@@ -428,6 +486,9 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       returningGeneratedKeys = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "return_keys" ) );
       generatedKeyField = XMLHandler.getTagValue( stepnode, "return_field" );
 
+      nrWriters = Const.NVL( XMLHandler.getTagValue( stepnode, "nr_writers" ), "1" );
+      writerRoutingField = XMLHandler.getTagValue( stepnode, "writer_routing_field" );
+
       Node fields = XMLHandler.getSubNode( stepnode, "fields" );
       int nrRows = XMLHandler.countNodes( fields, "field" );
 
@@ -455,6 +516,9 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
     tableNameInTable = true;
     tableNameField = "";
 
+    nrWriters = "1";
+    writerRoutingField = "";
+
     // To be compatible with pre-v3.2 (SB)
     specifyFields = false;
   }
@@ -470,6 +534,7 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
     retval.append( "    " + XMLHandler.addTagValue( "truncate", truncateTable ) );
     retval.append( "    " + XMLHandler.addTagValue( "ignore_errors", ignoreErrors ) );
     retval.append( "    " + XMLHandler.addTagValue( "use_batch", useBatchUpdate ) );
+    retval.append( "    " + XMLHandler.addTagValue( "multi_row_insert", multiRowInsert ) );
     retval.append( "    " + XMLHandler.addTagValue( "specify_fields", specifyFields ) );
 
     retval.append( "    " + XMLHandler.addTagValue( "partitioning_enabled", partitioningEnabled ) );
@@ -484,6 +549,9 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
     retval.append( "    " + XMLHandler.addTagValue( "return_keys", returningGeneratedKeys ) );
     retval.append( "    " + XMLHandler.addTagValue( "return_field", generatedKeyField ) );
 
+    retval.append( "    " + XMLHandler.addTagValue( "nr_writers", nrWriters ) );
+    retval.append( "    " + XMLHandler.addTagValue( "writer_routing_field", writerRoutingField ) );
+
     retval.append( "    <fields>" ).append( Const.CR );
 
     for ( int i = 0; i < fieldDatabase.length; i++ ) {
@@ -506,6 +574,7 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       truncateTable = rep.getStepAttributeBoolean( id_step, "truncate" );
       ignoreErrors = rep.getStepAttributeBoolean( id_step, "ignore_errors" );
       useBatchUpdate = rep.getStepAttributeBoolean( id_step, "use_batch" );
+      multiRowInsert = rep.getStepAttributeBoolean( id_step, "multi_row_insert" );
       specifyFields = rep.getStepAttributeBoolean( id_step, "specify_fields" );
 
       partitioningEnabled = rep.getStepAttributeBoolean( id_step, "partitioning_enabled" );
@@ -520,6 +589,9 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       returningGeneratedKeys = rep.getStepAttributeBoolean( id_step, "return_keys" );
       generatedKeyField = rep.getStepAttributeString( id_step, "return_field" );
 
+      nrWriters = Const.NVL( rep.getStepAttributeString( id_step, "nr_writers" ), "1" );
+      writerRoutingField = rep.getStepAttributeString( id_step, "writer_routing_field" );
+
       int nrCols = rep.countNrStepAttributes( id_step, "column_name" );
       int nrStreams = rep.countNrStepAttributes( id_step, "stream_name" );
 
@@ -544,6 +616,7 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       rep.saveStepAttribute( id_transformation, id_step, "truncate", truncateTable );
       rep.saveStepAttribute( id_transformation, id_step, "ignore_errors", ignoreErrors );
       rep.saveStepAttribute( id_transformation, id_step, "use_batch", useBatchUpdate );
+      rep.saveStepAttribute( id_transformation, id_step, "multi_row_insert", multiRowInsert );
       rep.saveStepAttribute( id_transformation, id_step, "specify_fields", specifyFields );
 
       rep.saveStepAttribute( id_transformation, id_step, "partitioning_enabled", partitioningEnabled );
@@ -558,6 +631,9 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       rep.saveStepAttribute( id_transformation, id_step, "return_keys", returningGeneratedKeys );
       rep.saveStepAttribute( id_transformation, id_step, "return_field", generatedKeyField );
 
+      rep.saveStepAttribute( id_transformation, id_step, "nr_writers", nrWriters );
+      rep.saveStepAttribute( id_transformation, id_step, "writer_routing_field", writerRoutingField );
+
       int nrRows = ( fieldDatabase.length < fieldStream.length ? fieldStream.length : fieldDatabase.length );
       for ( int idx = 0; idx < nrRows; idx++ ) {
         String columnName = ( idx < fieldDatabase.length ? fieldDatabase[idx] : "" );
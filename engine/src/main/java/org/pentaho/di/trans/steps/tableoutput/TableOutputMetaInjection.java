@@ -48,6 +48,7 @@ public class TableOutputMetaInjection implements StepMetaInjectionInterface {
       SPECIFY_DATABASE_FIELDS( ValueMetaInterface.TYPE_STRING, "Specify database fields? (Y/N)" ),
       IGNORE_INSERT_ERRORS( ValueMetaInterface.TYPE_STRING, "Ignore insert errors? (Y/N)" ),
       USE_BATCH_UPDATE( ValueMetaInterface.TYPE_STRING, "Use batch update for inserts? (Y/N)" ),
+      MULTI_ROW_INSERT( ValueMetaInterface.TYPE_STRING, "Insert many rows per statement? (Y/N)" ),
 
       PARTITION_OVER_TABLES( ValueMetaInterface.TYPE_STRING, "Partition data over tables? (Y/N)" ),
       PARTITIONING_FIELD( ValueMetaInterface.TYPE_STRING, "Partitioning field" ),
@@ -61,6 +62,9 @@ public class TableOutputMetaInjection implements StepMetaInjectionInterface {
       RETURN_AUTO_GENERATED_KEY( ValueMetaInterface.TYPE_STRING, "Return auto-generated key? (Y/N)" ),
       AUTO_GENERATED_KEY_FIELD( ValueMetaInterface.TYPE_STRING, "Name of auto-generated key field" ),
 
+      NR_WRITERS( ValueMetaInterface.TYPE_STRING, "Number of writers" ),
+      WRITER_ROUTING_FIELD( ValueMetaInterface.TYPE_STRING, "Field to route the rows to the writers by" ),
+
       DATABASE_FIELDS( ValueMetaInterface.TYPE_NONE, "The database fields" ),
       DATABASE_FIELD( ValueMetaInterface.TYPE_NONE, "One database field" ),
       DATABASE_FIELDNAME( ValueMetaInterface.TYPE_STRING, "Table field" ),
@@ -106,10 +110,11 @@ public class TableOutputMetaInjection implements StepMetaInjectionInterface {
     Entry[] topEntries =
       new Entry[] {
         Entry.TARGET_SCHEMA, Entry.TARGET_TABLE, Entry.COMMIT_SIZE, Entry.TRUNCATE_TABLE,
-        Entry.SPECIFY_DATABASE_FIELDS, Entry.IGNORE_INSERT_ERRORS, Entry.USE_BATCH_UPDATE,
+        Entry.SPECIFY_DATABASE_FIELDS, Entry.IGNORE_INSERT_ERRORS, Entry.USE_BATCH_UPDATE, Entry.MULTI_ROW_INSERT,
         Entry.PARTITION_OVER_TABLES, Entry.PARTITIONING_FIELD, Entry.PARTITION_DATA_PER,
         Entry.TABLE_NAME_DEFINED_IN_FIELD, Entry.TABLE_NAME_FIELD, Entry.STORE_TABLE_NAME,
-        Entry.RETURN_AUTO_GENERATED_KEY, Entry.AUTO_GENERATED_KEY_FIELD, };
+        Entry.RETURN_AUTO_GENERATED_KEY, Entry.AUTO_GENERATED_KEY_FIELD, Entry.NR_WRITERS,
+        Entry.WRITER_ROUTING_FIELD, };
     for ( Entry topEntry : topEntries ) {
       all.add( new StepInjectionMetaEntry( topEntry.name(), topEntry.getValueType(), topEntry.getDescription() ) );
     }
@@ -203,6 +208,9 @@ public class TableOutputMetaInjection implements StepMetaInjectionInterface {
         case USE_BATCH_UPDATE:
           meta.setUseBatchUpdate( "Y".equalsIgnoreCase( lookValue ) );
           break;
+        case MULTI_ROW_INSERT:
+          meta.setMultiRowInsert( "Y".equalsIgnoreCase( lookValue ) );
+          break;
         case PARTITION_OVER_TABLES:
           meta.setPartitioningEnabled( "Y".equalsIgnoreCase( lookValue ) );
           break;
@@ -228,6 +236,12 @@ public class TableOutputMetaInjection implements StepMetaInjectionInterface {
         case AUTO_GENERATED_KEY_FIELD:
           meta.setGeneratedKeyField( lookValue );
           break;
+        case NR_WRITERS:
+          meta.setNrWriters( lookValue );
+          break;
+        case WRITER_ROUTING_FIELD:
+          meta.setWriterRoutingField( lookValue );
+          break;
         default:
           break;
       }
@@ -251,6 +265,7 @@ public class TableOutputMetaInjection implements StepMetaInjectionInterface {
     list.add( StepInjectionUtil.getEntry( Entry.SPECIFY_DATABASE_FIELDS, meta.specifyFields() ) );
     list.add( StepInjectionUtil.getEntry( Entry.IGNORE_INSERT_ERRORS, meta.ignoreErrors() ) );
     list.add( StepInjectionUtil.getEntry( Entry.USE_BATCH_UPDATE, meta.useBatchUpdate() ) );
+    list.add( StepInjectionUtil.getEntry( Entry.MULTI_ROW_INSERT, meta.isMultiRowInsert() ) );
 
     list.add( StepInjectionUtil.getEntry( Entry.PARTITION_OVER_TABLES, meta.isPartitioningEnabled() ) );
     list.add( StepInjectionUtil.getEntry( Entry.PARTITIONING_FIELD, meta.getPartitioningField() ) );
@@ -265,6 +280,9 @@ public class TableOutputMetaInjection implements StepMetaInjectionInterface {
     list.add( StepInjectionUtil.getEntry( Entry.RETURN_AUTO_GENERATED_KEY, meta.isReturningGeneratedKeys() ) );
     list.add( StepInjectionUtil.getEntry( Entry.AUTO_GENERATED_KEY_FIELD, meta.getGeneratedKeyField() ) );
 
+    list.add( StepInjectionUtil.getEntry( Entry.NR_WRITERS, meta.getNrWriters() ) );
+    list.add( StepInjectionUtil.getEntry( Entry.WRITER_ROUTING_FIELD, meta.getWriterRoutingField() ) );
+
     StepInjectionMetaEntry fieldsEntry = StepInjectionUtil.getEntry( Entry.DATABASE_FIELDS );
     list.add( fieldsEntry );
     for ( int i = 0; i < meta.getFieldDatabase().length; i++ ) {
@@ -0,0 +1,447 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableoutput;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.exception.KettleDatabaseBatchException;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Inserts the rows of a {@code TableOutput} step over several connections at the same time. Every writer has a thread
+ * and a connection of its own and batches and commits the rows routed to it by itself, so a transaction never spans
+ * writers. The rows of the batches a writer committed, or failed to insert, are handed back to the step thread which
+ * passes them on. Rows of different writers are not passed on in input order.
+ */
+class TableWriterPool {
+  /** The most rows waiting in the queue of a writer */
+  static final int MAX_QUEUE_SIZE = 10000;
+
+  private static final long WAIT_MILLIS = 100;
+  private static final Row END = new Row( null, null, null );
+
+  private final List<Writer> writers;
+  private final BlockingQueue<Batch> finished;
+  private final ExecutorService executor;
+  private final String schemaName;
+  private final int commitSize;
+  private final boolean errorHandling;
+
+  private volatile boolean stopped;
+  private int next;
+
+  /**
+   * @param connections the connected databases, one per writer
+   * @param schemaName the schema of the table(s) to insert into
+   * @param commitSize the number of rows a writer inserts per batch and commit
+   * @param errorHandling true to hand back the rows of a failed batch instead of stopping the writer
+   * @param executor runs the writers
+   */
+  TableWriterPool( List<Database> connections, String schemaName, int commitSize, boolean errorHandling,
+                   ExecutorService executor ) {
+    this.writers = new ArrayList<Writer>( connections.size() );
+    for ( Database db : connections ) {
+      writers.add( new Writer( writers.size(), db, Math.min( commitSize, MAX_QUEUE_SIZE ) ) );
+    }
+    this.finished = new LinkedBlockingQueue<Batch>();
+    this.executor = executor;
+    this.schemaName = schemaName;
+    this.commitSize = commitSize;
+    this.errorHandling = errorHandling;
+  }
+
+  /**
+   * Start the writers.
+   *
+   * @param insertRowMeta the layout of the rows to insert, every writer works on a copy of its own
+   * @param rowsPerStatement the number of rows to insert per multi-row insert statement, 0 to add single row inserts to
+   *          a batch
+   */
+  void start( RowMetaInterface insertRowMeta, int rowsPerStatement ) {
+    for ( Writer writer : writers ) {
+      writer.insertRowMeta = insertRowMeta.clone();
+      writer.rowsPerStatement = rowsPerStatement;
+      writer.future = executor.submit( writer );
+    }
+  }
+
+  boolean isStarted() {
+    return writers.get( 0 ).future != null;
+  }
+
+  int size() {
+    return writers.size();
+  }
+
+  List<Writer> getWriters() {
+    return writers;
+  }
+
+  /**
+   * @return the writer for a routing key with the given hash code, the same key always goes to the same writer
+   */
+  int getWriterNr( int hash ) {
+    return ( hash & Integer.MAX_VALUE ) % writers.size();
+  }
+
+  /**
+   * @return the next writer in turn, for rows without a routing key
+   */
+  int nextWriterNr() {
+    int nr = next;
+    next = ( next + 1 ) % writers.size();
+    return nr;
+  }
+
+  /**
+   * Queue a row for a writer, waiting for room in its queue if needed.
+   *
+   * @throws KettleException if the writer stopped because of an error
+   */
+  void write( int writerNr, String tableName, Object[] insertRow, Object[] outputRow ) throws KettleException {
+    enqueue( writers.get( writerNr ), new Row( tableName, insertRow, outputRow ) );
+  }
+
+  /**
+   * @return the next batch a writer is done with, or null if there is none right now
+   */
+  Batch poll() {
+    return finished.poll();
+  }
+
+  /**
+   * Let the writers insert and commit the rows that are left and wait until they are done. The batches they finished
+   * can be polled afterwards.
+   */
+  void finish() throws KettleException {
+    KettleException failure = null;
+    for ( Writer writer : writers ) {
+      try {
+        if ( writer.future != null ) {
+          enqueue( writer, END );
+        }
+      } catch ( KettleException e ) {
+        failure = failure == null ? e : failure;
+      }
+    }
+    // Wait for all of them, even if one failed, the connections are not to be closed under a running writer
+    for ( Writer writer : writers ) {
+      try {
+        waitFor( writer );
+      } catch ( KettleException e ) {
+        failure = failure == null ? e : failure;
+      }
+    }
+    if ( failure != null ) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Stop the writers and disconnect.
+   *
+   * @param rollback true to discard the rows still queued and roll back what was not committed yet, false to insert and
+   *          commit them first
+   */
+  void close( boolean rollback ) throws KettleException {
+    if ( rollback ) {
+      stopped = true;
+      for ( Writer writer : writers ) {
+        writer.queue.clear();
+      }
+    }
+    try {
+      finish();
+    } catch ( KettleException e ) {
+      // When rolling back the error that stopped a writer was already reported
+      if ( !rollback ) {
+        throw e;
+      }
+    } finally {
+      KettleDatabaseException error = null;
+      for ( Writer writer : writers ) {
+        if ( rollback ) {
+          try {
+            writer.db.rollback();
+          } catch ( KettleDatabaseException e ) {
+            error = e;
+          }
+        }
+        writer.db.disconnect();
+      }
+      if ( error != null ) {
+        throw error;
+      }
+    }
+  }
+
+  private void enqueue( Writer writer, Row row ) throws KettleException {
+    try {
+      while ( !writer.queue.offer( row, WAIT_MILLIS, TimeUnit.MILLISECONDS ) ) {
+        if ( writer.future.isDone() ) {
+          waitFor( writer );
+          if ( row != END ) {
+            throw new KettleException( "Writer " + writer.nr + " stopped before all rows were inserted" );
+          }
+          return;
+        }
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( e );
+    }
+  }
+
+  private void waitFor( Writer writer ) throws KettleException {
+    if ( writer.future == null ) {
+      return;
+    }
+    try {
+      writer.future.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( e );
+    } catch ( ExecutionException e ) {
+      throw new KettleException( e.getCause() );
+    }
+    if ( writer.failure != null ) {
+      throw writer.failure;
+    }
+  }
+
+  /**
+   * A row to insert.
+   */
+  private static final class Row {
+    final String tableName;
+    final Object[] insertRow;
+    final Object[] outputRow;
+
+    Row( String tableName, Object[] insertRow, Object[] outputRow ) {
+      this.tableName = tableName;
+      this.insertRow = insertRow;
+      this.outputRow = outputRow;
+    }
+  }
+
+  /**
+   * The rows of a batch a writer committed, or failed to insert if the error message is set.
+   */
+  static final class Batch {
+    final List<Object[]> rows;
+    final String errorMessage;
+    final int[] updateCounts;
+    final List<Exception> exceptions;
+
+    Batch( List<Object[]> rows, String errorMessage, int[] updateCounts, List<Exception> exceptions ) {
+      this.rows = rows;
+      this.errorMessage = errorMessage;
+      this.updateCounts = updateCounts;
+      this.exceptions = exceptions;
+    }
+
+    boolean isFailed() {
+      return errorMessage != null;
+    }
+  }
+
+  /**
+   * Inserts the rows of its queue on its own connection, one prepared statement and batch per table.
+   */
+  final class Writer implements Runnable {
+    final int nr;
+    final Database db;
+    final BlockingQueue<Row> queue;
+
+    private final Map<String, TableBatch> tableBatches = new HashMap<String, TableBatch>();
+    private RowMetaInterface insertRowMeta;
+    private int rowsPerStatement;
+    private Future<?> future;
+    private volatile KettleException failure;
+
+    // Only updated by the writer thread, read once it is done
+    private long rows;
+    private long batches;
+    private long batchNanos;
+    private long maxBatchNanos;
+
+    Writer( int nr, Database db, int queueSize ) {
+      this.nr = nr;
+      this.db = db;
+      this.queue = new ArrayBlockingQueue<Row>( queueSize );
+    }
+
+    @Override
+    public void run() {
+      try {
+        for ( Row row = queue.take(); row != END; row = queue.take() ) {
+          if ( !stopped ) {
+            insert( row );
+          }
+        }
+        if ( !stopped ) {
+          for ( Map.Entry<String, TableBatch> entry : tableBatches.entrySet() ) {
+            if ( !entry.getValue().rows.isEmpty() ) {
+              execute( entry.getKey(), entry.getValue() );
+            }
+          }
+        }
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        failure = new KettleException( e );
+      } catch ( KettleException e ) {
+        failure = e;
+      } catch ( RuntimeException e ) {
+        failure = new KettleException( e );
+      }
+    }
+
+    private void insert( Row row ) throws KettleException {
+      TableBatch tableBatch = tableBatches.get( row.tableName );
+      if ( tableBatch == null ) {
+        if ( rowsPerStatement > 0 ) {
+          tableBatch = new TableBatch( null,
+            new MultiRowInsert( db, schemaName, row.tableName, insertRowMeta, rowsPerStatement ) );
+        } else {
+          String sql = db.getInsertStatement( schemaName, row.tableName, insertRowMeta );
+          tableBatch = new TableBatch( db.prepareSQL( sql ), null );
+        }
+        tableBatches.put( row.tableName, tableBatch );
+      }
+
+      try {
+        if ( tableBatch.multiRowInsert != null ) {
+          tableBatch.multiRowInsert.add( row.insertRow );
+        } else {
+          db.setValues( insertRowMeta, row.insertRow, tableBatch.statement );
+          db.insertRow( tableBatch.statement, true, false );
+        }
+      } catch ( KettleDatabaseException e ) {
+        if ( !errorHandling ) {
+          throw new KettleException( "Error inserting row into table [" + row.tableName + "] with values: "
+            + insertRowMeta.getString( row.insertRow ), e );
+        }
+        List<Object[]> failed = new ArrayList<Object[]>( 1 );
+        failed.add( row.outputRow );
+        finished.add( new Batch( failed, e.toString(), null, null ) );
+        return;
+      }
+      tableBatch.rows.add( row.outputRow );
+      rows++;
+
+      if ( tableBatch.rows.size() >= commitSize ) {
+        execute( row.tableName, tableBatch );
+      }
+    }
+
+    private void execute( String tableName, TableBatch tableBatch ) throws KettleException {
+      List<Object[]> batchRows = tableBatch.rows;
+      tableBatch.rows = new ArrayList<Object[]>();
+
+      long start = System.nanoTime();
+      try {
+        try {
+          if ( tableBatch.multiRowInsert != null ) {
+            tableBatch.multiRowInsert.flush();
+            db.commit();
+          } else {
+            tableBatch.statement.executeBatch();
+            db.commit();
+            tableBatch.statement.clearBatch();
+          }
+        } catch ( SQLException e ) {
+          throw Database.createKettleDatabaseBatchException( "Error updating batch", e );
+        }
+        finished.add( new Batch( batchRows, null, null, null ) );
+      } catch ( KettleDatabaseBatchException be ) {
+        db.clearBatch( tableBatch.statement );
+        if ( !errorHandling ) {
+          db.rollback();
+          StringBuilder msg = new StringBuilder( "Error batch inserting rows into table [" + tableName + "]." );
+          msg.append( Const.CR );
+          msg.append( "Errors encountered (first 10):" ).append( Const.CR );
+          for ( int x = 0; x < be.getExceptionsList().size() && x < 10; x++ ) {
+            Exception exception = be.getExceptionsList().get( x );
+            if ( exception.getMessage() != null ) {
+              msg.append( exception.getMessage() ).append( Const.CR );
+            }
+          }
+          throw new KettleException( msg.toString(), be );
+        }
+        db.commit( true );
+        finished.add( new Batch( batchRows, be.toString(), be.getUpdateCounts(), be.getExceptionsList() ) );
+      } finally {
+        long nanos = System.nanoTime() - start;
+        batches++;
+        batchNanos += nanos;
+        maxBatchNanos = Math.max( maxBatchNanos, nanos );
+      }
+    }
+
+    long getRows() {
+      return rows;
+    }
+
+    long getBatches() {
+      return batches;
+    }
+
+    long getBatchNanos() {
+      return batchNanos;
+    }
+
+    long getMaxBatchNanos() {
+      return maxBatchNanos;
+    }
+  }
+
+  /**
+   * The prepared statement or multi-row insert of a table and the rows in its current batch.
+   */
+  private static final class TableBatch {
+    final PreparedStatement statement;
+    final MultiRowInsert multiRowInsert;
+    List<Object[]> rows = new ArrayList<Object[]>();
+
+    TableBatch( PreparedStatement statement, MultiRowInsert multiRowInsert ) {
+      this.statement = statement;
+      this.multiRowInsert = multiRowInsert;
+    }
+  }
+}
@@ -22,10 +22,12 @@
 
 package org.pentaho.di.trans.steps.uniquerowsbyhashset;
 
+import org.pentaho.di.core.AdaptiveRowSet;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -48,7 +50,13 @@ public class UniqueRowsByHashSet extends BaseStep implements StepInterface {
   }
 
   private boolean isUniqueRow( Object[] row ) {
-    return data.seen.add( new RowKey( row, data ) );
+    if ( !data.seen.add( new RowKey( row, data ) ) ) {
+      return false;
+    }
+    if ( data.memoryConsumer != null ) {
+      data.memoryConsumer.allocate( AdaptiveRowSet.estimateRowBytes( row ) );
+    }
+    return true;
   }
 
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
@@ -122,6 +130,9 @@ public class UniqueRowsByHashSet extends BaseStep implements StepInterface {
     if ( super.init( smi, sdi ) ) {
       // Add init code here.
       data.sendDuplicateRows = getStepMeta().getStepErrorMeta() != null && meta.supportsErrorHandling();
+
+      // The keys of all unique rows stay in memory: they count against the memory budget of the transformation
+      data.memoryConsumer = registerMemoryConsumer( TransMemoryManager.NOT_SPILLABLE );
       return true;
     }
     return false;
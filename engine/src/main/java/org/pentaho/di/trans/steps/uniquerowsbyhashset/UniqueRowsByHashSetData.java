@@ -25,6 +25,7 @@ package org.pentaho.di.trans.steps.uniquerowsbyhashset;
 import java.util.HashSet;
 
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.TransMemoryManager;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -39,6 +40,8 @@ public class UniqueRowsByHashSetData extends BaseStepData implements StepDataInt
 
   public HashSet<RowKey> seen = new HashSet<RowKey>();
 
+  public TransMemoryManager.Consumer memoryConsumer;
+
   public UniqueRowsByHashSetData() {
     super();
   }
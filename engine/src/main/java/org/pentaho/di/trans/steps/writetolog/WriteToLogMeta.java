@@ -373,4 +373,9 @@ public class WriteToLogMeta extends BaseStepMeta implements StepMetaInterface {
     return new WriteToLogData();
   }
 
+  @Override
+  public boolean keepsInputRowsUnchanged() {
+    return true;
+  }
+
 }
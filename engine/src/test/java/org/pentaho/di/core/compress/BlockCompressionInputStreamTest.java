@@ -0,0 +1,175 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.pentaho.di.core.compress.gzip.GZIPCompressionProvider;
+import org.pentaho.di.core.compress.zip.ZIPCompressionProvider;
+
+public class BlockCompressionInputStreamTest {
+
+  private static byte[] data( int size ) {
+    byte[] data = new byte[ size ];
+    for ( int i = 0; i < size; i++ ) {
+      data[ i ] = (byte) ( i % 7 );
+    }
+    return data;
+  }
+
+  private static byte[] write( byte[] data, CompressionProvider provider, int blockSize ) throws IOException {
+    ByteArrayOutputStream file = new ByteArrayOutputStream();
+    BlockCompressionOutputStream out = new BlockCompressionOutputStream( file, provider, blockSize );
+    out.write( data, 0, data.length );
+    out.close();
+    return file.toByteArray();
+  }
+
+  private static byte[] readAll( InputStream in ) throws IOException {
+    ByteArrayOutputStream read = new ByteArrayOutputStream();
+    byte[] buffer = new byte[ 5 ];
+    for ( int n = in.read( buffer, 0, buffer.length ); n >= 0; n = in.read( buffer, 0, buffer.length ) ) {
+      read.write( buffer, 0, n );
+    }
+    return read.toByteArray();
+  }
+
+  private static void assertRoundTrip( CompressionProvider provider, boolean readAhead ) throws IOException {
+    byte[] data = data( 1000 );
+    BlockCompressionInputStream in =
+      new BlockCompressionInputStream( new ByteArrayInputStream( write( data, provider, 64 ) ), provider, readAhead );
+    assertEquals( data[ 0 ], in.read() );
+    assertArrayEquals( Arrays.copyOfRange( data, 1, data.length ), readAll( in ) );
+
+    // The end of the stream stays the end
+    assertEquals( -1, in.read() );
+    assertEquals( -1, in.read( new byte[ 1 ], 0, 1 ) );
+    in.close();
+  }
+
+  @Test
+  public void testStoredBlocks() throws IOException {
+    assertRoundTrip( null, false );
+    assertRoundTrip( null, true );
+  }
+
+  @Test
+  public void testGZipBlocks() throws IOException {
+    assertRoundTrip( new GZIPCompressionProvider(), false );
+    assertRoundTrip( new GZIPCompressionProvider(), true );
+  }
+
+  @Test
+  public void testZipBlocks() throws IOException {
+    // Zip writes and reads its data in entries
+    assertRoundTrip( new ZIPCompressionProvider(), false );
+    assertRoundTrip( new ZIPCompressionProvider(), true );
+  }
+
+  @Test
+  public void testEmptyStream() throws IOException {
+    BlockCompressionInputStream in = new BlockCompressionInputStream( new ByteArrayInputStream( new byte[ 0 ] ),
+      new GZIPCompressionProvider(), true );
+    assertEquals( 0, in.read( new byte[ 1 ], 0, 0 ) );
+    assertEquals( -1, in.read() );
+    in.close();
+  }
+
+  @Test
+  public void testTruncatedBlock() throws IOException {
+    byte[] file = write( data( 100 ), null, 64 );
+    for ( boolean readAhead : new boolean[] { false, true } ) {
+      BlockCompressionInputStream in = new BlockCompressionInputStream(
+        new ByteArrayInputStream( Arrays.copyOf( file, file.length - 1 ) ), null, readAhead );
+      try {
+        readAll( in );
+        fail( "A truncated block should fail" );
+      } catch ( EOFException e ) {
+        // Expected
+      }
+      in.close();
+    }
+  }
+
+  @Test
+  public void testTruncatedCompressedBlock() throws IOException {
+    GZIPCompressionProvider provider = new GZIPCompressionProvider();
+    byte[] file = write( data( 100 ), provider, 1000 );
+    // Claim more uncompressed data than the block holds
+    file[ 3 ]++;
+    BlockCompressionInputStream in =
+      new BlockCompressionInputStream( new ByteArrayInputStream( file ), provider, false );
+    try {
+      readAll( in );
+      fail( "A short compressed block should fail" );
+    } catch ( EOFException e ) {
+      assertTrue( e.getMessage().contains( "100 of 101" ) );
+    }
+    in.close();
+  }
+
+  @Test( timeout = 10000 )
+  public void testCloseWaitsForTheReadAhead() throws IOException {
+    final AtomicBoolean closed = new AtomicBoolean();
+    final AtomicBoolean readAfterClose = new AtomicBoolean();
+    InputStream file = new FilterInputStream( new ByteArrayInputStream( write( data( 1000 ), null, 64 ) ) ) {
+      @Override
+      public int read( byte[] b, int off, int len ) throws IOException {
+        try {
+          Thread.sleep( 20 );
+        } catch ( InterruptedException e ) {
+          throw new IOException( e );
+        }
+        readAfterClose.compareAndSet( false, closed.get() );
+        return super.read( b, off, len );
+      }
+
+      @Override
+      public void close() throws IOException {
+        closed.set( true );
+        super.close();
+      }
+    };
+
+    BlockCompressionInputStream in = new BlockCompressionInputStream( file, null, true );
+    in.read();
+    in.close();
+    assertTrue( closed.get() );
+    assertFalse( readAfterClose.get() );
+    assertEquals( -1, in.read() );
+  }
+}
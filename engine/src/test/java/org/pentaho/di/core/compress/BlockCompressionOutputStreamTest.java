@@ -0,0 +1,82 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class BlockCompressionOutputStreamTest {
+
+  @Test
+  public void testBlockFraming() throws IOException {
+    ByteArrayOutputStream file = new ByteArrayOutputStream();
+    BlockCompressionOutputStream out = new BlockCompressionOutputStream( file, null, 4 );
+    out.write( 0 );
+    out.write( new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 }, 0, 9 );
+    out.close();
+
+    // Each block is preceded by its uncompressed and stored length
+    DataInputStream in = new DataInputStream( new ByteArrayInputStream( file.toByteArray() ) );
+    byte value = 0;
+    for ( int length : new int[] { 4, 4, 2 } ) {
+      assertEquals( length, in.readInt() );
+      assertEquals( length, in.readInt() );
+      for ( int i = 0; i < length; i++ ) {
+        assertEquals( value++, in.readByte() );
+      }
+    }
+    assertEquals( -1, in.read() );
+  }
+
+  @Test
+  public void testFlushWritesThePendingData() throws IOException {
+    ByteArrayOutputStream file = new ByteArrayOutputStream();
+    BlockCompressionOutputStream out = new BlockCompressionOutputStream( file, null, 4 );
+    out.write( new byte[] { 1, 2, 3 }, 0, 3 );
+    assertEquals( 0, file.size() );
+    out.flush();
+    assertEquals( 8 + 3, file.size() );
+
+    // Nothing is left for an empty block
+    out.close();
+    assertEquals( 8 + 3, file.size() );
+  }
+
+  @Test
+  public void testEmptyStream() throws IOException {
+    ByteArrayOutputStream file = new ByteArrayOutputStream();
+    new BlockCompressionOutputStream( file, null ).close();
+    assertEquals( 0, file.size() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testInvalidBlockSize() {
+    new BlockCompressionOutputStream( new ByteArrayOutputStream(), null, 0 );
+  }
+}
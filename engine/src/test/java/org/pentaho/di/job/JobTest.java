@@ -29,6 +29,7 @@ import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.logging.BaseLogTable;
 import org.pentaho.di.core.logging.JobEntryLogTable;
 import org.pentaho.di.core.logging.JobLogTable;
+import org.pentaho.di.core.logging.KettleLogStore;
 import org.pentaho.di.core.logging.LogStatus;
 import org.pentaho.di.core.logging.LogTableField;
 import org.pentaho.di.core.variables.VariableSpace;
@@ -36,9 +37,11 @@ import org.pentaho.di.trans.HasDatabasesInterface;
 
 import java.util.ArrayList;
 
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -60,6 +63,22 @@ public class JobTest {
     when( mockedJob.createDataBase( any( DatabaseMeta.class ) ) ).thenReturn( mockedDataBase );
   }
 
+  @Test
+  public void testStopAllNotifiesStoppedListeners() {
+    KettleLogStore.init();
+    Job job = new Job();
+    JobStoppedListener listener = mock( JobStoppedListener.class );
+    job.addJobStoppedListener( listener );
+
+    job.stopAll();
+    assertTrue( job.isStopped() );
+    verify( listener ).jobStopped( job );
+
+    job.removeJobStoppedListener( listener );
+    job.stopAll();
+    verify( listener, times( 1 ) ).jobStopped( job );
+  }
+
   @Test
   public void recordsCleanUpMethodIsCalled_JobEntryLogTable() throws Exception {
 
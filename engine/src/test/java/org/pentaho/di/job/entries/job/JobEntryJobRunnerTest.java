@@ -27,6 +27,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.pentaho.di.core.Result;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.KettleLogStore;
 import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.job.Job;
 
@@ -189,4 +190,36 @@ public class JobEntryJobRunnerTest {
     when( mockJob.execute( Mockito.anyInt(), Mockito.any( Result.class ) ) ).thenReturn( mockResult );
     jobRunner.waitUntilFinished();
   }
+
+  @Test( timeout = 5000 )
+  public void testWaitUntilFinishedReturnsWhenRunnerFinishes() throws Exception {
+    when( mockJob.isStopped() ).thenReturn( false );
+    when( mockJob.getParentJob() ).thenReturn( parentJob );
+    when( parentJob.isStopped() ).thenReturn( false );
+    when( mockJob.execute( Mockito.anyInt(), Mockito.any( Result.class ) ) ).thenReturn( mockResult );
+
+    new Thread( jobRunner ).start();
+    jobRunner.waitUntilFinished();
+    assertTrue( jobRunner.isFinished() );
+  }
+
+  @Test( timeout = 5000 )
+  public void testWaitUntilFinishedReturnsWhenJobIsStopped() throws Exception {
+    KettleLogStore.init();
+    final Job stoppingJob = new Job();
+    new Thread( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep( 50 );
+        } catch ( InterruptedException e ) {
+          // Ignore
+        }
+        stoppingJob.stopAll();
+      }
+    } ).start();
+
+    jobRunner.waitUntilFinished( stoppingJob );
+    assertFalse( jobRunner.isFinished() );
+  }
 }
@@ -0,0 +1,140 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.AdaptiveRowSet;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMeta;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class AdaptiveRowSetManagerTest {
+  private LogChannelInterface log;
+  private AdaptiveRowSet rowSet;
+
+  @Before
+  public void setUp() {
+    log = mock( LogChannelInterface.class );
+    rowSet = new AdaptiveRowSet( 1000 );
+  }
+
+  private AdaptiveRowSetManager createManager( AdaptiveRowSet... rowSets ) {
+    return new AdaptiveRowSetManager( log, Arrays.asList( rowSets ), 1000, Long.MAX_VALUE );
+  }
+
+  private static void fill( AdaptiveRowSet rowSet, Object[] row ) {
+    while ( rowSet.putRowWait( new RowMeta(), row, 0, TimeUnit.MILLISECONDS ) ) {
+      // until the row set is full
+    }
+  }
+
+  private static void drain( AdaptiveRowSet rowSet ) {
+    while ( rowSet.getRowWait( 0, TimeUnit.MILLISECONDS ) != null ) {
+      // until the row set is empty
+    }
+  }
+
+  @Test
+  public void testGrowsWhenBothSidesWait() {
+    AdaptiveRowSetManager manager = createManager( rowSet );
+    fill( rowSet, new Object[] { 1L } );
+    drain( rowSet );
+    manager.adjust();
+    assertEquals( 2000, rowSet.getCapacity() );
+  }
+
+  @Test
+  public void testShrinksInFrontOfBottleneck() {
+    AdaptiveRowSetManager manager = createManager( rowSet );
+    fill( rowSet, new Object[] { 1L } );
+    manager.adjust();
+    assertEquals( 1000, rowSet.getCapacity() );
+
+    // The reader takes a row now and then but the row set stays full
+    rowSet.getRowImmediate();
+    fill( rowSet, new Object[] { 1L } );
+    manager.adjust();
+    assertEquals( 500, rowSet.getCapacity() );
+  }
+
+  @Test
+  public void testShrinksWhenMostlyEmpty() {
+    AdaptiveRowSetManager manager = createManager( rowSet );
+    for ( int i = 0; i < 150; i++ ) {
+      rowSet.putRow( new RowMeta(), new Object[] { 1L } );
+    }
+    drain( rowSet );
+    manager.adjust();
+    assertEquals( 300, rowSet.getCapacity() );
+
+    // Never lower than the minimum capacity
+    rowSet.putRow( new RowMeta(), new Object[] { 1L } );
+    drain( rowSet );
+    manager.adjust();
+    assertEquals( AdaptiveRowSetManager.MIN_CAPACITY, rowSet.getCapacity() );
+  }
+
+  @Test
+  public void testKeepsCapacityWithoutRows() {
+    AdaptiveRowSetManager manager = createManager( rowSet );
+    manager.adjust();
+    assertEquals( 1000, rowSet.getCapacity() );
+  }
+
+  @Test
+  public void testNeverGrowsBeyondMaximum() {
+    AdaptiveRowSetManager manager =
+      new AdaptiveRowSetManager( log, Collections.singletonList( rowSet ), 100, Long.MAX_VALUE );
+    rowSet.setCapacity( 100 * AdaptiveRowSetManager.MAX_GROWTH );
+    fill( rowSet, new Object[] { 1L } );
+    drain( rowSet );
+    manager.adjust();
+    assertEquals( 100 * AdaptiveRowSetManager.MAX_GROWTH, rowSet.getCapacity() );
+  }
+
+  @Test
+  public void testStaysWithinMemoryBudget() {
+    AdaptiveRowSet other = new AdaptiveRowSet( 1000 );
+    Object[] row = new Object[] { "a string value" };
+    long rowBytes = AdaptiveRowSet.estimateRowBytes( row );
+    AdaptiveRowSetManager manager =
+      new AdaptiveRowSetManager( log, Arrays.asList( rowSet, other ), 1000, 2000 * rowBytes );
+
+    fill( rowSet, row );
+    drain( rowSet );
+    fill( other, row );
+    drain( other );
+    manager.adjust();
+
+    // Both want to double but together they can only hold 2000 rows
+    assertEquals( 1000, rowSet.getCapacity() );
+    assertEquals( 1000, other.getCapacity() );
+  }
+}
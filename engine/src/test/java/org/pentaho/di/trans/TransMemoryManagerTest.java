@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.trans.step.StepInterface;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TransMemoryManagerTest {
+  private static final long MB = TransMemoryManager.RESERVE_CHUNK_BYTES;
+
+  private TransMemoryManager manager;
+
+  @Before
+  public void setUp() {
+    manager = new TransMemoryManager( mock( LogChannelInterface.class ), 10 * MB );
+  }
+
+  @Test
+  public void testReservesInChunks() {
+    TransMemoryManager.Consumer consumer = manager.register( null, TransMemoryManager.SPILL_PRIORITY_DEFAULT );
+    assertTrue( consumer.allocate( 100 ) );
+    assertEquals( MB, manager.getReserved() );
+    assertTrue( consumer.allocate( MB ) );
+    assertEquals( 2 * MB, manager.getReserved() );
+    assertEquals( MB + 100, consumer.getUsed() );
+
+    consumer.freeAll();
+    assertEquals( 0, manager.getReserved() );
+    assertEquals( 0, consumer.getUsed() );
+    assertEquals( 2 * MB, manager.getPeakReserved() );
+  }
+
+  @Test
+  public void testAsksLowestPriorityToSpillFirst() {
+    TransMemoryManager.Consumer cache = manager.register( null, TransMemoryManager.SPILL_PRIORITY_CACHE );
+    TransMemoryManager.Consumer sort = manager.register( null, TransMemoryManager.SPILL_PRIORITY_DEFAULT );
+    TransMemoryManager.Consumer lookup = manager.register( null, TransMemoryManager.NOT_SPILLABLE );
+
+    assertTrue( sort.allocate( 4 * MB ) );
+    assertTrue( cache.allocate( 4 * MB ) );
+
+    // Going over the budget: the cache goes first, the sort can keep its data
+    assertTrue( lookup.allocate( 4 * MB ) );
+    assertTrue( cache.isSpillRequested() );
+    assertFalse( sort.isSpillRequested() );
+    assertFalse( cache.allocate( 1 ) );
+
+    cache.freeAll();
+    assertFalse( cache.isSpillRequested() );
+    assertEquals( 8 * MB, manager.getReserved() );
+  }
+
+  @Test
+  public void testRequesterSpillsWhenNextInLine() {
+    TransMemoryManager.Consumer sort1 = manager.register( null, TransMemoryManager.SPILL_PRIORITY_DEFAULT );
+    TransMemoryManager.Consumer sort2 = manager.register( null, TransMemoryManager.SPILL_PRIORITY_DEFAULT );
+
+    assertTrue( sort1.allocate( 3 * MB ) );
+    assertTrue( sort2.allocate( 6 * MB ) );
+
+    // sort2 holds the most memory: it has to spill itself, sort1 is left alone
+    assertFalse( sort2.allocate( 2 * MB ) );
+    assertFalse( sort1.isSpillRequested() );
+    assertTrue( sort2.isSpillRequested() );
+    assertFalse( sort2.allocate( 1 ) );
+
+    sort2.freeAll();
+    assertTrue( sort1.allocate( 2 * MB ) );
+  }
+
+  @Test
+  public void testReservedPerStep() {
+    StepInterface step = mock( StepInterface.class );
+    TransMemoryManager.Consumer consumer = manager.register( step, TransMemoryManager.NOT_SPILLABLE );
+    manager.register( null, TransMemoryManager.NOT_SPILLABLE ).allocate( 5 * MB );
+    consumer.allocate( 2 * MB );
+    assertEquals( 2 * MB, manager.getReserved( step ) );
+
+    consumer.close();
+    assertEquals( 0, manager.getReserved( step ) );
+    assertEquals( 5 * MB, manager.getReserved() );
+  }
+}
@@ -46,6 +46,7 @@ import org.pentaho.di.core.row.value.ValueMetaFactory;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.variables.Variables;
+import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.di.metastore.DatabaseMetaStoreUtil;
 import org.pentaho.di.repository.ObjectRevision;
 import org.pentaho.di.repository.Repository;
@@ -65,6 +66,7 @@ import org.pentaho.di.trans.steps.userdefinedjavaclass.UserDefinedJavaClassMeta;
 import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.stores.memory.MemoryMetaStore;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -533,6 +535,28 @@ public class TransMetaTest {
     assertNotEquals( oldCacheVersion, currCacheVersion );
   }
 
+  @Test
+  public void testLockFreeRowSetsXmlRoundTrip() throws Exception {
+    TransMeta transMeta = new TransMeta( getClass().getResource( "one-step-trans.ktr" ).getPath() );
+    assertFalse( transMeta.isUsingLockFreeRowSets() );
+    transMeta.setUsingLockFreeRowSets( true );
+
+    Document document = XMLHandler.loadXMLString( transMeta.getXML() );
+    TransMeta loaded = new TransMeta( XMLHandler.getSubNode( document, TransMeta.XML_TAG ), null );
+    assertTrue( loaded.isUsingLockFreeRowSets() );
+  }
+
+  @Test
+  public void testAdaptiveRowSetsXmlRoundTrip() throws Exception {
+    TransMeta transMeta = new TransMeta( getClass().getResource( "one-step-trans.ktr" ).getPath() );
+    assertFalse( transMeta.isUsingAdaptiveRowSets() );
+    transMeta.setUsingAdaptiveRowSets( true );
+
+    Document document = XMLHandler.loadXMLString( transMeta.getXML() );
+    TransMeta loaded = new TransMeta( XMLHandler.getSubNode( document, TransMeta.XML_TAG ), null );
+    assertTrue( loaded.isUsingAdaptiveRowSets() );
+  }
+
   @Test
   public void testGetCacheVersionWithIrrelevantParameters() throws Exception {
     TransMeta transMeta = new TransMeta( getClass().getResource( "one-step-trans.ktr" ).getPath() );
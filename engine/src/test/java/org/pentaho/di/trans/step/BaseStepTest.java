@@ -27,7 +27,9 @@ import static org.mockito.Matchers.any;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -53,6 +55,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 import org.pentaho.di.core.BlockingRowSet;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.QueueRowSet;
 import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.RowMetaAndData;
@@ -64,6 +67,7 @@ import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.fileinput.NonAccessibleFileObject;
 import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
@@ -72,6 +76,7 @@ import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.trans.BasePartitioner;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.steps.dummytrans.DummyTransMeta;
 import org.pentaho.di.trans.steps.mock.StepMockHelper;
 import org.pentaho.di.www.SocketRepository;
 
@@ -297,6 +302,86 @@ public class BaseStepTest {
     assertFalse( meta1 == meta2 );
   }
 
+  private RowSet rowSetTo( String stepName, StepMetaInterface stepMetaInterface ) {
+    StepMeta stepMeta = mock( StepMeta.class );
+    when( stepMeta.getStepMetaInterface() ).thenReturn( stepMetaInterface );
+    when( mockHelper.transMeta.findStep( stepName ) ).thenReturn( stepMeta );
+    RowSet rowSet = new QueueRowSet();
+    rowSet.setThreadNameFromToCopy( "source", 0, stepName, 0 );
+    return rowSet;
+  }
+
+  @Test
+  public void copiedRowsAreSharedWithStepsThatKeepThemUnchanged() throws Exception {
+    RowSet dummy1 = rowSetTo( "dummy1", new DummyTransMeta() );
+    RowSet dummy2 = rowSetTo( "dummy2", new DummyTransMeta() );
+    RowSet changing = rowSetTo( "changing", mock( StepMetaInterface.class ) );
+    // A dummy that passes its rows on to a step that changes them
+    RowSet dummy3 = rowSetTo( "dummy3", new DummyTransMeta() );
+    StepMeta dummy3Meta = mockHelper.transMeta.findStep( "dummy3" );
+    StepMeta changingMeta = mockHelper.transMeta.findStep( "changing" );
+    when( mockHelper.transMeta.findNextSteps( dummy3Meta ) ).thenReturn( Collections.singletonList( changingMeta ) );
+
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setStopped( false );
+    baseStep.setRepartitioning( StepPartitioningMeta.PARTITIONING_METHOD_NONE );
+    baseStep.setOutputRowSets( Arrays.asList( changing, dummy1, dummy3, dummy2 ) );
+
+    System.setProperty( Const.KETTLE_SHARE_COPIED_ROWS, "Y" );
+    try {
+      assertTrue( baseStep.init( mockHelper.initStepMetaInterface, mockHelper.initStepDataInterface ) );
+    } finally {
+      System.clearProperty( Const.KETTLE_SHARE_COPIED_ROWS );
+    }
+    assertTrue( dummy1.isSharingRows() );
+    assertTrue( dummy2.isSharingRows() );
+    assertFalse( changing.isSharingRows() );
+    assertFalse( dummy3.isSharingRows() );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "string" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "integer" ) );
+    Object[] row = RowDataUtil.allocateRowData( rowMeta.size() );
+    row[ 0 ] = "a";
+    row[ 1 ] = 1L;
+
+    baseStep.putRow( rowMeta, row );
+
+    // The sharing targets get the row itself, the others a copy of it
+    //
+    assertSame( row, dummy1.getRow() );
+    assertSame( row, dummy2.getRow() );
+    Object[] copy = changing.getRow();
+    assertNotSame( row, copy );
+    assertEquals( "a", copy[ 0 ] );
+    assertEquals( 1L, copy[ 1 ] );
+    assertNotSame( row, dummy3.getRow() );
+  }
+
+  @Test
+  public void copiedRowsAreNotSharedByDefault() throws Exception {
+    RowSet dummy1 = rowSetTo( "dummy1", new DummyTransMeta() );
+    RowSet dummy2 = rowSetTo( "dummy2", new DummyTransMeta() );
+
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setStopped( false );
+    baseStep.setRepartitioning( StepPartitioningMeta.PARTITIONING_METHOD_NONE );
+    baseStep.setOutputRowSets( Arrays.asList( dummy1, dummy2 ) );
+    assertTrue( baseStep.init( mockHelper.initStepMetaInterface, mockHelper.initStepDataInterface ) );
+    assertFalse( dummy1.isSharingRows() );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "string" ) );
+    Object[] row = new Object[] { "a" };
+    baseStep.putRow( rowMeta, row );
+    assertSame( row, dummy1.getRow() );
+    assertNotSame( row, dummy2.getRow() );
+  }
+
   @Test
   public void testBuildLog() throws KettleValueException {
     BaseStep testObject = new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta,
@@ -394,6 +479,163 @@ public class BaseStepTest {
     verify( rowHandler, times( 1 ) ).putRow( rowMetaInterface, objects );
   }
 
+  @Test
+  public void putRowBatchWithRowHandler() throws KettleException {
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface,
+        0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setRowHandler( rowHandler );
+
+    RowMetaInterface rowMetaInterface = mock( RowMetaInterface.class );
+    Object[][] rows = new Object[][] { { "foo" }, { "bar" } };
+    baseStep.putRowBatch( rowMetaInterface, rows, 2 );
+    verify( rowHandler, times( 1 ) ).putRowBatch( rowMetaInterface, rows, 2 );
+  }
+
+  @Test
+  public void getRowBatchReadsAvailableRows() throws KettleException {
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "x" ) );
+    BlockingRowSet rowSet = new BlockingRowSet( 10 );
+    for ( long i = 0; i < 3; i++ ) {
+      rowSet.putRow( rowMeta, new Object[] { i } );
+    }
+    rowSet.setDone();
+    baseStep.setInputRowSets( new ArrayList<RowSet>( Arrays.asList( rowSet ) ) );
+
+    Object[][] rows = baseStep.getRowBatch( 10 );
+    assertEquals( 3, rows.length );
+    for ( int i = 0; i < rows.length; i++ ) {
+      assertEquals( (long) i, rows[ i ][ 0 ] );
+    }
+    assertEquals( 3, baseStep.getLinesRead() );
+    assertNull( baseStep.getRowBatch( 10 ) );
+  }
+
+  @Test
+  public void putRowBatchWritesAllRows() throws KettleException {
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setStopped( false );
+    baseStep.setRepartitioning( StepPartitioningMeta.PARTITIONING_METHOD_NONE );
+    BlockingRowSet rowSet = new BlockingRowSet( 10 );
+    baseStep.setOutputRowSets( new ArrayList<RowSet>( Arrays.asList( rowSet ) ) );
+
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "x" ) );
+    Object[][] rows = new Object[][] { { 0L }, { 1L }, { 2L }, { 3L } };
+    baseStep.putRowBatch( rowMeta, rows, 3 );
+
+    assertEquals( 3, baseStep.getLinesWritten() );
+    assertEquals( 3, rowSet.size() );
+    for ( int i = 0; i < 3; i++ ) {
+      assertSame( rows[ i ], rowSet.getRowImmediate() );
+    }
+  }
+
+  @Test
+  public void putRowBatchUsesRowDistribution() throws KettleException {
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    RowDistributionInterface rowDistribution = mock( RowDistributionInterface.class );
+    when( mockHelper.stepMeta.isDistributes() ).thenReturn( true );
+    when( mockHelper.stepMeta.getRowDistribution() ).thenReturn( rowDistribution );
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setStopped( false );
+    baseStep.setRepartitioning( StepPartitioningMeta.PARTITIONING_METHOD_NONE );
+    baseStep.setOutputRowSets( new ArrayList<RowSet>( Arrays.asList( new BlockingRowSet( 10 ) ) ) );
+
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "x" ) );
+    Object[][] rows = new Object[][] { { 0L }, { 1L } };
+    baseStep.putRowBatch( rowMeta, rows, 2 );
+
+    verify( rowDistribution ).distributeRow( rowMeta, rows[ 0 ], baseStep );
+    verify( rowDistribution ).distributeRow( rowMeta, rows[ 1 ], baseStep );
+    assertEquals( 2, baseStep.getLinesWritten() );
+  }
+
+  @Test
+  public void putRowBatchStopsBetweenRows() throws KettleException {
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    final BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setStopped( false );
+    baseStep.setRepartitioning( StepPartitioningMeta.PARTITIONING_METHOD_NONE );
+    RowSet rowSet = mock( RowSet.class );
+    when( rowSet.putRow( any( RowMetaInterface.class ), any( Object[].class ) ) ).thenAnswer( new Answer<Boolean>() {
+      @Override
+      public Boolean answer( InvocationOnMock invocation ) {
+        // The step is stopped while the first row is written
+        baseStep.setStopped( true );
+        return true;
+      }
+    } );
+    baseStep.setOutputRowSets( new ArrayList<RowSet>( Arrays.asList( rowSet ) ) );
+
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "x" ) );
+    baseStep.putRowBatch( rowMeta, new Object[][] { { 0L }, { 1L }, { 2L } }, 3 );
+
+    verify( rowSet, times( 1 ) ).putRow( any( RowMetaInterface.class ), any( Object[].class ) );
+    assertEquals( 1, baseStep.getLinesWritten() );
+  }
+
+  @Test
+  public void statusCountersAreExactUnderConcurrentUpdates() throws Exception {
+    final BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    final int nrThreads = 4;
+    final int nrIncrements = 10000;
+    Thread[] threads = new Thread[ nrThreads ];
+    for ( int t = 0; t < nrThreads; t++ ) {
+      threads[ t ] = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          for ( int i = 0; i < nrIncrements; i++ ) {
+            baseStep.incrementLinesRead();
+            baseStep.incrementLinesWritten();
+          }
+        }
+      } );
+      threads[ t ].start();
+    }
+    for ( Thread thread : threads ) {
+      thread.join();
+    }
+    assertEquals( nrThreads * nrIncrements, baseStep.getLinesRead() );
+    assertEquals( nrThreads * nrIncrements, baseStep.getLinesWritten() );
+
+    baseStep.setLinesRead( 5 );
+    assertEquals( 5, baseStep.getLinesRead() );
+    assertEquals( 6, baseStep.incrementLinesRead() );
+    assertEquals( 5, baseStep.decrementLinesRead() );
+  }
+
+  @Test
+  public void lineCountersSnapshot() {
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.addLinesRead( 3 );
+    baseStep.addLinesWritten( 2 );
+    baseStep.incrementLinesInput();
+    baseStep.incrementLinesOutput();
+    baseStep.incrementLinesUpdated();
+    baseStep.incrementLinesRejected();
+    baseStep.setLinesSkipped( 7 );
+
+    StepLineCounters counters = baseStep.getLineCounters();
+    assertEquals( new StepLineCounters( 3, 2, 1, 1, 1, 1, 7 ), counters );
+    assertEquals( 3, counters.getLinesRead() );
+    assertEquals( 2, counters.getLinesWritten() );
+    assertEquals( 7, counters.getLinesSkipped() );
+  }
+
   @Test
   public void putErrorWithRowHandler() throws KettleException {
     BaseStep baseStep =
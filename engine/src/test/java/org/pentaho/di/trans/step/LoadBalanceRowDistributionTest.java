@@ -0,0 +1,176 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.BlockingRowSet;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.logging.Metrics;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LoadBalanceRowDistributionTest {
+  private StepInterface step;
+  private LogChannelInterface log;
+  private RowSet first;
+  private RowSet second;
+  private RowMetaInterface rowMeta;
+
+  @Before
+  public void setUp() {
+    first = createRowSet( 0 );
+    second = createRowSet( 1 );
+    log = mock( LogChannelInterface.class );
+    step = mock( StepInterface.class );
+    when( step.getLogChannel() ).thenReturn( log );
+    when( step.getOutputRowSets() ).thenReturn( Arrays.asList( first, second ) );
+    rowMeta = new RowMeta();
+  }
+
+  private static RowSet createRowSet( int copy ) {
+    return createRowSet( copy, 1000 );
+  }
+
+  private static RowSet createRowSet( int copy, int size ) {
+    RowSet rowSet = new BlockingRowSet( size );
+    rowSet.setThreadNameFromToCopy( "source", 0, "target", copy );
+    return rowSet;
+  }
+
+  @Test
+  public void testSendsChunksToTheSameTarget() throws Exception {
+    LoadBalanceRowDistribution distribution = new LoadBalanceRowDistribution();
+    for ( int i = 0; i < LoadBalanceRowDistribution.ROWS_PER_CHUNK; i++ ) {
+      distribution.distributeRow( rowMeta, new Object[] { i }, step );
+    }
+    assertEquals( LoadBalanceRowDistribution.ROWS_PER_CHUNK, first.size() );
+    assertEquals( 0, second.size() );
+
+    // Nothing was consumed, the next chunk goes to the other, emptier target
+    distribution.distributeRow( rowMeta, new Object[] { 0 }, step );
+    assertEquals( 1, second.size() );
+  }
+
+  @Test
+  public void testPicksTheLeastFullTarget() throws Exception {
+    for ( int i = 0; i < 50; i++ ) {
+      first.putRow( rowMeta, new Object[] { i } );
+    }
+    LoadBalanceRowDistribution distribution = new LoadBalanceRowDistribution();
+    distribution.distributeRow( rowMeta, new Object[] { 0 }, step );
+    assertEquals( 50, first.size() );
+    assertEquals( 1, second.size() );
+  }
+
+  @Test
+  public void testPrefersTheFasterTarget() throws Exception {
+    LoadBalanceRowDistribution.Balancer balancer = new LoadBalanceRowDistribution.Balancer( step );
+    int chunk = LoadBalanceRowDistribution.ROWS_PER_CHUNK;
+    for ( int i = 0; i < 2 * chunk; i++ ) {
+      balancer.putRow( rowMeta, new Object[] { i } );
+    }
+    assertEquals( chunk, first.size() );
+    assertEquals( chunk, second.size() );
+
+    // The first target consumes all of its rows, the second one only a few
+    for ( int i = 0; i < chunk; i++ ) {
+      first.getRowImmediate();
+    }
+    for ( int i = 0; i < 10; i++ ) {
+      second.getRowImmediate();
+    }
+    balancer.pickTarget();
+    assertEquals( 0, balancer.getCurrent() );
+  }
+
+  @Test( timeout = 10000 )
+  public void testSafeStopWaitsForRoom() throws Exception {
+    first = createRowSet( 0, 1 );
+    second = createRowSet( 1, 1 );
+    when( step.getOutputRowSets() ).thenReturn( Arrays.asList( first, second ) );
+    first.putRow( rowMeta, new Object[] { 0 } );
+    second.putRow( rowMeta, new Object[] { 1 } );
+    when( step.isStopped() ).thenReturn( true );
+    when( step.isSafeStopped() ).thenReturn( true );
+
+    Thread consumer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep( 200 );
+        } catch ( InterruptedException e ) {
+          return;
+        }
+        first.getRowImmediate();
+        second.getRowImmediate();
+      }
+    };
+    consumer.start();
+    LoadBalanceRowDistribution.Balancer balancer = new LoadBalanceRowDistribution.Balancer( step );
+    balancer.putRow( rowMeta, new Object[] { 2 } );
+    consumer.join();
+
+    // The row is not lost
+    assertEquals( 1, first.size() + second.size() );
+  }
+
+  @Test( timeout = 10000 )
+  public void testStopDropsTheRow() throws Exception {
+    first = createRowSet( 0, 1 );
+    second = createRowSet( 1, 1 );
+    when( step.getOutputRowSets() ).thenReturn( Arrays.asList( first, second ) );
+    first.putRow( rowMeta, new Object[] { 0 } );
+    second.putRow( rowMeta, new Object[] { 1 } );
+    when( step.isStopped() ).thenReturn( true );
+
+    LoadBalanceRowDistribution.Balancer balancer = new LoadBalanceRowDistribution.Balancer( step );
+    balancer.putRow( rowMeta, new Object[] { 2 } );
+    assertEquals( 2, first.size() + second.size() );
+  }
+
+  @Test
+  public void testRecordsMetrics() throws Exception {
+    LoadBalanceRowDistribution.Balancer balancer = new LoadBalanceRowDistribution.Balancer( step );
+    for ( int i = 0; i < 150; i++ ) {
+      balancer.putRow( rowMeta, new Object[] { i } );
+    }
+    balancer.endChunk();
+
+    verify( log, times( 2 ) ).snap( any( Metrics.class ), any( String.class ) );
+    verify( log ).snap( Metrics.METRIC_STEP_LOAD_BALANCE_CHUNKS, "target.0" );
+    verify( log ).snap( Metrics.METRIC_STEP_LOAD_BALANCE_CHUNKS, "target.1" );
+    verify( log ).snap( Metrics.METRIC_STEP_LOAD_BALANCE_ROWS, "target.0", 100L );
+    verify( log ).snap( Metrics.METRIC_STEP_LOAD_BALANCE_ROWS, "target.1", 50L );
+  }
+}
@@ -0,0 +1,141 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.AdaptiveRowSet;
+import org.pentaho.di.core.BlockingRowSet;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.trans.TransMeta.TransformationType;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RunTaskTest {
+  private StepExecutorPool pool;
+  private StepMetaDataCombi combi;
+  private StepInterface step;
+
+  @Before
+  public void setUp() {
+    pool = new StepExecutorPool( 1 );
+    step = mock( StepInterface.class );
+    when( step.getLogChannel() ).thenReturn( mock( LogChannelInterface.class ) );
+    when( step.getInputRowSets() ).thenReturn( Collections.<RowSet>emptyList() );
+    when( step.getOutputRowSets() ).thenReturn( Collections.<RowSet>emptyList() );
+    combi = new StepMetaDataCombi();
+    combi.step = step;
+    combi.meta = mock( StepMetaInterface.class );
+    combi.data = mock( StepDataInterface.class );
+  }
+
+  @Test
+  public void testCanRunAsTask() {
+    when( combi.meta.getSupportedTransformationTypes() ).thenReturn(
+      new TransformationType[] { TransformationType.Normal, TransformationType.SingleThreaded } );
+    assertTrue( RunTask.canRunAsTask( combi ) );
+
+    when( combi.meta.getSupportedTransformationTypes() ).thenReturn(
+      new TransformationType[] { TransformationType.Normal } );
+    assertFalse( RunTask.canRunAsTask( combi ) );
+  }
+
+  @Test
+  public void testRunsStepUntilDone() throws Exception {
+    when( step.processRow( combi.meta, combi.data ) ).thenReturn( true, true, false );
+
+    new RunTask( combi, pool ).start();
+
+    verify( step, timeout( 5000 ) ).markStop();
+    verify( step, times( 3 ) ).processRow( combi.meta, combi.data );
+    verify( step ).setRunning( true );
+    verify( step ).dispose( combi.meta, combi.data );
+    verify( step ).setUsingThreadPriorityManagment( false );
+  }
+
+  @Test
+  public void testWaitsForInputRows() throws Exception {
+    RowSet input = new BlockingRowSet( 10 );
+    when( step.getInputRowSets() ).thenReturn( Collections.singletonList( input ) );
+    when( step.processRow( combi.meta, combi.data ) ).thenReturn( false );
+
+    RunTask task = new RunTask( combi, pool );
+    assertFalse( task.canProcessRow() );
+    task.start();
+    Thread.sleep( 50 );
+    verify( step, never() ).processRow( combi.meta, combi.data );
+
+    input.putRow( new RowMeta(), new Object[] {} );
+    verify( step, timeout( 5000 ) ).markStop();
+    verify( step ).processRow( combi.meta, combi.data );
+  }
+
+  @Test
+  public void testWaitsForRoomOnOutput() {
+    RowSet output = new BlockingRowSet( 1 );
+    output.putRow( new RowMeta(), new Object[] {} );
+    when( step.getOutputRowSets() ).thenReturn( Collections.singletonList( output ) );
+
+    RunTask task = new RunTask( combi, pool );
+    assertFalse( task.canProcessRow() );
+
+    output.getRow();
+    assertTrue( task.canProcessRow() );
+  }
+
+  @Test
+  public void testFollowsAdaptiveCapacity() {
+    AdaptiveRowSet output = new AdaptiveRowSet( 2 );
+    output.putRow( new RowMeta(), new Object[] {} );
+    when( step.getOutputRowSets() ).thenReturn( Collections.<RowSet>singletonList( output ) );
+
+    RunTask task = new RunTask( combi, pool );
+    assertTrue( task.canProcessRow() );
+
+    output.setCapacity( 1 );
+    assertFalse( task.canProcessRow() );
+  }
+
+  @Test
+  public void testErrorStopsTransformation() throws Exception {
+    when( step.processRow( combi.meta, combi.data ) ).thenThrow( new RuntimeException( "fail" ) );
+    when( step.getLogChannel().getLogChannelId() ).thenReturn( "unknown" );
+
+    new RunTask( combi, pool ).start();
+
+    verify( step, timeout( 5000 ) ).markStop();
+    verify( step ).setErrors( 1 );
+    verify( step ).stopAll();
+  }
+}
@@ -24,6 +24,7 @@ package org.pentaho.di.trans.step;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class StepStatusTest {
 
@@ -34,4 +35,22 @@ public class StepStatusTest {
     String[] overrides = status.getTransLogFields( "Override" );
     assertEquals( "Override", overrides[10] );
   }
+
+  @Test
+  public void testMemoryReserved() {
+    StepStatus status = new StepStatus();
+    assertEquals( "-", status.getTransLogFields()[14] );
+    status.setMemoryReserved( 3L * 1024 * 1024 );
+    assertTrue( status.getTransLogFields()[14].matches( "3[.,]0 MB" ) );
+  }
+
+  @Test
+  public void testSpoonSlaveLogFieldsEndWithPriority() {
+    StepStatus status = new StepStatus();
+    status.setPriority( "1/2" );
+    status.setMemoryReserved( 3L * 1024 * 1024 );
+    String[] fields = status.getSpoonSlaveLogFields();
+    assertEquals( 13, fields.length );
+    assertEquals( "1/2", fields[12] );
+  }
 }
@@ -0,0 +1,162 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.databasejoin;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.mock.StepMockHelper;
+import org.pentaho.metastore.api.IMetaStore;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+public class DatabaseJoinTest {
+  private StepMockHelper<DatabaseJoinMeta, DatabaseJoinData> stepMockHelper;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    stepMockHelper =
+      new StepMockHelper<DatabaseJoinMeta, DatabaseJoinData>(
+        "DATABASE JOIN TEST", DatabaseJoinMeta.class, DatabaseJoinData.class );
+    when( stepMockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) )
+      .thenReturn( stepMockHelper.logChannelInterface );
+    when( stepMockHelper.trans.isRunning() ).thenReturn( true );
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    stepMockHelper.cleanUp();
+  }
+
+  /**
+   * A connection whose query returns one row for the parameter, like a database it fails without parameter metadata.
+   */
+  private QueryPipeline.QueryConnection connection() throws Exception {
+    Database db = mock( Database.class );
+    final ResultSet rs = mock( ResultSet.class );
+    final AtomicInteger returned = new AtomicInteger();
+    final Object[] parameter = new Object[ 1 ];
+
+    when( db.openQuery( any( PreparedStatement.class ), any( RowMetaInterface.class ), any( Object[].class ) ) )
+      .thenAnswer( new Answer<ResultSet>() {
+        @Override
+        public ResultSet answer( InvocationOnMock invocation ) throws Throwable {
+          if ( invocation.getArguments()[ 1 ] == null ) {
+            throw new KettleDatabaseException( "No parameter metadata" );
+          }
+          parameter[ 0 ] = ( (Object[]) invocation.getArguments()[ 2 ] )[ 0 ];
+          returned.set( 0 );
+          return rs;
+        }
+      } );
+    when( db.getRow( rs ) ).thenAnswer( new Answer<Object[]>() {
+      @Override
+      public Object[] answer( InvocationOnMock invocation ) throws Throwable {
+        return returned.incrementAndGet() == 1 ? new Object[] { "joined" + parameter[ 0 ] } : null;
+      }
+    } );
+    RowMetaInterface returnMeta = new RowMeta();
+    returnMeta.addValueMeta( new ValueMetaString( "value" ) );
+    when( db.getReturnRowMeta() ).thenReturn( returnMeta );
+    return new QueryPipeline.QueryConnection( db, mock( PreparedStatement.class ) );
+  }
+
+  @Test( timeout = 10000 )
+  public void testParallelQueriesJoinEveryRow() throws Exception {
+    DatabaseJoinMeta meta = stepMockHelper.processRowsStepMetaInterface;
+    when( meta.getParameterField() ).thenReturn( new String[] { "id" } );
+    doAnswer( new Answer<Void>() {
+      @Override
+      public Void answer( InvocationOnMock invocation ) throws Throwable {
+        ( (RowMetaInterface) invocation.getArguments()[ 0 ] ).addValueMeta( new ValueMetaString( "value" ) );
+        return null;
+      }
+    } ).when( meta ).getFields( any( RowMetaInterface.class ), anyString(), any( RowMetaInterface[].class ),
+      any( StepMeta.class ), any( VariableSpace.class ), any( Repository.class ), any( IMetaStore.class ) );
+
+    DatabaseJoinData data = new DatabaseJoinData();
+    data.pipeline = new QueryPipeline( Arrays.asList( connection(), connection() ), 0, executor );
+
+    DatabaseJoin step =
+      spy( new DatabaseJoin( stepMockHelper.stepMeta, data, 0, stepMockHelper.transMeta, stepMockHelper.trans ) );
+    RowMetaInterface inputRowMeta = new RowMeta();
+    inputRowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    doReturn( inputRowMeta ).when( step ).getInputRowMeta();
+    doReturn( new Object[] { 1L } ).doReturn( new Object[] { 2L } ).doReturn( new Object[] { 3L } ).doReturn( null )
+      .when( step ).getRow();
+    final List<Object[]> output = new ArrayList<Object[]>();
+    doAnswer( new Answer<Void>() {
+      @Override
+      public Void answer( InvocationOnMock invocation ) throws Throwable {
+        output.add( (Object[]) invocation.getArguments()[ 1 ] );
+        return null;
+      }
+    } ).when( step ).putRow( any( RowMetaInterface.class ), any( Object[].class ) );
+
+    while ( step.processRow( meta, data ) ) {
+      // Process all the rows
+    }
+
+    assertEquals( 0, step.getErrors() );
+    assertFalse( step.isStopped() );
+    assertEquals( 3, output.size() );
+    for ( int i = 0; i < 3; i++ ) {
+      assertEquals( (long) ( i + 1 ), output.get( i )[ 0 ] );
+      assertEquals( "joined" + ( i + 1 ), output.get( i )[ 1 ] );
+    }
+    assertTrue( data.pipeline.isEmpty() );
+  }
+}
@@ -0,0 +1,180 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.databasejoin;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QueryPipelineTest {
+  private ExecutorService executor;
+  private RowMetaInterface paramMeta;
+  private RowMetaInterface returnMeta;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+    paramMeta = new RowMeta();
+    paramMeta.addValueMeta( new ValueMetaInteger( "n" ) );
+    returnMeta = new RowMeta();
+    returnMeta.addValueMeta( new ValueMetaString( "value" ) );
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * A connection whose query returns n rows for parameter n. The query of n = 1 is slow.
+   */
+  private QueryPipeline.QueryConnection connection() throws Exception {
+    Database db = mock( Database.class );
+    final ResultSet rs = mock( ResultSet.class );
+    final AtomicLong parameter = new AtomicLong();
+    final AtomicInteger returned = new AtomicInteger();
+
+    when( db.openQuery( any( PreparedStatement.class ), any( RowMetaInterface.class ), any( Object[].class ) ) )
+      .thenAnswer( new Answer<ResultSet>() {
+        @Override
+        public ResultSet answer( InvocationOnMock invocation ) throws Throwable {
+          long n = (Long) ( (Object[]) invocation.getArguments()[ 2 ] )[ 0 ];
+          parameter.set( n );
+          returned.set( 0 );
+          if ( n == 1 ) {
+            Thread.sleep( 200 );
+          }
+          return rs;
+        }
+      } );
+    when( db.getRow( rs ) ).thenAnswer( new Answer<Object[]>() {
+      @Override
+      public Object[] answer( InvocationOnMock invocation ) throws Throwable {
+        return returned.incrementAndGet() <= parameter.get() ? new Object[] { "row" + parameter.get() } : null;
+      }
+    } );
+    when( db.getReturnRowMeta() ).thenReturn( returnMeta );
+    return new QueryPipeline.QueryConnection( db, mock( PreparedStatement.class ) );
+  }
+
+  @Test( timeout = 10000 )
+  public void testResultsInSubmitOrder() throws Exception {
+    QueryPipeline pipeline = new QueryPipeline( Arrays.asList( connection(), connection() ), 0, executor );
+    Object[] slow = new Object[] { 1L };
+    Object[] fast = new Object[] { 2L };
+
+    pipeline.submit( slow, paramMeta, slow );
+    assertFalse( pipeline.isFull() );
+    pipeline.submit( fast, paramMeta, fast );
+    assertTrue( pipeline.isFull() );
+
+    QueryPipeline.Result result = pipeline.take();
+    assertSame( slow, result.row );
+    assertEquals( 1, result.rows.size() );
+    assertTrue( result.exhausted );
+    assertSame( returnMeta, result.returnMeta );
+
+    result = pipeline.take();
+    assertSame( fast, result.row );
+    assertEquals( 2, result.rows.size() );
+    assertEquals( "row2", result.rows.get( 1 )[ 0 ] );
+    assertTrue( pipeline.isEmpty() );
+  }
+
+  @Test( timeout = 10000 )
+  public void testRowLimit() throws Exception {
+    QueryPipeline pipeline = new QueryPipeline( Collections.singletonList( connection() ), 2, executor );
+    Object[] row = new Object[] { 3L };
+    pipeline.submit( row, paramMeta, row );
+    QueryPipeline.Result result = pipeline.take();
+    assertEquals( 2, result.rows.size() );
+    assertFalse( result.exhausted );
+
+    row = new Object[] { 0L };
+    pipeline.submit( row, paramMeta, row );
+    result = pipeline.take();
+    assertTrue( result.rows.isEmpty() );
+    assertTrue( result.exhausted );
+  }
+
+  @Test( timeout = 10000 )
+  public void testFailedQueryReleasesTheConnection() throws Exception {
+    Database db = mock( Database.class );
+    KettleDatabaseException error = new KettleDatabaseException( "Query failed" );
+    when( db.openQuery( any( PreparedStatement.class ), any( RowMetaInterface.class ), any( Object[].class ) ) )
+      .thenThrow( error );
+    QueryPipeline pipeline = new QueryPipeline(
+      Collections.singletonList( new QueryPipeline.QueryConnection( db, mock( PreparedStatement.class ) ) ), 0,
+      executor );
+
+    Object[] row = new Object[] { 1L };
+    pipeline.submit( row, paramMeta, row );
+    pipeline.submit( row, paramMeta, row );
+    assertSame( error, pipeline.take().error );
+    QueryPipeline.Result result = pipeline.take();
+    assertNotNull( result.error );
+    assertNull( result.rows );
+  }
+
+  @Test( timeout = 10000 )
+  public void testCloseWaitsAndDisconnects() throws Exception {
+    QueryPipeline.QueryConnection first = connection();
+    QueryPipeline.QueryConnection second = connection();
+    QueryPipeline pipeline = new QueryPipeline( Arrays.asList( first, second ), 0, executor );
+    Object[] row = new Object[] { 1L };
+    pipeline.submit( row, paramMeta, row );
+
+    pipeline.close();
+    assertTrue( pipeline.isEmpty() );
+    verify( first.db ).disconnect();
+    verify( second.db ).disconnect();
+  }
+}
@@ -66,9 +66,9 @@ public class DatabaseLookupMetaTest implements InitializerInterface<StepMetaInte
     PluginRegistry.init( false );
     List<String> attributes =
         Arrays.asList( "schemaName", "tablename", "databaseMeta", "orderByClause", "cached",
-            "cacheSize", "loadingAllDataInCache", "failingOnMultipleResults", "eatingRowOnLookupFailure",
-            "streamKeyField1", "streamKeyField2", "keyCondition", "tableKeyField", "returnValueField",
-            "returnValueNewName", "returnValueDefault", "returnValueDefaultType" );
+            "cacheSize", "loadingAllDataInCache", "sharingCache", "lookupBatchSize", "failingOnMultipleResults",
+            "eatingRowOnLookupFailure", "streamKeyField1", "streamKeyField2", "keyCondition", "tableKeyField",
+            "returnValueField", "returnValueNewName", "returnValueDefault", "returnValueDefaultType" );
 
     Map<String, String> getterMap = new HashMap<String, String>();
     Map<String, String> setterMap = new HashMap<String, String>();
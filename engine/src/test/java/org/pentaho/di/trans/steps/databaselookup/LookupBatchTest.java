@@ -0,0 +1,186 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.databaselookup;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LookupBatchTest {
+
+  private static RowMetaInterface rowMeta( RowMetaInterface keyMeta, String... returnedFields ) {
+    RowMetaInterface rowMeta = keyMeta.clone();
+    for ( String field : returnedFields ) {
+      rowMeta.addValueMeta( new ValueMetaString( field ) );
+    }
+    return rowMeta;
+  }
+
+  private static RowMetaInterface integerKey() {
+    RowMetaInterface keyMeta = new RowMeta();
+    keyMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    return keyMeta;
+  }
+
+  @Test
+  public void testRowsWithTheSameKeyShareTheLookup() throws Exception {
+    RowMetaInterface keyMeta = integerKey();
+    LookupBatch batch = new LookupBatch( keyMeta, 10 );
+    Object[] row1 = new Object[] { "first" };
+    Object[] row2 = new Object[] { "second" };
+    Object[] row3 = new Object[] { "third" };
+    batch.add( row1, new Object[] { 1L } );
+    batch.add( row2, new Object[] { 2L } );
+    batch.add( row3, new Object[] { 1L } );
+
+    List<Object[]> keys = batch.getPendingKeys();
+    assertEquals( 2, keys.size() );
+    assertEquals( 1L, keys.get( 0 )[ 0 ] );
+    assertEquals( 2L, keys.get( 1 )[ 0 ] );
+
+    List<Object[]> results = Arrays.asList( new Object[] { 2L, "b" }, new Object[] { 1L, "a" } );
+    assertTrue( batch.setResults( rowMeta( keyMeta, "name" ), results, false ) );
+
+    // The rows keep their order
+    assertEquals( 3, batch.size() );
+    assertSame( row1, batch.getRow( 0 ) );
+    assertSame( row2, batch.getRow( 1 ) );
+    assertSame( row3, batch.getRow( 2 ) );
+    assertArrayEquals( new Object[] { "a" }, batch.getEntry( 0 ).result );
+    assertArrayEquals( new Object[] { "b" }, batch.getEntry( 1 ).result );
+    assertSame( batch.getEntry( 0 ), batch.getEntry( 2 ) );
+    assertEquals( "name", batch.getEntry( 0 ).resultMeta.getValueMeta( 0 ).getName() );
+    assertTrue( batch.getUnresolved().isEmpty() );
+  }
+
+  @Test
+  public void testKeysWithoutRowsAreUnresolved() throws Exception {
+    RowMetaInterface keyMeta = integerKey();
+    LookupBatch batch = new LookupBatch( keyMeta, 10 );
+    batch.add( new Object[] {}, new Object[] { 1L } );
+    batch.add( new Object[] {}, new Object[] { null } );
+
+    assertTrue( batch.setResults( rowMeta( keyMeta, "name" ), Collections.<Object[]>emptyList(), false ) );
+    assertEquals( 2, batch.getUnresolved().size() );
+    assertNull( batch.getEntry( 0 ).result );
+  }
+
+  @Test
+  public void testRowsOfUnknownKeysAreReported() throws Exception {
+    RowMetaInterface keyMeta = new RowMeta();
+    keyMeta.addValueMeta( new ValueMetaString( "code" ) );
+    LookupBatch batch = new LookupBatch( keyMeta, 10 );
+    batch.add( new Object[] {}, new Object[] { "abc" } );
+
+    // A case insensitive database returns the key as it is stored
+    List<Object[]> results = Collections.singletonList( new Object[] { "ABC", "x" } );
+    assertFalse( batch.setResults( rowMeta( keyMeta, "name" ), results, false ) );
+    assertEquals( 1, batch.getUnresolved().size() );
+  }
+
+  @Test
+  public void testKeysAreMatchedTheWayTheyCompare() throws Exception {
+    RowMetaInterface keyMeta = new RowMeta();
+    ValueMetaString code = new ValueMetaString( "code" );
+    code.setCaseInsensitive( true );
+    code.setIgnoreWhitespace( true );
+    keyMeta.addValueMeta( code );
+    LookupBatch batch = new LookupBatch( keyMeta, 10 );
+    batch.add( new Object[] {}, new Object[] { "abc " } );
+
+    List<Object[]> results = Collections.singletonList( new Object[] { "ABC", "x" } );
+    assertTrue( batch.setResults( rowMeta( keyMeta, "name" ), results, false ) );
+    assertArrayEquals( new Object[] { "x" }, batch.getEntry( 0 ).result );
+  }
+
+  @Test
+  public void testFirstRowOfAKeyWins() throws Exception {
+    RowMetaInterface keyMeta = integerKey();
+    LookupBatch batch = new LookupBatch( keyMeta, 10 );
+    batch.add( new Object[] {}, new Object[] { 1L } );
+
+    List<Object[]> results = Arrays.asList( new Object[] { 1L, "a" }, new Object[] { 1L, "b" } );
+    assertTrue( batch.setResults( rowMeta( keyMeta, "name" ), results, false ) );
+    assertArrayEquals( new Object[] { "a" }, batch.getEntry( 0 ).result );
+    assertNull( batch.getEntry( 0 ).error );
+
+    batch.clear();
+    assertTrue( batch.isEmpty() );
+    batch.add( new Object[] {}, new Object[] { 1L } );
+    assertTrue( batch.setResults( rowMeta( keyMeta, "name" ), results, true ) );
+    assertTrue( batch.getEntry( 0 ).error instanceof KettleDatabaseException );
+  }
+
+  @Test
+  public void testKeysAreMatchedByValue() throws Exception {
+    RowMetaInterface keyMeta = new RowMeta();
+    keyMeta.addValueMeta( new ValueMetaBigNumber( "amount" ) );
+    keyMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    LookupBatch batch = new LookupBatch( keyMeta, 10 );
+    batch.add( new Object[] {}, new Object[] { new BigDecimal( "1.5" ), 7L } );
+
+    // Another scale and a returned key of another type still match
+    RowMetaInterface resultMeta = new RowMeta();
+    resultMeta.addValueMeta( new ValueMetaBigNumber( "amount" ) );
+    resultMeta.addValueMeta( new ValueMetaNumber( "id" ) );
+    resultMeta.addValueMeta( new ValueMetaString( "name" ) );
+    List<Object[]> results = Collections.singletonList( new Object[] { new BigDecimal( "1.50" ), 7.0, "x" } );
+    assertTrue( batch.setResults( resultMeta, results, false ) );
+    assertArrayEquals( new Object[] { "x" }, batch.getEntry( 0 ).result );
+  }
+
+  @Test
+  public void testFullBatch() {
+    LookupBatch batch = new LookupBatch( integerKey(), 2 );
+    assertFalse( batch.add( new Object[] {}, new Object[] { 1L } ) );
+    assertFalse( batch.add( new Object[] {}, new Object[] { 1L } ) );
+    assertTrue( batch.add( new Object[] {}, new Object[] { 2L } ) );
+
+    // Rows found in the cache only wait for so long
+    batch = new LookupBatch( integerKey(), 2 );
+    batch.add( new Object[] {}, new Object[] { 1L } );
+    for ( int i = 1; i < 2 * LookupBatch.MAX_ROWS_PER_KEY - 1; i++ ) {
+      assertFalse( batch.addCached( new Object[] {}, new Object[] { 3L }, new Object[] { "c" } ) );
+    }
+    assertTrue( batch.addCached( new Object[] {}, new Object[] { 3L }, new Object[] { "c" } ) );
+    assertEquals( 1, batch.getPendingKeys().size() );
+    assertTrue( batch.getEntry( 1 ).cacheHit );
+  }
+}
@@ -0,0 +1,144 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.databaselookup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+public class TinyLfuCacheTest {
+  private static final DatabaseLookupMeta META = new DatabaseLookupMeta();
+
+  private static RowMetaInterface integerKeyMeta() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    return rowMeta;
+  }
+
+  private static Object[] lookup( TinyLfuCache cache, RowMetaInterface keyMeta, long key ) throws Exception {
+    Object[] row = cache.getRowFromCache( keyMeta, new Object[] { key } );
+    if ( row == null ) {
+      row = new Object[] { "value" + key };
+      cache.storeRowInCache( META, keyMeta, new Object[] { key }, row );
+    }
+    return row;
+  }
+
+  @Test
+  public void testIntegerKeys() throws Exception {
+    TinyLfuCache cache = new TinyLfuCache( 100, 1 );
+    RowMetaInterface keyMeta = integerKeyMeta();
+    Object[] row = new Object[] { "a" };
+
+    assertNull( cache.getRowFromCache( keyMeta, new Object[] { 1L } ) );
+    cache.storeRowInCache( META, keyMeta, new Object[] { 1L }, row );
+    assertSame( row, cache.getRowFromCache( keyMeta, new Object[] { 1L } ) );
+    assertNull( cache.getRowFromCache( keyMeta, new Object[] { 2L } ) );
+
+    assertEquals( 1, cache.getHitCount() );
+    assertEquals( 2, cache.getMissCount() );
+    assertEquals( 100.0 / 3, cache.getHitRatio(), 0.001 );
+  }
+
+  @Test
+  public void testCompositeKeys() throws Exception {
+    TinyLfuCache cache = new TinyLfuCache( 0, 1 );
+    RowMetaInterface keyMeta = new RowMeta();
+    keyMeta.addValueMeta( new ValueMetaString( "code" ) );
+    keyMeta.addValueMeta( new ValueMetaInteger( "version" ) );
+    Object[] row = new Object[] { "a" };
+
+    cache.storeRowInCache( META, keyMeta, new Object[] { "X", 1L }, row );
+    cache.storeRowInCache( META, keyMeta, new Object[] { null, 1L }, new Object[] { "null" } );
+    assertSame( row, cache.getRowFromCache( keyMeta, new Object[] { "X", 1L } ) );
+    assertNull( cache.getRowFromCache( keyMeta, new Object[] { "X", 2L } ) );
+    assertEquals( "null", cache.getRowFromCache( keyMeta, new Object[] { null, 1L } )[0] );
+  }
+
+  @Test
+  public void testUnboundedCacheKeepsEverything() throws Exception {
+    TinyLfuCache cache = new TinyLfuCache( 0, 1 );
+    RowMetaInterface keyMeta = integerKeyMeta();
+    for ( long i = 0; i < 10000; i++ ) {
+      lookup( cache, keyMeta, i );
+    }
+    assertEquals( 10000, cache.getSize() );
+    assertEquals( 0, cache.getEvictionCount() );
+  }
+
+  @Test
+  public void testCapacityIsRespected() throws Exception {
+    TinyLfuCache cache = new TinyLfuCache( 1000, 1 );
+    RowMetaInterface keyMeta = integerKeyMeta();
+    for ( long i = 0; i < 10000; i++ ) {
+      lookup( cache, keyMeta, i );
+    }
+    assertTrue( cache.getSize() <= 1000 );
+    assertEquals( 10000 - cache.getSize(), cache.getEvictionCount() );
+  }
+
+  @Test
+  public void testScanDoesNotFlushFrequentKeys() throws Exception {
+    TinyLfuCache cache = new TinyLfuCache( 1000, 1 );
+    RowMetaInterface keyMeta = integerKeyMeta();
+    for ( int round = 0; round < 5; round++ ) {
+      for ( long i = 0; i < 500; i++ ) {
+        lookup( cache, keyMeta, i );
+      }
+    }
+
+    // A scan over five times as many keys as fit in the cache, each looked up only once
+    for ( long i = 1000000; i < 1005000; i++ ) {
+      lookup( cache, keyMeta, i );
+    }
+
+    int found = 0;
+    for ( long i = 0; i < 500; i++ ) {
+      if ( cache.getRowFromCache( keyMeta, new Object[] { i } ) != null ) {
+        found++;
+      }
+    }
+    assertTrue( "Only " + found + " frequent keys survived the scan", found > 450 );
+  }
+
+  @Test
+  public void testLoadStatisticsAndRelease() {
+    TinyLfuCache cache = new TinyLfuCache( 10, 2 );
+    cache.recordLoad( 3000 );
+    cache.recordLoad( 1000 );
+    assertEquals( 2, cache.getLoadCount() );
+    assertEquals( 4000, cache.getTotalLoadNanos() );
+    assertEquals( 3000, cache.getMaxLoadNanos() );
+
+    assertFalse( cache.release() );
+    assertTrue( cache.release() );
+  }
+}
@@ -53,8 +53,8 @@ public class GroupByMetaTest implements InitializerInterface<StepMetaInterface>
     KettleEnvironment.init();
     PluginRegistry.init( false );
     List<String> attributes =
-        Arrays.asList( "passAllRows", "directory", "prefix", "aggregateIgnored", "aggregateIgnoredField", "addingLineNrInGroup",
-            "lineNrInGroupField", "alwaysGivingBackOneRow", "groupField", "aggregateField", "subjectField",
+        Arrays.asList( "passAllRows", "directory", "prefix", "compressionType", "aggregateIgnored",
+            "aggregateIgnoredField", "addingLineNrInGroup", "lineNrInGroupField", "alwaysGivingBackOneRow", "groupField", "aggregateField", "subjectField",
             "aggregateType", "valueField" );
 
     Map<String, String> getterMap = new HashMap<String, String>() {
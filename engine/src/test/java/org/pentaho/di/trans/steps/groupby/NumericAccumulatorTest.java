@@ -0,0 +1,113 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.groupby;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+public class NumericAccumulatorTest {
+
+  @Test
+  public void testIntegerSum() throws Exception {
+    ValueMetaInterface meta = new ValueMetaInteger( "i" );
+    NumericAccumulator sum = NumericAccumulator.create( meta );
+    sum.add( meta, 1L );
+    sum.add( meta, null );
+    sum.add( meta, -4L );
+    sum.add( meta, 10L );
+    assertEquals( 7L, sum.getValue() );
+  }
+
+  @Test
+  public void testNumberSumOfIntegers() throws Exception {
+    NumericAccumulator sum = NumericAccumulator.create( new ValueMetaNumber( "n" ) );
+    sum.add( new ValueMetaNumber( "n" ), 1.5 );
+    sum.add( new ValueMetaInteger( "i" ), 2L );
+    sum.add( new ValueMetaNumber( "n" ), 0.25 );
+    assertEquals( 3.75, (Double) sum.getValue(), 0.0 );
+  }
+
+  @Test
+  public void testOnlyNullsGiveNull() throws Exception {
+    ValueMetaInterface meta = new ValueMetaNumber( "n" );
+    NumericAccumulator sum = NumericAccumulator.create( meta );
+    sum.add( meta, null );
+    assertTrue( sum.isEmpty() );
+    assertNull( sum.getValue() );
+  }
+
+  @Test
+  public void testBigNumberSumIsExact() throws Exception {
+    ValueMetaInterface meta = new ValueMetaBigNumber( "b" );
+    NumericAccumulator sum = NumericAccumulator.create( meta );
+    BigDecimal expected = BigDecimal.ZERO;
+    for ( int i = 0; i < 1000; i++ ) {
+      BigDecimal value = new BigDecimal( "0.1" ).multiply( BigDecimal.valueOf( i ) ).add( new BigDecimal( "0.001" ) );
+      sum.add( meta, value );
+      expected = expected.add( value );
+    }
+    // Same value and scale as adding BigDecimals
+    assertEquals( expected, sum.getValue() );
+  }
+
+  @Test
+  public void testBigNumberSumOfMixedScales() throws Exception {
+    ValueMetaInterface meta = new ValueMetaBigNumber( "b" );
+    NumericAccumulator sum = NumericAccumulator.create( meta );
+    BigDecimal expected = BigDecimal.ZERO;
+    for ( String s : new String[] { "-12.345", "1E+3", "0.00", "7", "-0.000000000000000001" } ) {
+      BigDecimal value = new BigDecimal( s );
+      sum.add( meta, value );
+      expected = expected.add( value );
+    }
+    assertEquals( expected, sum.getValue() );
+  }
+
+  @Test
+  public void testBigNumberSumBeyondLong() throws Exception {
+    ValueMetaInterface meta = new ValueMetaBigNumber( "b" );
+    NumericAccumulator sum = NumericAccumulator.create( meta );
+    BigDecimal big = new BigDecimal( Long.MAX_VALUE ).add( new BigDecimal( "0.5" ) );
+    sum.add( meta, big );
+    sum.add( meta, new BigDecimal( "9000000000000000000" ) );
+    sum.add( meta, new BigDecimal( "0.25" ) );
+    assertEquals( big.add( new BigDecimal( "9000000000000000000" ) ).add( new BigDecimal( "0.25" ) ), sum.getValue() );
+  }
+
+  @Test
+  public void testNoAccumulatorForOtherTypes() {
+    assertNull( NumericAccumulator.create( new ValueMetaString( "s" ) ) );
+    assertNull( NumericAccumulator.create( new ValueMetaDate( "d" ) ) );
+  }
+}
@@ -51,6 +51,11 @@ public class JoinRowsMetaInjectionTest extends BaseMetadataInjectionTest<JoinRow
         return meta.getCacheSize();
       }
     } );
+    check( "COMPRESSION_TYPE", new StringGetter() {
+      public String get() {
+        return meta.getCompressionType();
+      }
+    } );
     check( "MAIN_STEP", new StringGetter() {
       public String get() {
         return meta.getMainStepname();
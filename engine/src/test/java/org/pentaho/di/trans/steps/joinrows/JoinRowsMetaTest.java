@@ -47,7 +47,7 @@ public class JoinRowsMetaTest {
     KettleEnvironment.init();
     PluginRegistry.init( false );
     List<String> attributes =
-        Arrays.asList( "directory", "prefix", "cacheSize", "mainStepname", "condition" );
+        Arrays.asList( "directory", "prefix", "cacheSize", "compressionType", "mainStepname", "condition" );
 
     Map<String, String> getterMap = new HashMap<String, String>();
     Map<String, String> setterMap = new HashMap<String, String>();
@@ -45,6 +45,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.times;
@@ -105,6 +106,15 @@ public class JoinRowsTest {
     return new JoinRows( stepMeta, null, 0, transMeta, trans );
   }
 
+  @Test
+  public void initFailsOnUnknownCompressionType() throws Exception {
+    JoinRowsMeta joinRowsMeta = new JoinRowsMeta();
+    joinRowsMeta.setMainStepname( "main step name" );
+    joinRowsMeta.setCompressionType( "no such compression" );
+
+    assertFalse( getJoinRows().init( joinRowsMeta, new JoinRowsData() ) );
+  }
+
   @Test
   public void testJoinRowsStep() throws Exception {
     JoinRowsMeta joinRowsMeta = new JoinRowsMeta();
@@ -0,0 +1,193 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+
+public class MemoryGroupByCombineCopiesTest {
+  @ClassRule public static RestorePDIEngineEnvironment env = new RestorePDIEngineEnvironment();
+
+  private static final String STEP_NAME = "testStep";
+  private static final int NR_GROUPS = 10;
+
+  private RowMeta rowMeta;
+  private MemoryGroupByMeta meta;
+  private StepMeta stepMeta;
+  private TransMeta transMeta;
+  private Trans trans;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws KettleException {
+    KettleClientEnvironment.init();
+  }
+
+  @Before
+  public void setUp() {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "key" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "value" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "number" ) );
+
+    meta = new MemoryGroupByMeta();
+    meta.allocate( 1, 7 );
+    meta.setCombiningCopies( true );
+    meta.getGroupField()[0] = "key";
+    addAggregate( 0, "sum", "value", MemoryGroupByMeta.TYPE_GROUP_SUM );
+    addAggregate( 1, "count", "value", MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL );
+    addAggregate( 2, "average", "number", MemoryGroupByMeta.TYPE_GROUP_AVERAGE );
+    addAggregate( 3, "distinct", "value", MemoryGroupByMeta.TYPE_GROUP_COUNT_DISTINCT );
+    addAggregate( 4, "stddev", "number", MemoryGroupByMeta.TYPE_GROUP_STANDARD_DEVIATION );
+    addAggregate( 5, "min", "value", MemoryGroupByMeta.TYPE_GROUP_MIN );
+    addAggregate( 6, "max", "value", MemoryGroupByMeta.TYPE_GROUP_MAX );
+
+    transMeta = mock( TransMeta.class );
+    stepMeta = new StepMeta( STEP_NAME, meta );
+    stepMeta.setCopies( 2 );
+    when( transMeta.findStep( STEP_NAME ) ).thenReturn( stepMeta );
+    trans = mock( Trans.class );
+  }
+
+  private void addAggregate( int index, String name, String subject, int type ) {
+    meta.getAggregateField()[index] = name;
+    meta.getSubjectField()[index] = subject;
+    meta.getAggregateType()[index] = type;
+  }
+
+  private MemoryGroupBy createCopy( int copyNr, List<Object[]> input, final List<Object[]> output )
+    throws KettleException {
+    MemoryGroupByData data = new MemoryGroupByData();
+    data.map = new HashMap<MemoryGroupByData.HashEntry, Aggregate>();
+    data.combiningCopies = true;
+
+    MemoryGroupBy step = spy( new MemoryGroupBy( stepMeta, data, copyNr, transMeta, trans ) );
+    doNothing().when( step ).setOutputDone();
+    doReturn( rowMeta ).when( step ).getInputRowMeta();
+
+    final Iterator<Object[]> rows = input.iterator();
+    doAnswer( new Answer<Object[]>() {
+      @Override
+      public Object[] answer( InvocationOnMock invocation ) {
+        return rows.hasNext() ? rows.next() : null;
+      }
+    } ).when( step ).getRow();
+    doAnswer( new Answer<Void>() {
+      @Override
+      public Void answer( InvocationOnMock invocation ) {
+        output.add( (Object[]) invocation.getArguments()[1] );
+        return null;
+      }
+    } ).when( step ).putRow( any( RowMetaInterface.class ), any( Object[].class ) );
+    return step;
+  }
+
+  private static void run( MemoryGroupBy step ) throws KettleException {
+    while ( step.processRow( step.getStepMeta().getStepMetaInterface(), step.getStepDataInterface() ) ) {
+      // until all rows are read
+    }
+  }
+
+  @Test
+  public void testFirstCopyCombinesTheGroupsOfAllCopies() throws Exception {
+    // The rows are distributed round robin, so every copy sees a part of every group
+    List<Object[]> input0 = new ArrayList<Object[]>();
+    List<Object[]> input1 = new ArrayList<Object[]>();
+    for ( long i = 0; i < 10 * NR_GROUPS; i++ ) {
+      Object[] row = new Object[] { i % NR_GROUPS, i, (double) i };
+      ( i % 3 == 0 ? input0 : input1 ).add( row );
+    }
+
+    List<Object[]> output0 = new ArrayList<Object[]>();
+    List<Object[]> output1 = new ArrayList<Object[]>();
+    MemoryGroupBy copy0 = createCopy( 0, input0, output0 );
+    MemoryGroupBy copy1 = createCopy( 1, input1, output1 );
+    when( trans.getStepInterface( STEP_NAME, 0 ) ).thenReturn( copy0 );
+
+    run( copy1 );
+    run( copy0 );
+
+    assertTrue( output1.isEmpty() );
+    assertEquals( NR_GROUPS, output0.size() );
+    for ( Object[] row : output0 ) {
+      long key = (Long) row[0];
+      // The values of a group are key, key + 10, ..., key + 90
+      assertEquals( 10 * key + 450, row[1] );
+      assertEquals( 10L, row[2] );
+      assertEquals( key + 45.0, (Double) row[3], 1e-9 );
+      assertEquals( 10L, row[4] );
+      assertEquals( Math.sqrt( 825.0 ), (Double) row[5], 1e-9 );
+      assertEquals( key, row[6] );
+      assertEquals( key + 90, row[7] );
+    }
+  }
+
+  @Test
+  public void testFirstCopyWithoutRows() throws Exception {
+    List<Object[]> input1 = new ArrayList<Object[]>();
+    input1.add( new Object[] { 1L, 2L, 2.0 } );
+    input1.add( new Object[] { 1L, 3L, 4.0 } );
+
+    List<Object[]> output0 = new ArrayList<Object[]>();
+    MemoryGroupBy copy0 = createCopy( 0, new ArrayList<Object[]>(), output0 );
+    MemoryGroupBy copy1 = createCopy( 1, input1, new ArrayList<Object[]>() );
+    when( trans.getStepInterface( STEP_NAME, 0 ) ).thenReturn( copy0 );
+
+    run( copy1 );
+    assertFalse( copy0.processRow( meta, copy0.getStepDataInterface() ) );
+
+    assertEquals( 1, output0.size() );
+    assertEquals( 1L, output0.get( 0 )[0] );
+    assertEquals( 5L, output0.get( 0 )[1] );
+    assertEquals( 3.0, (Double) output0.get( 0 )[3], 1e-9 );
+  }
+}
@@ -77,5 +77,11 @@ public class MemoryGroupByMetaInjectionTest extends BaseMetadataInjectionTest<Me
           return meta.isAlwaysGivingBackOneRow();
         }
       } );
+    check( "COMBINECOPIES", new BooleanGetter() {
+        @Override
+        public boolean get() {
+          return meta.isCombiningCopies();
+        }
+      } );
   }
 }
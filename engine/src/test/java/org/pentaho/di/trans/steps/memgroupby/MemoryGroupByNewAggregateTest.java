@@ -42,6 +42,7 @@ import org.pentaho.di.core.logging.LoggingObjectInterface;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.trans.steps.mock.StepMockHelper;
 
 public class MemoryGroupByNewAggregateTest {
@@ -130,4 +131,20 @@ public class MemoryGroupByNewAggregateTest {
       }
     }
   }
+
+  @Test
+  public void testSumOfLazyValuesHasNormalStorage() throws KettleException {
+    ValueMetaInterface lazyMeta = new ValueMetaInteger( "lazy" );
+    lazyMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_BINARY_STRING );
+    lazyMeta.setStorageMetadata( new ValueMetaString( "lazy" ) );
+    when( data.inputRowMeta.getValueMeta( Mockito.anyInt() ) ).thenReturn( lazyMeta );
+
+    step.newAggregate( new Object[16], null );
+
+    // The sums are built as Long values, not as the binary strings of the input
+    Assert.assertEquals( ValueMetaInterface.STORAGE_TYPE_NORMAL,
+      data.aggMeta.getValueMeta( MemoryGroupByMeta.TYPE_GROUP_SUM - 1 ).getStorageType() );
+    Assert.assertEquals( ValueMetaInterface.STORAGE_TYPE_NORMAL,
+      data.aggMeta.getValueMeta( MemoryGroupByMeta.TYPE_GROUP_AVERAGE - 1 ).getStorageType() );
+  }
 }
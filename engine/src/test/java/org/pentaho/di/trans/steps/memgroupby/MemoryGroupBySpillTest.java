@@ -0,0 +1,162 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMemoryManager;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+
+public class MemoryGroupBySpillTest {
+  @ClassRule public static RestorePDIEngineEnvironment env = new RestorePDIEngineEnvironment();
+
+  private static final String STEP_NAME = "testStep";
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws KettleException {
+    KettleClientEnvironment.init();
+  }
+
+  @Test
+  public void testAggregatesSpilledGroups() throws Exception {
+    final int nrGroups = 5 * MemoryGroupBy.MIN_GROUPS_IN_MEMORY;
+    final int nrRounds = 3;
+
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "key" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "value" ) );
+
+    MemoryGroupByMeta meta = new MemoryGroupByMeta();
+    meta.allocate( 1, 2 );
+    meta.getGroupField()[0] = "key";
+    meta.getAggregateField()[0] = "sum";
+    meta.getSubjectField()[0] = "value";
+    meta.getAggregateType()[0] = MemoryGroupByMeta.TYPE_GROUP_SUM;
+    meta.getAggregateField()[1] = "count";
+    meta.getSubjectField()[1] = "value";
+    meta.getAggregateType()[1] = MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL;
+
+    MemoryGroupByData data = new MemoryGroupByData();
+    data.map = new HashMap<MemoryGroupByData.HashEntry, Aggregate>();
+
+    TransMeta transMeta = mock( TransMeta.class );
+    StepMeta stepMeta = new StepMeta( STEP_NAME, meta );
+    when( transMeta.findStep( STEP_NAME ) ).thenReturn( stepMeta );
+
+    // The budget is exceeded by the very first group
+    Trans trans = mock( Trans.class );
+    when( trans.getMemoryManager() ).thenReturn( new TransMemoryManager( null, 1L ) );
+
+    MemoryGroupBy step = spy( new MemoryGroupBy( stepMeta, data, 0, transMeta, trans ) );
+    doNothing().when( step ).setOutputDone();
+    doReturn( rowMeta ).when( step ).getInputRowMeta();
+
+    final List<Object[]> input = new ArrayList<Object[]>();
+    for ( long round = 1; round <= nrRounds; round++ ) {
+      for ( long key = 0; key < nrGroups; key++ ) {
+        input.add( new Object[] { key, round } );
+      }
+    }
+    final Iterator<Object[]> rows = input.iterator();
+    doAnswer( new Answer<Object[]>() {
+      @Override
+      public Object[] answer( InvocationOnMock invocation ) {
+        return rows.hasNext() ? rows.next() : null;
+      }
+    } ).when( step ).getRow();
+
+    final List<Object[]> output = new ArrayList<Object[]>();
+    doAnswer( new Answer<Void>() {
+      @Override
+      public Void answer( InvocationOnMock invocation ) {
+        output.add( (Object[]) invocation.getArguments()[1] );
+        return null;
+      }
+    } ).when( step ).putRow( any( RowMetaInterface.class ), any( Object[].class ) );
+
+    for ( int i = 0; i < nrGroups * nrRounds; i++ ) {
+      assertTrue( step.processRow( meta, data ) );
+    }
+
+    // Only the first groups are kept in memory, the rows of the others are on disk
+    assertEquals( MemoryGroupBy.MIN_GROUPS_IN_MEMORY, data.map.size() );
+    assertNotNull( data.spillPartitions );
+
+    assertFalse( step.processRow( meta, data ) );
+
+    assertEquals( nrGroups, output.size() );
+    Set<Long> keys = new HashSet<Long>();
+    for ( Object[] row : output ) {
+      assertTrue( keys.add( (Long) row[0] ) );
+      assertEquals( 6L, row[1] );
+      assertEquals( (long) nrRounds, row[2] );
+    }
+    assertNull( data.spillPartitions );
+    assertTrue( data.pendingPartitions.isEmpty() );
+  }
+
+  @Test
+  public void testSpillPartitionDependsOnLevel() {
+    int differences = 0;
+    for ( int hashCode = 0; hashCode < 1000; hashCode++ ) {
+      int partition = MemoryGroupBy.getSpillPartition( hashCode, 0 );
+      assertTrue( partition >= 0 && partition < MemoryGroupBy.SPILL_PARTITIONS );
+      if ( partition != MemoryGroupBy.getSpillPartition( hashCode, 1 ) ) {
+        differences++;
+      }
+    }
+    // The groups of one partition are spread over the partitions of the next level
+    assertTrue( differences > 800 );
+  }
+}
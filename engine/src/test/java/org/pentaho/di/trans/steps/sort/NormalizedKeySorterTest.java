@@ -0,0 +1,144 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBinary;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+public class NormalizedKeySorterTest {
+
+  private static final String CHARACTERS = "aAbBzZ eE\u00e9\u00c9";
+
+  @Test
+  public void testSortsLikeTheRowComparator() throws Exception {
+    Random random = new Random( 123 );
+    for ( int run = 0; run < 16; run++ ) {
+      RowMetaInterface rowMeta = new RowMeta();
+      rowMeta.addValueMeta( new ValueMetaInteger( "int" ) );
+      rowMeta.addValueMeta( new ValueMetaNumber( "num" ) );
+      rowMeta.addValueMeta( new ValueMetaString( "str" ) );
+      rowMeta.addValueMeta( new ValueMetaDate( "date" ) );
+      for ( int i = 0; i < rowMeta.size(); i++ ) {
+        rowMeta.getValueMeta( i ).setSortedDescending( ( run & 1 ) != 0 );
+      }
+      rowMeta.getValueMeta( 2 ).setCaseInsensitive( ( run & 2 ) != 0 );
+      rowMeta.getValueMeta( 2 ).setCollatorDisabled( ( run & 4 ) == 0 );
+      rowMeta.getValueMeta( 2 ).setCollatorStrength( Collator.PRIMARY );
+      int[] fieldNrs = ( run & 8 ) == 0 ? new int[] { 0, 1, 2, 3 } : new int[] { 2, 0 };
+
+      List<Object[]> rows = new ArrayList<Object[]>();
+      for ( int r = 0; r < 2000; r++ ) {
+        rows.add( new Object[] {
+          random.nextInt( 10 ) == 0 ? null : (long) random.nextInt( 5 ) - 2,
+          random.nextInt( 10 ) == 0 ? null : (double) random.nextInt( 5 ) / 2 - 1,
+          random.nextInt( 10 ) == 0 ? null : randomString( random ),
+          random.nextInt( 10 ) == 0 ? null : new Date( random.nextInt( 3 ) ),
+          r } );
+      }
+
+      Comparator<Object[]> rowComparator = rowComparator( rowMeta, fieldNrs );
+      List<Object[]> expected = new ArrayList<Object[]>( rows );
+      Collections.sort( expected, rowComparator );
+
+      NormalizedKeySorter sorter = new NormalizedKeySorter( rowMeta, fieldNrs, rowComparator );
+      assertTrue( sorter.isEnabled() );
+      sorter.sort( rows );
+
+      for ( int r = 0; r < rows.size(); r++ ) {
+        assertSame( "run " + run + ", row " + r, expected.get( r ), rows.get( r ) );
+      }
+    }
+  }
+
+  @Test
+  public void testUnsupportedFirstKey() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaBinary( "bin" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "int" ) );
+
+    assertFalse( new NormalizedKeySorter( rowMeta, new int[] { 0, 1 }, rowComparator( rowMeta, new int[] { 0, 1 } ) )
+      .isEnabled() );
+    assertTrue( new NormalizedKeySorter( rowMeta, new int[] { 1, 0 }, rowComparator( rowMeta, new int[] { 1, 0 } ) )
+      .isEnabled() );
+  }
+
+  @Test
+  public void testIntegerKeys() throws Exception {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "int" ) );
+    NormalizedKeySorter sorter = new NormalizedKeySorter( rowMeta, new int[] { 0 }, rowComparator( rowMeta,
+      new int[] { 0 } ) );
+
+    NormalizedKeySorter.KeyBuilder min = new NormalizedKeySorter.KeyBuilder();
+    NormalizedKeySorter.KeyBuilder max = new NormalizedKeySorter.KeyBuilder();
+    sorter.normalize( new Object[] { Long.MIN_VALUE }, min );
+    sorter.normalize( new Object[] { Long.MAX_VALUE }, max );
+
+    // A marker for non-null values followed by the value with the sign bit flipped
+    assertEquals( 0x0100000000000000L, min.key0 );
+    assertEquals( 0x01FFFFFFFFFFFFFFL, max.key0 );
+    assertEquals( 0xFF00000000000000L, max.key1 );
+  }
+
+  private static String randomString( Random random ) {
+    StringBuilder string = new StringBuilder();
+    int length = 1 + random.nextInt( 12 );
+    for ( int i = 0; i < length; i++ ) {
+      string.append( CHARACTERS.charAt( random.nextInt( CHARACTERS.length() ) ) );
+    }
+    return string.toString();
+  }
+
+  private static Comparator<Object[]> rowComparator( final RowMetaInterface rowMeta, final int[] fieldNrs ) {
+    return new Comparator<Object[]>() {
+      @Override
+      public int compare( Object[] o1, Object[] o2 ) {
+        try {
+          return rowMeta.compare( o1, o2, fieldNrs );
+        } catch ( KettleValueException e ) {
+          throw new RuntimeException( e );
+        }
+      }
+    };
+  }
+}
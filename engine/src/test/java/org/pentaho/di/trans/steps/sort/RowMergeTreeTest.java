@@ -0,0 +1,118 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RowMergeTreeTest {
+
+  private static final Comparator<Object[]> KEY_COMPARATOR = new Comparator<Object[]>() {
+    @Override
+    public int compare( Object[] o1, Object[] o2 ) {
+      return ( (Long) o1[ 0 ] ).compareTo( (Long) o2[ 0 ] );
+    }
+  };
+
+  @Test
+  public void testMergeRandomSources() throws Exception {
+    Random random = new Random( 42 );
+    for ( int nrSources = 0; nrSources < 20; nrSources++ ) {
+      List<Object[]> expected = new ArrayList<Object[]>();
+      List<ListSource> sources = new ArrayList<ListSource>();
+      for ( int s = 0; s < nrSources; s++ ) {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        int nrRows = random.nextInt( 50 );
+        for ( int r = 0; r < nrRows; r++ ) {
+          rows.add( new Object[] { (long) random.nextInt( 100 ), s } );
+        }
+        Collections.sort( rows, KEY_COMPARATOR );
+        expected.addAll( rows );
+        sources.add( new ListSource( rows ) );
+      }
+      // A stable sort keeps equal keys in source order, just like the merge
+      Collections.sort( expected, KEY_COMPARATOR );
+
+      RowMergeTree mergeTree = new RowMergeTree( sources, KEY_COMPARATOR );
+      for ( Object[] row : expected ) {
+        assertSame( row, mergeTree.next() );
+      }
+      assertNull( mergeTree.next() );
+      assertNull( mergeTree.next() );
+    }
+  }
+
+  @Test
+  public void testEqualKeysKeepSourceOrder() throws Exception {
+    Object[] a = new Object[] { 1L, "a" };
+    Object[] b = new Object[] { 1L, "b" };
+    Object[] c = new Object[] { 1L, "c" };
+    RowMergeTree mergeTree = new RowMergeTree( Arrays.asList(
+      new ListSource( Collections.singletonList( a ) ),
+      new ListSource( Collections.singletonList( b ) ),
+      new ListSource( Collections.singletonList( c ) ) ), KEY_COMPARATOR );
+
+    assertSame( a, mergeTree.next() );
+    assertSame( b, mergeTree.next() );
+    assertSame( c, mergeTree.next() );
+    assertNull( mergeTree.next() );
+  }
+
+  @Test
+  public void testEachRowIsReadOnce() throws Exception {
+    ListSource first = new ListSource( Arrays.asList( new Object[] { 1L }, new Object[] { 3L } ) );
+    ListSource second = new ListSource( Collections.singletonList( new Object[] { 2L } ) );
+    RowMergeTree mergeTree = new RowMergeTree( Arrays.asList( first, second ), KEY_COMPARATOR );
+    while ( mergeTree.next() != null ) {
+      // drain
+    }
+    assertEquals( 3, first.reads );
+    assertEquals( 2, second.reads );
+  }
+
+  private static class ListSource implements RowMergeTree.RowSource {
+    private final Iterator<Object[]> iterator;
+    private int reads;
+
+    ListSource( List<Object[]> rows ) {
+      iterator = rows.iterator();
+    }
+
+    @Override
+    public Object[] nextRow() {
+      reads++;
+      return iterator.hasNext() ? iterator.next() : null;
+    }
+  }
+}
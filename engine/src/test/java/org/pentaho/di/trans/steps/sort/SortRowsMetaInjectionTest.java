@@ -73,6 +73,12 @@ public class SortRowsMetaInjectionTest extends BaseMetadataInjectionTest<SortRow
         return meta.getCompressFiles();
       }
     } );
+    check( "COMPRESSION_TYPE", new StringGetter() {
+      @Override
+      public String get() {
+        return meta.getCompressionType();
+      }
+    } );
     check( "NAME", new StringGetter() {
       @Override
       public String get() {
@@ -0,0 +1,100 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.streamlookup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SharedLookupTableTest {
+
+  @Test
+  public void testPartitionOf() {
+    SharedLookupTable table = new SharedLookupTable( 3 );
+    assertEquals( 3, table.getNrPartitions() );
+    int[] counts = new int[3];
+    for ( int i = -1000; i < 1000; i++ ) {
+      int partition = table.partitionOf( Long.valueOf( i ).hashCode() );
+      assertEquals( partition, table.partitionOf( Long.valueOf( i ).hashCode() ) );
+      counts[partition]++;
+    }
+    for ( int count : counts ) {
+      assertTrue( count > 0 );
+    }
+    assertTrue( table.partitionOf( Integer.MIN_VALUE ) >= 0 );
+  }
+
+  @Test
+  public void testRouteAndPoll() {
+    SharedLookupTable table = new SharedLookupTable( 2 );
+    KeyValue first = new KeyValue( new Object[] { 1L }, new Object[] { "a" } );
+    KeyValue second = new KeyValue( new Object[] { 2L }, new Object[] { "b" } );
+    table.route( 1, first );
+    table.route( 1, second );
+
+    assertNull( table.pollRouted( 0 ) );
+    assertSame( first, table.pollRouted( 1 ) );
+    assertSame( second, table.pollRouted( 1 ) );
+    assertNull( table.pollRouted( 1 ) );
+  }
+
+  @Test
+  public void testFinishReadingKeepsFirstCopyWithRows() throws Exception {
+    SharedLookupTable table = new SharedLookupTable( 3 );
+    StreamLookupData empty = new StreamLookupData();
+    StreamLookupData withRows = new StreamLookupData();
+    withRows.hasLookupRows = true;
+    StreamLookupData otherWithRows = new StreamLookupData();
+    otherWithRows.hasLookupRows = true;
+
+    table.finishReading( empty );
+    assertNull( table.getMetadataSource() );
+    assertFalse( table.awaitReaders( 1, TimeUnit.MILLISECONDS ) );
+
+    table.finishReading( withRows );
+    table.finishReading( otherWithRows );
+    assertTrue( table.awaitReaders( 1, TimeUnit.MILLISECONDS ) );
+    assertSame( withRows, table.getMetadataSource() );
+  }
+
+  @Test
+  public void testPublish() throws Exception {
+    SharedLookupTable table = new SharedLookupTable( 2 );
+    StreamLookupData first = new StreamLookupData();
+    StreamLookupData second = new StreamLookupData();
+
+    table.publish( 1, second );
+    assertFalse( table.awaitPartitions( 1, TimeUnit.MILLISECONDS ) );
+    table.publish( 0, first );
+    assertTrue( table.awaitPartitions( 1, TimeUnit.MILLISECONDS ) );
+
+    assertSame( first, table.getPartition( 0 ) );
+    assertSame( second, table.getPartition( 1 ) );
+  }
+}
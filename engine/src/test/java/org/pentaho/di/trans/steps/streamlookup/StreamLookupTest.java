@@ -29,6 +29,10 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.After;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import junit.framework.Assert;
@@ -139,6 +143,11 @@ public class StreamLookupTest {
   }
 
   private StreamLookupMeta mockProcessRowMeta( boolean memoryPreservationActive ) throws KettleStepException {
+    return mockProcessRowMeta( memoryPreservationActive, false );
+  }
+
+  private StreamLookupMeta mockProcessRowMeta( boolean memoryPreservationActive, boolean offHeapIndex )
+    throws KettleStepException {
     StreamLookupMeta meta = smh.processRowsStepMetaInterface;
 
     StepMeta lookupStepMeta = when( mock( StepMeta.class ).getName() ).thenReturn( "Lookup" ).getMock();
@@ -154,6 +163,7 @@ public class StreamLookupTest {
     doReturn( memoryPreservationActive ).when( meta ).isMemoryPreservationActive();
     doReturn( false ).when( meta ).isUsingSortedList();
     doReturn( false ).when( meta ).isUsingIntegerPair();
+    doReturn( offHeapIndex ).when( meta ).isUsingOffHeapIndex();
     doReturn( new int[] { -1 } ).when( meta ).getValueDefaultType();
     doReturn( new String[] { "" } ).when( meta ).getValueDefault();
     doReturn( new String[] { "Value" } ).when( meta ).getValueName();
@@ -165,13 +175,18 @@ public class StreamLookupTest {
   }
 
   private void doTest( boolean memoryPreservationActive, boolean binaryLookupStream, boolean binaryDataStream ) throws KettleException {
+    doTest( memoryPreservationActive, false, binaryLookupStream, binaryDataStream );
+  }
+
+  private void doTest( boolean memoryPreservationActive, boolean offHeapIndex, boolean binaryLookupStream,
+    boolean binaryDataStream ) throws KettleException {
     StreamLookup step = new StreamLookup( smh.stepMeta, smh.stepDataInterface, 0, smh.transMeta, smh.trans );
     step.init( smh.initStepMetaInterface, smh.initStepDataInterface );
     step.addRowSetToInputRowSets( mockLookupRowSet( binaryLookupStream ) );
     step.addRowSetToInputRowSets( mockDataRowSet( binaryDataStream ) );
     step.addRowSetToOutputRowSets( new QueueRowSet() );
 
-    StreamLookupMeta meta = mockProcessRowMeta( memoryPreservationActive );
+    StreamLookupMeta meta = mockProcessRowMeta( memoryPreservationActive, offHeapIndex );
     StreamLookupData data = new StreamLookupData();
     data.readLookupValues = true;
 
@@ -238,4 +253,100 @@ public class StreamLookupTest {
   public void testMemoryPreservationWithBinaryStreams() throws KettleException {
     doTest( true, false, true );
   }
+
+  @Test
+  public void testOffHeapIndexWithNormalStreams() throws KettleException {
+    doTest( true, true, false, false );
+  }
+
+  @Test
+  public void testOffHeapIndexWithBinaryStreams() throws KettleException {
+    doTest( true, true, true, true );
+  }
+
+  /**
+   * Two copies of the lookup step each feed their own copy of this step (N:N), so every copy only sees part of the
+   * lookup rows. The rows of the other partition have to be handed over to the copy that builds it.
+   */
+  @Test
+  public void testSharedTableWithPairedCopies() throws Exception {
+    final StreamLookupMeta meta = mockProcessRowMeta( false );
+    doReturn( true ).when( meta ).isSharingLookupTable();
+    StepMeta lookupStepMeta = meta.getStepIOMeta().getInfoStreams().get( 0 ).getStepMeta();
+    when( lookupStepMeta.getCopies() ).thenReturn( 2 );
+    when( smh.stepMeta.getCopies() ).thenReturn( 2 );
+
+    // Give each lookup row to the copy that doesn't build the partition of its key
+    //
+    RowMetaInterface lookupRowMeta = new RowMeta();
+    lookupRowMeta.addValueMeta( new ValueMetaString( "Value" ) );
+    lookupRowMeta.addValueMeta( new ValueMetaString( "Id" ) );
+    RowMetaInterface keyMeta = new RowMeta();
+    keyMeta.addValueMeta( new ValueMetaString( "Id" ) );
+    SharedLookupTable partitions = new SharedLookupTable( 2 );
+    List<List<Object[]>> lookupRows = Arrays.<List<Object[]>>asList( new ArrayList<Object[]>(),
+      new ArrayList<Object[]>() );
+    for ( String id : new String[] { "1", "2" } ) {
+      int partition = partitions.partitionOf( keyMeta.hashCode( new Object[] { id } ) );
+      lookupRows.get( 1 - partition ).add( new Object[] { "Value" + id, id } );
+    }
+
+    final StreamLookup[] steps = new StreamLookup[2];
+    final StreamLookupData[] stepData = new StreamLookupData[2];
+    for ( int c = 0; c < steps.length; c++ ) {
+      steps[c] = new StreamLookup( smh.stepMeta, smh.stepDataInterface, c, smh.transMeta, smh.trans );
+      stepData[c] = new StreamLookupData();
+      Assert.assertTrue( steps[c].init( meta, stepData[c] ) );
+
+      RowSet lookupRowSet = smh.getMockInputRowSet( lookupRows.get( c ) );
+      doReturn( "Lookup" ).when( lookupRowSet ).getOriginStepName();
+      doReturn( c ).when( lookupRowSet ).getOriginStepCopy();
+      doReturn( "StreamLookup" ).when( lookupRowSet ).getDestinationStepName();
+      doReturn( c ).when( lookupRowSet ).getDestinationStepCopy();
+      doReturn( lookupRowMeta ).when( lookupRowSet ).getRowMeta();
+
+      steps[c].addRowSetToInputRowSets( lookupRowSet );
+      steps[c].addRowSetToInputRowSets( mockDataRowSet( false ) );
+      steps[c].addRowSetToOutputRowSets( new QueueRowSet() );
+    }
+    when( smh.trans.getStepInterface( "StreamLookup", 0 ) ).thenReturn( steps[0] );
+
+    // The copies wait for each other to build the table
+    //
+    final Exception[] errors = new Exception[2];
+    Thread[] threads = new Thread[2];
+    for ( int c = 0; c < threads.length; c++ ) {
+      final int copy = c;
+      threads[c] = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while ( steps[copy].processRow( meta, stepData[copy] ) ) {
+              // keep going
+            }
+          } catch ( Exception e ) {
+            errors[copy] = e;
+          }
+        }
+      } );
+      threads[c].start();
+    }
+    for ( int c = 0; c < threads.length; c++ ) {
+      threads[c].join( 10000L );
+      Assert.assertFalse( "Copy " + c + " didn't finish", threads[c].isAlive() );
+      Assert.assertNull( errors[c] );
+    }
+
+    // Both copies find the values of both keys
+    //
+    for ( int c = 0; c < steps.length; c++ ) {
+      RowSet outputRowSet = steps[c].getOutputRowSets().get( 0 );
+      int rowNumber = 0;
+      for ( Object[] rowData = outputRowSet.getRow(); rowData != null; rowData = outputRowSet.getRow() ) {
+        rowNumber++;
+        Assert.assertEquals( "Copy " + c + " missed a lookup", "Value" + rowData[1], rowData[2] );
+      }
+      Assert.assertEquals( 2, rowNumber );
+    }
+  }
 }
@@ -0,0 +1,106 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableoutput;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+
+import java.sql.PreparedStatement;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MultiRowInsertTest {
+  private Database db;
+  private RowMetaInterface rowMeta;
+  private PreparedStatement full;
+  private PreparedStatement rest;
+
+  @Before
+  public void setUp() throws Exception {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    full = mock( PreparedStatement.class );
+    rest = mock( PreparedStatement.class );
+    db = mock( Database.class );
+    when( db.getMultiRowInsertStatement( "schema", "table", rowMeta, 3 ) ).thenReturn( "INSERT 3" );
+    when( db.getMultiRowInsertStatement( "schema", "table", rowMeta, 2 ) ).thenReturn( "INSERT 2" );
+    when( db.prepareSQL( "INSERT 3" ) ).thenReturn( full );
+    when( db.prepareSQL( "INSERT 2" ) ).thenReturn( rest );
+  }
+
+  @Test
+  public void testRowsPerStatement() {
+    DatabaseMeta databaseMeta = mock( DatabaseMeta.class );
+    when( databaseMeta.getMaxStatementParameters() ).thenReturn( 1000 );
+    assertEquals( 333, MultiRowInsert.getRowsPerStatement( databaseMeta, 3, 1000 ) );
+    assertEquals( 100, MultiRowInsert.getRowsPerStatement( databaseMeta, 3, 100 ) );
+    assertEquals( MultiRowInsert.MAX_ROWS_PER_STATEMENT, MultiRowInsert.getRowsPerStatement( databaseMeta, 0, 5000 ) );
+    assertEquals( 1, MultiRowInsert.getRowsPerStatement( databaseMeta, 2000, 1000 ) );
+  }
+
+  @Test
+  public void testReusesTheStatementForFullSetsOfRows() throws Exception {
+    MultiRowInsert insert = new MultiRowInsert( db, "schema", "table", rowMeta, 3 );
+    for ( long id = 0; id < 8; id++ ) {
+      insert.add( new Object[] { id } );
+    }
+    assertEquals( 2, insert.size() );
+    verify( db, times( 1 ) ).prepareSQL( "INSERT 3" );
+    verify( full, times( 2 ) ).executeUpdate();
+    verify( full, never() ).close();
+
+    // The rows left are inserted with a statement of their own
+    insert.flush();
+    assertEquals( 0, insert.size() );
+    verify( rest ).executeUpdate();
+    verify( rest ).close();
+    verify( db, times( 3 ) )
+      .setMultiRowValues( eq( rowMeta ), anyListOf( Object[].class ), any( PreparedStatement.class ) );
+
+    insert.close();
+    verify( full ).close();
+  }
+
+  @Test
+  public void testFlushWithoutRows() throws Exception {
+    MultiRowInsert insert = new MultiRowInsert( db, "schema", "table", rowMeta, 3 );
+    insert.flush();
+    insert.close();
+    verify( db, never() ).prepareSQL( any( String.class ) );
+    verify( db, never() ).setMultiRowValues( any( RowMetaInterface.class ), anyListOf( Object[].class ),
+      any( PreparedStatement.class ) );
+  }
+}
@@ -52,8 +52,10 @@ public class TableOutputMetaLoadSaveTest implements InitializerInterface<StepMet
     PluginRegistry.init( false );
     List<String> attributes =
         Arrays.asList( "databaseMeta", "schemaName", "tableName", "commitSize", "truncateTable", "ignoreErrors", "useBatchUpdate",
+            "multiRowInsert",
             "partitioningEnabled", "partitioningField", "partitioningDaily", "partitioningMonthly", "tableNameInField", "tableNameField",
-            "tableNameInTable", "returningGeneratedKeys", "generatedKeyField", "specifyFields", "fieldStream", "fieldDatabase" );
+            "tableNameInTable", "returningGeneratedKeys", "generatedKeyField", "nrWriters", "writerRoutingField", "specifyFields",
+            "fieldStream", "fieldDatabase" );
 
     Map<String, String> getterMap = new HashMap<String, String>() {
       {
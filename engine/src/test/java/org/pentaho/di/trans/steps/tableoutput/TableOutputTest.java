@@ -24,6 +24,7 @@ package org.pentaho.di.trans.steps.tableoutput;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -37,10 +38,12 @@ import java.util.Map;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -114,6 +117,31 @@ public class TableOutputTest {
     verify( db ).truncateTable( anyString(), anyString() );
   }
 
+  @Test
+  public void testTruncateTable_commitsBeforeTheWritersInsert() throws Exception {
+    when( tableOutputMeta.truncateTable() ).thenReturn( true );
+    when( tableOutputSpy.getCopy() ).thenReturn( 0 );
+    when( tableOutputSpy.getUniqueStepNrAcrossSlaves() ).thenReturn( 0 );
+    tableOutputData.writerPool = mock( TableWriterPool.class );
+
+    tableOutputSpy.truncateTable();
+    InOrder order = inOrder( db );
+    order.verify( db ).truncateTable( anyString(), anyString() );
+    order.verify( db ).commit();
+    verify( tableOutputData.writerPool, never() ).start( any( RowMetaInterface.class ), anyInt() );
+  }
+
+  @Test
+  public void testTruncateTable_noCommitWithoutWriters() throws Exception {
+    when( tableOutputMeta.truncateTable() ).thenReturn( true );
+    when( tableOutputSpy.getCopy() ).thenReturn( 0 );
+    when( tableOutputSpy.getUniqueStepNrAcrossSlaves() ).thenReturn( 0 );
+
+    tableOutputSpy.truncateTable();
+    verify( db ).truncateTable( anyString(), anyString() );
+    verify( db, never() ).commit();
+  }
+
   @Test
   public void testTruncateTable_on_PartitionId() throws Exception {
     when( tableOutputMeta.truncateTable() ).thenReturn( true );
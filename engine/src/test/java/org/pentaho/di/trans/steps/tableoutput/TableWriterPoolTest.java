@@ -0,0 +1,216 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2019 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableoutput;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TableWriterPoolTest {
+  private ExecutorService executor;
+  private RowMetaInterface insertRowMeta;
+  private PreparedStatement statement;
+  private Database db1;
+  private Database db2;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = Executors.newCachedThreadPool();
+    insertRowMeta = new RowMeta();
+    insertRowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    statement = mock( PreparedStatement.class );
+    db1 = connection( statement );
+    db2 = connection( mock( PreparedStatement.class ) );
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static Database connection( PreparedStatement statement ) throws Exception {
+    Database db = mock( Database.class );
+    when( db.getInsertStatement( anyString(), anyString(), any( RowMetaInterface.class ) ) ).thenReturn( "INSERT" );
+    when( db.prepareSQL( "INSERT" ) ).thenReturn( statement );
+    when( db.getMultiRowInsertStatement( anyString(), anyString(), any( RowMetaInterface.class ), anyInt() ) )
+      .thenReturn( "INSERT" );
+    return db;
+  }
+
+  private TableWriterPool createPool( int commitSize, boolean errorHandling ) {
+    return new TableWriterPool( Arrays.asList( db1, db2 ), "schema", commitSize, errorHandling, executor );
+  }
+
+  private static void write( TableWriterPool pool, int writerNr, long id ) throws KettleException {
+    Object[] row = new Object[] { id };
+    pool.write( writerNr, "table", row, row );
+  }
+
+  private static List<TableWriterPool.Batch> poll( TableWriterPool pool ) {
+    List<TableWriterPool.Batch> batches = new ArrayList<TableWriterPool.Batch>();
+    for ( TableWriterPool.Batch batch = pool.poll(); batch != null; batch = pool.poll() ) {
+      batches.add( batch );
+    }
+    return batches;
+  }
+
+  @Test
+  public void testRouting() {
+    TableWriterPool pool = createPool( 10, false );
+    assertEquals( pool.getWriterNr( 42 ), pool.getWriterNr( 42 ) );
+    assertTrue( pool.getWriterNr( -7 ) >= 0 );
+    assertEquals( 0, pool.nextWriterNr() );
+    assertEquals( 1, pool.nextWriterNr() );
+    assertEquals( 0, pool.nextWriterNr() );
+  }
+
+  @Test
+  public void testCommitsPerWriter() throws Exception {
+    TableWriterPool pool = createPool( 2, false );
+    pool.start( insertRowMeta, 0 );
+    assertTrue( pool.isStarted() );
+    for ( long id = 0; id < 5; id++ ) {
+      write( pool, 0, id );
+    }
+    write( pool, 1, 5L );
+    pool.finish();
+
+    // Two full batches and what was left of both writers
+    List<TableWriterPool.Batch> batches = poll( pool );
+    assertEquals( 4, batches.size() );
+    int rows = 0;
+    for ( TableWriterPool.Batch batch : batches ) {
+      assertFalse( batch.isFailed() );
+      rows += batch.rows.size();
+    }
+    assertEquals( 6, rows );
+    verify( db1, times( 3 ) ).commit();
+    verify( db2, times( 1 ) ).commit();
+    verify( statement, times( 3 ) ).executeBatch();
+
+    TableWriterPool.Writer writer = pool.getWriters().get( 0 );
+    assertEquals( 5, writer.getRows() );
+    assertEquals( 3, writer.getBatches() );
+    assertTrue( writer.getMaxBatchNanos() <= writer.getBatchNanos() );
+
+    pool.close( false );
+    verify( db1 ).disconnect();
+    verify( db2 ).disconnect();
+  }
+
+  @Test
+  public void testMultiRowInsert() throws Exception {
+    TableWriterPool pool = createPool( 4, false );
+    pool.start( insertRowMeta, 2 );
+    for ( long id = 0; id < 5; id++ ) {
+      write( pool, 0, id );
+    }
+    pool.finish();
+
+    // Two statements for the first batch, one for the row left
+    assertEquals( 2, poll( pool ).size() );
+    verify( statement, times( 3 ) ).executeUpdate();
+    verify( statement, never() ).executeBatch();
+    verify( db1, times( 3 ) ).setMultiRowValues( any( RowMetaInterface.class ), anyListOf( Object[].class ),
+      any( PreparedStatement.class ) );
+    verify( db1, times( 2 ) ).commit();
+  }
+
+  @Test
+  public void testFailedBatchIsHandedBack() throws Exception {
+    when( statement.executeBatch() ).thenThrow( new BatchUpdateException( "duplicate key", new int[] { 1, -3 } ) );
+    TableWriterPool pool = createPool( 2, true );
+    pool.start( insertRowMeta, 0 );
+    write( pool, 0, 1L );
+    write( pool, 0, 2L );
+    pool.finish();
+
+    List<TableWriterPool.Batch> batches = poll( pool );
+    assertEquals( 1, batches.size() );
+    TableWriterPool.Batch batch = batches.get( 0 );
+    assertTrue( batch.isFailed() );
+    assertEquals( 2, batch.rows.size() );
+    assertEquals( 2, batch.updateCounts.length );
+    verify( db1 ).commit( true );
+    verify( db1, never() ).rollback();
+  }
+
+  @Test
+  public void testFailedBatchStopsTheWriter() throws Exception {
+    when( statement.executeBatch() ).thenThrow( new BatchUpdateException( "duplicate key", new int[] { 1, -3 } ) );
+    TableWriterPool pool = createPool( 1, false );
+    pool.start( insertRowMeta, 0 );
+    write( pool, 0, 1L );
+    try {
+      pool.finish();
+      fail( "The writer should have failed" );
+    } catch ( KettleException e ) {
+      assertNotNull( e.getCause() );
+    }
+    assertNull( pool.poll() );
+    verify( db1 ).rollback();
+  }
+
+  @Test
+  public void testCloseWithRollback() throws Exception {
+    TableWriterPool pool = createPool( 100, false );
+    pool.start( insertRowMeta, 0 );
+    write( pool, 1, 1L );
+    pool.close( true );
+
+    verify( db1 ).rollback();
+    verify( db2 ).rollback();
+    verify( db1 ).disconnect();
+    verify( db2 ).disconnect();
+    verify( db2, never() ).commit();
+  }
+}
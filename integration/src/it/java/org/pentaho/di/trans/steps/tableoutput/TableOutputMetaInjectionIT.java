@@ -67,7 +67,7 @@ public class TableOutputMetaInjectionIT extends TestCase {
 
     List<StepInjectionMetaEntry> entries = meta.extractStepMetadataEntries();
 
-    assertEquals( 16, entries.size() );
+    assertEquals( 19, entries.size() );
 
     TableOutputMeta newMeta = new TableOutputMeta();
     newMeta.getStepMetaInjectionInterface().injectStepMetadataEntries( entries );
@@ -81,7 +81,7 @@ public class TableOutputMetaInjectionIT extends TestCase {
   public void testInjectionEntries() throws Exception {
     TableOutputMeta meta = populateTableOutputMeta();
     List<StepInjectionMetaEntry> entries = meta.getStepMetaInjectionInterface().getStepInjectionMetadataEntries();
-    assertEquals( 16, entries.size() );
+    assertEquals( 19, entries.size() );
 
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.TARGET_SCHEMA ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.TARGET_TABLE ) );
@@ -90,6 +90,7 @@ public class TableOutputMetaInjectionIT extends TestCase {
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.SPECIFY_DATABASE_FIELDS ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.IGNORE_INSERT_ERRORS ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.USE_BATCH_UPDATE ) );
+    assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.MULTI_ROW_INSERT ) );
 
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.PARTITION_OVER_TABLES ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.PARTITIONING_FIELD ) );
@@ -102,6 +103,9 @@ public class TableOutputMetaInjectionIT extends TestCase {
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.RETURN_AUTO_GENERATED_KEY ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.AUTO_GENERATED_KEY_FIELD ) );
 
+    assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.NR_WRITERS ) );
+    assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.WRITER_ROUTING_FIELD ) );
+
     StepInjectionMetaEntry fieldsEntry = StepInjectionUtil.findEntry( entries,
       TableOutputMetaInjection.Entry.DATABASE_FIELDS );
     assertNotNull( fieldsEntry );
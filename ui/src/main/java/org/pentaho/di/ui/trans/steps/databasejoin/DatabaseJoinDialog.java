@@ -98,6 +98,10 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
   private Button wuseVars;
   private FormData fdluseVars, fduseVars;
 
+  private Label wlParallel;
+  private Text wParallel;
+  private FormData fdlParallel, fdParallel;
+
   private Button wGet;
   private Listener lsGet;
 
@@ -301,6 +305,26 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
       }
     } );
 
+    // Number of queries running at the same time
+    wlParallel = new Label( shell, SWT.RIGHT );
+    wlParallel.setText( BaseMessages.getString( PKG, "DatabaseJoinDialog.ParallelQueries.Label" ) );
+    wlParallel.setToolTipText( BaseMessages.getString( PKG, "DatabaseJoinDialog.ParallelQueries.Tooltip" ) );
+    props.setLook( wlParallel );
+    fdlParallel = new FormData();
+    fdlParallel.left = new FormAttachment( 0, 0 );
+    fdlParallel.right = new FormAttachment( middle, -margin );
+    fdlParallel.top = new FormAttachment( wuseVars, margin );
+    wlParallel.setLayoutData( fdlParallel );
+    wParallel = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wParallel );
+    wParallel.setToolTipText( wlParallel.getToolTipText() );
+    wParallel.addModifyListener( lsMod );
+    fdParallel = new FormData();
+    fdParallel.left = new FormAttachment( middle, 0 );
+    fdParallel.right = new FormAttachment( 100, 0 );
+    fdParallel.top = new FormAttachment( wuseVars, margin );
+    wParallel.setLayoutData( fdParallel );
+
     // THE BUTTONS
     wOK = new Button( shell, SWT.PUSH );
     wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
@@ -317,7 +341,7 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
     props.setLook( wlParam );
     fdlParam = new FormData();
     fdlParam.left = new FormAttachment( 0, 0 );
-    fdlParam.top = new FormAttachment( wuseVars, margin );
+    fdlParam.top = new FormAttachment( wParallel, margin );
     wlParam.setLayoutData( fdlParam );
 
     int nrKeyCols = 2;
@@ -397,6 +421,7 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
 
     wStepname.addSelectionListener( lsDef );
     wLimit.addSelectionListener( lsDef );
+    wParallel.addSelectionListener( lsDef );
 
     // Detect X or ALT-F4 or something that kills this window...
     shell.addShellListener( new ShellAdapter() {
@@ -465,6 +490,7 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
     wLimit.setText( "" + input.getRowLimit() );
     wOuter.setSelection( input.isOuterJoin() );
     wuseVars.setSelection( input.isVariableReplace() );
+    wParallel.setText( "" + input.getParallelQueries() );
     if ( input.getParameterField() != null ) {
       for ( int i = 0; i < input.getParameterField().length; i++ ) {
         TableItem item = wParam.table.getItem( i );
@@ -510,6 +536,7 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
 
     input.setOuterJoin( wOuter.getSelection() );
     input.setVariableReplace( wuseVars.getSelection() );
+    input.setParallelQueries( Const.toInt( wParallel.getText(), 0 ) );
     logDebug( BaseMessages.getString( PKG, "DatabaseJoinDialog.Log.ParametersFound" ) + nrparam + " parameters" );
     //CHECKSTYLE:Indentation:OFF
     for ( int i = 0; i < nrparam; i++ ) {
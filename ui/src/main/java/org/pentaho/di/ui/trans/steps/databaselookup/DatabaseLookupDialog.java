@@ -83,6 +83,14 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
   private Button wCacheLoadAll;
   private FormData fdlCacheLoadAll, fdCacheLoadAll;
 
+  private Label wlCacheShared;
+  private Button wCacheShared;
+  private FormData fdlCacheShared, fdCacheShared;
+
+  private Label wlBatchSize;
+  private Text wBatchSize;
+  private FormData fdlBatchSize, fdBatchSize;
+
   private Label wlCachesize;
   private Text wCachesize;
   private FormData fdlCachesize, fdCachesize;
@@ -333,12 +341,53 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
       }
     } );
 
+    // Cache : Shared between copies?
+    wlCacheShared = new Label( shell, SWT.RIGHT );
+    wlCacheShared.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CacheShared.Label" ) );
+    props.setLook( wlCacheShared );
+    fdlCacheShared = new FormData();
+    fdlCacheShared.left = new FormAttachment( 0, 0 );
+    fdlCacheShared.right = new FormAttachment( middle, -margin );
+    fdlCacheShared.top = new FormAttachment( wCacheLoadAll, margin );
+    wlCacheShared.setLayoutData( fdlCacheShared );
+    wCacheShared = new Button( shell, SWT.CHECK );
+    wCacheShared.setToolTipText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CacheShared.Tooltip" ) );
+    props.setLook( wCacheShared );
+    fdCacheShared = new FormData();
+    fdCacheShared.left = new FormAttachment( middle, 0 );
+    fdCacheShared.top = new FormAttachment( wCacheLoadAll, margin );
+    wCacheShared.setLayoutData( fdCacheShared );
+    wCacheShared.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
+
+    // Lookup batch size line
+    wlBatchSize = new Label( shell, SWT.RIGHT );
+    wlBatchSize.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.BatchSize.Label" ) );
+    props.setLook( wlBatchSize );
+    fdlBatchSize = new FormData();
+    fdlBatchSize.left = new FormAttachment( 0, 0 );
+    fdlBatchSize.right = new FormAttachment( middle, -margin );
+    fdlBatchSize.top = new FormAttachment( wCacheShared, margin );
+    wlBatchSize.setLayoutData( fdlBatchSize );
+    wBatchSize = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wBatchSize.setToolTipText( BaseMessages.getString( PKG, "DatabaseLookupDialog.BatchSize.Tooltip" ) );
+    props.setLook( wBatchSize );
+    wBatchSize.addModifyListener( lsMod );
+    fdBatchSize = new FormData();
+    fdBatchSize.left = new FormAttachment( middle, 0 );
+    fdBatchSize.right = new FormAttachment( 100, 0 );
+    fdBatchSize.top = new FormAttachment( wCacheShared, margin );
+    wBatchSize.setLayoutData( fdBatchSize );
+
     wlKey = new Label( shell, SWT.NONE );
     wlKey.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.Keys.Label" ) );
     props.setLook( wlKey );
     fdlKey = new FormData();
     fdlKey.left = new FormAttachment( 0, 0 );
-    fdlKey.top = new FormAttachment( wCacheLoadAll, margin );
+    fdlKey.top = new FormAttachment( wBatchSize, margin );
     wlKey.setLayoutData( fdlKey );
 
     int nrKeyCols = 4;
@@ -641,6 +690,8 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     wlCachesize.setEnabled( wCache.getSelection() && !wCacheLoadAll.getSelection() );
     wCacheLoadAll.setEnabled( wCache.getSelection() );
     wlCacheLoadAll.setEnabled( wCache.getSelection() );
+    wCacheShared.setEnabled( wCache.getSelection() && !wCacheLoadAll.getSelection() );
+    wlCacheShared.setEnabled( wCache.getSelection() && !wCacheLoadAll.getSelection() );
     wFailMultiple.setEnabled( !wCache.getSelection() );
     wlFailMultiple.setEnabled( !wCache.getSelection() );
   }
@@ -654,6 +705,8 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     wCache.setSelection( input.isCached() );
     wCachesize.setText( "" + input.getCacheSize() );
     wCacheLoadAll.setSelection( input.isLoadingAllDataInCache() );
+    wCacheShared.setSelection( input.isSharingCache() );
+    wBatchSize.setText( "" + input.getLookupBatchSize() );
 
     if ( input.getStreamKeyField1() != null ) {
       for ( int i = 0; i < input.getStreamKeyField1().length; i++ ) {
@@ -738,6 +791,8 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     input.setCached( wCache.getSelection() );
     input.setCacheSize( Const.toInt( wCachesize.getText(), 0 ) );
     input.setLoadingAllDataInCache( wCacheLoadAll.getSelection() );
+    input.setSharingCache( wCacheShared.getSelection() );
+    input.setLookupBatchSize( Const.toInt( wBatchSize.getText(), 0 ) );
 
     logDebug( BaseMessages.getString( PKG, "DatabaseLookupDialog.Log.FoundKeys", String.valueOf( nrkeys ) ) );
     //CHECKSTYLE:Indentation:OFF
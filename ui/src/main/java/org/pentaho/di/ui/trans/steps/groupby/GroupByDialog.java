@@ -31,6 +31,7 @@ import java.util.Set;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.dialogs.MessageDialogWithToggle;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
 import org.eclipse.swt.events.ModifyEvent;
 import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -50,6 +51,7 @@ import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -69,6 +71,8 @@ import org.pentaho.di.ui.trans.step.BaseStepDialog;
 public class GroupByDialog extends BaseStepDialog implements StepDialogInterface {
   private static Class<?> PKG = GroupByMeta.class; // for i18n purposes, needed by Translator2!!
 
+  private static final String NO_COMPRESSION = "None";
+
   public static final String STRING_SORT_WARNING_PARAMETER = "GroupSortWarning";
 
   private Label wlGroup;
@@ -103,6 +107,12 @@ public class GroupByDialog extends BaseStepDialog implements StepDialogInterface
 
   private FormData fdlPrefix, fdPrefix;
 
+  private Label wlCompressionType;
+
+  private CCombo wCompressionType;
+
+  private FormData fdlCompressionType, fdCompressionType;
+
   private Label wlAddLineNr;
 
   private Button wAddLineNr;
@@ -274,20 +284,39 @@ public class GroupByDialog extends BaseStepDialog implements StepDialogInterface
     fdPrefix.right = new FormAttachment( 100, 0 );
     wPrefix.setLayoutData( fdPrefix );
 
+    // Compression of the temp file...
+    wlCompressionType = new Label( shell, SWT.RIGHT );
+    wlCompressionType.setText( BaseMessages.getString( PKG, "GroupByDialog.CompressionType.Label" ) );
+    props.setLook( wlCompressionType );
+    fdlCompressionType = new FormData();
+    fdlCompressionType.left = new FormAttachment( 0, 0 );
+    fdlCompressionType.right = new FormAttachment( middle, -margin );
+    fdlCompressionType.top = new FormAttachment( wPrefix, margin );
+    wlCompressionType.setLayoutData( fdlCompressionType );
+    wCompressionType = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wCompressionType.setItems( CompressionProviderFactory.getInstance().getCompressionProviderNames() );
+    props.setLook( wCompressionType );
+    wCompressionType.addModifyListener( lsMod );
+    fdCompressionType = new FormData();
+    fdCompressionType.left = new FormAttachment( middle, 0 );
+    fdCompressionType.top = new FormAttachment( wPrefix, margin );
+    fdCompressionType.right = new FormAttachment( 100, 0 );
+    wCompressionType.setLayoutData( fdCompressionType );
+
     // Include all rows?
     wlAddLineNr = new Label( shell, SWT.RIGHT );
     wlAddLineNr.setText( BaseMessages.getString( PKG, "GroupByDialog.AddLineNr.Label" ) );
     props.setLook( wlAddLineNr );
     fdlAddLineNr = new FormData();
     fdlAddLineNr.left = new FormAttachment( 0, 0 );
-    fdlAddLineNr.top = new FormAttachment( wPrefix, margin );
+    fdlAddLineNr.top = new FormAttachment( wCompressionType, margin );
     fdlAddLineNr.right = new FormAttachment( middle, -margin );
     wlAddLineNr.setLayoutData( fdlAddLineNr );
     wAddLineNr = new Button( shell, SWT.CHECK );
     props.setLook( wAddLineNr );
     fdAddLineNr = new FormData();
     fdAddLineNr.left = new FormAttachment( middle, 0 );
-    fdAddLineNr.top = new FormAttachment( wPrefix, margin );
+    fdAddLineNr.top = new FormAttachment( wCompressionType, margin );
     fdAddLineNr.right = new FormAttachment( 100, 0 );
     wAddLineNr.setLayoutData( fdAddLineNr );
     wAddLineNr.addSelectionListener( new SelectionAdapter() {
@@ -533,6 +562,8 @@ public class GroupByDialog extends BaseStepDialog implements StepDialogInterface
     wSortDir.setEnabled( wAllRows.getSelection() );
     wlPrefix.setEnabled( wAllRows.getSelection() );
     wPrefix.setEnabled( wAllRows.getSelection() );
+    wlCompressionType.setEnabled( wAllRows.getSelection() );
+    wCompressionType.setEnabled( wAllRows.getSelection() );
     wlAddLineNr.setEnabled( wAllRows.getSelection() );
     wAddLineNr.setEnabled( wAllRows.getSelection() );
 
@@ -551,6 +582,7 @@ public class GroupByDialog extends BaseStepDialog implements StepDialogInterface
     if ( input.getPrefix() != null ) {
       wPrefix.setText( input.getPrefix() );
     }
+    wCompressionType.setText( Const.NVL( input.getCompressionType(), NO_COMPRESSION ) );
     if ( input.getDirectory() != null ) {
       wSortDir.setText( input.getDirectory() );
     }
@@ -611,6 +643,7 @@ public class GroupByDialog extends BaseStepDialog implements StepDialogInterface
     int sizegroup = wGroup.nrNonEmpty();
     int nrfields = wAgg.nrNonEmpty();
     input.setPrefix( wPrefix.getText() );
+    input.setCompressionType( wCompressionType.getText() );
     input.setDirectory( wSortDir.getText() );
 
     input.setLineNrInGroupField( wLineNrField.getText() );
@@ -45,6 +45,7 @@ import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Text;
 import org.pentaho.di.core.Condition;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMeta;
@@ -63,6 +64,8 @@ import org.pentaho.di.ui.trans.step.BaseStepDialog;
 public class JoinRowsDialog extends BaseStepDialog implements StepDialogInterface {
   private static Class<?> PKG = JoinRowsMeta.class; // for i18n purposes, needed by Translator2!!
 
+  private static final String NO_COMPRESSION = "None";
+
   private Label wlSortDir;
   private Button wbSortDir;
   private TextVar wSortDir;
@@ -76,6 +79,10 @@ public class JoinRowsDialog extends BaseStepDialog implements StepDialogInterfac
   private Text wCache;
   private FormData fdlCache, fdCache;
 
+  private Label wlCompressionType;
+  private CCombo wCompressionType;
+  private FormData fdlCompressionType, fdCompressionType;
+
   private Label wlMainStep;
   private CCombo wMainStep;
   private FormData fdlMainStep, fdMainStep;
@@ -223,6 +230,25 @@ public class JoinRowsDialog extends BaseStepDialog implements StepDialogInterfac
     fdCache.right = new FormAttachment( 100, 0 );
     wCache.setLayoutData( fdCache );
 
+    // Compression of the temp files...
+    wlCompressionType = new Label( shell, SWT.RIGHT );
+    wlCompressionType.setText( BaseMessages.getString( PKG, "JoinRowsDialog.CompressionType.Label" ) );
+    props.setLook( wlCompressionType );
+    fdlCompressionType = new FormData();
+    fdlCompressionType.left = new FormAttachment( 0, 0 );
+    fdlCompressionType.right = new FormAttachment( middle, -margin );
+    fdlCompressionType.top = new FormAttachment( wCache, margin );
+    wlCompressionType.setLayoutData( fdlCompressionType );
+    wCompressionType = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wCompressionType.setItems( CompressionProviderFactory.getInstance().getCompressionProviderNames() );
+    props.setLook( wCompressionType );
+    wCompressionType.addModifyListener( lsMod );
+    fdCompressionType = new FormData();
+    fdCompressionType.left = new FormAttachment( middle, 0 );
+    fdCompressionType.top = new FormAttachment( wCache, margin );
+    fdCompressionType.right = new FormAttachment( 100, 0 );
+    wCompressionType.setLayoutData( fdCompressionType );
+
     // Read date from...
     wlMainStep = new Label( shell, SWT.RIGHT );
     wlMainStep.setText( BaseMessages.getString( PKG, "JoinRowsDialog.MainStep.Label" ) );
@@ -230,7 +256,7 @@ public class JoinRowsDialog extends BaseStepDialog implements StepDialogInterfac
     fdlMainStep = new FormData();
     fdlMainStep.left = new FormAttachment( 0, 0 );
     fdlMainStep.right = new FormAttachment( middle, -margin );
-    fdlMainStep.top = new FormAttachment( wCache, margin );
+    fdlMainStep.top = new FormAttachment( wCompressionType, margin );
     wlMainStep.setLayoutData( fdlMainStep );
     wMainStep = new CCombo( shell, SWT.BORDER );
     props.setLook( wMainStep );
@@ -243,7 +269,7 @@ public class JoinRowsDialog extends BaseStepDialog implements StepDialogInterfac
     wMainStep.addModifyListener( lsMod );
     fdMainStep = new FormData();
     fdMainStep.left = new FormAttachment( middle, 0 );
-    fdMainStep.top = new FormAttachment( wCache, margin );
+    fdMainStep.top = new FormAttachment( wCompressionType, margin );
     fdMainStep.right = new FormAttachment( 100, 0 );
     wMainStep.setLayoutData( fdMainStep );
 
@@ -341,6 +367,7 @@ public class JoinRowsDialog extends BaseStepDialog implements StepDialogInterfac
       wSortDir.setText( input.getDirectory() );
     }
     wCache.setText( "" + input.getCacheSize() );
+    wCompressionType.setText( Const.NVL( input.getCompressionType(), NO_COMPRESSION ) );
     if ( input.getLookupStepname() != null ) {
       wMainStep.setText( input.getLookupStepname() );
     }
@@ -369,6 +396,7 @@ public class JoinRowsDialog extends BaseStepDialog implements StepDialogInterfac
       input.setPrefix( wPrefix.getText() );
       input.setDirectory( wSortDir.getText() );
       input.setCacheSize( Const.toInt( wCache.getText(), -1 ) );
+      input.setCompressionType( wCompressionType.getText() );
       input.setMainStep( transMeta.findStep( wMainStep.getText() ) );
 
       dispose();
@@ -77,6 +77,10 @@ public class MemoryGroupByDialog extends BaseStepDialog implements StepDialogInt
   private Button wAlwaysAddResult;
   private FormData fdlAlwaysAddResult, fdAlwaysAddResult;
 
+  private Label wlCombineCopies;
+  private Button wCombineCopies;
+  private FormData fdlCombineCopies, fdCombineCopies;
+
   private Button wGet, wGetAgg;
   private FormData fdGet, fdGetAgg;
   private Listener lsGet, lsGetAgg;
@@ -168,12 +172,33 @@ public class MemoryGroupByDialog extends BaseStepDialog implements StepDialogInt
     wAlwaysAddResult.setLayoutData( fdAlwaysAddResult );
     wAlwaysAddResult.addSelectionListener( lsSel );
 
+    // Combine the groups of the step copies?
+    //
+    wlCombineCopies = new Label( shell, SWT.RIGHT );
+    wlCombineCopies.setText( BaseMessages.getString( PKG, "MemoryGroupByDialog.CombineCopies.Label" ) );
+    wlCombineCopies.setToolTipText( BaseMessages.getString( PKG, "MemoryGroupByDialog.CombineCopies.ToolTip" ) );
+    props.setLook( wlCombineCopies );
+    fdlCombineCopies = new FormData();
+    fdlCombineCopies.left = new FormAttachment( 0, 0 );
+    fdlCombineCopies.top = new FormAttachment( wAlwaysAddResult, margin );
+    fdlCombineCopies.right = new FormAttachment( middle, -margin );
+    wlCombineCopies.setLayoutData( fdlCombineCopies );
+    wCombineCopies = new Button( shell, SWT.CHECK );
+    wCombineCopies.setToolTipText( BaseMessages.getString( PKG, "MemoryGroupByDialog.CombineCopies.ToolTip" ) );
+    props.setLook( wCombineCopies );
+    fdCombineCopies = new FormData();
+    fdCombineCopies.left = new FormAttachment( middle, 0 );
+    fdCombineCopies.top = new FormAttachment( wAlwaysAddResult, margin );
+    fdCombineCopies.right = new FormAttachment( 100, 0 );
+    wCombineCopies.setLayoutData( fdCombineCopies );
+    wCombineCopies.addSelectionListener( lsSel );
+
     wlGroup = new Label( shell, SWT.NONE );
     wlGroup.setText( BaseMessages.getString( PKG, "MemoryGroupByDialog.Group.Label" ) );
     props.setLook( wlGroup );
     fdlGroup = new FormData();
     fdlGroup.left = new FormAttachment( 0, 0 );
-    fdlGroup.top = new FormAttachment( wAlwaysAddResult, margin );
+    fdlGroup.top = new FormAttachment( wCombineCopies, margin );
     wlGroup.setLayoutData( fdlGroup );
 
     int nrKeyCols = 1;
@@ -375,6 +400,7 @@ public class MemoryGroupByDialog extends BaseStepDialog implements StepDialogInt
     logDebug( BaseMessages.getString( PKG, "MemoryGroupByDialog.Log.GettingKeyInfo" ) );
 
     wAlwaysAddResult.setSelection( input.isAlwaysGivingBackOneRow() );
+    wCombineCopies.setSelection( input.isCombiningCopies() );
 
     if ( input.getGroupField() != null ) {
       for ( int i = 0; i < input.getGroupField().length; i++ ) {
@@ -425,6 +451,7 @@ public class MemoryGroupByDialog extends BaseStepDialog implements StepDialogInt
     int nrfields = wAgg.nrNonEmpty();
 
     input.setAlwaysGivingBackOneRow( wAlwaysAddResult.getSelection() );
+    input.setCombiningCopies( wCombineCopies.getSelection() );
 
     input.allocate( sizegroup, nrfields );
 
@@ -93,6 +93,14 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
   private Button wIntegerPair;
   private FormData fdlIntegerPair, fdIntegerPair;
 
+  private Label wlOffHeapIndex;
+  private Button wOffHeapIndex;
+  private FormData fdlOffHeapIndex, fdOffHeapIndex;
+
+  private Label wlShareLookupTable;
+  private Button wShareLookupTable;
+  private FormData fdlShareLookupTable, fdShareLookupTable;
+
   private StreamLookupMeta input;
 
   private Button wGetLU;
@@ -258,7 +266,7 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
     fdReturn.left = new FormAttachment( 0, 0 );
     fdReturn.top = new FormAttachment( wlReturn, margin );
     fdReturn.right = new FormAttachment( 100, 0 );
-    fdReturn.bottom = new FormAttachment( 100, -125 );
+    fdReturn.bottom = new FormAttachment( 100, -175 );
     wReturn.setLayoutData( fdReturn );
 
     wlPreserveMemory = new Label( shell, SWT.RIGHT );
@@ -325,6 +333,28 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
         input.setChanged();
       }
     } );
+
+    wlOffHeapIndex = new Label( shell, SWT.RIGHT );
+    wlOffHeapIndex.setText( BaseMessages.getString( PKG, "StreamLookupDialog.OffHeapIndex.Label" ) );
+    props.setLook( wlOffHeapIndex );
+    fdlOffHeapIndex = new FormData();
+    fdlOffHeapIndex.left = new FormAttachment( 0, 0 );
+    fdlOffHeapIndex.top = new FormAttachment( wSortedList, margin );
+    fdlOffHeapIndex.right = new FormAttachment( middle, -margin );
+    wlOffHeapIndex.setLayoutData( fdlOffHeapIndex );
+    wOffHeapIndex = new Button( shell, SWT.RADIO );
+    wOffHeapIndex.setEnabled( false );
+    props.setLook( wOffHeapIndex );
+    fdOffHeapIndex = new FormData();
+    fdOffHeapIndex.left = new FormAttachment( middle, 0 );
+    fdOffHeapIndex.top = new FormAttachment( wSortedList, margin );
+    fdOffHeapIndex.right = new FormAttachment( 100, 0 );
+    wOffHeapIndex.setLayoutData( fdOffHeapIndex );
+    wOffHeapIndex.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
     // PDI-2107 preserve memory should be enabled to have this options on.
     wPreserveMemory.addListener( SWT.Selection, new Listener() {
       @Override
@@ -332,11 +362,33 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
         boolean selection = wPreserveMemory.getSelection();
         wSortedList.setEnabled( selection );
         wIntegerPair.setEnabled( selection );
+        wOffHeapIndex.setEnabled( selection );
       }
     } );
 
     // END MEMORY PRESERVE
 
+    wlShareLookupTable = new Label( shell, SWT.RIGHT );
+    wlShareLookupTable.setText( BaseMessages.getString( PKG, "StreamLookupDialog.ShareLookupTable.Label" ) );
+    props.setLook( wlShareLookupTable );
+    fdlShareLookupTable = new FormData();
+    fdlShareLookupTable.left = new FormAttachment( 0, 0 );
+    fdlShareLookupTable.top = new FormAttachment( wOffHeapIndex, margin );
+    fdlShareLookupTable.right = new FormAttachment( middle, -margin );
+    wlShareLookupTable.setLayoutData( fdlShareLookupTable );
+    wShareLookupTable = new Button( shell, SWT.CHECK );
+    props.setLook( wShareLookupTable );
+    fdShareLookupTable = new FormData();
+    fdShareLookupTable.left = new FormAttachment( middle, 0 );
+    fdShareLookupTable.top = new FormAttachment( wOffHeapIndex, margin );
+    fdShareLookupTable.right = new FormAttachment( 100, 0 );
+    wShareLookupTable.setLayoutData( fdShareLookupTable );
+    wShareLookupTable.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
+
     // THE BUTTONS
     wOK = new Button( shell, SWT.PUSH );
     wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
@@ -531,12 +583,15 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
     if ( isPreserveMemory ) {
       wSortedList.setEnabled( true );
       wIntegerPair.setEnabled( true );
+      wOffHeapIndex.setEnabled( true );
     }
     // PDI-2107 usually this is sorted list or integer pair
     // for backward compatibility they can be set both
     // but user will be forced to choose only one option later.
     wSortedList.setSelection( input.isUsingSortedList() );
     wIntegerPair.setSelection( input.isUsingIntegerPair() );
+    wOffHeapIndex.setSelection( input.isUsingOffHeapIndex() );
+    wShareLookupTable.setSelection( input.isSharingLookupTable() );
 
     wKey.setRowNums();
     wKey.optWidth( true );
@@ -564,6 +619,8 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
     input.setMemoryPreservationActive( wPreserveMemory.getSelection() );
     input.setUsingSortedList( wSortedList.getSelection() );
     input.setUsingIntegerPair( wIntegerPair.getSelection() );
+    input.setUsingOffHeapIndex( wOffHeapIndex.getSelection() );
+    input.setSharingLookupTable( wShareLookupTable.getSelection() );
 
     if ( log.isDebug() ) {
       logDebug( BaseMessages.getString( PKG, "StreamLookupDialog.Log.FoundKeys", nrkeys + "" ) );
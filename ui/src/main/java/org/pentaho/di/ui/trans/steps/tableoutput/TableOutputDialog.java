@@ -134,6 +134,18 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
   private Button wBatch;
   private FormData fdlBatch, fdBatch;
 
+  private Label wlMultiRow;
+  private Button wMultiRow;
+  private FormData fdlMultiRow, fdMultiRow;
+
+  private Label wlNrWriters;
+  private TextVar wNrWriters;
+  private FormData fdlNrWriters, fdNrWriters;
+
+  private Label wlRoutingField;
+  private ComboVar wRoutingField;
+  private FormData fdlRoutingField, fdRoutingField;
+
   private Label wlUsePart;
   private Button wUsePart;
   private FormData fdlUsePart, fdUsePart;
@@ -564,20 +576,89 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
       }
     } );
 
+    // Multi-row insert
+    wlMultiRow = new Label( wMainComp, SWT.RIGHT );
+    wlMultiRow.setText( BaseMessages.getString( PKG, "TableOutputDialog.MultiRowInsert.Label" ) );
+    wlMultiRow.setToolTipText( BaseMessages.getString( PKG, "TableOutputDialog.MultiRowInsert.Tooltip" ) );
+    props.setLook( wlMultiRow );
+    fdlMultiRow = new FormData();
+    fdlMultiRow.left = new FormAttachment( 0, 0 );
+    fdlMultiRow.top = new FormAttachment( wBatch, margin );
+    fdlMultiRow.right = new FormAttachment( middle, -margin );
+    wlMultiRow.setLayoutData( fdlMultiRow );
+    wMultiRow = new Button( wMainComp, SWT.CHECK );
+    props.setLook( wMultiRow );
+    fdMultiRow = new FormData();
+    fdMultiRow.left = new FormAttachment( middle, 0 );
+    fdMultiRow.top = new FormAttachment( wBatch, margin );
+    fdMultiRow.right = new FormAttachment( 100, 0 );
+    wMultiRow.setLayoutData( fdMultiRow );
+    wMultiRow.addSelectionListener( lsSelMod );
+
+    // Number of writers
+    wlNrWriters = new Label( wMainComp, SWT.RIGHT );
+    wlNrWriters.setText( BaseMessages.getString( PKG, "TableOutputDialog.NrWriters.Label" ) );
+    wlNrWriters.setToolTipText( BaseMessages.getString( PKG, "TableOutputDialog.NrWriters.Tooltip" ) );
+    props.setLook( wlNrWriters );
+    fdlNrWriters = new FormData();
+    fdlNrWriters.left = new FormAttachment( 0, 0 );
+    fdlNrWriters.top = new FormAttachment( wMultiRow, margin );
+    fdlNrWriters.right = new FormAttachment( middle, -margin );
+    wlNrWriters.setLayoutData( fdlNrWriters );
+    wNrWriters = new TextVar( transMeta, wMainComp, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wNrWriters );
+    wNrWriters.addModifyListener( lsMod );
+    fdNrWriters = new FormData();
+    fdNrWriters.left = new FormAttachment( middle, 0 );
+    fdNrWriters.top = new FormAttachment( wMultiRow, margin );
+    fdNrWriters.right = new FormAttachment( 100, 0 );
+    wNrWriters.setLayoutData( fdNrWriters );
+
+    // Writer routing field
+    wlRoutingField = new Label( wMainComp, SWT.RIGHT );
+    wlRoutingField.setText( BaseMessages.getString( PKG, "TableOutputDialog.WriterRoutingField.Label" ) );
+    wlRoutingField.setToolTipText( BaseMessages.getString( PKG, "TableOutputDialog.WriterRoutingField.Tooltip" ) );
+    props.setLook( wlRoutingField );
+    fdlRoutingField = new FormData();
+    fdlRoutingField.left = new FormAttachment( 0, 0 );
+    fdlRoutingField.top = new FormAttachment( wNrWriters, margin );
+    fdlRoutingField.right = new FormAttachment( middle, -margin );
+    wlRoutingField.setLayoutData( fdlRoutingField );
+    wRoutingField = new ComboVar( transMeta, wMainComp, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wRoutingField );
+    wRoutingField.addModifyListener( lsMod );
+    fdRoutingField = new FormData();
+    fdRoutingField.left = new FormAttachment( middle, 0 );
+    fdRoutingField.top = new FormAttachment( wNrWriters, margin );
+    fdRoutingField.right = new FormAttachment( 100, 0 );
+    wRoutingField.setLayoutData( fdRoutingField );
+    wRoutingField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFields();
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
     // NameInField
     wlNameInField = new Label( wMainComp, SWT.RIGHT );
     wlNameInField.setText( BaseMessages.getString( PKG, "TableOutputDialog.NameInField.Label" ) );
     props.setLook( wlNameInField );
     fdlNameInField = new FormData();
     fdlNameInField.left = new FormAttachment( 0, 0 );
-    fdlNameInField.top = new FormAttachment( wBatch, margin * 5 );
+    fdlNameInField.top = new FormAttachment( wRoutingField, margin * 5 );
     fdlNameInField.right = new FormAttachment( middle, -margin );
     wlNameInField.setLayoutData( fdlNameInField );
     wNameInField = new Button( wMainComp, SWT.CHECK );
     props.setLook( wNameInField );
     fdNameInField = new FormData();
     fdNameInField.left = new FormAttachment( middle, 0 );
-    fdNameInField.top = new FormAttachment( wBatch, margin * 5 );
+    fdNameInField.top = new FormAttachment( wRoutingField, margin * 5 );
     fdNameInField.right = new FormAttachment( 100, 0 );
     wNameInField.setLayoutData( fdNameInField );
     wNameInField.addSelectionListener( new SelectionAdapter() {
@@ -849,6 +930,7 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
 
     wStepname.addSelectionListener( lsDef );
     wCommit.addSelectionListener( lsDef );
+    wNrWriters.addSelectionListener( lsDef );
     wSchema.addSelectionListener( lsDef );
     wTable.addSelectionListener( lsDef );
     wPartField.addSelectionListener( lsDef );
@@ -895,10 +977,12 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
       try {
         String field = wNameField.getText();
         String partfield = wPartField.getText();
+        String routingField = wRoutingField.getText();
         RowMetaInterface r = transMeta.getPrevStepFields( stepname );
         if ( r != null ) {
           wNameField.setItems( r.getFieldNames() );
           wPartField.setItems( r.getFieldNames() );
+          wRoutingField.setItems( r.getFieldNames() );
         }
         if ( field != null ) {
           wNameField.setText( field );
@@ -906,6 +990,9 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
         if ( partfield != null ) {
           wPartField.setText( partfield );
         }
+        if ( routingField != null ) {
+          wRoutingField.setText( routingField );
+        }
       } catch ( KettleException ke ) {
         new ErrorDialog(
           shell, BaseMessages.getString( PKG, "TableOutputDialog.FailedToGetFields.DialogTitle" ), BaseMessages
@@ -1197,6 +1284,14 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
     wlBatch.setEnabled( enableBatch );
     wBatch.setEnabled( enableBatch );
 
+    // Multi-row inserts and the writers only work in batch mode
+    wlMultiRow.setEnabled( useBatch );
+    wMultiRow.setEnabled( useBatch );
+    wlNrWriters.setEnabled( useBatch );
+    wNrWriters.setEnabled( useBatch );
+    wlRoutingField.setEnabled( useBatch );
+    wRoutingField.setEnabled( useBatch );
+
     boolean specifyFields = wSpecifyFields.getSelection();
     wFields.setEnabled( specifyFields );
     wGetFields.setEnabled( specifyFields );
@@ -1242,8 +1337,13 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
     wTruncate.setSelection( input.truncateTable() );
     wIgnore.setSelection( input.ignoreErrors() );
     wBatch.setSelection( input.useBatchUpdate() );
+    wMultiRow.setSelection( input.isMultiRowInsert() );
 
     wCommit.setText( input.getCommitSize() );
+    wNrWriters.setText( Const.NVL( input.getNrWriters(), "1" ) );
+    if ( input.getWriterRoutingField() != null ) {
+      wRoutingField.setText( input.getWriterRoutingField() );
+    }
 
     wUsePart.setSelection( input.isPartitioningEnabled() );
     wPartDaily.setSelection( input.isPartitioningDaily() );
@@ -1295,6 +1395,9 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
     info.setTruncateTable( wTruncate.getSelection() );
     info.setIgnoreErrors( wIgnore.getSelection() );
     info.setUseBatchUpdate( wBatch.getSelection() );
+    info.setMultiRowInsert( wMultiRow.getSelection() );
+    info.setNrWriters( wNrWriters.getText() );
+    info.setWriterRoutingField( wRoutingField.getText() );
     info.setPartitioningEnabled( wUsePart.getSelection() );
     info.setPartitioningField( wPartField.getText() );
     info.setPartitioningDaily( wPartDaily.getSelection() );